@@ -0,0 +1,249 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.lexer.Lexer;
+import io.pebbletemplates.pebble.lexer.LexerImpl;
+import io.pebbletemplates.pebble.lexer.StreamingLexer;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.loader.ClasspathLoader;
+import io.pebbletemplates.pebble.parser.ParserImpl;
+import io.pebbletemplates.pebble.parser.ParserOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared fixtures for the benchmarks: the engine configuration, the representative templates and
+ * the data they are rendered with.
+ */
+final class BenchmarkSupport {
+
+  /**
+   * Location of the benchmark templates on the classpath.
+   */
+  static final String PREFIX = "benchmark/";
+
+  /**
+   * Number of items handed to every template. Large enough for the "for" loops to dominate.
+   */
+  static final int ITEM_COUNT = 500;
+
+  private BenchmarkSupport() {
+  }
+
+  /**
+   * Creates an engine which loads the benchmark templates from the classpath.
+   *
+   * @param cacheActive Whether compiled templates should be cached
+   * @return The engine
+   */
+  static PebbleEngine newEngine(boolean cacheActive) {
+    return newEngine(cacheActive, false);
+  }
+
+  /**
+   * Creates an engine which loads the benchmark templates from the classpath.
+   *
+   * @param cacheActive Whether compiled templates should be cached
+   * @param bytecodeCompilation Whether templates are compiled to bytecode
+   * @return The engine
+   */
+  static PebbleEngine newEngine(boolean cacheActive, boolean bytecodeCompilation) {
+    return new PebbleEngine.Builder()
+        .loader(new ClasspathLoader())
+        .cacheActive(cacheActive)
+        .bytecodeCompilation(bytecodeCompilation)
+        .build();
+  }
+
+  /**
+   * Returns the full name of a benchmark template.
+   *
+   * @param template The short name of the template, e.g. "loop"
+   * @return The name understood by the loader
+   */
+  static String templateName(String template) {
+    return PREFIX + template + ".peb";
+  }
+
+  /**
+   * Reads the raw source of a benchmark template.
+   *
+   * @param template The short name of the template
+   * @return The template source
+   */
+  static String readSource(String template) {
+    String name = templateName(template);
+    InputStream is = BenchmarkSupport.class.getClassLoader().getResourceAsStream(name);
+    if (is == null) {
+      throw new IllegalStateException("Benchmark template " + name + " not found");
+    }
+    StringBuilder sb = new StringBuilder();
+    try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+      char[] buffer = new char[4096];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        sb.append(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Can not read benchmark template " + name, e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Creates a lexer configured the same way the engine configures its own.
+   *
+   * @param engine The engine
+   * @return The lexer
+   */
+  static Lexer newLexer(PebbleEngine engine) {
+    return newLexer(engine, StreamingLexer.supports(engine.getSyntax()));
+  }
+
+  /**
+   * Creates either the streaming or the regular expression based lexer.
+   *
+   * @param engine The engine
+   * @param streaming Whether to create the streaming lexer
+   * @return The lexer
+   */
+  static Lexer newLexer(PebbleEngine engine, boolean streaming) {
+    if (streaming) {
+      return new StreamingLexer(engine.getSyntax(),
+          engine.getExtensionRegistry().getUnaryOperators().values(),
+          engine.getExtensionRegistry().getBinaryOperators().values());
+    }
+    return new LexerImpl(engine.getSyntax(),
+        engine.getExtensionRegistry().getUnaryOperators().values(),
+        engine.getExtensionRegistry().getBinaryOperators().values());
+  }
+
+  /**
+   * Creates a parser configured the same way the engine configures its own.
+   *
+   * @param engine The engine
+   * @return The parser
+   */
+  static ParserImpl newParser(PebbleEngine engine) {
+    return new ParserImpl(engine.getExtensionRegistry().getUnaryOperators(),
+        engine.getExtensionRegistry().getBinaryOperators(),
+        engine.getExtensionRegistry().getTokenParsers(), new ParserOptions());
+  }
+
+  /**
+   * Tokenizes the given template source.
+   *
+   * @param engine The engine
+   * @param template The short name of the template
+   * @param source The template source
+   * @return The token stream
+   */
+  static TokenStream tokenize(PebbleEngine engine, String template, String source) {
+    return newLexer(engine).tokenize(new StringReader(source), templateName(template));
+  }
+
+  /**
+   * Builds the variables the templates are rendered with.
+   *
+   * @return The evaluation context
+   */
+  static Map<String, Object> newContext() {
+    List<Item> items = new ArrayList<>(ITEM_COUNT);
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      items.add(new Item(i, "Item <" + i + "> & \"friends\"",
+          "Description of item " + i + " with <b>markup</b> & 'quotes' that must be escaped",
+          i % 17, BigDecimal.valueOf(i * 31L, 2)));
+    }
+
+    List<Link> links = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      links.add(new Link("/section/" + i + "?a=1&b=2", "Section " + i));
+    }
+
+    Map<String, Object> context = new HashMap<>();
+    context.put("title", "Benchmark <page>");
+    context.put("subtitle", "Rendering & escaping");
+    context.put("items", items);
+    context.put("links", links);
+    return context;
+  }
+
+  public static class Item {
+
+    private final int id;
+
+    private final String name;
+
+    private final String description;
+
+    private final int quantity;
+
+    private final BigDecimal price;
+
+    Item(int id, String name, String description, int quantity, BigDecimal price) {
+      this.id = id;
+      this.name = name;
+      this.description = description;
+      this.quantity = quantity;
+      this.price = price;
+    }
+
+    public int getId() {
+      return this.id;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public String getDescription() {
+      return this.description;
+    }
+
+    public int getQuantity() {
+      return this.quantity;
+    }
+
+    public BigDecimal getPrice() {
+      return this.price;
+    }
+  }
+
+  public static class Link {
+
+    private final String url;
+
+    private final String label;
+
+    Link(String url, String label) {
+      this.url = url;
+      this.label = label;
+    }
+
+    public String getUrl() {
+      return this.url;
+    }
+
+    public String getLabel() {
+      return this.label;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+import io.pebbletemplates.pebble.lexer.Token;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the compilation steps that follow parsing: the {@link NodeVisitorFactory} passes run by
+ * {@link PebbleEngine#getTemplate(String)}, and the complete uncached compilation of a template
+ * (including its parents and imports).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+
+  @Param({"extends", "macros", "loop", "autoescape"})
+  public String template;
+
+  private PebbleEngine engine;
+
+  private PebbleEngine uncachedEngine;
+
+  private List<Token> tokens;
+
+  private RootNode root;
+
+  @Setup
+  public void setup() {
+    this.engine = BenchmarkSupport.newEngine(true);
+    this.uncachedEngine = BenchmarkSupport.newEngine(false);
+    this.tokens = BenchmarkSupport
+        .tokenize(this.engine, this.template, BenchmarkSupport.readSource(this.template))
+        .getTokens();
+  }
+
+  /**
+   * The visitors rewrite the tree in place (e.g. the escaper wraps print nodes) so every
+   * invocation needs a freshly parsed tree.
+   */
+  @Setup(Level.Invocation)
+  public void parse() {
+    TokenStream stream = new TokenStream(this.tokens, BenchmarkSupport.templateName(this.template));
+    this.root = BenchmarkSupport.newParser(this.engine).parse(stream);
+  }
+
+  @Benchmark
+  public PebbleTemplateImpl nodeVisitors() {
+    PebbleTemplateImpl instance = new PebbleTemplateImpl(this.engine, this.root,
+        BenchmarkSupport.templateName(this.template));
+    for (NodeVisitorFactory visitorFactory : this.engine.getExtensionRegistry().getNodeVisitors()) {
+      visitorFactory.createVisitor(instance).visit(this.root);
+    }
+    return instance;
+  }
+
+  @Benchmark
+  public PebbleTemplate getTemplateUncached() {
+    return this.uncachedEngine.getTemplate(BenchmarkSupport.templateName(this.template));
+  }
+}
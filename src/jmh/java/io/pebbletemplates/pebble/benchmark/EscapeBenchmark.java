@@ -0,0 +1,98 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.extension.escaper.EscapeFilter;
+import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
+import io.pebbletemplates.pebble.extension.escaper.WriterEscapingStrategy;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unbescape.html.HtmlEscape;
+
+/**
+ * Compares the built-in html escaping strategy, returning a string and writing to a writer, with
+ * the plain {@link HtmlEscape#escapeHtml4Xml(String)} it replaced, on a text without any character
+ * to escape, one with the first of them near its end and one with many of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+  private static final String WORDS = "The quick brown fox jumps over the lazy dog, again and again. ";
+
+  @Param({"clean", "dirty-tail", "markup"})
+  public String text;
+
+  private String input;
+
+  private EscapingStrategy strategy;
+
+  private StringWriter writer;
+
+  @Setup
+  public void setup() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 8; i++) {
+      text.append(WORDS);
+    }
+    if (this.text.equals("dirty-tail")) {
+      text.append("<end>");
+    } else if (this.text.equals("markup")) {
+      text.setLength(0);
+      for (int i = 0; i < 16; i++) {
+        text.append("<a href=\"/item?id=").append(i).append("&sort=asc\">Item</a>");
+      }
+    }
+    this.input = text.toString();
+    this.strategy = new EscapeFilter().getEscapingStrategy(EscapeFilter.HTML_ESCAPE_STRATEGY);
+    this.writer = new StringWriter(this.input.length() * 2);
+  }
+
+  @Benchmark
+  public String unbescape() {
+    return HtmlEscape.escapeHtml4Xml(this.input);
+  }
+
+  @Benchmark
+  public String strategy() {
+    return this.strategy.escape(this.input);
+  }
+
+  @Benchmark
+  public StringWriter unbescapeToWriter() throws IOException {
+    this.writer.getBuffer().setLength(0);
+    HtmlEscape.escapeHtml4Xml(this.input, this.writer);
+    return this.writer;
+  }
+
+  @Benchmark
+  public StringWriter strategyToWriter() throws IOException {
+    this.writer.getBuffer().setLength(0);
+    ((WriterEscapingStrategy) this.strategy).escape(this.input, this.writer);
+    return this.writer;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.parser.IncrementalParser;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares parsing a large template from scratch with parsing it again through the
+ * {@link IncrementalParser} after a line was inserted near its top, which moves every later
+ * segment to another line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalParserBenchmark {
+
+  /**
+   * Number of lines of the generated template.
+   */
+  private static final int LINE_COUNT = 5000;
+
+  /**
+   * Number of lines of each generated section.
+   */
+  private static final int SECTION_LINES = 9;
+
+  private static final String NAME = "generated.peb";
+
+  private PebbleEngine engine;
+
+  private IncrementalParser incrementalParser;
+
+  private String source;
+
+  private String editedSource;
+
+  private boolean edited;
+
+  @Setup
+  public void setup() {
+    this.engine = BenchmarkSupport.newEngine(true);
+    this.incrementalParser = new IncrementalParser(this.engine.getSyntax(),
+        () -> BenchmarkSupport.newLexer(this.engine), () -> BenchmarkSupport.newParser(this.engine));
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i * SECTION_LINES < LINE_COUNT; i++) {
+      source.append("<h2>Section ").append(i).append("</h2>\n")
+          .append("{% for item in items %}\n")
+          .append("  {% if item.quantity > ").append(i % 10).append(" %}\n")
+          .append("  <li class=\"{{ loop.index is even ? 'even' : 'odd' }}\">")
+          .append("{{ item.name | upper }} - {{ item.price * 2 }}</li>\n")
+          .append("  {% else %}\n")
+          .append("  <li>{{ item.description | abbreviate(20) }}</li>\n")
+          .append("  {% endif %}\n")
+          .append("{% endfor %}\n")
+          .append("{% autoescape 'html' %}{{ title ~ ' ").append(i).append("' }}{% endautoescape %}\n");
+    }
+    this.source = source.toString();
+    int secondLine = this.source.indexOf('\n') + 1;
+    this.editedSource = this.source.substring(0, secondLine) + "<p>Inserted</p>\n"
+        + this.source.substring(secondLine);
+    this.incrementalParser.parse(NAME, this.source);
+  }
+
+  @Benchmark
+  public RootNode fullParse() {
+    TokenStream stream = BenchmarkSupport.newLexer(this.engine)
+        .tokenize(new StringReader(this.source), NAME);
+    return BenchmarkSupport.newParser(this.engine).parse(stream);
+  }
+
+  /**
+   * Parses the two versions of the template in turn, so each invocation follows an edit.
+   */
+  @Benchmark
+  public RootNode incrementalParseAfterEdit() {
+    this.edited = !this.edited;
+    return this.incrementalParser.parse(NAME, this.edited ? this.editedSource : this.source);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.lexer.Lexer;
+import io.pebbletemplates.pebble.lexer.Token;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link io.pebbletemplates.pebble.lexer.LexerImpl#tokenize} and {@link
+ * io.pebbletemplates.pebble.lexer.StreamingLexer#tokenize}, including the production of all tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+  @Param({"extends", "layout1", "macros", "macros-lib", "loop", "autoescape"})
+  public String template;
+
+  @Param({"false", "true"})
+  public boolean streaming;
+
+  private PebbleEngine engine;
+
+  private String source;
+
+  private Lexer lexer;
+
+  @Setup
+  public void setup() {
+    this.engine = BenchmarkSupport.newEngine(true);
+    this.source = BenchmarkSupport.readSource(this.template);
+    this.lexer = BenchmarkSupport.newLexer(this.engine, this.streaming);
+  }
+
+  @Benchmark
+  public List<Token> tokenize() {
+    return this.lexer.tokenize(new StringReader(this.source),
+        BenchmarkSupport.templateName(this.template)).getTokens();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.lexer.Token;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.node.RootNode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link io.pebbletemplates.pebble.parser.ParserImpl#parse} on a pre-tokenized template.
+ * The parser does not modify the tokens, so the same token list is replayed for every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({"extends", "layout1", "macros", "macros-lib", "loop", "autoescape"})
+  public String template;
+
+  private PebbleEngine engine;
+
+  private List<Token> tokens;
+
+  @Setup
+  public void setup() {
+    this.engine = BenchmarkSupport.newEngine(true);
+    this.tokens = BenchmarkSupport
+        .tokenize(this.engine, this.template, BenchmarkSupport.readSource(this.template))
+        .getTokens();
+  }
+
+  @Benchmark
+  public RootNode parse() {
+    TokenStream stream = new TokenStream(this.tokens, BenchmarkSupport.templateName(this.template));
+    return BenchmarkSupport.newParser(this.engine).parse(stream);
+  }
+}
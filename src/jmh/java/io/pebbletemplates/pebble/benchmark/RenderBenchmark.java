@@ -0,0 +1,85 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link io.pebbletemplates.pebble.template.PebbleTemplateImpl#evaluate} of an already
+ * compiled and cached template.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+  @Param({"extends", "macros", "loop", "autoescape", "expressions"})
+  public String template;
+
+  @Param({"false", "true"})
+  public boolean bytecodeCompilation;
+
+  private PebbleTemplate compiled;
+
+  private Map<String, Object> context;
+
+  @Setup
+  public void setup() {
+    PebbleEngine engine = BenchmarkSupport.newEngine(true, this.bytecodeCompilation);
+    this.compiled = engine.getTemplate(BenchmarkSupport.templateName(this.template));
+    this.context = BenchmarkSupport.newContext();
+  }
+
+  @Benchmark
+  public String evaluate() throws IOException {
+    StringWriter writer = new StringWriter(16 * 1024);
+    this.compiled.evaluate(writer, this.context);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public byte[] evaluateToOutputStreamWriter() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    this.compiled.evaluate(writer, this.context);
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] evaluateToOutputStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+    this.compiled.evaluate(out, StandardCharsets.UTF_8, this.context);
+    return out.toByteArray();
+  }
+}
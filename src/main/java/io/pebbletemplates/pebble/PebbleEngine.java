@@ -16,32 +16,49 @@ import io.pebbletemplates.pebble.cache.tag.NoOpTagCache;
 import io.pebbletemplates.pebble.cache.template.ConcurrentMapTemplateCache;
 import io.pebbletemplates.pebble.cache.template.NoOpTemplateCache;
 import io.pebbletemplates.pebble.error.LoaderException;
+import io.pebbletemplates.pebble.error.ParserException;
+import io.pebbletemplates.pebble.lexer.Lexer;
 import io.pebbletemplates.pebble.lexer.LexerImpl;
+import io.pebbletemplates.pebble.lexer.StreamingLexer;
 import io.pebbletemplates.pebble.lexer.Syntax;
 import io.pebbletemplates.pebble.lexer.TokenStream;
 import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.parser.IncrementalParser;
 import io.pebbletemplates.pebble.parser.Parser;
 import io.pebbletemplates.pebble.parser.ParserImpl;
 import io.pebbletemplates.pebble.parser.ParserOptions;
 import io.pebbletemplates.pebble.attributes.methodaccess.BlacklistMethodAccessValidator;
 import io.pebbletemplates.pebble.attributes.methodaccess.MethodAccessValidator;
+import io.pebbletemplates.pebble.compiler.TemplateCompiler;
 import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
 import io.pebbletemplates.pebble.loader.ClasspathLoader;
 import io.pebbletemplates.pebble.loader.DelegatingLoader;
 import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.loader.ListableLoader;
 import io.pebbletemplates.pebble.loader.Loader;
 import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.loader.TemplateContent;
 import io.pebbletemplates.pebble.extension.*;
 import io.pebbletemplates.pebble.template.EvaluationOptions;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.template.WarmUpResult;
+import io.pebbletemplates.pebble.template.WarmUpResult.TemplateTiming;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import io.pebbletemplates.pebble.utils.TypeUtils;
@@ -80,6 +97,18 @@ public class PebbleEngine {
 
   private final EvaluationOptions evaluationOptions;
 
+  private final TemplateCompiler templateCompiler;
+
+  /**
+   * Shared lexer if the syntax can be scanned without regular expressions, null otherwise.
+   */
+  private final StreamingLexer streamingLexer;
+
+  /**
+   * Parses changed templates incrementally, may be null.
+   */
+  private final IncrementalParser incrementalParser;
+
   /**
    * Constructor for the Pebble Engine given an instantiated Loader. This method does only load
    * those userProvidedExtensions listed here.
@@ -97,7 +126,9 @@ public class PebbleEngine {
       ExecutorService executorService,
       ExtensionRegistry extensionRegistry,
       ParserOptions parserOptions,
-      EvaluationOptions evaluationOptions) {
+      EvaluationOptions evaluationOptions,
+      TemplateCompiler templateCompiler,
+      boolean incrementalParsing) {
 
     this.loader = loader;
     this.syntax = syntax;
@@ -110,6 +141,12 @@ public class PebbleEngine {
     this.extensionRegistry = extensionRegistry;
     this.parserOptions = parserOptions;
     this.evaluationOptions = evaluationOptions;
+    this.templateCompiler = templateCompiler;
+    this.streamingLexer = StreamingLexer.supports(syntax) ? new StreamingLexer(syntax,
+        extensionRegistry.getUnaryOperators().values(),
+        extensionRegistry.getBinaryOperators().values()) : null;
+    this.incrementalParser = incrementalParsing ? new IncrementalParser(syntax, this::newLexer,
+        this::newParser) : null;
   }
 
   /**
@@ -157,17 +194,17 @@ public class PebbleEngine {
     Reader templateReader = loader.getReader(cacheKey);
     
     try {
-      this.logger.trace("Tokenizing template named {}", templateName);
-      LexerImpl lexer = new LexerImpl(this.syntax,
-          this.extensionRegistry.getUnaryOperators().values(),
-          this.extensionRegistry.getBinaryOperators().values());
-      TokenStream tokenStream = lexer.tokenize(templateReader, templateName);
-      this.logger.trace("TokenStream: {}", tokenStream);
-      
-      Parser parser = new ParserImpl(this.extensionRegistry.getUnaryOperators(),
-          this.extensionRegistry.getBinaryOperators(), this.extensionRegistry.getTokenParsers(),
-              this.parserOptions);
-      RootNode root = parser.parse(tokenStream);
+      // the names of literal templates are their source, they are never edited
+      boolean incremental = this.incrementalParser != null && !(loader instanceof StringLoader);
+      RootNode root;
+      if (incremental) {
+        TemplateContent content = TemplateContent.fromReader(templateReader);
+        String source = content != null ? content.toString()
+            : this.readSource(templateReader, templateName);
+        root = this.incrementalParser.parse(templateName, source);
+      } else {
+        root = this.parse(templateReader, templateName);
+      }
 
       PebbleTemplateImpl instance = new PebbleTemplateImpl(this, root, templateName);
 
@@ -175,6 +212,11 @@ public class PebbleEngine {
         visitorFactory.createVisitor(instance).visit(root);
       }
 
+      if (this.templateCompiler != null) {
+        this.logger.trace("Compiling template named {}", templateName);
+        this.templateCompiler.compile(instance, root);
+      }
+
       return instance;
 
     } finally {
@@ -186,6 +228,75 @@ public class PebbleEngine {
     }
   }
 
+  private RootNode parse(Reader templateReader, String templateName) {
+    this.logger.trace("Tokenizing template named {}", templateName);
+    TokenStream tokenStream = this.newLexer().tokenize(templateReader, templateName);
+    this.logger.trace("TokenStream: {}", tokenStream);
+    return this.newParser().parse(tokenStream);
+  }
+
+  private Lexer newLexer() {
+    return this.streamingLexer != null ? this.streamingLexer : new LexerImpl(this.syntax,
+        this.extensionRegistry.getUnaryOperators().values(),
+        this.extensionRegistry.getBinaryOperators().values());
+  }
+
+  private Parser newParser() {
+    return new ParserImpl(this.extensionRegistry.getUnaryOperators(),
+        this.extensionRegistry.getBinaryOperators(), this.extensionRegistry.getTokenParsers(),
+        this.parserOptions);
+  }
+
+  private String readSource(Reader templateReader, String templateName) {
+    StringBuilder source = new StringBuilder();
+    char[] buffer = new char[1024 * 4];
+    int read;
+    try {
+      while ((read = templateReader.read(buffer)) != -1) {
+        source.append(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new ParserException(e, "Can not convert template Reader into a String", 0,
+          templateName);
+    }
+    return source.toString();
+  }
+
+  /**
+   * Compiles templates ahead of their first use, in parallel on the given executor, so that the
+   * first renderings after a start do not pay for it. The templates referenced by the extends,
+   * include, import, from and embed tags of a compiled template are compiled as well, as far as
+   * their names are string literals. The compiled templates end up in the template cache.
+   * <p>
+   * This method blocks until every template is compiled, it must therefore not be called from a
+   * thread of the executor. Templates which can not be compiled are reported in the result.
+   *
+   * @param templateNames The names of the templates
+   * @param executorService The executor used to compile the templates
+   * @return The time spent on every template
+   */
+  public WarmUpResult warmUp(Collection<String> templateNames, ExecutorService executorService) {
+    WarmUpResult result = new WarmUp(executorService).run(templateNames);
+    this.logger.debug("Warmed up {} templates in {} ms, {} failed", result.getTemplates().size(),
+        result.getElapsedNanos() / 1000000, result.getFailures().size());
+    return result;
+  }
+
+  /**
+   * Compiles all templates the loader is able to list ahead of their first use, see {@link
+   * #warmUp(Collection, ExecutorService)}.
+   *
+   * @param executorService The executor used to compile the templates
+   * @return The time spent on every template
+   * @throws IllegalStateException If the loader does not implement {@link ListableLoader}
+   */
+  public WarmUpResult warmUp(ExecutorService executorService) {
+    if (!(this.loader instanceof ListableLoader)) {
+      throw new IllegalStateException("The loader is not able to list its templates");
+    }
+    return this.warmUp(((ListableLoader) this.loader).getTemplateNames(), executorService);
+  }
+
   /**
    * Returns the loader
    *
@@ -267,6 +378,77 @@ public class PebbleEngine {
     return this.tagCache;
   }
 
+  /**
+   * Compiles the templates of a single warm-up, each of them exactly once.
+   */
+  private final class WarmUp {
+
+    private final ExecutorService executorService;
+
+    private final Set<String> submitted = ConcurrentHashMap.newKeySet();
+
+    private final Queue<TemplateTiming> timings = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of compilations which have not finished yet, plus one while templates are submitted.
+     */
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    WarmUp(ExecutorService executorService) {
+      this.executorService = executorService;
+    }
+
+    WarmUpResult run(Collection<String> templateNames) {
+      long start = System.nanoTime();
+      for (String templateName : templateNames) {
+        this.submit(templateName, null);
+      }
+      this.finished();
+      this.done.join();
+      return new WarmUpResult(new ArrayList<>(this.timings), System.nanoTime() - start);
+    }
+
+    private void submit(String templateName, String referencedBy) {
+      if (templateName == null || !this.submitted.add(templateName)) {
+        return;
+      }
+      this.pending.incrementAndGet();
+      try {
+        this.executorService.execute(() -> this.compile(templateName, referencedBy));
+      } catch (RejectedExecutionException e) {
+        this.timings.add(new TemplateTiming(templateName, referencedBy, 0, e));
+        this.finished();
+      }
+    }
+
+    private void compile(String templateName, String referencedBy) {
+      long start = System.nanoTime();
+      try {
+        PebbleTemplate template = PebbleEngine.this.getTemplate(templateName);
+        this.timings.add(
+            new TemplateTiming(templateName, referencedBy, System.nanoTime() - start, null));
+        if (template instanceof PebbleTemplateImpl) {
+          for (String name : ((PebbleTemplateImpl) template).getReferencedTemplateNames()) {
+            this.submit(name, templateName);
+          }
+        }
+      } catch (RuntimeException e) {
+        this.timings.add(
+            new TemplateTiming(templateName, referencedBy, System.nanoTime() - start, e));
+      } finally {
+        this.finished();
+      }
+    }
+
+    private void finished() {
+      if (this.pending.decrementAndGet() == 0) {
+        this.done.complete(null);
+      }
+    }
+  }
+
   /**
    * A builder to configure and construct an instance of a PebbleEngine.
    */
@@ -300,6 +482,10 @@ public class PebbleEngine {
 
     private MethodAccessValidator methodAccessValidator = new BlacklistMethodAccessValidator();
 
+    private boolean bytecodeCompilation = false;
+
+    private boolean incrementalParsing = false;
+
     private final ExtensionRegistryFactory factory = new ExtensionRegistryFactory();
 
     /**
@@ -430,6 +616,22 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Changes whether templates are parsed incrementally. The engine then keeps the tokens of the
+     * last version of each template, by top level parts such as block and macro definitions. When
+     * a changed template is compiled again, for example once the template cache has been
+     * invalidated, only the parts which changed are tokenized again, even if lines were inserted
+     * above them. This speeds up the live editing of large templates at the cost of the memory for
+     * the kept tokens. Default is false.
+     *
+     * @param incrementalParsing Whether to parse templates incrementally
+     * @return This builder object
+     */
+    public Builder incrementalParsing(boolean incrementalParsing) {
+      this.incrementalParsing = incrementalParsing;
+      return this;
+    }
+
     /**
      * Sets the cache used by the "cache" tag.
      *
@@ -463,6 +665,19 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Changes whether templates are simplified after parsing: expressions made of literals are
+     * evaluated once, "if" branches with a literal condition are removed or inlined and adjacent
+     * text is merged. Default is enabled.
+     *
+     * @param templateOptimization Whether templates are simplified after parsing
+     * @return This builder object
+     */
+    public Builder templateOptimization(boolean templateOptimization) {
+      this.factory.templateOptimization(templateOptimization);
+      return this;
+    }
+
     /**
      * Sets the default escaping strategy of the built-in escaper extension.
      *
@@ -559,6 +774,22 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Enable/disable compilation of templates to bytecode. Default is disabled. If enabled, the
+     * render tree of every template is compiled to generated classes after parsing, which renders
+     * faster once the JIT compiler has warmed up but makes loading a template more expensive.
+     * Constructs which cannot be compiled are still interpreted.
+     *
+     * Requires ASM (org.ow2.asm:asm) on the classpath, compilation stays disabled otherwise.
+     *
+     * @param bytecodeCompilation toggle to enable/disable bytecode compilation
+     * @return This builder object
+     */
+    public Builder bytecodeCompilation(boolean bytecodeCompilation) {
+      this.bytecodeCompilation = bytecodeCompilation;
+      return this;
+    }
+
     /**
      * Registers an implementation of {@link ExtensionCustomizer} to change runtime-behaviour of standard
      * functionality.
@@ -618,9 +849,20 @@ public class PebbleEngine {
 
       EvaluationOptions evaluationOptions = new EvaluationOptions(this.greedyMatchMethod,
           this.methodAccessValidator);
+
+      TemplateCompiler templateCompiler = null;
+      if (this.bytecodeCompilation) {
+        if (TemplateCompiler.isAvailable()) {
+          templateCompiler = new TemplateCompiler();
+        } else {
+          LoggerFactory.getLogger(PebbleEngine.class)
+              .warn("Bytecode compilation requires ASM on the classpath, templates will be interpreted");
+        }
+      }
       return new PebbleEngine(this.loader, this.syntax, this.strictVariables, this.defaultLocale, this.maxRenderedSize,
           this.tagCache, this.templateCache,
-          this.executorService, extensionRegistry, parserOptions, evaluationOptions);
+          this.executorService, extensionRegistry, parserOptions, evaluationOptions,
+          templateCompiler, this.incrementalParsing);
     }
   }
 
@@ -0,0 +1,171 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the accessors cached by {@link MemberCacheUtils}.
+ * <p>
+ * Getters without parameters are called through a {@link Function} spun by the {@link
+ * LambdaMetafactory}, which the JIT compiler treats like a direct call. Getters which can not be
+ * linked that way, because their class is not public or not visible from the class loader of
+ * Pebble, and public fields are read through a {@link MethodHandle}. Methods with parameters keep
+ * using reflection, their arguments have to be converted anyway. Exceptions thrown by the getters
+ * are reported exactly like {@link Method#invoke} reports them.
+ * <p>
+ * Each function is a class of its own which lives as long as the class loader of Pebble, so it is
+ * created once per getter and shared by all the engines, keyed on the declaring class of the
+ * getter.
+ */
+final class AccessorFactory {
+
+  private static final Logger logger = LoggerFactory.getLogger(AccessorFactory.class);
+
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final ClassValue<ConcurrentMap<Method, Function<Object, Object>>> functions =
+      new ClassValue<ConcurrentMap<Method, Function<Object, Object>>>() {
+        @Override
+        protected ConcurrentMap<Method, Function<Object, Object>> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private AccessorFactory() {
+  }
+
+  static AttributeAccessor create(Member member) {
+    try {
+      if (Modifier.isStatic(member.getModifiers())) {
+        return new MemberAccessor(member);
+      }
+      if (member instanceof Method && ((Method) member).getParameterCount() == 0) {
+        Method method = (Method) member;
+        if (isLinkable(method)) {
+          return new FunctionAccessor(method.getName(), getFunction(method));
+        }
+        return new MethodHandleAccessor(method.getName(),
+            lookup.unreflect(method).asType(GETTER_TYPE));
+      } else if (member instanceof Field) {
+        return new MethodHandleAccessor(member.getName(),
+            lookup.unreflectGetter((Field) member).asType(GETTER_TYPE));
+      }
+    } catch (Throwable e) {
+      logger.debug("Could not create an accessor for {}, using reflection", member, e);
+    }
+    return new MemberAccessor(member);
+  }
+
+  /**
+   * Checks whether a class generated next to this one can call the method directly. Classes of the
+   * JDK outside of the java.* packages are excluded, their packages may not be exported.
+   */
+  private static boolean isLinkable(Method method) throws ClassNotFoundException {
+    Class<?> declaringClass = method.getDeclaringClass();
+    if (!Modifier.isPublic(declaringClass.getModifiers())
+        || !Modifier.isPublic(method.getModifiers())
+        || method.getReturnType() == void.class) {
+      return false;
+    }
+    ClassLoader declaringClassLoader = declaringClass.getClassLoader();
+    if (declaringClassLoader == null
+        || declaringClassLoader == ClassLoader.getSystemClassLoader().getParent()) {
+      return declaringClass.getName().startsWith("java.");
+    }
+    ClassLoader classLoader = AccessorFactory.class.getClassLoader();
+    return declaringClassLoader == classLoader
+        || Class.forName(declaringClass.getName(), false, classLoader) == declaringClass;
+  }
+
+  private static Function<Object, Object> getFunction(Method method) throws Throwable {
+    ConcurrentMap<Method, Function<Object, Object>> declared =
+        functions.get(method.getDeclaringClass());
+    Function<Object, Object> function = declared.get(method);
+    if (function == null) {
+      function = createFunction(method);
+      Function<Object, Object> existing = declared.putIfAbsent(method, function);
+      if (existing != null) {
+        function = existing;
+      }
+    }
+    return function;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> createFunction(Method method) throws Throwable {
+    MethodHandle target = lookup.unreflect(method);
+    CallSite site = LambdaMetafactory.metafactory(lookup,
+        "apply",
+        MethodType.methodType(Function.class),
+        GETTER_TYPE,
+        target,
+        target.type().wrap());
+    return (Function<Object, Object>) site.getTarget().invokeExact();
+  }
+
+  private static PebbleException callFailed(String name, Throwable cause, String filename,
+      int lineNumber) {
+    return new PebbleException(new InvocationTargetException(cause), "Could not call " + name,
+        lineNumber, filename);
+  }
+
+  private static class FunctionAccessor implements AttributeAccessor {
+
+    private final String name;
+
+    private final Function<Object, Object> function;
+
+    FunctionAccessor(String name, Function<Object, Object> function) {
+      this.name = name;
+      this.function = function;
+    }
+
+    @Override
+    public Object get(Object instance, Object[] argumentValues, String filename, int lineNumber) {
+      try {
+        return this.function.apply(instance);
+      } catch (Throwable e) {
+        throw callFailed(this.name, e, filename, lineNumber);
+      }
+    }
+  }
+
+  private static class MethodHandleAccessor implements AttributeAccessor {
+
+    private final String name;
+
+    private final MethodHandle handle;
+
+    MethodHandleAccessor(String name, MethodHandle handle) {
+      this.name = name;
+      this.handle = handle;
+    }
+
+    @Override
+    public Object get(Object instance, Object[] argumentValues, String filename, int lineNumber) {
+      try {
+        return (Object) this.handle.invokeExact(instance);
+      } catch (Throwable e) {
+        throw callFailed(this.name, e, filename, lineNumber);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.pebbletemplates.pebble.attributes;
+
+/**
+ * Reads an attribute from instances of a single class, without going through the attribute
+ * resolvers again. Obtained from {@link DefaultAttributeResolver#getAccessor}.
+ */
+public interface AttributeAccessor {
+
+  /**
+   * Reads the attribute.
+   *
+   * @param instance The instance, its class must be the one the accessor was obtained for
+   * @param argumentValues The arguments of a method call, or null
+   * @param filename The name of the template, used for error messages
+   * @param lineNumber The line number, used for error messages
+   * @return The value of the attribute
+   */
+  Object get(Object instance, Object[] argumentValues, String filename, int lineNumber);
+}
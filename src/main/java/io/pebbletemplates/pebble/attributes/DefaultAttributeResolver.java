@@ -1,21 +1,23 @@
 package io.pebbletemplates.pebble.attributes;
 
-import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.MacroAttributeProvider;
-import io.pebbletemplates.pebble.utils.TypeUtils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Member;
-import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 
 public class DefaultAttributeResolver implements AttributeResolver {
 
-  private final MemberCacheUtils memberCacheUtils = new MemberCacheUtils();
+  private final MemberCacheUtils memberCacheUtils;
+
+  public DefaultAttributeResolver() {
+    this(new MemberCacheUtils());
+  }
+
+  DefaultAttributeResolver(MemberCacheUtils memberCacheUtils) {
+    this.memberCacheUtils = memberCacheUtils;
+  }
 
   @Override
   public ResolvedAttribute resolve(Object instance,
@@ -29,8 +31,9 @@ public class DefaultAttributeResolver implements AttributeResolver {
       String attributeName = String.valueOf(attributeNameValue);
 
       Class<?>[] argumentTypes = this.getArgumentTypes(argumentValues);
-      Member member = this.memberCacheUtils.getMember(instance, attributeName, argumentTypes);
-      if (member == null) {
+      AttributeAccessor accessor = this.memberCacheUtils
+          .getAccessor(instance, attributeName, argumentTypes);
+      if (accessor == null) {
         if (argumentValues == null) {
 
           // first we check maps
@@ -61,17 +64,64 @@ public class DefaultAttributeResolver implements AttributeResolver {
                   lineNumber);
         }
 
-        member = this.memberCacheUtils
-            .cacheMember(instance, attributeName, argumentTypes, context, filename, lineNumber);
+        accessor = this.memberCacheUtils
+            .cacheAccessor(instance, attributeName, argumentTypes, context, filename, lineNumber);
       }
 
-      if (member != null) {
-        return new ResolvedAttribute(this.invokeMember(instance, member, argumentValues, filename, lineNumber));
+      if (accessor != null) {
+        return new ResolvedAttribute(
+            accessor.get(instance, argumentValues, filename, lineNumber));
       }
     }
     return null;
   }
 
+  /**
+   * Returns an accessor for an attribute without arguments which {@link #resolve} reads from a
+   * method or field of the class of the instance. The accessor is valid for every instance of that
+   * class. Returns null for maps, arrays, lists and macros, which may be resolved otherwise, and
+   * for attributes which can not be found.
+   *
+   * @param instance The instance, not null
+   * @param attributeName The name of the attribute
+   * @param argumentValues Null, or the empty arguments of a method call
+   * @param context The evaluation context
+   * @param filename The name of the template, used for error messages
+   * @param lineNumber The line number, used for error messages
+   * @return The accessor or null
+   */
+  public AttributeAccessor getAccessor(Object instance,
+      String attributeName,
+      Object[] argumentValues,
+      EvaluationContextImpl context,
+      String filename,
+      int lineNumber) {
+    if (argumentValues != null && argumentValues.length > 0) {
+      return null;
+    }
+    Class<?>[] argumentTypes = this.getArgumentTypes(argumentValues);
+    AttributeAccessor accessor = this.memberCacheUtils
+        .getAccessor(instance, attributeName, argumentTypes);
+    if (accessor == null) {
+      if (instance instanceof Map || instance.getClass().isArray() || instance instanceof List
+          || instance instanceof MacroAttributeProvider) {
+        return null;
+      }
+      accessor = this.memberCacheUtils
+          .cacheAccessor(instance, attributeName, argumentTypes, context, filename, lineNumber);
+    }
+    return accessor;
+  }
+
+  /**
+   * Forgets which attributes could not be found on which classes, e.g. after classes have been
+   * reloaded. The resolver remembers a bounded number of them to avoid scanning the methods of a
+   * class again and again for an optional or misspelled attribute.
+   */
+  public void clearNotFoundCache() {
+    this.memberCacheUtils.clearNotFoundCache();
+  }
+
   private Class<?>[] getArgumentTypes(Object[] argumentValues) {
     if (argumentValues != null) {
       Class<?>[] argumentTypes = new Class<?>[argumentValues.length];
@@ -89,24 +139,4 @@ public class DefaultAttributeResolver implements AttributeResolver {
 
     return new Class<?>[0];
   }
-
-  /**
-   * Invoke the "Member" that was found via reflection.
-   */
-  private Object invokeMember(Object object, Member member, Object[] argumentValues, String filename, int lineNumber) {
-    Object result = null;
-    try {
-      if (member instanceof Method) {
-        Method method = (Method) member;
-        argumentValues = TypeUtils.compatibleCast(argumentValues, method.getParameterTypes());
-        result = method.invoke(object, argumentValues);
-      } else if (member instanceof Field) {
-        result = ((Field) member).get(object);
-      }
-
-    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-      throw new PebbleException(e, "Could not call " + member.getName(), lineNumber, filename);
-    }
-    return result;
-  }
 }
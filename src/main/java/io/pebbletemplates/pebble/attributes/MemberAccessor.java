@@ -0,0 +1,43 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.utils.TypeUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+/**
+ * Reads an attribute by invoking the method or reading the field found via reflection.
+ */
+class MemberAccessor implements AttributeAccessor {
+
+  private final Member member;
+
+  MemberAccessor(Member member) {
+    this.member = member;
+  }
+
+  /**
+   * Invoke the "Member" that was found via reflection.
+   */
+  @Override
+  public Object get(Object object, Object[] argumentValues, String filename, int lineNumber) {
+    Member member = this.member;
+    Object result = null;
+    try {
+      if (member instanceof Method) {
+        Method method = (Method) member;
+        argumentValues = TypeUtils.compatibleCast(argumentValues, method.getParameterTypes());
+        result = method.invoke(object, argumentValues);
+      } else if (member instanceof Field) {
+        result = ((Field) member).get(object);
+      }
+
+    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+      throw new PebbleException(e, "Could not call " + member.getName(), lineNumber, filename);
+    }
+    return result;
+  }
+}
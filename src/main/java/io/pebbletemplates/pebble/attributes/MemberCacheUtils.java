@@ -16,26 +16,71 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 class MemberCacheUtils {
-  private final ConcurrentHashMap<MemberCacheKey, Member> memberCache = new ConcurrentHashMap<>(100,
-      0.9f, 1);
 
-  Member getMember(Object instance, String attributeName, Class<?>[] argumentTypes) {
-    return this.memberCache.get(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes));
+  /**
+   * Default number of attributes remembered as not found.
+   */
+  static final int DEFAULT_MAX_NOT_FOUND_ENTRIES = 1000;
+
+  private final ConcurrentHashMap<MemberCacheKey, AttributeAccessor> accessorCache =
+      new ConcurrentHashMap<>(100, 0.9f, 1);
+
+  /**
+   * Attributes for which reflection did not find any member, so that looking them up again does
+   * not scan the methods of the class again. Emptied when it is full.
+   */
+  private final ConcurrentHashMap<MemberCacheKey, Boolean> notFoundCache =
+      new ConcurrentHashMap<>(16, 0.9f, 1);
+
+  private final int maxNotFoundEntries;
+
+  MemberCacheUtils() {
+    this(DEFAULT_MAX_NOT_FOUND_ENTRIES);
+  }
+
+  MemberCacheUtils(int maxNotFoundEntries) {
+    this.maxNotFoundEntries = maxNotFoundEntries;
   }
 
-  Member cacheMember(Object instance,
+  AttributeAccessor getAccessor(Object instance, String attributeName, Class<?>[] argumentTypes) {
+    return this.accessorCache
+        .get(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes));
+  }
+
+  AttributeAccessor cacheAccessor(Object instance,
       String attributeName,
       Class<?>[] argumentTypes,
       EvaluationContextImpl context,
       String filename,
       int lineNumber) {
+    MemberCacheKey key = new MemberCacheKey(instance.getClass(), attributeName, argumentTypes);
+    if (this.notFoundCache.containsKey(key)) {
+      return null;
+    }
     Member member = this.reflect(instance, attributeName, argumentTypes,
         filename, lineNumber, context.getEvaluationOptions());
-    if (member != null) {
-      this.memberCache
-          .put(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes), member);
+    if (member == null) {
+      if (this.notFoundCache.size() >= this.maxNotFoundEntries) {
+        this.notFoundCache.clear();
+      }
+      this.notFoundCache.put(key, Boolean.TRUE);
+      return null;
     }
-    return member;
+    AttributeAccessor accessor = AccessorFactory.create(member);
+    AttributeAccessor cached = this.accessorCache.putIfAbsent(key, accessor);
+    return cached != null ? cached : accessor;
+  }
+
+  boolean isCachedAsNotFound(Class<?> type, String attributeName, Class<?>[] argumentTypes) {
+    return this.notFoundCache.containsKey(new MemberCacheKey(type, attributeName, argumentTypes));
+  }
+
+  int getNotFoundCount() {
+    return this.notFoundCache.size();
+  }
+
+  void clearNotFoundCache() {
+    this.notFoundCache.clear();
   }
 
   /**
@@ -0,0 +1,74 @@
+package io.pebbletemplates.pebble.cache;
+
+/**
+ * A snapshot of the statistics of a cache.
+ */
+public final class CacheStats {
+
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long evictionCount;
+
+  private final long evictionWeight;
+
+  public CacheStats(long hitCount, long missCount, long evictionCount, long evictionWeight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.evictionWeight = evictionWeight;
+  }
+
+  public long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of lookups which had to compute the value.
+   *
+   * @return The number of misses
+   */
+  public long getMissCount() {
+    return this.missCount;
+  }
+
+  public long getRequestCount() {
+    return this.hitCount + this.missCount;
+  }
+
+  /**
+   * Returns the ratio of lookups which found a cached value.
+   *
+   * @return The hit rate, 1 if there was no lookup yet
+   */
+  public double getHitRate() {
+    long requestCount = this.getRequestCount();
+    return requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount;
+  }
+
+  /**
+   * Returns the number of values which have been evicted to stay within the bounds of the cache.
+   * Explicit invalidations are not counted.
+   *
+   * @return The number of evictions
+   */
+  public long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Returns the sum of the weights of the evicted values.
+   *
+   * @return The evicted weight
+   */
+  public long getEvictionWeight() {
+    return this.evictionWeight;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats{hitCount=" + this.hitCount + ", missCount=" + this.missCount
+        + ", evictionCount=" + this.evictionCount + ", evictionWeight=" + this.evictionWeight + "}";
+  }
+}
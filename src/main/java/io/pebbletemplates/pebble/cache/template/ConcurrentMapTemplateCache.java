@@ -7,10 +7,35 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
+/**
+ * The default template cache. Templates are compiled outside of the map: a template which is
+ * requested while it is being compiled waits for that compilation rather than compiling it again,
+ * and the compilation of other templates is never blocked. A template which requires itself while
+ * being compiled, directly or through other templates compiled by other threads, fails instead of
+ * deadlocking. A template which is invalidated while it is being compiled is not cached.
+ */
 public class ConcurrentMapTemplateCache implements PebbleCache<Object, PebbleTemplate> {
 
   private final ConcurrentMap<Object, PebbleTemplate> templateCache;
 
+  private final TemplateCompilations compilations = new TemplateCompilations() {
+
+    @Override
+    protected PebbleTemplate lookup(Object key) {
+      return ConcurrentMapTemplateCache.this.templateCache.get(key);
+    }
+
+    @Override
+    protected void store(Object key, PebbleTemplate template) {
+      ConcurrentMapTemplateCache.this.templateCache.put(key, template);
+    }
+
+    @Override
+    protected void discard(Object key, PebbleTemplate template) {
+      ConcurrentMapTemplateCache.this.templateCache.remove(key, template);
+    }
+  };
+
   public ConcurrentMapTemplateCache() {
     this.templateCache = new ConcurrentHashMap<>(200);
   }
@@ -22,11 +47,23 @@ public class ConcurrentMapTemplateCache implements PebbleCache<Object, PebbleTem
   @Override
   public PebbleTemplate computeIfAbsent(Object key,
       Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
-    return this.templateCache.computeIfAbsent(key, mappingFunction);
+    return this.compilations.computeIfAbsent(key, mappingFunction);
+  }
+
+  /**
+   * Drops a template. A compilation of the template which is in progress is not cached once it
+   * finishes.
+   *
+   * @param key The cache key of the template
+   */
+  public void invalidate(Object key) {
+    this.compilations.invalidate(key);
+    this.templateCache.remove(key);
   }
 
   @Override
   public void invalidateAll() {
+    this.compilations.invalidateAll();
     this.templateCache.clear();
   }
 }
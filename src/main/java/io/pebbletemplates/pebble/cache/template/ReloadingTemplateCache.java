@@ -0,0 +1,206 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.cache.PebbleCache;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A template cache for templates read by a {@link FileLoader} which drops a template as soon as its
+ * file changes, together with the templates which depend on it through the extends, include,
+ * import, from and embed tags. All other templates stay cached, which makes it suitable for
+ * development where caching would otherwise be disabled.
+ * <p>
+ * Changes are detected by a {@link WatchService} on the directories of the cached templates, which
+ * is polled by a daemon thread until the cache is closed. Only dependencies with a literal template
+ * name are known, a template including a computed name is not invalidated with the included
+ * template. Such templates look the included template up while rendering though, and get the
+ * reloaded one.
+ * <p>
+ * The cache must be used with the same loader it was created with.
+ */
+public class ReloadingTemplateCache implements PebbleCache<Object, PebbleTemplate>, Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReloadingTemplateCache.class);
+
+  private final FileLoader loader;
+
+  private final ConcurrentMap<Object, PebbleTemplate> templates = new ConcurrentHashMap<>(200);
+
+  private final ConcurrentMapTemplateCache templateCache = new ConcurrentMapTemplateCache(
+      this.templates);
+
+  /**
+   * The keys of the templates which reference the template with a given key.
+   */
+  private final ConcurrentMap<Object, Set<Object>> dependents = new ConcurrentHashMap<>();
+
+  /**
+   * The keys of the templates which are read from a given file.
+   */
+  private final ConcurrentMap<Path, Set<Object>> files = new ConcurrentHashMap<>();
+
+  private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+
+  private final WatchService watchService;
+
+  private final Thread watcher;
+
+  /**
+   * Constructor which starts watching for changes.
+   *
+   * @param loader The loader of the templates
+   * @throws IOException If the file system can not watch for changes
+   */
+  public ReloadingTemplateCache(FileLoader loader) throws IOException {
+    this.loader = loader;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.watcher = new Thread(this::pollChanges, "pebble-template-watcher");
+    this.watcher.setDaemon(true);
+    this.watcher.start();
+  }
+
+  @Override
+  public PebbleTemplate computeIfAbsent(Object key,
+      Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+    PebbleTemplate template = this.templates.get(key);
+    if (template != null) {
+      return template;
+    }
+    // watch before reading the file so that no change gets lost, a change during the compilation
+    // invalidates it and the compiled template is not cached
+    Path file = this.watchFile(key);
+    if (file != null) {
+      this.files.computeIfAbsent(file, f -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+    template = this.templateCache.computeIfAbsent(key, mappingFunction);
+    if (template instanceof PebbleTemplateImpl) {
+      for (String name : ((PebbleTemplateImpl) template).getReferencedTemplateNames()) {
+        this.dependents.computeIfAbsent(this.loader.createCacheKey(name),
+            k -> ConcurrentHashMap.newKeySet()).add(key);
+      }
+    }
+    return template;
+  }
+
+  /**
+   * Drops a template and every template which depends on it, directly or not.
+   *
+   * @param key The cache key of the template
+   */
+  public void invalidate(Object key) {
+    Set<Object> invalidated = new HashSet<>();
+    Deque<Object> pending = new ArrayDeque<>();
+    pending.add(key);
+    while (!pending.isEmpty()) {
+      Object current = pending.poll();
+      if (invalidated.add(current)) {
+        this.templateCache.invalidate(current);
+        // the dependents register again once they are compiled
+        Set<Object> dependents = this.dependents.remove(current);
+        if (dependents != null) {
+          pending.addAll(dependents);
+        }
+      }
+    }
+    logger.debug("Invalidated templates {}", invalidated);
+  }
+
+  @Override
+  public void invalidateAll() {
+    this.templateCache.invalidateAll();
+    this.dependents.clear();
+  }
+
+  /**
+   * Stops watching for changes.
+   */
+  @Override
+  public void close() throws IOException {
+    this.watcher.interrupt();
+    this.watchService.close();
+  }
+
+  /**
+   * Watches the directory of a template.
+   *
+   * @return The file of the template, or null if there is none
+   */
+  private Path watchFile(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Path file;
+    try {
+      file = this.loader.getFile((String) key).toPath().toAbsolutePath().normalize();
+    } catch (InvalidPathException e) {
+      // not a file name, such as the source of a literal template
+      return null;
+    }
+    Path directory = file.getParent();
+    if (directory == null || !Files.isRegularFile(file)) {
+      return null;
+    }
+    if (this.watchedDirectories.contains(directory)) {
+      return file;
+    }
+    try {
+      directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+      this.watchedDirectories.add(directory);
+    } catch (ClosedWatchServiceException e) {
+      // closed, the cache keeps working without reloading
+    } catch (IOException e) {
+      logger.warn("Can not watch {} for changes", directory, e);
+    }
+    return file;
+  }
+
+  private void pollChanges() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey watchKey = this.watchService.take();
+        Path directory = (Path) watchKey.watchable();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            logger.debug("Too many changes in {}, invalidating all templates", directory);
+            this.invalidateAll();
+          } else {
+            Path file = directory.resolve((Path) event.context());
+            for (Object key : this.files.getOrDefault(file, Collections.emptySet())) {
+              this.invalidate(key);
+            }
+          }
+        }
+        if (!watchKey.reset()) {
+          this.watchedDirectories.remove(directory);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.cache.PebbleCache;
+import io.pebbletemplates.pebble.loader.Loader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A template cache which keeps serving a template after its source changed while the new version
+ * is compiled in the background ("stale while revalidate"). Changes are detected with
+ * {@link Loader#getVersion(Object)}, at most once per check interval and template, on the
+ * executor. The new template replaces the old one once it has been compiled, if the compilation
+ * fails the old template stays in use until the source changes again.
+ * <p>
+ * Templates of loaders which can not tell their version are never refreshed. A template which is
+ * compiled into another one, like a parent template of the embed tag, is refreshed on its own but
+ * not in the templates which were compiled with the old version.
+ */
+public class RevalidatingTemplateCache implements PebbleCache<Object, PebbleTemplate> {
+
+  private static final Logger logger = LoggerFactory.getLogger(RevalidatingTemplateCache.class);
+
+  private final Loader<?> loader;
+
+  private final Executor executor;
+
+  private final long checkIntervalNanos;
+
+  private final ConcurrentMap<Object, PebbleTemplate> templates = new ConcurrentHashMap<>(200);
+
+  private final ConcurrentMapTemplateCache templateCache = new ConcurrentMapTemplateCache(
+      this.templates);
+
+  private final ConcurrentMap<Object, Revalidation> revalidations = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param loader The loader of the engine using this cache
+   * @param executor The executor to check and compile templates on, typically the executor
+   * service of the engine
+   * @param checkInterval The minimum time between two checks of the same template
+   * @param unit The unit of the check interval
+   */
+  public RevalidatingTemplateCache(Loader<?> loader, Executor executor, long checkInterval,
+      TimeUnit unit) {
+    this.loader = loader;
+    this.executor = executor;
+    this.checkIntervalNanos = unit.toNanos(checkInterval);
+  }
+
+  @Override
+  public PebbleTemplate computeIfAbsent(Object key,
+      Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+    PebbleTemplate template = this.templates.get(key);
+    if (template == null) {
+      // the version is taken first, a change during the compilation is found by the next check
+      Object version = this.getVersion(key);
+      template = this.templateCache.computeIfAbsent(key, mappingFunction);
+      if (version != null) {
+        this.revalidations.putIfAbsent(key, new Revalidation(version));
+      }
+      return template;
+    }
+    Revalidation revalidation = this.revalidations.get(key);
+    if (revalidation != null && revalidation.isDue(this.checkIntervalNanos)
+        && revalidation.running.compareAndSet(false, true)) {
+      try {
+        this.executor.execute(() -> this.revalidate(key, mappingFunction, revalidation));
+      } catch (RejectedExecutionException e) {
+        revalidation.running.set(false);
+        logger.debug("Can not check template {} for changes", key, e);
+      }
+    }
+    return template;
+  }
+
+  @Override
+  public void invalidateAll() {
+    this.templateCache.invalidateAll();
+    this.revalidations.clear();
+  }
+
+  private void revalidate(Object key,
+      Function<? super Object, ? extends PebbleTemplate> mappingFunction,
+      Revalidation revalidation) {
+    try {
+      Object version = this.getVersion(key);
+      if (version == null || version.equals(revalidation.version)) {
+        return;
+      }
+      revalidation.version = version;
+      logger.debug("Template {} has changed, compiling it again", key);
+      PebbleTemplate template = mappingFunction.apply(key);
+      if (template != null && this.revalidations.get(key) == revalidation) {
+        this.templates.replace(key, template);
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Can not compile the changed template {}, keeping the previous version", key, e);
+    } finally {
+      revalidation.checkedAt = System.nanoTime();
+      revalidation.running.set(false);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object getVersion(Object key) {
+    try {
+      return ((Loader<Object>) this.loader).getVersion(key);
+    } catch (ClassCastException e) {
+      // the key of a template from another loader, such as a literal template
+      return null;
+    }
+  }
+
+  private static class Revalidation {
+
+    private volatile Object version;
+
+    private volatile long checkedAt = System.nanoTime();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    Revalidation(Object version) {
+      this.version = version;
+    }
+
+    boolean isDue(long checkIntervalNanos) {
+      return System.nanoTime() - this.checkedAt >= checkIntervalNanos;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Compiles the templates of a cache outside of its map: a template which is requested while it is
+ * being compiled waits for that compilation rather than compiling it again, and the compilation of
+ * other templates is never blocked. A template which requires itself while being compiled, directly
+ * or through other templates compiled by other threads, fails instead of deadlocking.
+ * <p>
+ * A template is cached only if it was not invalidated while it was compiled, provided the cache
+ * calls {@link #invalidate(Object)} or {@link #invalidateAll()} before dropping its templates.
+ */
+abstract class TemplateCompilations {
+
+  private final ConcurrentMap<Object, Compilation> compilations = new ConcurrentHashMap<>();
+
+  /**
+   * The key of the compilation each thread is waiting for.
+   */
+  private final ConcurrentMap<Thread, Object> waiting = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the cached template or compiles it.
+   *
+   * @param key The cache key of the template
+   * @param mappingFunction Compiles the template
+   * @return The template, or null if the mapping function returns null
+   */
+  PebbleTemplate computeIfAbsent(Object key,
+      Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+    PebbleTemplate template = this.lookup(key);
+    if (template != null) {
+      return template;
+    }
+    Compilation compilation = new Compilation(Thread.currentThread());
+    Compilation existing = this.compilations.putIfAbsent(key, compilation);
+    if (existing != null) {
+      return this.await(key, existing);
+    }
+    try {
+      // it may have been finished right before
+      template = this.lookup(key);
+      if (template == null) {
+        template = mappingFunction.apply(key);
+        if (template != null) {
+          this.publish(key, compilation, template);
+        }
+      }
+      compilation.result.complete(template);
+      return template;
+    } catch (Throwable e) {
+      // checked exceptions thrown sneakily too, the waiting threads must not hang
+      compilation.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.compilations.remove(key, compilation);
+    }
+  }
+
+  /**
+   * Prevents a compilation of the template in progress from being cached.
+   *
+   * @param key The cache key of the template
+   */
+  void invalidate(Object key) {
+    this.compilations.remove(key);
+  }
+
+  /**
+   * Prevents the compilations in progress from being cached.
+   */
+  void invalidateAll() {
+    this.compilations.clear();
+  }
+
+  /**
+   * @return The cached template or null
+   */
+  protected abstract PebbleTemplate lookup(Object key);
+
+  /**
+   * Caches a compiled template.
+   */
+  protected abstract void store(Object key, PebbleTemplate template);
+
+  /**
+   * Drops a template which was invalidated while it was being stored.
+   */
+  protected abstract void discard(Object key, PebbleTemplate template);
+
+  /**
+   * Caches a compiled template unless it was invalidated during the compilation. The placeholder
+   * of the compilation is removed before the templates, so either it is found missing here or the
+   * template is dropped by the cache after being stored.
+   */
+  private void publish(Object key, Compilation compilation, PebbleTemplate template) {
+    if (this.compilations.get(key) != compilation) {
+      return;
+    }
+    this.store(key, template);
+    if (this.compilations.get(key) != compilation) {
+      this.discard(key, template);
+    }
+  }
+
+  private PebbleTemplate await(Object key, Compilation compilation) {
+    Thread current = Thread.currentThread();
+    this.waiting.put(current, key);
+    try {
+      // follow the threads which wait for each other, ending at this one is a cycle
+      Set<Thread> owners = new HashSet<>();
+      Compilation next = compilation;
+      while (next != null && owners.add(next.owner)) {
+        if (next.owner == current) {
+          throw new PebbleException(null,
+              String.format("Template [%s] requires itself while it is being compiled", key));
+        }
+        Object awaited = this.waiting.get(next.owner);
+        next = awaited == null ? null : this.compilations.get(awaited);
+      }
+      return compilation.result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    } finally {
+      this.waiting.remove(current);
+    }
+  }
+
+  private static class Compilation {
+
+    private final Thread owner;
+
+    private final CompletableFuture<PebbleTemplate> result = new CompletableFuture<>();
+
+    Compilation(Thread owner) {
+      this.owner = owner;
+    }
+  }
+}
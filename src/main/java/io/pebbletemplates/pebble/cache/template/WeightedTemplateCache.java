@@ -0,0 +1,224 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.cache.CacheStats;
+import io.pebbletemplates.pebble.cache.PebbleCache;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A template cache which bounds the total weight of the cached templates rather than their number.
+ * By default the weight of a template is its {@link PebbleTemplateImpl#getEstimatedSize()
+ * estimated size} in bytes, so that a large generated template takes the room of many small ones.
+ * <p>
+ * Lookups of cached templates do not lock, they only mark the template as recently used. When a
+ * new template brings the total weight over the maximum, other templates are evicted in insertion
+ * order, skipping those used since the last pass (the "clock" approximation of least recently
+ * used). A template heavier than the maximum weight is not kept and evicts no other template.
+ * <p>
+ * Templates are compiled outside of the map like with {@link ConcurrentMapTemplateCache}, the
+ * compilation of a template never blocks the others.
+ */
+public class WeightedTemplateCache implements PebbleCache<Object, PebbleTemplate> {
+
+  private final long maximumWeight;
+
+  private final ToLongFunction<? super PebbleTemplate> weigher;
+
+  private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>(200);
+
+  /**
+   * The cached entries in insertion order, guarded by the eviction lock.
+   */
+  private final Deque<Entry> clock = new ArrayDeque<>();
+
+  private final Object evictionLock = new Object();
+
+  private final TemplateCompilations compilations = new TemplateCompilations() {
+
+    @Override
+    protected PebbleTemplate lookup(Object key) {
+      Entry entry = WeightedTemplateCache.this.entries.get(key);
+      return entry == null ? null : entry.template;
+    }
+
+    @Override
+    protected void store(Object key, PebbleTemplate template) {
+      WeightedTemplateCache.this.admit(
+          new Entry(key, template, WeightedTemplateCache.this.weigher.applyAsLong(template)));
+    }
+
+    @Override
+    protected void discard(Object key, PebbleTemplate template) {
+      WeightedTemplateCache.this.discard(key, template);
+    }
+  };
+
+  private long weight = 0;
+
+  private long evictionCount = 0;
+
+  private long evictionWeight = 0;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  /**
+   * Constructor weighing templates by their estimated size.
+   *
+   * @param maximumWeight The maximum total size in bytes
+   */
+  public WeightedTemplateCache(long maximumWeight) {
+    this(maximumWeight, WeightedTemplateCache::estimateSize);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maximumWeight The maximum total weight
+   * @param weigher Returns the weight of a template, it is called once when a template is cached
+   */
+  public WeightedTemplateCache(long maximumWeight,
+      ToLongFunction<? super PebbleTemplate> weigher) {
+    if (maximumWeight < 0) {
+      throw new IllegalArgumentException("The maximum weight can not be negative");
+    }
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+  }
+
+  @Override
+  public PebbleTemplate computeIfAbsent(Object key,
+      Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      this.missCount.increment();
+      return this.compilations.computeIfAbsent(key, mappingFunction);
+    }
+    entry.referenced = true;
+    this.hitCount.increment();
+    return entry.template;
+  }
+
+  @Override
+  public void invalidateAll() {
+    this.compilations.invalidateAll();
+    synchronized (this.evictionLock) {
+      this.entries.clear();
+      this.clock.clear();
+      this.weight = 0;
+    }
+  }
+
+  /**
+   * Returns a snapshot of the statistics since the cache was created.
+   *
+   * @return The statistics
+   */
+  public CacheStats stats() {
+    synchronized (this.evictionLock) {
+      return new CacheStats(this.hitCount.sum(), this.missCount.sum(), this.evictionCount,
+          this.evictionWeight);
+    }
+  }
+
+  /**
+   * Returns the total weight of the cached templates.
+   *
+   * @return The weight
+   */
+  public long getWeight() {
+    synchronized (this.evictionLock) {
+      return this.weight;
+    }
+  }
+
+  public long getMaximumWeight() {
+    return this.maximumWeight;
+  }
+
+  /**
+   * Returns the number of cached templates.
+   *
+   * @return The number of templates
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  private void admit(Entry entry) {
+    if (entry.weight > this.maximumWeight) {
+      // it would not fit even alone, the other templates stay
+      return;
+    }
+    synchronized (this.evictionLock) {
+      if (this.entries.putIfAbsent(entry.key, entry) != null) {
+        return;
+      }
+      this.clock.addLast(entry);
+      this.weight += entry.weight;
+      while (this.weight > this.maximumWeight && !this.clock.isEmpty()) {
+        Entry candidate = this.clock.pollFirst();
+        if (candidate == entry && !this.clock.isEmpty()) {
+          // the new template fits on its own, the others go first
+          this.clock.addLast(candidate);
+        } else if (candidate.referenced) {
+          // second chance
+          candidate.referenced = false;
+          this.clock.addLast(candidate);
+        } else {
+          this.entries.remove(candidate.key, candidate);
+          this.weight -= candidate.weight;
+          this.evictionCount++;
+          this.evictionWeight += candidate.weight;
+        }
+      }
+    }
+  }
+
+  private void discard(Object key, PebbleTemplate template) {
+    synchronized (this.evictionLock) {
+      Entry entry = this.entries.get(key);
+      if (entry != null && entry.template == template) {
+        this.entries.remove(key);
+        this.clock.remove(entry);
+        this.weight -= entry.weight;
+      }
+    }
+  }
+
+  private static long estimateSize(PebbleTemplate template) {
+    if (template instanceof PebbleTemplateImpl) {
+      return ((PebbleTemplateImpl) template).getEstimatedSize();
+    }
+    return 1;
+  }
+
+  private static class Entry {
+
+    private final Object key;
+
+    private final PebbleTemplate template;
+
+    private final long weight;
+
+    /**
+     * Whether the template has been used since the clock hand last passed it.
+     */
+    private volatile boolean referenced = false;
+
+    Entry(Object key, PebbleTemplate template, long weight) {
+      this.key = key;
+      this.template = template;
+      this.weight = weight;
+    }
+  }
+}
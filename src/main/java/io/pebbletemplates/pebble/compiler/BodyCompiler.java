@@ -0,0 +1,347 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.StreamingExpression;
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.Pair;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates the class of a {@link CompiledBody} for a single {@link BodyNode}.
+ * <p>
+ * The children of the body are unrolled into straight-line code: print and if nodes are expanded
+ * inline, their expressions compiled by the {@link ExpressionCompiler}, and every other node,
+ * including static text, is rendered from its own call site.
+ * Nested bodies are invoked through {@link BodyNode#render}, which delegates to their own compiled
+ * body if they have one. The nodes and constants the code needs are stored in final fields which
+ * are initialized from an array passed to the constructor.
+ */
+class BodyCompiler {
+
+  /**
+   * Number of children rendered by a single generated method, keeps methods well below the size
+   * limit of the JIT compiler.
+   */
+  private static final int CHILDREN_PER_METHOD = 32;
+
+  private static final String SUPER_NAME = Type.getInternalName(CompiledBody.class);
+
+  private static final String BODY_NODE = Type.getInternalName(BodyNode.class);
+
+  private static final String IF_NODE = Type.getInternalName(IfNode.class);
+
+  private static final String RENDER_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE,
+      Type.getType(PebbleTemplateImpl.class), Type.getType(Writer.class),
+      Type.getType(EvaluationContextImpl.class));
+
+  private static final String[] RENDER_EXCEPTIONS = {Type.getInternalName(IOException.class)};
+
+  // local variable slots of the render methods
+  static final int THIS = 0;
+  static final int SELF = 1;
+  static final int WRITER = 2;
+  static final int CONTEXT = 3;
+
+  private final String className;
+
+  private final BodyNode body;
+
+  private final boolean root;
+
+  private final List<Constant> constants = new ArrayList<>();
+
+  private final ExpressionCompiler expressions;
+
+  /**
+   * @param className The binary name of the generated class
+   * @param body The body to compile
+   * @param root Whether the body is the body of the root node, i.e. whether nodes which are not
+   * inheritance safe must be guarded
+   * @param extensionRegistry The extensions of the engine
+   */
+  BodyCompiler(String className, BodyNode body, boolean root,
+      ExtensionRegistry extensionRegistry) {
+    this.className = className.replace('.', '/');
+    this.body = body;
+    this.root = root;
+    this.expressions = new ExpressionCompiler(this, extensionRegistry);
+  }
+
+  /**
+   * Generates the class file.
+   *
+   * @return The bytes of the class file
+   */
+  byte[] generate() {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        // no need to load classes, the generated code never merges differently typed values
+        return "java/lang/Object";
+      }
+    };
+    cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, this.className, null, SUPER_NAME, null);
+
+    List<RenderableNode> children = this.body.getChildren();
+    List<String> parts = new ArrayList<>();
+    for (int start = 0; start < children.size(); start += CHILDREN_PER_METHOD) {
+      String name = "part" + parts.size();
+      parts.add(name);
+      MethodVisitor mv = cw
+          .visitMethod(ACC_PRIVATE | ACC_FINAL, name, RENDER_DESCRIPTOR, null, RENDER_EXCEPTIONS);
+      mv.visitCode();
+      int end = Math.min(children.size(), start + CHILDREN_PER_METHOD);
+      for (int i = start; i < end; i++) {
+        this.emitChild(mv, children.get(i));
+      }
+      mv.visitInsn(RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    MethodVisitor render = cw
+        .visitMethod(ACC_PUBLIC, "render", RENDER_DESCRIPTOR, null, RENDER_EXCEPTIONS);
+    render.visitCode();
+    for (String part : parts) {
+      render.visitVarInsn(ALOAD, THIS);
+      this.loadRenderArguments(render);
+      render.visitMethodInsn(INVOKESPECIAL, this.className, part, RENDER_DESCRIPTOR, false);
+    }
+    render.visitInsn(RETURN);
+    render.visitMaxs(0, 0);
+    render.visitEnd();
+
+    this.emitFieldsAndConstructor(cw);
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /**
+   * Returns the values of the fields of the generated class, in the order expected by its
+   * constructor.
+   *
+   * @return The constants
+   */
+  Object[] getConstants() {
+    Object[] values = new Object[this.constants.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = this.constants.get(i).value;
+    }
+    return values;
+  }
+
+  private void emitChild(MethodVisitor mv, RenderableNode child) {
+    Label skip = null;
+    if (this.root && !BodyNode.isInheritanceSafe(child)) {
+      skip = new Label();
+      this.loadConstant(mv, this.body, BodyNode.class);
+      mv.visitVarInsn(ALOAD, CONTEXT);
+      mv.visitMethodInsn(INVOKEVIRTUAL, BODY_NODE, "isRenderingInheritanceSafeNodesOnly",
+          Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getType(EvaluationContextImpl.class)),
+          false);
+      mv.visitJumpInsn(IFNE, skip);
+    }
+
+    if (child.getClass() == TextNode.class) {
+      this.emitText(mv, (TextNode) child);
+    } else if (child.getClass() == PrintNode.class
+        && !(((PrintNode) child).getExpression() instanceof StreamingExpression)) {
+      this.emitPrint(mv, (PrintNode) child);
+    } else if (child.getClass() == IfNode.class) {
+      this.emitIf(mv, (IfNode) child);
+    } else {
+      this.emitRender(mv, child);
+    }
+
+    if (skip != null) {
+      mv.visitLabel(skip);
+    }
+  }
+
+  private void emitText(MethodVisitor mv, TextNode node) {
+    // the node decides between its characters and its pre-encoded bytes
+    this.loadConstant(mv, node, TextNode.class);
+    this.loadRenderArguments(mv);
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(TextNode.class), "render",
+        RENDER_DESCRIPTOR, false);
+  }
+
+  private void emitPrint(MethodVisitor mv, PrintNode node) {
+    this.expressions.prepare(mv, node.getExpression());
+    mv.visitVarInsn(ALOAD, WRITER);
+    this.expressions.emit(mv, node.getExpression());
+    if (node.getEscapingStrategy() == null) {
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(PrintNode.class), "write",
+          Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Writer.class),
+              Type.getType(Object.class)), false);
+    } else {
+      this.loadConstant(mv, node.getEscapingStrategy(), EscapingStrategy.class);
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(PrintNode.class), "write",
+          Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Writer.class),
+              Type.getType(Object.class), Type.getType(EscapingStrategy.class)), false);
+    }
+  }
+
+  private void emitIf(MethodVisitor mv, IfNode node) {
+    Label end = new Label();
+    List<Pair<Expression<?>, BodyNode>> branches = node.getConditionsWithBodies();
+    for (Pair<Expression<?>, BodyNode> branch : branches) {
+      // the node wraps any exception of the condition, including the ones of its operators
+      Expression<?> condition = branch.getLeft();
+      this.expressions.prepare(mv, condition);
+      Label start = new Label();
+      Label checked = new Label();
+      Label handler = new Label();
+      mv.visitTryCatchBlock(start, checked, handler,
+          Type.getInternalName(RuntimeException.class));
+      mv.visitLabel(start);
+      this.loadConstant(mv, node, IfNode.class);
+      this.expressions.emit(mv, condition);
+      mv.visitVarInsn(ALOAD, SELF);
+      mv.visitVarInsn(ALOAD, CONTEXT);
+      mv.visitMethodInsn(INVOKEVIRTUAL, IF_NODE, "isSatisfied",
+          Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getType(Object.class),
+              Type.getType(PebbleTemplateImpl.class), Type.getType(EvaluationContextImpl.class)),
+          false);
+      mv.visitLabel(checked);
+      this.expressions.emitHandler(mv, handler, "Wrong operand(s) type in conditional expression",
+          node.getLineNumber());
+      Label next = new Label();
+      mv.visitJumpInsn(IFEQ, next);
+      this.emitBody(mv, branch.getRight());
+      mv.visitJumpInsn(GOTO, end);
+      mv.visitLabel(next);
+    }
+    if (node.getElseBody() != null) {
+      this.emitBody(mv, node.getElseBody());
+    }
+    mv.visitLabel(end);
+  }
+
+  private void emitBody(MethodVisitor mv, BodyNode body) {
+    this.loadConstant(mv, body, BodyNode.class);
+    this.loadRenderArguments(mv);
+    mv.visitMethodInsn(INVOKEVIRTUAL, BODY_NODE, "render", RENDER_DESCRIPTOR, false);
+  }
+
+  private void emitRender(MethodVisitor mv, RenderableNode node) {
+    this.loadConstant(mv, node, RenderableNode.class);
+    this.loadRenderArguments(mv);
+    mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(RenderableNode.class), "render",
+        RENDER_DESCRIPTOR, true);
+  }
+
+  private void loadRenderArguments(MethodVisitor mv) {
+    mv.visitVarInsn(ALOAD, SELF);
+    mv.visitVarInsn(ALOAD, WRITER);
+    mv.visitVarInsn(ALOAD, CONTEXT);
+  }
+
+  /**
+   * Pushes a constant onto the operand stack, the constant is stored in a field of the generated
+   * class. The same object is always stored in the same field.
+   */
+  void loadConstant(MethodVisitor mv, Object value, Class<?> type) {
+    Constant constant = null;
+    for (Constant candidate : this.constants) {
+      if (candidate.value == value && candidate.type == type) {
+        constant = candidate;
+        break;
+      }
+    }
+    if (constant == null) {
+      constant = new Constant("c" + this.constants.size(), value, type);
+      this.constants.add(constant);
+    }
+    mv.visitVarInsn(ALOAD, THIS);
+    mv.visitFieldInsn(GETFIELD, this.className, constant.name, Type.getDescriptor(type));
+  }
+
+  private void emitFieldsAndConstructor(ClassWriter cw) {
+    for (Constant constant : this.constants) {
+      cw.visitField(ACC_PRIVATE | ACC_FINAL, constant.name, Type.getDescriptor(constant.type),
+          null, null).visitEnd();
+    }
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", Type.getMethodDescriptor(
+        Type.VOID_TYPE, Type.getType(BodyNode.class), Type.getType(Object[].class)), null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(BodyNode.class)), false);
+    for (int i = 0; i < this.constants.size(); i++) {
+      Constant constant = this.constants.get(i);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(constant.type));
+      mv.visitFieldInsn(PUTFIELD, this.className, constant.name, Type.getDescriptor(constant.type));
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private static class Constant {
+
+    private final String name;
+
+    private final Object value;
+
+    private final Class<?> type;
+
+    Constant(String name, Object value, Class<?> type) {
+      this.name = name;
+      this.value = value;
+      this.type = type;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+/**
+ * Base class of the classes generated by the {@link TemplateCompiler}. A compiled body renders
+ * exactly like the {@link BodyNode} it was generated from.
+ */
+public abstract class CompiledBody implements RenderableNode {
+
+  private final BodyNode body;
+
+  protected CompiledBody(BodyNode body) {
+    this.body = body;
+  }
+
+  public BodyNode getBody() {
+    return this.body;
+  }
+
+  /**
+   * Wraps an exception thrown by a compiled expression, like the node the expression was compiled
+   * from wraps it.
+   *
+   * @param cause The exception
+   * @param message The message of the node
+   * @param lineNumber The line number of the node
+   * @param self The template being rendered
+   * @return The exception to throw
+   */
+  protected static PebbleException failed(Throwable cause, String message, int lineNumber,
+      PebbleTemplateImpl self) {
+    return new PebbleException(cause, message, lineNumber, self.getName());
+  }
+
+  @Override
+  public void accept(NodeVisitor visitor) {
+    this.body.accept(visitor);
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getName() + "[line " + this.body.getLineNumber() + "]";
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.POP;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.extension.core.DefaultFilter;
+import io.pebbletemplates.pebble.node.expression.AddExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.ConcatenateExpression;
+import io.pebbletemplates.pebble.node.expression.DivideExpression;
+import io.pebbletemplates.pebble.node.expression.EqualsExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GetAttributeExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBigDecimalExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBooleanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralDoubleExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralIntegerExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.ModulusExpression;
+import io.pebbletemplates.pebble.node.expression.MultiplyExpression;
+import io.pebbletemplates.pebble.node.expression.NotEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.SubtractExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryMinusExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryPlusExpression;
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.OperatorUtils;
+import io.pebbletemplates.pebble.utils.TypeUtils;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates the code evaluating an expression for the {@link BodyCompiler}, leaving its value on
+ * the operand stack.
+ * <p>
+ * Literals become constants, and the operands of arithmetic and comparison operators,
+ * concatenations, ternaries, attributes and filters are evaluated inline, so that the whole
+ * expression is a single piece of code the JIT compiler can optimize. Attributes are still
+ * resolved by their node, through its inline cache, and filters are still applied by their node.
+ * Every other expression, including context variables and their slots, is evaluated from a call
+ * site of its exact class.
+ * <p>
+ * Operators wrap the exceptions thrown by their operands exactly like their nodes do. The
+ * exception handlers of an expression must be registered with {@link #prepare} before its code is
+ * generated with {@link #emit}, the handlers of nested expressions come first.
+ */
+class ExpressionCompiler {
+
+  private static final String EXPRESSION = Type.getInternalName(Expression.class);
+
+  private static final String EVALUATE_DESCRIPTOR = Type.getMethodDescriptor(
+      Type.getType(Object.class), Type.getType(PebbleTemplateImpl.class),
+      Type.getType(EvaluationContextImpl.class));
+
+  private static final String OPERATOR_UTILS = Type.getInternalName(OperatorUtils.class);
+
+  private static final String BINARY_OPERATOR_DESCRIPTOR = Type.getMethodDescriptor(
+      Type.getType(Object.class), Type.getType(Object.class), Type.getType(Object.class));
+
+  private static final String COMPARISON_DESCRIPTOR = Type.getMethodDescriptor(Type.BOOLEAN_TYPE,
+      Type.getType(Object.class), Type.getType(Object.class));
+
+  private static final String UNARY_OPERATOR_DESCRIPTOR = Type.getMethodDescriptor(
+      Type.getType(Object.class), Type.getType(Object.class));
+
+  private static final String FAILED_DESCRIPTOR = Type.getMethodDescriptor(
+      Type.getType(PebbleException.class),
+      Type.getType(Throwable.class), Type.getType(String.class), Type.INT_TYPE,
+      Type.getType(PebbleTemplateImpl.class));
+
+  private static final Set<Class<?>> LITERALS = new HashSet<>(Arrays.asList(
+      LiteralStringExpression.class, LiteralLongExpression.class, LiteralIntegerExpression.class,
+      LiteralDoubleExpression.class, LiteralBigDecimalExpression.class,
+      LiteralBooleanExpression.class, LiteralNullExpression.class));
+
+  private static final Map<Class<?>, String> UNARY_OPERATORS = new HashMap<>();
+
+  /**
+   * The binary operators evaluated by a method of {@link OperatorUtils}, with the message their
+   * nodes wrap exceptions with.
+   */
+  private static final Map<Class<?>, Operator> BINARY_OPERATORS = new HashMap<>();
+
+  static {
+    UNARY_OPERATORS.put(UnaryMinusExpression.class, "unaryMinus");
+    UNARY_OPERATORS.put(UnaryPlusExpression.class, "unaryPlus");
+
+    arithmetic(AddExpression.class, "add", "Could not perform addition");
+    arithmetic(SubtractExpression.class, "subtract", "Could not perform subtraction");
+    arithmetic(MultiplyExpression.class, "multiply", "Could not perform multiplication");
+    arithmetic(DivideExpression.class, "divide", "Could not perform division");
+    arithmetic(ModulusExpression.class, "mod", "Could not perform greater modulus");
+    comparison(EqualsExpression.class, "equals", false, "Could not perform equals comparison");
+    comparison(NotEqualsExpression.class, "equals", true,
+        "Could not perform not equals comparison");
+    comparison(GreaterThanExpression.class, "gt", false,
+        "Could not perform greater than comparison");
+    comparison(GreaterThanEqualsExpression.class, "gte", false,
+        "Could not perform greater than or equals comparison");
+    comparison(LessThanExpression.class, "lt", false, "Could not perform greater modulus");
+    comparison(LessThanEqualsExpression.class, "lte", false,
+        "Could not perform less than or equals comparison");
+  }
+
+  private final BodyCompiler body;
+
+  private final ExtensionRegistry extensionRegistry;
+
+  /**
+   * The labels of the exception handlers registered for the operators: start and end of the
+   * guarded code, and the handler.
+   */
+  private final Map<Expression<?>, Label[]> guards = new IdentityHashMap<>();
+
+  /**
+   * @param body The compiler holding the constants of the generated class
+   * @param extensionRegistry The extensions of the engine, to look up filters
+   */
+  ExpressionCompiler(BodyCompiler body, ExtensionRegistry extensionRegistry) {
+    this.body = body;
+    this.extensionRegistry = extensionRegistry;
+  }
+
+  private static void arithmetic(Class<?> type, String method, String message) {
+    BINARY_OPERATORS.put(type, new Operator(method, false, false, message));
+  }
+
+  private static void comparison(Class<?> type, String method, boolean negated, String message) {
+    BINARY_OPERATORS.put(type, new Operator(method, true, negated, message));
+  }
+
+  /**
+   * Registers the exception handlers of an expression, must be called before any code of the
+   * expression or of an expression containing it is generated.
+   *
+   * @param mv The method
+   * @param expression The expression
+   */
+  void prepare(MethodVisitor mv, Expression<?> expression) {
+    for (Expression<?> operand : this.getOperands(expression)) {
+      this.prepare(mv, operand);
+    }
+    if (BINARY_OPERATORS.containsKey(expression.getClass())) {
+      Label[] guard = {new Label(), new Label(), new Label()};
+      mv.visitTryCatchBlock(guard[0], guard[1], guard[2], Type.getInternalName(Exception.class));
+      this.guards.put(expression, guard);
+    }
+  }
+
+  /**
+   * Generates the code which pushes the value of an expression.
+   *
+   * @param mv The method
+   * @param expression The expression
+   */
+  void emit(MethodVisitor mv, Expression<?> expression) {
+    Class<?> type = expression.getClass();
+    if (LITERALS.contains(type)) {
+      Object value = expression.evaluate(null, null);
+      if (value == null) {
+        mv.visitInsn(ACONST_NULL);
+      } else {
+        this.body.loadConstant(mv, value, Object.class);
+      }
+    } else if (BINARY_OPERATORS.containsKey(type)) {
+      this.emitOperator(mv, (BinaryExpression<?>) expression, BINARY_OPERATORS.get(type));
+    } else if (UNARY_OPERATORS.containsKey(type)) {
+      this.emit(mv, ((UnaryExpression) expression).getChildExpression());
+      mv.visitMethodInsn(INVOKESTATIC, OPERATOR_UTILS, UNARY_OPERATORS.get(type),
+          UNARY_OPERATOR_DESCRIPTOR, false);
+    } else if (type == ConcatenateExpression.class) {
+      BinaryExpression<?> concatenation = (BinaryExpression<?>) expression;
+      this.emit(mv, concatenation.getLeftExpression());
+      this.emit(mv, concatenation.getRightExpression());
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(ConcatenateExpression.class),
+          "concatenate", Type.getMethodDescriptor(Type.getType(String.class),
+              Type.getType(Object.class), Type.getType(Object.class)), false);
+    } else if (type == TernaryExpression.class) {
+      this.emitTernary(mv, (TernaryExpression) expression);
+    } else if (type == GetAttributeExpression.class) {
+      this.emitAttribute(mv, (GetAttributeExpression) expression);
+    } else if (this.isCompiledFilter(expression)) {
+      this.emitFilter(mv, (FilterExpression) expression);
+    } else {
+      this.emitEvaluate(mv, expression);
+    }
+  }
+
+  /**
+   * Generates the code of an exception handler wrapping the exception like a node does, the code
+   * is jumped over.
+   *
+   * @param mv The method
+   * @param handler The label of the handler
+   * @param message The message of the node
+   * @param lineNumber The line number of the node
+   */
+  void emitHandler(MethodVisitor mv, Label handler, String message, int lineNumber) {
+    Label after = new Label();
+    mv.visitJumpInsn(GOTO, after);
+    mv.visitLabel(handler);
+    mv.visitLdcInsn(message);
+    mv.visitLdcInsn(lineNumber);
+    mv.visitVarInsn(ALOAD, BodyCompiler.SELF);
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(CompiledBody.class), "failed",
+        FAILED_DESCRIPTOR, false);
+    mv.visitInsn(ATHROW);
+    mv.visitLabel(after);
+  }
+
+  /**
+   * Returns the operands which are compiled along with an expression, in the order they are
+   * evaluated.
+   */
+  private List<Expression<?>> getOperands(Expression<?> expression) {
+    Class<?> type = expression.getClass();
+    if (BINARY_OPERATORS.containsKey(type) || type == ConcatenateExpression.class) {
+      BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+      return Arrays.asList(binary.getLeftExpression(), binary.getRightExpression());
+    } else if (UNARY_OPERATORS.containsKey(type)) {
+      return Collections.singletonList(((UnaryExpression) expression).getChildExpression());
+    } else if (type == TernaryExpression.class) {
+      TernaryExpression ternary = (TernaryExpression) expression;
+      return Arrays.asList(ternary.getExpression1(), ternary.getExpression2(),
+          ternary.getExpression3());
+    } else if (type == GetAttributeExpression.class) {
+      return Collections.singletonList(((GetAttributeExpression) expression).getNode());
+    } else if (this.isCompiledFilter(expression)) {
+      return Collections.singletonList(((FilterExpression) expression).getLeftExpression());
+    }
+    return Collections.emptyList();
+  }
+
+  private void emitOperator(MethodVisitor mv, BinaryExpression<?> expression, Operator operator) {
+    Label[] guard = this.guards.get(expression);
+    mv.visitLabel(guard[0]);
+    this.emit(mv, expression.getLeftExpression());
+    this.emit(mv, expression.getRightExpression());
+    if (operator.comparison) {
+      mv.visitMethodInsn(INVOKESTATIC, OPERATOR_UTILS, operator.method, COMPARISON_DESCRIPTOR,
+          false);
+      if (operator.negated) {
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IXOR);
+      }
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Boolean.class), "valueOf",
+          Type.getMethodDescriptor(Type.getType(Boolean.class), Type.BOOLEAN_TYPE), false);
+    } else {
+      mv.visitMethodInsn(INVOKESTATIC, OPERATOR_UTILS, operator.method,
+          BINARY_OPERATOR_DESCRIPTOR, false);
+    }
+    mv.visitLabel(guard[1]);
+    this.emitHandler(mv, guard[2], operator.message, expression.getLineNumber());
+  }
+
+  private void emitTernary(MethodVisitor mv, TernaryExpression expression) {
+    Label isNull = new Label();
+    Label otherwise = new Label();
+    Label end = new Label();
+    this.emit(mv, expression.getExpression1());
+    mv.visitInsn(DUP);
+    mv.visitJumpInsn(IFNULL, isNull);
+    mv.visitLdcInsn(Type.getType(Boolean.class));
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(TypeUtils.class), "compatibleCast",
+        Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object.class),
+            Type.getType(Class.class)), false);
+    mv.visitTypeInsn(CHECKCAST, Type.getInternalName(Boolean.class));
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Boolean.class), "booleanValue",
+        Type.getMethodDescriptor(Type.BOOLEAN_TYPE), false);
+    mv.visitJumpInsn(IFEQ, otherwise);
+    this.emit(mv, expression.getExpression2());
+    mv.visitJumpInsn(GOTO, end);
+    mv.visitLabel(isNull);
+    mv.visitInsn(POP);
+    mv.visitLabel(otherwise);
+    this.emit(mv, expression.getExpression3());
+    mv.visitLabel(end);
+  }
+
+  private void emitAttribute(MethodVisitor mv, GetAttributeExpression expression) {
+    this.body.loadConstant(mv, expression, GetAttributeExpression.class);
+    this.emit(mv, expression.getNode());
+    this.loadSelfAndContext(mv);
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(GetAttributeExpression.class),
+        "getAttribute", Type.getMethodDescriptor(Type.getType(Object.class),
+            Type.getType(Object.class), Type.getType(PebbleTemplateImpl.class),
+            Type.getType(EvaluationContextImpl.class)), false);
+  }
+
+  /**
+   * Filters are compiled unless they are unknown, which fails when rendering, or the default
+   * filter, which needs its input to be evaluated in a special way.
+   */
+  private boolean isCompiledFilter(Expression<?> expression) {
+    if (expression.getClass() != FilterExpression.class) {
+      return false;
+    }
+    Expression<?> invocation = ((FilterExpression) expression).getRightExpression();
+    if (!(invocation instanceof FilterInvocationExpression)) {
+      return false;
+    }
+    Filter filter = this.extensionRegistry
+        .getFilter(((FilterInvocationExpression) invocation).getFilterName());
+    return filter != null && !(filter instanceof DefaultFilter);
+  }
+
+  private void emitFilter(MethodVisitor mv, FilterExpression expression) {
+    String filterExpression = Type.getInternalName(FilterExpression.class);
+    this.body.loadConstant(mv, expression, FilterExpression.class);
+    mv.visitInsn(DUP);
+    this.loadSelfAndContext(mv);
+    mv.visitMethodInsn(INVOKEVIRTUAL, filterExpression, "getNamedArguments",
+        Type.getMethodDescriptor(Type.getType(Map.class), Type.getType(PebbleTemplateImpl.class),
+            Type.getType(EvaluationContextImpl.class)), false);
+    this.emit(mv, expression.getLeftExpression());
+    this.loadSelfAndContext(mv);
+    mv.visitMethodInsn(INVOKEVIRTUAL, filterExpression, "apply",
+        Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Map.class),
+            Type.getType(Object.class), Type.getType(PebbleTemplateImpl.class),
+            Type.getType(EvaluationContextImpl.class)), false);
+  }
+
+  /**
+   * Evaluates an expression through its node. The call site uses the exact class of the node when
+   * the generated class can see it, so that the call can be inlined.
+   */
+  private void emitEvaluate(MethodVisitor mv, Expression<?> expression) {
+    Class<?> type = expression.getClass();
+    if (Modifier.isPublic(type.getModifiers())
+        && type.getClassLoader() == ExpressionCompiler.class.getClassLoader()) {
+      this.body.loadConstant(mv, expression, type);
+      this.loadSelfAndContext(mv);
+      mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(type), "evaluate",
+          EVALUATE_DESCRIPTOR, false);
+    } else {
+      this.body.loadConstant(mv, expression, Expression.class);
+      this.loadSelfAndContext(mv);
+      mv.visitMethodInsn(INVOKEINTERFACE, EXPRESSION, "evaluate", EVALUATE_DESCRIPTOR, true);
+    }
+  }
+
+  private void loadSelfAndContext(MethodVisitor mv) {
+    mv.visitVarInsn(ALOAD, BodyCompiler.SELF);
+    mv.visitVarInsn(ALOAD, BodyCompiler.CONTEXT);
+  }
+
+  private static class Operator {
+
+    private final String method;
+
+    private final boolean comparison;
+
+    private final boolean negated;
+
+    private final String message;
+
+    Operator(String method, boolean comparison, boolean negated, String message) {
+      this.method = method;
+      this.comparison = comparison;
+      this.negated = negated;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the render trees of templates to bytecode.
+ * <p>
+ * Every {@link BodyNode} reachable from the root of a template is turned into a generated class
+ * which renders the same children as straight-line code, and installed on the body with {@link
+ * BodyNode#setCompiledBody(io.pebbletemplates.pebble.node.RenderableNode)}. Bodies which cannot be
+ * compiled, for example because of a class generation or verification error, keep being rendered
+ * by the interpreter.
+ * <p>
+ * Requires the optional ASM dependency on the classpath, see {@link #isAvailable()}.
+ */
+public class TemplateCompiler {
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+
+  private static final String CLASS_NAME_PREFIX = CompiledBody.class.getName() + "$";
+
+  private static final AtomicLong classCounter = new AtomicLong();
+
+  /**
+   * Checks whether ASM, which is used to generate the classes, is on the classpath.
+   *
+   * @return Whether templates can be compiled
+   */
+  public static boolean isAvailable() {
+    try {
+      Class.forName("org.objectweb.asm.ClassWriter", false,
+          TemplateCompiler.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Compiles all bodies of a template. The generated classes are defined in a class loader of
+   * their own which becomes unreachable with the template.
+   *
+   * @param template The template
+   * @param root The root node of the template
+   */
+  public void compile(PebbleTemplateImpl template, RootNode root) {
+    List<BodyNode> bodies = new ArrayList<>();
+    new AbstractNodeVisitor(template) {
+
+      @Override
+      public void visit(BodyNode node) {
+        bodies.add(node);
+        super.visit(node);
+      }
+    }.visit(root);
+
+    TemplateClassLoader classLoader = new TemplateClassLoader();
+    for (BodyNode body : bodies) {
+      if (body.getCompiledBody() != null) {
+        continue;
+      }
+      String className = CLASS_NAME_PREFIX + classCounter.incrementAndGet();
+      try {
+        BodyCompiler compiler = new BodyCompiler(className, body, body == root.getBody(),
+            template.getExtensionRegistry());
+        Class<?> compiledClass = classLoader.define(className, compiler.generate());
+        CompiledBody compiled = (CompiledBody) compiledClass
+            .getConstructor(BodyNode.class, Object[].class)
+            .newInstance(body, compiler.getConstants());
+        body.setCompiledBody(compiled);
+      } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+        logger.warn("Could not compile body at line {} of template {}, it will be interpreted",
+            body.getLineNumber(), template.getName(), e);
+      }
+    }
+  }
+
+  private static class TemplateClassLoader extends ClassLoader {
+
+    TemplateClassLoader() {
+      super(TemplateCompiler.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return this.defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
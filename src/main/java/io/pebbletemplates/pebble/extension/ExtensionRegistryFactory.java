@@ -4,6 +4,7 @@ import io.pebbletemplates.pebble.extension.core.AttributeResolverExtension;
 import io.pebbletemplates.pebble.extension.i18n.I18nExtension;
 import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.extension.core.CoreExtension;
+import io.pebbletemplates.pebble.extension.core.OptimizationExtension;
 import io.pebbletemplates.pebble.extension.escaper.EscaperExtension;
 import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
 
@@ -24,6 +25,8 @@ public class ExtensionRegistryFactory {
 
   private boolean allowOverrideCoreOperators = false;
 
+  private boolean templateOptimization = true;
+
   private Function<Extension, Extension> customizer = Function.identity();
 
   public ExtensionRegistry buildExtensionRegistry() {
@@ -43,6 +46,11 @@ public class ExtensionRegistryFactory {
 
     extensionRegistry.addExtension(customizer.apply(new AttributeResolverExtension()));
 
+    // the templates are simplified once every other node visitor is done with them
+    if (this.templateOptimization) {
+      extensionRegistry.addExtension(customizer.apply(new OptimizationExtension()));
+    }
+
     return extensionRegistry;
   }
 
@@ -62,6 +70,10 @@ public class ExtensionRegistryFactory {
     this.allowOverrideCoreOperators = allowOverrideCoreOperators;
   }
 
+  public void templateOptimization(boolean templateOptimization) {
+    this.templateOptimization = templateOptimization;
+  }
+
   public void defaultEscapingStrategy(String strategy) {
     this.escaperExtension.setDefaultStrategy(strategy);
   }
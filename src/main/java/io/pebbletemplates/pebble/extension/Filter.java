@@ -19,4 +19,15 @@ public interface Filter extends NamedArguments {
   Object apply(Object input, Map<String, Object> args, PebbleTemplate self,
                EvaluationContext context, int
       lineNumber) throws PebbleException;
+
+  /**
+   * Returns whether the filter is pure, i.e. whether its result only depends on its input and
+   * arguments and applying it has no side effects. A pure filter whose input and arguments are
+   * literals is applied once when the template is compiled, without an evaluation context.
+   *
+   * @return Whether the filter is pure, false by default
+   */
+  default boolean isPure() {
+    return false;
+  }
 }
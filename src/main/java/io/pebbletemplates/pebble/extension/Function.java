@@ -18,4 +18,15 @@ public interface Function extends NamedArguments {
   Object execute(Map<String, Object> args, PebbleTemplate self, EvaluationContext context,
                  int lineNumber);
 
+  /**
+   * Returns whether the function is pure, i.e. whether its result only depends on its arguments
+   * and executing it has no side effects. A pure function whose arguments are literals is executed
+   * once when the template is compiled, without an evaluation context.
+   *
+   * @return Whether the function is pure, false by default
+   */
+  default boolean isPure() {
+    return false;
+  }
+
 }
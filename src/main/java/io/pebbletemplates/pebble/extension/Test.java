@@ -19,4 +19,15 @@ public interface Test extends NamedArguments {
   boolean apply(Object input, Map<String, Object> args, PebbleTemplate self,
                 EvaluationContext context, int
       lineNumber) throws PebbleException;
+
+  /**
+   * Returns whether the test is pure, i.e. whether its result only depends on its input and
+   * arguments and applying it has no side effects. A pure test whose input and arguments are
+   * literals is applied once when the template is compiled, without an evaluation context.
+   *
+   * @return Whether the test is pure, false by default
+   */
+  default boolean isPure() {
+    return false;
+  }
 }
@@ -60,4 +60,8 @@ public class AbbreviateFilter implements Filter {
     return value.substring(0, Math.max(0, maxWidth - 3)) + ellipsis;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
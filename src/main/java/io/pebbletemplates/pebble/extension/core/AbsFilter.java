@@ -61,4 +61,8 @@ public class AbsFilter implements Filter {
     }
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
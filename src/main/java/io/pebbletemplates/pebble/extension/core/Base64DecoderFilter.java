@@ -45,4 +45,8 @@ public class Base64DecoderFilter implements Filter {
     return decoded;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
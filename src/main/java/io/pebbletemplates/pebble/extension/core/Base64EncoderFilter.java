@@ -34,4 +34,8 @@ public class Base64EncoderFilter implements Filter {
     return Base64.getEncoder().encodeToString(input.toString().getBytes(StandardCharsets.UTF_8));
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
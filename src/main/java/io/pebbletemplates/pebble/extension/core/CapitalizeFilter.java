@@ -53,4 +53,8 @@ public class CapitalizeFilter implements Filter {
     return result.toString();
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -0,0 +1,492 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.extension.Function;
+import io.pebbletemplates.pebble.extension.Test;
+import io.pebbletemplates.pebble.extension.escaper.SafeString;
+import io.pebbletemplates.pebble.node.ArgumentsNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.NamedArgumentNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.PositionalArgumentNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TestInvocationExpression;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.AddExpression;
+import io.pebbletemplates.pebble.node.expression.AndExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.ConcatenateExpression;
+import io.pebbletemplates.pebble.node.expression.DivideExpression;
+import io.pebbletemplates.pebble.node.expression.EqualsExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GetAttributeExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBigDecimalExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBooleanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralDoubleExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralIntegerExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.ModulusExpression;
+import io.pebbletemplates.pebble.node.expression.MultiplyExpression;
+import io.pebbletemplates.pebble.node.expression.NegativeTestExpression;
+import io.pebbletemplates.pebble.node.expression.NotEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.OrExpression;
+import io.pebbletemplates.pebble.node.expression.PositiveTestExpression;
+import io.pebbletemplates.pebble.node.expression.SubtractExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryMinusExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryNotExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryPlusExpression;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.Pair;
+import io.pebbletemplates.pebble.utils.TypeUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Simplifies the parts of a template which are the same on every render:
+ * <ul>
+ * <li>core operators applied to literals are replaced by the literal they evaluate to, and so are
+ * the filters, tests and functions which are {@link Filter#isPure() pure},</li>
+ * <li>"if" branches and ternary operands behind a literal condition are removed or inlined,</li>
+ * <li>literal strings are printed as text and adjacent text nodes are merged into one.</li>
+ * </ul>
+ * It runs after every other node visitor, so that the auto escaping still sees the expressions as
+ * they were written. Operators are only folded when they are implemented by the core expressions,
+ * an operator overridden by an extension is left alone, and so is any evaluation which fails or
+ * needs the evaluation context (e.g. null operands with strict variables).
+ */
+public class ConstantFoldingNodeVisitor extends AbstractNodeVisitor {
+
+  private static final Set<Class<?>> LITERALS = new HashSet<>(Arrays.asList(
+      LiteralBigDecimalExpression.class, LiteralBooleanExpression.class,
+      LiteralDoubleExpression.class, LiteralIntegerExpression.class, LiteralLongExpression.class,
+      LiteralNullExpression.class, LiteralStringExpression.class));
+
+  private static final Set<Class<?>> OPERATORS = new HashSet<>(Arrays.asList(
+      AddExpression.class, AndExpression.class, ConcatenateExpression.class,
+      DivideExpression.class, EqualsExpression.class, GreaterThanEqualsExpression.class,
+      GreaterThanExpression.class, LessThanEqualsExpression.class, LessThanExpression.class,
+      ModulusExpression.class, MultiplyExpression.class, NotEqualsExpression.class,
+      OrExpression.class, SubtractExpression.class, UnaryMinusExpression.class,
+      UnaryNotExpression.class, UnaryPlusExpression.class));
+
+  /**
+   * The result of an expression which can not be folded.
+   */
+  private static final Object NOT_CONSTANT = new Object();
+
+  public ConstantFoldingNodeVisitor(PebbleTemplateImpl template) {
+    super(template);
+  }
+
+  /**
+   * Folds the operands of an expression, the expression itself is folded by its parent.
+   */
+  @Override
+  public void visit(Node node) {
+    if (node instanceof BinaryExpression) {
+      BinaryExpression<?> binary = (BinaryExpression<?>) node;
+      binary.setLeft(this.fold(binary.getLeftExpression()));
+      binary.setRight(this.fold(binary.getRightExpression()));
+    } else if (node instanceof UnaryExpression) {
+      UnaryExpression unary = (UnaryExpression) node;
+      unary.setChildExpression(this.fold(unary.getChildExpression()));
+    } else if (node instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) node;
+      ternary.getExpression1().accept(this);
+      ternary.setExpression2(this.fold(ternary.getExpression2()));
+      ternary.setExpression3(this.fold(ternary.getExpression3()));
+    } else if (node instanceof GetAttributeExpression) {
+      GetAttributeExpression getAttribute = (GetAttributeExpression) node;
+      this.accept(getAttribute.getNode());
+      this.accept(getAttribute.getAttributeNameExpression());
+      this.accept(getAttribute.getArgumentsNode());
+    } else if (node instanceof FilterInvocationExpression) {
+      this.accept(((FilterInvocationExpression) node).getArgs());
+    } else if (node instanceof FunctionOrMacroInvocationExpression) {
+      this.accept(((FunctionOrMacroInvocationExpression) node).getArguments());
+    } else if (node instanceof TestInvocationExpression) {
+      this.accept(((TestInvocationExpression) node).getArgs());
+    }
+  }
+
+  @Override
+  public void visit(BodyNode node) {
+    List<RenderableNode> children = node.getChildren();
+    List<RenderableNode> optimized = new ArrayList<>(children.size());
+    boolean changed = false;
+    for (RenderableNode child : children) {
+      child.accept(this);
+      RenderableNode replacement = this.simplify(child);
+      if (replacement != child) {
+        changed = true;
+      }
+      if (replacement instanceof BodyNode && this.canInline((BodyNode) replacement)) {
+        optimized.addAll(((BodyNode) replacement).getChildren());
+      } else if (replacement != null) {
+        optimized.add(replacement);
+      }
+    }
+    changed |= mergeText(optimized);
+
+    if (changed) {
+      node.setChildren(optimized);
+    }
+  }
+
+  @Override
+  public void visit(IfNode node) {
+    for (Pair<Expression<?>, BodyNode> branch : node.getConditionsWithBodies()) {
+      branch.getLeft().accept(this);
+      branch.getRight().accept(this);
+    }
+    if (node.getElseBody() != null) {
+      node.getElseBody().accept(this);
+    }
+  }
+
+  @Override
+  public void visit(NamedArgumentNode node) {
+    if (node.getValueExpression() != null) {
+      node.setValueExpression(this.fold(node.getValueExpression()));
+    }
+  }
+
+  @Override
+  public void visit(PositionalArgumentNode node) {
+    node.setValueExpression(this.fold(node.getValueExpression()));
+  }
+
+  @Override
+  public void visit(PrintNode node) {
+    node.setExpression(this.fold(node.getExpression()));
+  }
+
+  @Override
+  public void visit(SetNode node) {
+    node.setValue(this.fold(node.getValue()));
+  }
+
+  /**
+   * Returns the node replacing a visited child of a body, the child itself if it does not change
+   * or null if it renders nothing.
+   */
+  private RenderableNode simplify(RenderableNode node) {
+    if (node.getClass() == PrintNode.class) {
+      return this.simplify((PrintNode) node);
+    } else if (node.getClass() == IfNode.class) {
+      return this.simplify((IfNode) node);
+    } else if (node.getClass() == TextNode.class && ((TextNode) node).getData().length == 0) {
+      return null;
+    }
+    return node;
+  }
+
+  /**
+   * Turns the print of a constant string into text, escaped already when the node escapes what it
+   * prints or when it is the escape filter applied to a literal.
+   */
+  private RenderableNode simplify(PrintNode node) {
+    Expression<?> expression = node.getExpression();
+    Object value;
+    if (expression.getClass() == LiteralNullExpression.class) {
+      return null;
+    } else if (expression.getClass() == LiteralStringExpression.class) {
+      value = ((LiteralStringExpression) expression).getValue();
+    } else if (expression.getClass() == FilterExpression.class) {
+      try {
+        value = this.applyFilter((FilterExpression) expression);
+      } catch (RuntimeException e) {
+        return node;
+      }
+      if (value == null) {
+        return null;
+      }
+      // numbers are left to the writer
+      if (!(value instanceof String) && !(value instanceof SafeString)) {
+        return node;
+      }
+    } else {
+      return node;
+    }
+    String text = value.toString();
+    if (node.getEscapingStrategy() != null && !(value instanceof SafeString)) {
+      text = node.getEscapingStrategy().escape(text);
+    }
+    return new TextNode(text, node.getLineNumber());
+  }
+
+  /**
+   * Removes the branches whose condition is always false and turns the first branch whose
+   * condition is always true into the else branch.
+   */
+  private RenderableNode simplify(IfNode node) {
+    List<Pair<Expression<?>, BodyNode>> branches = new ArrayList<>();
+    BodyNode elseBody = node.getElseBody();
+    boolean changed = false;
+    for (Pair<Expression<?>, BodyNode> branch : node.getConditionsWithBodies()) {
+      Expression<?> condition = this.foldOperator(branch.getLeft());
+      Boolean satisfied = this.isSatisfied(condition);
+      if (satisfied == null) {
+        branches.add(condition == branch.getLeft() ? branch
+            : new Pair<>(condition, branch.getRight()));
+        changed |= condition != branch.getLeft();
+      } else if (satisfied) {
+        elseBody = branch.getRight();
+        changed = true;
+        break;
+      } else {
+        changed = true;
+      }
+    }
+    if (!changed) {
+      return node;
+    }
+    if (branches.isEmpty()) {
+      return elseBody;
+    }
+    return new IfNode(node.getLineNumber(), branches, elseBody);
+  }
+
+  /**
+   * Checks whether the nodes of a body can take its place, i.e. whether it makes no difference
+   * that they would be rendered in a child template.
+   */
+  private boolean canInline(BodyNode body) {
+    for (RenderableNode child : body.getChildren()) {
+      if (BodyNode.isInheritanceSafe(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean mergeText(List<RenderableNode> nodes) {
+    boolean merged = false;
+    for (int i = 0; i < nodes.size(); i++) {
+      int end = i;
+      while (end < nodes.size() && nodes.get(end).getClass() == TextNode.class) {
+        end++;
+      }
+      if (end > i + 1) {
+        StringBuilder text = new StringBuilder();
+        for (int j = i; j < end; j++) {
+          text.append(((TextNode) nodes.get(j)).getData());
+        }
+        TextNode first = (TextNode) nodes.get(i);
+        nodes.subList(i + 1, end).clear();
+        nodes.set(i, new TextNode(text.toString(), first.getLineNumber()));
+        merged = true;
+      }
+    }
+    return merged;
+  }
+
+  private void accept(Node node) {
+    if (node != null) {
+      node.accept(this);
+    }
+  }
+
+  private Expression<?> fold(Expression<?> expression) {
+    if (expression == null) {
+      // e.g. the operand of the "filter" tag, which is its body
+      return null;
+    }
+    expression.accept(this);
+    return this.foldOperator(expression);
+  }
+
+  /**
+   * Replaces an operator whose operands are literals, or a pure filter, test or function whose
+   * input and arguments are literals, by its result. A ternary operator with a literal condition
+   * is replaced by the chosen operand.
+   */
+  private Expression<?> foldOperator(Expression<?> expression) {
+    if (expression instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) expression;
+      if (!isLiteral(ternary.getExpression1())) {
+        return expression;
+      }
+      try {
+        Object condition = this.evaluate(ternary.getExpression1());
+        return condition != null && TypeUtils.compatibleCast(condition, Boolean.class)
+            ? ternary.getExpression2() : ternary.getExpression3();
+      } catch (RuntimeException e) {
+        return expression;
+      }
+    }
+
+    Object value;
+    try {
+      if (expression.getClass() == FilterExpression.class) {
+        value = this.applyFilter((FilterExpression) expression);
+      } else if (expression.getClass() == PositiveTestExpression.class
+          || expression.getClass() == NegativeTestExpression.class) {
+        value = this.applyTest((PositiveTestExpression) expression);
+      } else if (expression.getClass() == FunctionOrMacroInvocationExpression.class) {
+        value = this.executeFunction((FunctionOrMacroInvocationExpression) expression);
+      } else if (isConstantOperator(expression)) {
+        value = this.evaluate(expression);
+      } else {
+        return expression;
+      }
+    } catch (RuntimeException e) {
+      // reported when the template is rendered
+      return expression;
+    }
+    if (value == NOT_CONSTANT) {
+      return expression;
+    }
+    Expression<?> literal = toLiteral(value, expression.getLineNumber());
+    return literal == null ? expression : literal;
+  }
+
+  private static boolean isConstantOperator(Expression<?> expression) {
+    if (!OPERATORS.contains(expression.getClass())) {
+      return false;
+    }
+    if (expression instanceof BinaryExpression) {
+      BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+      return isLiteral(binary.getLeftExpression()) && isLiteral(binary.getRightExpression());
+    }
+    return isLiteral(((UnaryExpression) expression).getChildExpression());
+  }
+
+  private Object applyFilter(FilterExpression expression) {
+    FilterInvocationExpression invocation =
+        (FilterInvocationExpression) expression.getRightExpression();
+    Filter filter = this.getTemplate().getExtensionRegistry()
+        .getFilter(invocation.getFilterName());
+    if (filter == null || !filter.isPure() || !isLiteral(expression.getLeftExpression())
+        || !isLiteral(invocation.getArgs())) {
+      return NOT_CONSTANT;
+    }
+    Map<String, Object> args = invocation.getArgs().getArgumentMap(this.getTemplate(), null,
+        filter);
+    return filter.apply(this.evaluate(expression.getLeftExpression()), args, this.getTemplate(),
+        null, expression.getLineNumber());
+  }
+
+  private Object applyTest(PositiveTestExpression expression) {
+    TestInvocationExpression invocation =
+        (TestInvocationExpression) expression.getRightExpression();
+    Test test = this.getTemplate().getExtensionRegistry().getTest(invocation.getTestName());
+    if (test == null || !test.isPure() || !isLiteral(expression.getLeftExpression())
+        || !isLiteral(invocation.getArgs())) {
+      return NOT_CONSTANT;
+    }
+    Map<String, Object> args = invocation.getArgs().getArgumentMap(this.getTemplate(), null, test);
+    boolean result = test.apply(this.evaluate(expression.getLeftExpression()), args,
+        this.getTemplate(), null, expression.getLineNumber());
+    return expression instanceof NegativeTestExpression ? !result : result;
+  }
+
+  private Object executeFunction(FunctionOrMacroInvocationExpression expression) {
+    // a macro is only called when there is no function with the same name
+    Function function = this.getTemplate().getExtensionRegistry()
+        .getFunction(expression.getFunctionName());
+    if (function == null || !function.isPure() || !isLiteral(expression.getArguments())) {
+      return NOT_CONSTANT;
+    }
+    Map<String, Object> args = expression.getArguments().getArgumentMap(this.getTemplate(), null,
+        function);
+    return function.execute(args, this.getTemplate(), null, expression.getLineNumber());
+  }
+
+  /**
+   * Returns whether a literal condition of an "if" is satisfied, or null if it is not a literal
+   * or can only be evaluated at runtime.
+   */
+  private Boolean isSatisfied(Expression<?> condition) {
+    if (!isLiteral(condition)) {
+      return null;
+    }
+    Object value = this.evaluate(condition);
+    if (value instanceof Boolean || value instanceof Number || value instanceof String) {
+      try {
+        return TypeUtils.compatibleCast(value, Boolean.class);
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private Object evaluate(Expression<?> expression) {
+    // constant expressions do not read the context
+    return expression.evaluate(this.getTemplate(), null);
+  }
+
+  private static boolean isLiteral(Expression<?> expression) {
+    return expression != null && LITERALS.contains(expression.getClass());
+  }
+
+  private static boolean isLiteral(ArgumentsNode args) {
+    if (args == null) {
+      return false;
+    }
+    if (args.getPositionalArgs() != null) {
+      for (PositionalArgumentNode arg : args.getPositionalArgs()) {
+        if (!isLiteral(arg.getValueExpression())) {
+          return false;
+        }
+      }
+    }
+    if (args.getNamedArgs() != null) {
+      for (NamedArgumentNode arg : args.getNamedArgs()) {
+        if (arg.getValueExpression() != null && !isLiteral(arg.getValueExpression())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static Expression<?> toLiteral(Object value, int lineNumber) {
+    if (value == null) {
+      return new LiteralNullExpression(lineNumber);
+    } else if (value.getClass() == String.class) {
+      return new LiteralStringExpression((String) value, lineNumber);
+    } else if (value.getClass() == Boolean.class) {
+      return new LiteralBooleanExpression((Boolean) value, lineNumber);
+    } else if (value.getClass() == Integer.class) {
+      return new LiteralIntegerExpression((Integer) value, lineNumber);
+    } else if (value.getClass() == Long.class) {
+      return new LiteralLongExpression((Long) value, lineNumber);
+    } else if (value.getClass() == Double.class) {
+      return new LiteralDoubleExpression((Double) value, lineNumber);
+    } else if (value.getClass() == BigDecimal.class) {
+      return new LiteralBigDecimalExpression((BigDecimal) value, lineNumber);
+    }
+    return null;
+  }
+}
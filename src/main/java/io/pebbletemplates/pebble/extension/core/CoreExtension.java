@@ -190,6 +190,7 @@ public class CoreExtension extends AbstractExtension {
   public List<NodeVisitorFactory> getNodeVisitors() {
     List<NodeVisitorFactory> visitors = new ArrayList<>();
     visitors.add(new MacroAndBlockRegistrantNodeVisitorFactory());
+    visitors.add(new SlotResolverNodeVisitorFactory());
     return visitors;
   }
 }
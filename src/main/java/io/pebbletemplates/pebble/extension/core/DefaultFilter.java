@@ -45,4 +45,8 @@ public class DefaultFilter implements Filter {
     return input;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
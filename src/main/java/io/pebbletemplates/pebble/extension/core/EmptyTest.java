@@ -44,4 +44,8 @@ public class EmptyTest implements Test {
     return isEmpty;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
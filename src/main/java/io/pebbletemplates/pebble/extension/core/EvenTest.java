@@ -37,4 +37,9 @@ public class EvenTest implements Test {
       return ((Long) input) % 2 == 0;
     }
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -55,4 +55,9 @@ public class FirstFilter implements Filter {
     }
     return null;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -28,4 +28,9 @@ public class IterableTest implements Test {
 
     return input instanceof Iterable || input instanceof Object[];
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -83,4 +83,9 @@ public class JoinFilter implements Filter {
     }
     return builder.toString();
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -53,4 +53,9 @@ public class LastFilter implements Filter {
     }
     return result;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -53,4 +53,8 @@ public class LengthFilter implements Filter {
     }
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -28,4 +28,8 @@ public class MapTest implements Test {
     return input instanceof Map;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -47,4 +47,8 @@ public class MaxFunction implements Function {
 
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
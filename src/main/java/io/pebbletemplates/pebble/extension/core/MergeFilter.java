@@ -120,4 +120,8 @@ public class MergeFilter implements Filter {
     return output;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -45,4 +45,8 @@ public class MinFunction implements Function {
     return min;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -28,4 +28,9 @@ public class NullTest implements Test {
       lineNumber) {
     return input == null;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -32,4 +32,9 @@ public class OddTest implements Test {
     EvenTest evenTest = new EvenTest();
     return !evenTest.apply(input, args, self, context, lineNumber);
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -0,0 +1,21 @@
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies the templates once every other node visitor is done with them. Registered last by
+ * the {@link io.pebbletemplates.pebble.extension.ExtensionRegistryFactory}.
+ */
+public class OptimizationExtension extends AbstractExtension {
+
+  @Override
+  public List<NodeVisitorFactory> getNodeVisitors() {
+    List<NodeVisitorFactory> visitors = new ArrayList<>();
+    visitors.add(new ConstantFoldingNodeVisitorFactory());
+    return visitors;
+  }
+}
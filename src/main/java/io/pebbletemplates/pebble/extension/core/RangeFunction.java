@@ -115,4 +115,9 @@ public class RangeFunction implements Function {
   public List<String> getArgumentNames() {
     return this.argumentNames;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -49,4 +49,8 @@ public class ReplaceFilter implements Filter {
     return data;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -58,4 +58,8 @@ public class Sha256Filter implements Filter {
     return hexString.toString();
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -129,4 +129,8 @@ public class SliceFilter implements Filter {
     }
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
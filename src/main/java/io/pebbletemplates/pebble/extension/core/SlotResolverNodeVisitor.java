@@ -0,0 +1,205 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.ArgumentsNode;
+import io.pebbletemplates.pebble.node.BlockNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.MacroNode;
+import io.pebbletemplates.pebble.node.NamedArgumentNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TestInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.ContextVariableExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GetAttributeExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.template.FrameLayout;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves variables bound by the template itself to slots of a {@link
+ * io.pebbletemplates.pebble.template.FrameScope} so that they can be read and written by index
+ * instead of walking the scope chain.
+ * <p>
+ * Loop variables (including "loop") are resolved inside the body of their "for" loop. Macro
+ * arguments and the variables set inside a macro body are resolved inside that body, where the
+ * local macro frame always ends the lookup. Everything else, e.g. user provided variables, "set"
+ * at the top level of a template or "_context", is left to the scope chain because where it lives
+ * is only known at runtime. Block bodies can be rendered outside of their lexical position (child
+ * templates, the "block" function) and are therefore resolved as if they had no enclosing frame.
+ */
+public class SlotResolverNodeVisitor extends AbstractNodeVisitor {
+
+  /**
+   * The frames lexically enclosing the node being visited, the innermost one last.
+   */
+  private List<FrameLayout> frames = new ArrayList<>();
+
+  public SlotResolverNodeVisitor(PebbleTemplateImpl template) {
+    super(template);
+  }
+
+  @Override
+  public void visit(Node node) {
+    if (node instanceof ContextVariableExpression) {
+      ContextVariableExpression variable = (ContextVariableExpression) node;
+      Slot slot = this.resolve(variable.getName());
+      if (slot != null) {
+        variable.resolveSlot(slot.layout, slot.depth, slot.index);
+      }
+    } else if (node instanceof BinaryExpression) {
+      this.accept(((BinaryExpression<?>) node).getLeftExpression());
+      this.accept(((BinaryExpression<?>) node).getRightExpression());
+    } else if (node instanceof UnaryExpression) {
+      this.accept(((UnaryExpression) node).getChildExpression());
+    } else if (node instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) node;
+      this.accept(ternary.getExpression1());
+      this.accept(ternary.getExpression2());
+      this.accept(ternary.getExpression3());
+    } else if (node instanceof GetAttributeExpression) {
+      GetAttributeExpression getAttribute = (GetAttributeExpression) node;
+      this.accept(getAttribute.getNode());
+      this.accept(getAttribute.getAttributeNameExpression());
+      this.accept(getAttribute.getArgumentsNode());
+    } else if (node instanceof FilterInvocationExpression) {
+      this.accept(((FilterInvocationExpression) node).getArgs());
+    } else if (node instanceof FunctionOrMacroInvocationExpression) {
+      this.accept(((FunctionOrMacroInvocationExpression) node).getArguments());
+    } else if (node instanceof TestInvocationExpression) {
+      this.accept(((TestInvocationExpression) node).getArgs());
+    }
+  }
+
+  @Override
+  public void visit(BlockNode node) {
+    List<FrameLayout> enclosing = this.frames;
+    this.frames = new ArrayList<>();
+    super.visit(node);
+    this.frames = enclosing;
+  }
+
+  @Override
+  public void visit(ForNode node) {
+    node.getIterable().accept(this);
+
+    this.frames.add(node.getFrameLayout());
+    node.getBody().accept(this);
+    this.frames.remove(this.frames.size() - 1);
+
+    if (node.getElseBody() != null) {
+      node.getElseBody().accept(this);
+    }
+  }
+
+  @Override
+  public void visit(MacroNode node) {
+    List<FrameLayout> enclosing = this.frames;
+
+    // default values are evaluated within the macro frame before it is complete
+    this.frames = new ArrayList<>();
+    node.getArgs().accept(this);
+
+    Set<String> names = new LinkedHashSet<>();
+    for (NamedArgumentNode arg : node.getArgs().getNamedArgs()) {
+      names.add(arg.getName());
+    }
+    SetTargetCollector collector = new SetTargetCollector(this.getTemplate());
+    node.getBody().accept(collector);
+    names.addAll(collector.names);
+    node.setFrameLayout(new FrameLayout(names));
+
+    this.frames.add(node.getFrameLayout());
+    node.getBody().accept(this);
+    this.frames = enclosing;
+  }
+
+  @Override
+  public void visit(SetNode node) {
+    super.visit(node);
+    Slot slot = this.resolve(node.getName());
+    if (slot != null) {
+      node.resolveSlot(slot.layout, slot.depth, slot.index);
+    }
+  }
+
+  private Slot resolve(String name) {
+    for (int i = this.frames.size() - 1; i >= 0; i--) {
+      FrameLayout layout = this.frames.get(i);
+      int index = layout.indexOf(name);
+      if (index >= 0) {
+        return new Slot(layout, this.frames.size() - 1 - i, index);
+      }
+    }
+    return null;
+  }
+
+  private void accept(Expression<?> expression) {
+    if (expression != null) {
+      expression.accept(this);
+    }
+  }
+
+  private void accept(ArgumentsNode args) {
+    if (args != null) {
+      args.accept(this);
+    }
+  }
+
+  private static class Slot {
+
+    private final FrameLayout layout;
+
+    private final int depth;
+
+    private final int index;
+
+    Slot(FrameLayout layout, int depth, int index) {
+      this.layout = layout;
+      this.depth = depth;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Collects the names assigned by "set" within a macro body, ignoring nested macros and blocks.
+   */
+  private static class SetTargetCollector extends AbstractNodeVisitor {
+
+    private final Set<String> names = new LinkedHashSet<>();
+
+    SetTargetCollector(PebbleTemplateImpl template) {
+      super(template);
+    }
+
+    @Override
+    public void visit(BlockNode node) {
+    }
+
+    @Override
+    public void visit(MacroNode node) {
+    }
+
+    @Override
+    public void visit(SetNode node) {
+      this.names.add(node.getName());
+    }
+  }
+}
@@ -46,4 +46,9 @@ public class SplitFilter implements Filter {
   public List<String> getArgumentNames() {
     return this.argumentNames;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
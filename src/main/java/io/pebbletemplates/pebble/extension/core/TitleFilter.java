@@ -51,4 +51,8 @@ public class TitleFilter implements Filter {
     return result.toString();
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -32,4 +32,8 @@ public class TrimFilter implements Filter {
     return str.trim();
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
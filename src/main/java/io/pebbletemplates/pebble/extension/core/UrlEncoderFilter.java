@@ -38,4 +38,8 @@ public class UrlEncoderFilter implements Filter {
     return arg;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -15,11 +15,12 @@ import io.pebbletemplates.pebble.template.PebbleTemplate;
 import io.pebbletemplates.pebble.utils.StringUtils;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.unbescape.css.CssEscape;
-import org.unbescape.html.HtmlEscape;
 import org.unbescape.javascript.JavaScriptEscape;
 import org.unbescape.json.JsonEscape;
 import org.unbescape.uri.UriEscape;
@@ -38,17 +39,32 @@ public class EscapeFilter implements Filter {
 
   private final Map<String, EscapingStrategy> strategies = new HashMap<>();
 
+  /**
+   * The built-in strategies which leave the text of numbers and booleans as it is.
+   */
+  private final Set<EscapingStrategy> plainValueStrategies = new HashSet<>();
+
   public EscapeFilter() {
     this.buildDefaultStrategies();
     this.argumentNames.add("strategy");
   }
 
   private void buildDefaultStrategies() {
-    this.strategies.put(HTML_ESCAPE_STRATEGY, HtmlEscape::escapeHtml4Xml);
-    this.strategies.put(JAVASCRIPT_ESCAPE_STRATEGY, JavaScriptEscape::escapeJavaScript);
-    this.strategies.put(CSS_ESCAPE_STRATEGY, CssEscape::escapeCssIdentifier);
-    this.strategies.put(URL_PARAM_ESCAPE_STRATEGY, UriEscape::escapeUriQueryParam);
-    this.strategies.put(JSON_ESCAPE_STRATEGY, JsonEscape::escapeJson);
+    this.strategies.put(HTML_ESCAPE_STRATEGY, new HtmlEscapingStrategy());
+    this.strategies.put(JAVASCRIPT_ESCAPE_STRATEGY,
+        new UnbescapeEscapingStrategy(JavaScriptEscape::escapeJavaScript));
+    this.strategies.put(CSS_ESCAPE_STRATEGY,
+        new UnbescapeEscapingStrategy(CssEscape::escapeCssIdentifier));
+    this.strategies.put(URL_PARAM_ESCAPE_STRATEGY,
+        new UnbescapeEscapingStrategy(UriEscape::escapeUriQueryParam));
+    this.strategies.put(JSON_ESCAPE_STRATEGY,
+        new UnbescapeEscapingStrategy(JsonEscape::escapeJson));
+
+    // css identifiers can't start with a digit or a minus sign followed by a digit, and decimals
+    // printed in scientific notation have a '+' which must be encoded in url parameters
+    this.plainValueStrategies.add(this.strategies.get(HTML_ESCAPE_STRATEGY));
+    this.plainValueStrategies.add(this.strategies.get(JAVASCRIPT_ESCAPE_STRATEGY));
+    this.plainValueStrategies.add(this.strategies.get(JSON_ESCAPE_STRATEGY));
   }
 
   @Override
@@ -89,4 +105,31 @@ public class EscapeFilter implements Filter {
   public void addEscapingStrategy(String name, EscapingStrategy strategy) {
     this.strategies.put(name, strategy);
   }
+
+  /**
+   * Returns the strategy with the given name.
+   *
+   * @param name The name of the strategy, null for the default strategy
+   * @return The strategy or null if there is no strategy with that name
+   */
+  public EscapingStrategy getEscapingStrategy(String name) {
+    return this.strategies.get(name == null ? this.defaultStrategy : name);
+  }
+
+  /**
+   * Tells whether a strategy is a built-in one that does not change the text of numbers and
+   * booleans, so that printing them doesn't need to go through the strategy. Strategies replaced
+   * with {@link #addEscapingStrategy(String, EscapingStrategy)} are never assumed to.
+   *
+   * @param strategy The strategy
+   * @return Whether numbers and booleans are printed as they are
+   */
+  public boolean preservesNumbersAndBooleans(EscapingStrategy strategy) {
+    return this.plainValueStrategies.contains(strategy);
+  }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
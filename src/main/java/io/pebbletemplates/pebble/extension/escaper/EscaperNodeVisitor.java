@@ -9,26 +9,68 @@
 package io.pebbletemplates.pebble.extension.escaper;
 
 import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.extension.Filter;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.node.AutoEscapeNode;
 import io.pebbletemplates.pebble.node.NamedArgumentNode;
 import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.expression.AndExpression;
 import io.pebbletemplates.pebble.node.expression.BlockFunctionExpression;
 import io.pebbletemplates.pebble.node.expression.ConcatenateExpression;
+import io.pebbletemplates.pebble.node.expression.ContainsExpression;
+import io.pebbletemplates.pebble.node.expression.DivideExpression;
+import io.pebbletemplates.pebble.node.expression.EqualsExpression;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.node.expression.FilterExpression;
 import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBigDecimalExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBooleanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralDoubleExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralIntegerExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
 import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.ModulusExpression;
+import io.pebbletemplates.pebble.node.expression.MultiplyExpression;
+import io.pebbletemplates.pebble.node.expression.NegativeTestExpression;
+import io.pebbletemplates.pebble.node.expression.NotEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.OrExpression;
 import io.pebbletemplates.pebble.node.expression.ParentFunctionExpression;
+import io.pebbletemplates.pebble.node.expression.PositiveTestExpression;
 import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryMinusExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryNotExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryPlusExpression;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 public class EscaperNodeVisitor extends AbstractNodeVisitor {
 
+  /**
+   * The expressions which always evaluate to a number, a boolean or null, or fail. Operators
+   * replaced by an extension are other classes.
+   */
+  private static final Set<Class<?>> PLAIN_VALUE_EXPRESSIONS = new HashSet<>(Arrays.asList(
+      LiteralIntegerExpression.class, LiteralLongExpression.class, LiteralDoubleExpression.class,
+      LiteralBigDecimalExpression.class, LiteralBooleanExpression.class,
+      LiteralNullExpression.class, MultiplyExpression.class, DivideExpression.class,
+      ModulusExpression.class, UnaryMinusExpression.class, UnaryPlusExpression.class,
+      AndExpression.class, OrExpression.class, UnaryNotExpression.class, EqualsExpression.class,
+      NotEqualsExpression.class, GreaterThanExpression.class,
+      GreaterThanEqualsExpression.class, LessThanExpression.class,
+      LessThanEqualsExpression.class, ContainsExpression.class, PositiveTestExpression.class,
+      NegativeTestExpression.class));
+
   private final LinkedList<String> strategies = new LinkedList<>();
 
   private final LinkedList<Boolean> active = new LinkedList<>();
@@ -54,7 +96,13 @@ public class EscaperNodeVisitor extends AbstractNodeVisitor {
       }
     } else {
       if (this.isUnsafe(expression)) {
-        node.setExpression(this.escape(expression));
+        EscapingStrategy strategy = this.getStrategy();
+        if (strategy == null) {
+          node.setExpression(this.escape(expression));
+        } else {
+          // the node escapes what it prints, without going through the filter
+          node.setEscapingStrategy(strategy);
+        }
       }
     }
   }
@@ -103,6 +151,20 @@ public class EscaperNodeVisitor extends AbstractNodeVisitor {
     return binary;
   }
 
+  /**
+   * Returns the escaping strategy the escape filter would use, or null if it has to be applied
+   * when rendering: when it has been replaced or the strategy is unknown, which is an error then.
+   */
+  private EscapingStrategy getStrategy() {
+    EscapeFilter filter = this.getEscapeFilter();
+    return filter == null ? null : filter.getEscapingStrategy(this.strategies.peek());
+  }
+
+  private EscapeFilter getEscapeFilter() {
+    Filter filter = this.getTemplate().getExtensionRegistry().getFilter("escape");
+    return filter instanceof EscapeFilter ? (EscapeFilter) filter : null;
+  }
+
   private boolean isUnsafe(Expression<?> expression) {
 
     // check whether the autoescaper is even active
@@ -120,6 +182,9 @@ public class EscaperNodeVisitor extends AbstractNodeVisitor {
       unsafe = false;
     } else if (this.isSafeConcatenateExpr(expression)) {
       unsafe = false;
+    } else if (PLAIN_VALUE_EXPRESSIONS.contains(expression.getClass())) {
+      EscapeFilter filter = this.getEscapeFilter();
+      unsafe = filter == null || !filter.preservesNumbersAndBooleans(this.getStrategy());
     }
 
     return unsafe;
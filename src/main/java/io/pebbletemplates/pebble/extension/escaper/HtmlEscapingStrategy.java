@@ -0,0 +1,79 @@
+package io.pebbletemplates.pebble.extension.escaper;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The built-in html strategy. It escapes the same five markup-significant characters as unbescape's
+ * {@code HtmlEscape.escapeHtml4Xml}, with the same references, but scans for the first of them
+ * first: most printed strings contain none and are returned or written as they are, only the rest
+ * of a string from its first such character is escaped.
+ *
+ * <p>The scan is a plain counted loop over the characters, since the Vector API isn't available
+ * for the Java versions Pebble supports.
+ */
+class HtmlEscapingStrategy implements WriterEscapingStrategy {
+
+  /**
+   * The references of the characters to escape, indexed by character. All of them are lower than
+   * or equal to '>'.
+   */
+  private static final String[] REFERENCES = new String['>' + 1];
+
+  static {
+    REFERENCES['"'] = "&quot;";
+    REFERENCES['&'] = "&amp;";
+    REFERENCES['\''] = "&#39;";
+    REFERENCES['<'] = "&lt;";
+    REFERENCES['>'] = "&gt;";
+  }
+
+  @Override
+  public String escape(String input) {
+    if (input == null) {
+      return null;
+    }
+    int first = indexOfUnsafe(input, 0);
+    return first < 0 ? input : escape(input, first).toString();
+  }
+
+  @Override
+  public void escape(String input, Writer writer) throws IOException {
+    if (input == null) {
+      return;
+    }
+    int first = indexOfUnsafe(input, 0);
+    if (first < 0) {
+      writer.write(input);
+    } else {
+      // a single write, writers are often synchronized and slow with many small ones
+      writer.write(escape(input, first).toString());
+    }
+  }
+
+  private static StringBuilder escape(String input, int first) {
+    StringBuilder escaped = new StringBuilder(input.length() + 16);
+    int start = 0;
+    int next = first;
+    do {
+      escaped.append(input, start, next).append(REFERENCES[input.charAt(next)]);
+      start = next + 1;
+      next = indexOfUnsafe(input, start);
+    } while (next >= 0);
+    return escaped.append(input, start, input.length());
+  }
+
+  /**
+   * Returns the index of the first character to escape from the given index on, or -1 if there
+   * is none.
+   */
+  static int indexOfUnsafe(String input, int from) {
+    for (int i = from, length = input.length(); i < length; i++) {
+      char c = input.charAt(i);
+      if (c <= '>' && REFERENCES[c] != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
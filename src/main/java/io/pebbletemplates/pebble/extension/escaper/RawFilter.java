@@ -27,4 +27,8 @@ public class RawFilter implements Filter {
     return inputObject == null ? null : new SafeString(inputObject.toString());
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
@@ -0,0 +1,22 @@
+package io.pebbletemplates.pebble.extension.escaper;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An {@link EscapingStrategy} which can also write the escaped text straight to a writer. The
+ * values printed with autoescaping are escaped this way, so that the strategy doesn't have to
+ * create the escaped string, and they don't need to be wrapped in a {@link SafeString}.
+ */
+public interface WriterEscapingStrategy extends EscapingStrategy {
+
+  /**
+   * Writes the escaped input, the same characters {@link #escape(String)} would return.
+   *
+   * @param input The text to escape
+   * @param writer The writer to write the escaped text to
+   * @throws IOException Thrown from the writer object
+   */
+  void escape(String input, Writer writer) throws IOException;
+
+}
@@ -0,0 +1,46 @@
+package io.pebbletemplates.pebble.extension.writer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The buffers used while rendering a template to capture the output of macros, blocks and cache
+ * tags. They are borrowed and given back as the captures nest, so a render needs as many buffers
+ * as its deepest nesting instead of one per capture.
+ *
+ * <p>A buffer grown above {@link #MAX_RETAINED_CAPACITY} characters isn't kept, nor more than
+ * {@link #MAX_RETAINED_BUFFERS} buffers. An arena belongs to a single render and is not
+ * threadsafe.
+ */
+public class BufferArena {
+
+  static final int INITIAL_CAPACITY = 256;
+
+  static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+  static final int MAX_RETAINED_BUFFERS = 8;
+
+  private final Deque<BufferWriter> free = new ArrayDeque<>();
+
+  /**
+   * Returns an empty buffer, which must be given back with {@link #release(BufferWriter)} once its
+   * content has been used.
+   *
+   * @return The buffer
+   */
+  public BufferWriter borrow() {
+    BufferWriter buffer = this.free.poll();
+    return buffer != null ? buffer : new BufferWriter(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Gives a buffer back, it is kept for the next borrower unless it is too large or detached.
+   *
+   * @param buffer The buffer
+   */
+  public void release(BufferWriter buffer) {
+    if (buffer.reset(MAX_RETAINED_CAPACITY) && this.free.size() < MAX_RETAINED_BUFFERS) {
+      this.free.push(buffer);
+    }
+  }
+}
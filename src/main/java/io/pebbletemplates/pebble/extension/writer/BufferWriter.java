@@ -0,0 +1,159 @@
+package io.pebbletemplates.pebble.extension.writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * A {@link SpecializedWriter} capturing output in a {@link StringBuilder}, borrowed from a {@link
+ * BufferArena}. Like {@link PooledSpecializedStringWriter} it isn't threadsafe but doesn't involve
+ * synchronization.
+ *
+ * <p>Its content can be taken as a string, which copies it, written to another writer with {@link
+ * #writeTo(Writer)} or handed over with {@link #detach()}, which doesn't copy it.
+ */
+public class BufferWriter extends Writer implements SpecializedWriter {
+
+  /**
+   * The size of the chunks written to writers which can't take the buffer as it is.
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  private StringBuilder sb;
+
+  private char[] chunk;
+
+  BufferWriter(int capacity) {
+    this.sb = new StringBuilder(capacity);
+  }
+
+  @Override
+  public void writeSpecialized(int i) {
+    this.sb.append(i);
+  }
+
+  @Override
+  public void writeSpecialized(long l) {
+    this.sb.append(l);
+  }
+
+  @Override
+  public void writeSpecialized(double d) {
+    this.sb.append(d);
+  }
+
+  @Override
+  public void writeSpecialized(float f) {
+    this.sb.append(f);
+  }
+
+  @Override
+  public void writeSpecialized(short s) {
+    this.sb.append(s);
+  }
+
+  @Override
+  public void writeSpecialized(byte b) {
+    this.sb.append(b);
+  }
+
+  @Override
+  public void writeSpecialized(char c) {
+    this.sb.append(c);
+  }
+
+  @Override
+  public void writeSpecialized(String s) {
+    this.sb.append(s);
+  }
+
+  @Override
+  public void write(int c) {
+    this.sb.append((char) c);
+  }
+
+  @Override
+  public void write(String str) {
+    this.sb.append(str);
+  }
+
+  @Override
+  public void write(String str, int off, int len) {
+    this.sb.append(str, off, off + len);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) {
+    this.sb.append(cbuf, off, len);
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  public int length() {
+    return this.sb.length();
+  }
+
+  /**
+   * Writes the content to another writer. It is appended to the buffer of a {@link StringWriter}
+   * or another {@link BufferWriter}, and written in chunks to other writers, without creating a
+   * string of the whole content.
+   *
+   * @param writer The writer
+   * @throws IOException Thrown from the writer object
+   */
+  public void writeTo(Writer writer) throws IOException {
+    if (writer instanceof BufferWriter) {
+      ((BufferWriter) writer).sb.append(this.sb);
+    } else if (writer instanceof StringWriter) {
+      ((StringWriter) writer).getBuffer().append(this.sb);
+    } else {
+      // kept across borrowers, it grows up to the chunk size with the content
+      int size = Math.min(CHUNK_SIZE, this.sb.length());
+      if (this.chunk == null || this.chunk.length < size) {
+        this.chunk = new char[Math.max(size, 16)];
+      }
+      for (int start = 0; start < this.sb.length(); start += this.chunk.length) {
+        int end = Math.min(start + this.chunk.length, this.sb.length());
+        this.sb.getChars(start, end, this.chunk, 0);
+        writer.write(this.chunk, 0, end - start);
+      }
+    }
+  }
+
+  /**
+   * Hands the content over without copying it. The writer can't be used anymore and isn't kept by
+   * its arena.
+   *
+   * @return The content
+   */
+  public CharSequence detach() {
+    CharSequence content = this.sb;
+    this.sb = null;
+    return content;
+  }
+
+  /**
+   * Empties the buffer for the next borrower.
+   *
+   * @return Whether the buffer can be kept, i.e. it hasn't been detached and its capacity isn't
+   *     above the given maximum
+   */
+  boolean reset(int maxCapacity) {
+    if (this.sb == null || this.sb.capacity() > maxCapacity) {
+      return false;
+    }
+    this.sb.setLength(0);
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return this.sb.toString();
+  }
+}
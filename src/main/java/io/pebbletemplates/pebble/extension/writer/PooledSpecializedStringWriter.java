@@ -10,11 +10,18 @@ import java.io.Writer;
  * <li>As it's backed by a ${@link ThreadLocal}, it might leak in environments where ClassLoaders
  * are rebooted at runtime</li>
  * <li>It doesn't take any security measure against very large payloads that would cause underlying
- * buffers to eat memory</li>
+ * buffers to eat memory. A buffer grown above {@link #MAX_RETAINED_CAPACITY} characters is
+ * replaced the next time the writer is pooled, though.</li>
  * </ul>
+ * The written characters can be handed over without copying them with {@link #detach()}.
  */
 public class PooledSpecializedStringWriter extends Writer implements SpecializedWriter {
 
+  /**
+   * The capacity above which the buffer of a thread isn't used again.
+   */
+  public static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
   private static final ThreadLocal<PooledSpecializedStringWriter> POOL = ThreadLocal
       .withInitial(PooledSpecializedStringWriter::new);
 
@@ -81,9 +88,25 @@ public class PooledSpecializedStringWriter extends Writer implements Specialized
     return sb.toString();
   }
 
+  /**
+   * Hands the written characters over without copying them. The writer starts a new buffer, so it
+   * can be pooled again.
+   *
+   * @return The written characters
+   */
+  public CharSequence detach() {
+    CharSequence content = sb;
+    sb = new StringBuilder();
+    return content;
+  }
+
   public static PooledSpecializedStringWriter pooled() {
     PooledSpecializedStringWriter pooled = POOL.get();
-    pooled.sb.setLength(0);
+    if (pooled.sb.capacity() > MAX_RETAINED_CAPACITY) {
+      pooled.sb = new StringBuilder();
+    } else {
+      pooled.sb.setLength(0);
+    }
     return pooled;
   }
 }
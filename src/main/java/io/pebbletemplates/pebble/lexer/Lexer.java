@@ -13,4 +13,21 @@ import java.io.Reader;
 public interface Lexer {
 
   TokenStream tokenize(Reader templateReader, String name);
+
+  /**
+   * Tokenizes a part of a template which starts further down in the template, so that the tokens
+   * have the line numbers of the whole template.
+   *
+   * @param templateReader The reader of the part of the template
+   * @param name The name of the template
+   * @param lineNumber The line number of the first line of the part
+   * @return The tokens
+   */
+  default TokenStream tokenize(Reader templateReader, String name, int lineNumber) {
+    if (lineNumber != 1) {
+      throw new UnsupportedOperationException(
+          "The lexer can not tokenize from line " + lineNumber);
+    }
+    return this.tokenize(templateReader, name);
+  }
 }
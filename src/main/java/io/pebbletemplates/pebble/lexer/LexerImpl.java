@@ -152,13 +152,18 @@ public final class LexerImpl implements Lexer {
    */
   @Override
   public TokenStream tokenize(Reader reader, String name) {
+    return this.tokenize(reader, name, 1);
+  }
+
+  @Override
+  public TokenStream tokenize(Reader reader, String name, int lineNumber) {
 
     // operator regex
     this.buildOperatorRegex();
 
     // standardize the character used for line breaks
     try {
-      this.source = new TemplateSource(reader, name);
+      this.source = new TemplateSource(reader, name, lineNumber);
     } catch (IOException e) {
       throw new ParserException(e, "Can not convert template Reader into a String", 0, name);
     }
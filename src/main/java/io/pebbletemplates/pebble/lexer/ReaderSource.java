@@ -0,0 +1,176 @@
+package io.pebbletemplates.pebble.lexer;
+
+import io.pebbletemplates.pebble.error.ParserException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The template source used by {@link StreamingLexer}. Unlike {@link TemplateSource} it does not
+ * read the whole template up front, it keeps a sliding window over the reader which is refilled
+ * when the lexer looks past its end. The window only grows when a single lookahead does not fit,
+ * consumed characters are dropped when more room is needed.
+ * <p>
+ * Line numbers are tracked the same way {@link TemplateSource} tracks them.
+ */
+final class ReaderSource {
+
+  /**
+   * Returned by {@link #peek(int)} past the end of the template.
+   */
+  static final int END = -1;
+
+  static final int DEFAULT_CAPACITY = 4096;
+
+  private final Reader reader;
+
+  private final String filename;
+
+  private char[] buffer;
+
+  /**
+   * Index of the first character which has not been tokenized yet.
+   */
+  private int position = 0;
+
+  /**
+   * Index after the last character read from the reader.
+   */
+  private int limit = 0;
+
+  private boolean endOfInput = false;
+
+  private int lineNumber = 1;
+
+  ReaderSource(Reader reader, String filename, int capacity, int lineNumber) {
+    this.reader = reader;
+    this.lineNumber = lineNumber;
+    this.filename = filename;
+    this.buffer = new char[capacity];
+  }
+
+  /**
+   * Returns a character ahead of the current position, reading more of the template if required.
+   *
+   * @param index The index relative to the current position
+   * @return The character or {@link #END}
+   */
+  int peek(int index) {
+    if (this.position + index >= this.limit && !this.fill(index + 1)) {
+      return END;
+    }
+    return this.buffer[this.position + index];
+  }
+
+  boolean isEmpty() {
+    return this.peek(0) == END;
+  }
+
+  boolean startsWith(String prefix, int index) {
+    int length = prefix.length();
+    if (this.position + index + length > this.limit && !this.fill(index + length)) {
+      return false;
+    }
+    int start = this.position + index;
+    for (int i = 0; i < length; i++) {
+      if (this.buffer[start + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copies characters which have already been peeked at.
+   */
+  String substring(int start, int end) {
+    return new String(this.buffer, this.position + start, end - start);
+  }
+
+  /**
+   * Appends characters which have already been peeked at.
+   */
+  void appendTo(StringBuilder builder, int end) {
+    builder.append(this.buffer, this.position, end);
+  }
+
+  /**
+   * Moves the current position a certain amount, counting the newlines that are passed.
+   *
+   * @param amount Amount of characters to advance by, all of them must have been peeked at
+   */
+  void advance(int amount) {
+    int index = 0;
+    while (index < amount) {
+      char character = this.buffer[this.position + index];
+      if ('\r' == character && this.peek(index + 1) == '\n') {
+        // the "\n" of a windows newline split by the amount is counted by the next advance
+        if (index + 1 < amount) {
+          this.lineNumber++;
+        }
+        index += 2;
+      } else {
+        if ('\n' == character || '\r' == character || '\u0085' == character
+            || '\u2028' == character || '\u2029' == character) {
+          this.lineNumber++;
+        }
+        index++;
+      }
+    }
+    this.position += amount;
+  }
+
+  void advanceThroughWhitespace() {
+    int index = 0;
+    int character;
+    while ((character = this.peek(index)) != END && Character.isWhitespace(character)) {
+      index++;
+    }
+    this.advance(index);
+  }
+
+  int getLineNumber() {
+    return this.lineNumber;
+  }
+
+  String getFilename() {
+    return this.filename;
+  }
+
+  /**
+   * Makes at least the given amount of characters available after the current position.
+   *
+   * @return false if the template ends before
+   */
+  private boolean fill(int required) {
+    while (this.limit - this.position < required) {
+      if (this.endOfInput) {
+        return false;
+      }
+      if (this.position + required > this.buffer.length) {
+        int remaining = this.limit - this.position;
+        if (required > this.buffer.length) {
+          char[] grown = new char[Math.max(this.buffer.length << 1, required)];
+          System.arraycopy(this.buffer, this.position, grown, 0, remaining);
+          this.buffer = grown;
+        } else {
+          System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        }
+        this.position = 0;
+        this.limit = remaining;
+      }
+      int read;
+      try {
+        read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+      } catch (IOException e) {
+        throw new ParserException(e, "Can not read template", this.lineNumber, this.filename);
+      }
+      if (read == -1) {
+        this.endOfInput = true;
+      } else {
+        this.limit += read;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,797 @@
+package io.pebbletemplates.pebble.lexer;
+
+import io.pebbletemplates.pebble.error.ParserException;
+import io.pebbletemplates.pebble.lexer.Token.Type;
+import io.pebbletemplates.pebble.operator.BinaryOperator;
+import io.pebbletemplates.pebble.operator.UnaryOperator;
+import io.pebbletemplates.pebble.utils.Pair;
+import io.pebbletemplates.pebble.utils.StringLengthComparator;
+import io.pebbletemplates.pebble.utils.StringUtils;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A lexer which produces the same tokens as {@link LexerImpl} without regular expressions. The
+ * template is read through a sliding window over the reader instead of being copied into memory
+ * first, and the tokens are produced while the parser consumes the {@link TokenStream}.
+ * <p>
+ * Text, comments and verbatim blocks are scanned in chunks so the window stays small no matter how
+ * large they are, only the lookahead within a tag can grow it. Use {@link #supports(Syntax)} to
+ * check whether a syntax can be handled, the default one always can.
+ * <p>
+ * This class is thread safe, each call to {@link #tokenize(Reader, String)} has its own state.
+ */
+public final class StreamingLexer implements Lexer {
+
+  private static final int END = ReaderSource.END;
+
+  /**
+   * Amount of text which is scanned before it is moved out of the window.
+   */
+  private static final int CHUNK_SIZE = 1024;
+
+  private static final String PUNCTUATION = "()[]{}?:.,|=";
+
+  private final Syntax syntax;
+
+  private final boolean newLineTrimming;
+
+  private final int bufferSize;
+
+  /**
+   * The operators sorted by length, longest first, to match "is not" over "is".
+   */
+  private final String[] operators;
+
+  /**
+   * Whether the operator at the same index ends with a letter and therefore must not be followed
+   * by another word character, so that "organization" is not read as the operator "or".
+   */
+  private final boolean[] wordOperators;
+
+  private enum State {
+    DATA, EXECUTE, PRINT, COMMENT, STRING, STRING_INTERPOLATION
+  }
+
+  /**
+   * Constructor
+   *
+   * @param syntax The primary syntax, see {@link #supports(Syntax)}
+   * @param unaryOperators The available unary operators
+   * @param binaryOperators The available binary operators
+   */
+  public StreamingLexer(Syntax syntax, Collection<UnaryOperator> unaryOperators,
+      Collection<BinaryOperator> binaryOperators) {
+    this(syntax, unaryOperators, binaryOperators, ReaderSource.DEFAULT_CAPACITY);
+  }
+
+  StreamingLexer(Syntax syntax, Collection<UnaryOperator> unaryOperators,
+      Collection<BinaryOperator> binaryOperators, int bufferSize) {
+    if (!supports(syntax)) {
+      throw new IllegalArgumentException("The syntax is not supported by the streaming lexer");
+    }
+    this.syntax = syntax;
+    this.newLineTrimming = syntax.isEnableNewLineTrimming();
+    this.bufferSize = bufferSize;
+
+    List<String> symbols = new ArrayList<>();
+    for (UnaryOperator operator : unaryOperators) {
+      symbols.add(operator.getSymbol());
+    }
+    for (BinaryOperator operator : binaryOperators) {
+      symbols.add(operator.getSymbol());
+    }
+    symbols.sort(StringLengthComparator.INSTANCE);
+
+    this.operators = symbols.toArray(new String[0]);
+    this.wordOperators = new boolean[this.operators.length];
+    for (int i = 0; i < this.operators.length; i++) {
+      char lastChar = this.operators[i].charAt(this.operators[i].length() - 1);
+      this.wordOperators[i] = Character.isLetter(lastChar)
+          || Character.getType(lastChar) == Character.LETTER_NUMBER;
+    }
+  }
+
+  /**
+   * Checks whether the delimiters of a syntax can be scanned without the regular expressions of
+   * {@link LexerImpl}. They must not be empty and must not start with whitespace.
+   *
+   * @param syntax The syntax
+   * @return Whether this lexer can be used with the syntax
+   */
+  public static boolean supports(Syntax syntax) {
+    String[] delimiters = {syntax.getCommentOpenDelimiter(), syntax.getCommentCloseDelimiter(),
+        syntax.getExecuteOpenDelimiter(), syntax.getExecuteCloseDelimiter(),
+        syntax.getPrintOpenDelimiter(), syntax.getPrintCloseDelimiter(),
+        syntax.getInterpolationOpenDelimiter(), syntax.getInterpolationCloseDelimiter(),
+        syntax.getWhitespaceTrim()};
+    for (String delimiter : delimiters) {
+      if (delimiter == null || delimiter.isEmpty() || isSpace(delimiter.charAt(0))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public TokenStream tokenize(Reader reader, String name) {
+    return this.tokenize(reader, name, 1);
+  }
+
+  @Override
+  public TokenStream tokenize(Reader reader, String name, int lineNumber) {
+    return new TokenStream(
+        new Scanner(new ReaderSource(reader, name, this.bufferSize, lineNumber)), name);
+  }
+
+  /**
+   * The characters matched by {@code \s} in a regular expression.
+   */
+  private static boolean isSpace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isWordCharacter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+  }
+
+  /**
+   * Removes the wrapping quotes of a string literal and un-escapes the quotes within it.
+   */
+  private static String unquoteAndUnescape(String str) {
+    char quotationType = str.charAt(0);
+    int end = str.length() - 1;
+    int backslash = str.indexOf('\\', 1);
+    if (backslash < 0 || backslash >= end) {
+      return str.substring(1, end);
+    }
+    StringBuilder builder = new StringBuilder(end);
+    for (int i = 1; i < end; i++) {
+      char c = str.charAt(i);
+      if (c == '\\' && i + 1 < end && str.charAt(i + 1) == quotationType) {
+        c = quotationType;
+        i++;
+      }
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * The state of a single tokenization. Every call to {@link #next()} scans as much of the
+   * template as is needed to produce the next token.
+   */
+  private final class Scanner implements Iterator<Token> {
+
+    private final ReaderSource source;
+
+    private final Deque<Token> tokens = new ArrayDeque<>();
+
+    /**
+     * The brackets we are currently inside, innermost first, together with the line they were
+     * opened on. Double quotes count as brackets.
+     */
+    private final LinkedList<Pair<String, Integer>> brackets = new LinkedList<>();
+
+    private final Deque<State> states = new ArrayDeque<>();
+
+    /**
+     * Set when an end delimiter was preceded by the whitespace trim character, the next text token
+     * gets its leading whitespace removed.
+     */
+    private boolean trimLeadingWhitespaceFromNextData = false;
+
+    private boolean finished = false;
+
+    /**
+     * Whether the last "endverbatim" tag matched by {@link #matchVerbatimEnd(int)} had a leading
+     * or trailing whitespace trim character.
+     */
+    private boolean verbatimEndLeadingTrim;
+
+    private boolean verbatimEndTrailingTrim;
+
+    Scanner(ReaderSource source) {
+      this.source = source;
+      this.states.push(State.DATA);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (this.tokens.isEmpty() && !this.finished) {
+        this.scan();
+      }
+      return !this.tokens.isEmpty();
+    }
+
+    @Override
+    public Token next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return this.tokens.poll();
+    }
+
+    private void scan() {
+      if (this.source.isEmpty()) {
+        // make sure that all brackets have been closed, else throw an error
+        if (!this.brackets.isEmpty()) {
+          String expected = this.brackets.pop().getLeft();
+          throw new ParserException(null, String.format("Unclosed \"%s\"", expected),
+              this.source.getLineNumber(), this.source.getFilename());
+        }
+        this.pushToken(Type.EOF, null);
+        this.states.pop();
+        this.finished = true;
+        return;
+      }
+      switch (this.states.peek()) {
+        case DATA:
+          this.tokenizeData();
+          break;
+        case EXECUTE:
+          this.tokenizeBetweenDelimiters(StreamingLexer.this.syntax.getExecuteCloseDelimiter(),
+              Type.EXECUTE_END);
+          break;
+        case PRINT:
+          this.tokenizeBetweenDelimiters(StreamingLexer.this.syntax.getPrintCloseDelimiter(),
+              Type.PRINT_END);
+          break;
+        case COMMENT:
+          this.tokenizeComment();
+          break;
+        case STRING:
+          this.tokenizeString();
+          break;
+        case STRING_INTERPOLATION:
+          this.tokenizeStringInterpolation();
+          break;
+        default:
+          break;
+      }
+    }
+
+    /**
+     * Reads text up to the next start delimiter.
+     */
+    private void tokenizeData() {
+      Syntax syntax = StreamingLexer.this.syntax;
+      char printStart = syntax.getPrintOpenDelimiter().charAt(0);
+      char executeStart = syntax.getExecuteOpenDelimiter().charAt(0);
+      char commentStart = syntax.getCommentOpenDelimiter().charAt(0);
+
+      StringBuilder builder = null;
+      String startDelimiter = null;
+      int index = 0;
+      int c;
+      while ((c = this.source.peek(index)) != END) {
+        if ((c == printStart || c == executeStart || c == commentStart)
+            && (startDelimiter = this.startDelimiterAt(index)) != null) {
+          break;
+        }
+        if (++index == CHUNK_SIZE) {
+          if (builder == null) {
+            builder = new StringBuilder(CHUNK_SIZE << 1);
+          }
+          this.source.appendTo(builder, index);
+          this.source.advance(index);
+          index = 0;
+        }
+      }
+
+      String text;
+      if (builder == null) {
+        text = this.source.substring(0, index);
+      } else {
+        this.source.appendTo(builder, index);
+        text = builder.toString();
+      }
+      this.source.advance(index);
+      if (startDelimiter != null) {
+        this.source.advance(startDelimiter.length());
+      }
+
+      if (this.trimLeadingWhitespaceFromNextData) {
+        text = StringUtils.ltrim(text);
+        this.trimLeadingWhitespaceFromNextData = false;
+      }
+      Token textToken = this.pushToken(Type.TEXT, text);
+
+      if (startDelimiter == null) {
+        return;
+      }
+      this.checkForLeadingWhitespaceTrim(textToken);
+      if (syntax.getCommentOpenDelimiter().equals(startDelimiter)) {
+        // we don't actually push any tokens for comments
+        this.states.push(State.COMMENT);
+      } else if (syntax.getPrintOpenDelimiter().equals(startDelimiter)) {
+        this.pushToken(Type.PRINT_START, null);
+        this.states.push(State.PRINT);
+      } else {
+        int verbatimStartEnd = this.matchVerbatimStart();
+        if (verbatimStartEnd >= 0) {
+          this.tokenizeVerbatim(verbatimStartEnd);
+        } else {
+          this.pushToken(Type.EXECUTE_START, null);
+          this.states.push(State.EXECUTE);
+        }
+      }
+    }
+
+    private String startDelimiterAt(int index) {
+      Syntax syntax = StreamingLexer.this.syntax;
+      if (this.source.startsWith(syntax.getPrintOpenDelimiter(), index)) {
+        return syntax.getPrintOpenDelimiter();
+      } else if (this.source.startsWith(syntax.getExecuteOpenDelimiter(), index)) {
+        return syntax.getExecuteOpenDelimiter();
+      } else if (this.source.startsWith(syntax.getCommentOpenDelimiter(), index)) {
+        return syntax.getCommentOpenDelimiter();
+      }
+      return null;
+    }
+
+    /**
+     * Tokenizes between execute or print delimiters.
+     */
+    private void tokenizeBetweenDelimiters(String closeDelimiter, Type endType) {
+      Syntax syntax = StreamingLexer.this.syntax;
+      String whitespaceTrim = syntax.getWhitespaceTrim();
+      int index = this.skipSpaces(0);
+
+      // check for the trailing whitespace trim character
+      if (this.source.startsWith(whitespaceTrim, index)) {
+        int afterTrim = index + whitespaceTrim.length();
+        if (this.source.startsWith(syntax.getPrintCloseDelimiter(), afterTrim)
+            || this.source.startsWith(syntax.getExecuteCloseDelimiter(), afterTrim)
+            || this.source.startsWith(syntax.getCommentCloseDelimiter(), afterTrim)) {
+          this.trimLeadingWhitespaceFromNextData = true;
+        }
+      }
+
+      // check if we are at the closing delimiter
+      if (this.brackets.isEmpty()) {
+        int end = this.matchClose(index, closeDelimiter);
+        if (end >= 0) {
+          this.pushToken(endType, closeDelimiter);
+          this.source.advance(end);
+          this.states.pop();
+          return;
+        }
+      }
+      this.tokenizeExpression();
+    }
+
+    /**
+     * Skips to the end of the comment. A comment that ends with the whitespace trim character
+     * trims the text which follows it.
+     */
+    private void tokenizeComment() {
+      String closeDelimiter = StreamingLexer.this.syntax.getCommentCloseDelimiter();
+      String whitespaceTrim = StreamingLexer.this.syntax.getWhitespaceTrim();
+      int lineNumber = this.source.getLineNumber();
+      // the characters needed to look for the whitespace trim character stay in the window
+      int tail = whitespaceTrim.length() + 1;
+
+      int index = 0;
+      while (!this.source.startsWith(closeDelimiter, index)) {
+        if (this.source.peek(index) == END) {
+          throw new ParserException(null, "Unclosed comment.", lineNumber,
+              this.source.getFilename());
+        }
+        if (++index == CHUNK_SIZE) {
+          this.source.advance(index - tail);
+          index = tail;
+        }
+      }
+
+      if (this.endsWithWhitespaceTrim(index, whitespaceTrim)) {
+        this.trimLeadingWhitespaceFromNextData = true;
+      }
+
+      // move cursor to end of comment (and closing delimiter)
+      this.source.advance(this.skipNewline(index + closeDelimiter.length()));
+      this.states.pop();
+    }
+
+    /**
+     * Checks whether the comment ending at the given index ends with whitespace followed by the
+     * whitespace trim character. The trim character is compared in reverse, like the regular
+     * expression applied to the reversed comment by {@link LexerImpl} does.
+     */
+    private boolean endsWithWhitespaceTrim(int end, String whitespaceTrim) {
+      int length = whitespaceTrim.length();
+      if (end < length + 1) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (this.source.peek(end - 1 - i) != whitespaceTrim.charAt(i)) {
+          return false;
+        }
+      }
+      return isSpace(this.source.peek(end - 1 - length));
+    }
+
+    private void tokenizeString() {
+      Syntax syntax = StreamingLexer.this.syntax;
+      // interpolation
+      if (this.source.startsWith(syntax.getInterpolationOpenDelimiter(), 0)) {
+        this.brackets.push(
+            new Pair<>(syntax.getInterpolationOpenDelimiter(), this.source.getLineNumber()));
+        this.pushToken(Type.STRING_INTERPOLATION_START, null);
+        this.source.advance(syntax.getInterpolationOpenDelimiter().length());
+        this.states.push(State.STRING_INTERPOLATION);
+        return;
+      }
+
+      // regular string part, up to an interpolation or the end of the string
+      int index = 0;
+      for (int c = this.source.peek(index); c != END && c != '"';
+          c = this.source.peek(index)) {
+        int next = this.source.peek(index + 1);
+        if ((c == '\\' && next == END) || (c == '#' && next == '{')) {
+          break;
+        }
+        index += c == '\\' ? 2 : 1;
+      }
+      if (index > 0) {
+        String token = this.source.substring(0, index);
+        this.source.advance(index);
+        this.pushToken(Type.STRING, token);
+        return;
+      }
+
+      // end of string (which may have contained interpolation)
+      String expected = this.brackets.pop().getLeft();
+      if (this.source.peek(0) != '"') {
+        throw new ParserException(null, String.format("Unclosed \"%s\"", expected),
+            this.source.getLineNumber(), this.source.getFilename());
+      }
+      this.states.pop();
+      this.source.advance(1);
+    }
+
+    private void tokenizeStringInterpolation() {
+      String openDelimiter = StreamingLexer.this.syntax.getInterpolationOpenDelimiter();
+      String closeDelimiter = StreamingLexer.this.syntax.getInterpolationCloseDelimiter();
+      if (openDelimiter.equals(this.brackets.peek().getLeft())) {
+        int index = this.skipSpaces(0);
+        if (this.source.startsWith(closeDelimiter, index)) {
+          this.brackets.pop();
+          this.pushToken(Type.STRING_INTERPOLATION_END, null);
+          this.source.advance(index + closeDelimiter.length());
+          this.states.pop();
+          return;
+        }
+      }
+      this.tokenizeExpression();
+    }
+
+    /**
+     * Tokenizing an expression which can be found within both execute and print regions.
+     */
+    private void tokenizeExpression() {
+      this.source.advanceThroughWhitespace();
+      int c = this.source.peek(0);
+      if (c == END) {
+        throw new ParserException(null, "Unexpected end of template",
+            this.source.getLineNumber(), this.source.getFilename());
+      }
+
+      // operators
+      String operator = this.matchOperator(c);
+      if (operator != null) {
+        this.pushToken(Type.OPERATOR, operator);
+        this.source.advance(operator.length());
+        return;
+      }
+
+      // names
+      int length = this.matchIdentifier(c);
+      if (length > 0) {
+        this.pushToken(Type.NAME, this.source.substring(0, length));
+        this.source.advance(length);
+        return;
+      }
+
+      // long and numbers
+      if (isDigit(c)) {
+        length = 1;
+        while (isDigit(this.source.peek(length))) {
+          length++;
+        }
+        if (this.source.peek(length) == 'L') {
+          this.pushToken(Type.LONG, this.source.substring(0, length));
+          this.source.advance(length + 1);
+          return;
+        }
+        if (this.source.peek(length) == '.' && isDigit(this.source.peek(length + 1))) {
+          length += 2;
+          while (isDigit(this.source.peek(length))) {
+            length++;
+          }
+        }
+        this.pushToken(Type.NUMBER, this.source.substring(0, length));
+        this.source.advance(length);
+        return;
+      }
+
+      // punctuation
+      if (PUNCTUATION.indexOf(c) >= 0) {
+        String character = String.valueOf((char) c);
+        if ("([{".indexOf(c) >= 0) {
+          this.brackets.push(new Pair<>(character, this.source.getLineNumber()));
+        } else if (")]}".indexOf(c) >= 0) {
+          if (this.brackets.isEmpty()) {
+            throw new ParserException(null, "Unexpected \"" + character + "\"",
+                this.source.getLineNumber(), this.source.getFilename());
+          }
+          String lastBracket = this.brackets.pop().getLeft();
+          int pair = "([{".indexOf(lastBracket);
+          String expected = pair < 0 ? lastBracket : String.valueOf(")]}".charAt(pair));
+          if (!expected.equals(character)) {
+            throw new ParserException(null, "Unclosed \"" + expected + "\"",
+                this.source.getLineNumber(), this.source.getFilename());
+          }
+        }
+        this.pushToken(Type.PUNCTUATION, character);
+        this.source.advance(1);
+        return;
+      }
+
+      // plain (non-interpolated) string
+      length = this.matchPlainString(c);
+      if (length > 0) {
+        String token = this.source.substring(0, length);
+        this.source.advance(length);
+        this.pushToken(Type.STRING, unquoteAndUnescape(token));
+        return;
+      }
+
+      // interpolated strings
+      if (c == '"') {
+        this.brackets.push(new Pair<>("\"", this.source.getLineNumber()));
+        this.states.push(State.STRING);
+        this.source.advance(1);
+        return;
+      }
+
+      // we should have found something and returned by this point
+      throw new ParserException(null, String.format("Unexpected character [%s]", (char) c),
+          this.source.getLineNumber(), this.source.getFilename());
+    }
+
+    private String matchOperator(int c) {
+      String[] operators = StreamingLexer.this.operators;
+      for (int i = 0; i < operators.length; i++) {
+        String operator = operators[i];
+        if (operator.charAt(0) == c && this.source.startsWith(operator, 0)
+            && !(StreamingLexer.this.wordOperators[i]
+            && isWordCharacter(this.source.peek(operator.length())))) {
+          return operator;
+        }
+      }
+      return null;
+    }
+
+    private int matchIdentifier(int c) {
+      int codePoint = this.codePointAt(0, c);
+      if (codePoint != '_' && !Character.isLetter(codePoint)) {
+        return 0;
+      }
+      int length = Character.charCount(codePoint);
+      while ((c = this.source.peek(length)) != END) {
+        codePoint = this.codePointAt(length, c);
+        if (codePoint != '_' && !Character.isLetter(codePoint) && !Character.isDigit(codePoint)) {
+          break;
+        }
+        length += Character.charCount(codePoint);
+      }
+      return length;
+    }
+
+    private int codePointAt(int index, int c) {
+      if (Character.isHighSurrogate((char) c)) {
+        int low = this.source.peek(index + 1);
+        if (low != END && Character.isLowSurrogate((char) low)) {
+          return Character.toCodePoint((char) c, (char) low);
+        }
+      }
+      return c;
+    }
+
+    /**
+     * Matches a single quoted string or a double quoted string without interpolation, ignoring
+     * escaped quotation marks.
+     *
+     * @return The length of the string including the quotes, or 0
+     */
+    private int matchPlainString(int quote) {
+      if (quote != '"' && quote != '\'') {
+        return 0;
+      }
+      int index = 1;
+      int c;
+      while ((c = this.source.peek(index)) != END) {
+        if (c == quote) {
+          return index + 1;
+        } else if (c == '\\') {
+          if (this.source.peek(index + 1) == END) {
+            return 0;
+          }
+          index += 2;
+        } else if (c == '#' && quote == '"') {
+          return 0;
+        } else {
+          index++;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Matches an optional whitespace trim character, the close delimiter and, if enabled, a
+     * newline.
+     *
+     * @return The index after the match, or -1
+     */
+    private int matchClose(int index, String closeDelimiter) {
+      String whitespaceTrim = StreamingLexer.this.syntax.getWhitespaceTrim();
+      if (this.source.startsWith(whitespaceTrim, index)
+          && this.source.startsWith(closeDelimiter, index + whitespaceTrim.length())) {
+        return this.skipNewline(index + whitespaceTrim.length() + closeDelimiter.length());
+      }
+      if (this.source.startsWith(closeDelimiter, index)) {
+        return this.skipNewline(index + closeDelimiter.length());
+      }
+      return -1;
+    }
+
+    /**
+     * Matches the rest of a "verbatim" tag after the execute open delimiter.
+     *
+     * @return The index after the tag, or -1
+     */
+    private int matchVerbatimStart() {
+      int index = this.skipSpaces(0);
+      if (!this.source.startsWith("verbatim", index)) {
+        return -1;
+      }
+      return this.matchClose(this.skipSpaces(index + "verbatim".length()),
+          StreamingLexer.this.syntax.getExecuteCloseDelimiter());
+    }
+
+    /**
+     * Matches an "endverbatim" tag starting at the given index.
+     *
+     * @return The index after the tag, or -1
+     */
+    private int matchVerbatimEnd(int index) {
+      Syntax syntax = StreamingLexer.this.syntax;
+      String whitespaceTrim = syntax.getWhitespaceTrim();
+      if (!this.source.startsWith(syntax.getExecuteOpenDelimiter(), index)) {
+        return -1;
+      }
+      index += syntax.getExecuteOpenDelimiter().length();
+      int afterTrim = this.source.startsWith(whitespaceTrim, index)
+          ? this.skipSpaces(index + whitespaceTrim.length()) : -1;
+      if (afterTrim >= 0 && this.source.startsWith("endverbatim", afterTrim)) {
+        this.verbatimEndLeadingTrim = true;
+        index = afterTrim;
+      } else {
+        index = this.skipSpaces(index);
+        if (!this.source.startsWith("endverbatim", index)) {
+          return -1;
+        }
+        this.verbatimEndLeadingTrim = false;
+      }
+      index = this.skipSpaces(index + "endverbatim".length());
+      this.verbatimEndTrailingTrim = this.source.startsWith(whitespaceTrim, index)
+          && this.source.startsWith(syntax.getExecuteCloseDelimiter(),
+          index + whitespaceTrim.length());
+      return this.matchClose(index, syntax.getExecuteCloseDelimiter());
+    }
+
+    /**
+     * Implementation of the "verbatim" tag, everything up to the "endverbatim" tag becomes a
+     * single text token.
+     */
+    private void tokenizeVerbatim(int verbatimStartEnd) {
+      this.source.advance(verbatimStartEnd);
+      int lineNumber = this.source.getLineNumber();
+      char executeStart = StreamingLexer.this.syntax.getExecuteOpenDelimiter().charAt(0);
+
+      StringBuilder builder = new StringBuilder();
+      int index = 0;
+      int end;
+      while (true) {
+        int c = this.source.peek(index);
+        if (c == END) {
+          throw new ParserException(null, "Unclosed verbatim tag.", lineNumber,
+              this.source.getFilename());
+        }
+        if (c == executeStart && (end = this.matchVerbatimEnd(index)) >= 0) {
+          break;
+        }
+        if (++index == CHUNK_SIZE) {
+          this.source.appendTo(builder, index);
+          this.source.advance(index);
+          index = 0;
+        }
+      }
+      this.source.appendTo(builder, index);
+
+      // the text after the verbatim start tag is always left trimmed
+      String verbatimText = StringUtils.ltrim(builder.toString());
+      if (this.verbatimEndLeadingTrim) {
+        verbatimText = StringUtils.rtrim(verbatimText);
+      }
+      if (this.verbatimEndTrailingTrim) {
+        this.trimLeadingWhitespaceFromNextData = true;
+      }
+
+      // move cursor past the verbatim text and end delimiter
+      this.source.advance(end);
+      this.pushToken(Type.TEXT, verbatimText);
+    }
+
+    private void checkForLeadingWhitespaceTrim(Token leadingToken) {
+      String whitespaceTrim = StreamingLexer.this.syntax.getWhitespaceTrim();
+      int length = whitespaceTrim.length();
+      if (this.source.startsWith(whitespaceTrim, 0) && isSpace(this.source.peek(length))) {
+        if (leadingToken != null) {
+          leadingToken.setValue(StringUtils.rtrim(leadingToken.getValue()));
+        }
+        this.source.advance(this.skipSpaces(length + 1));
+      }
+    }
+
+    private int skipSpaces(int index) {
+      while (isSpace(this.source.peek(index))) {
+        index++;
+      }
+      return index;
+    }
+
+    /**
+     * Skips a newline after a tag if newline trimming is enabled.
+     */
+    private int skipNewline(int index) {
+      if (!StreamingLexer.this.newLineTrimming) {
+        return index;
+      }
+      int c = this.source.peek(index);
+      if (c == '\r' || c == '\n') {
+        int next = this.source.peek(index + 1);
+        return (next == '\r' || next == '\n') && next != c ? index + 2 : index + 1;
+      }
+      if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return index + 1;
+      }
+      return index;
+    }
+
+    /**
+     * Creates a token and queues it, empty text tokens are ignored.
+     */
+    private Token pushToken(Type type, String value) {
+      if (type == Type.TEXT && (value == null || value.isEmpty())) {
+        return null;
+      }
+      Token token = new Token(type, value, this.source.getLineNumber());
+      this.tokens.add(token);
+      return token;
+    }
+  }
+}
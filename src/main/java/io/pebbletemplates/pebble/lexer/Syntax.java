@@ -29,6 +29,8 @@ public final class Syntax {
 
   private final String whitespaceTrim;
 
+  private final boolean enableNewLineTrimming;
+
   /**
    * The regular expressions used to find the different delimiters
    */
@@ -71,6 +73,7 @@ public final class Syntax {
     this.whitespaceTrim = whitespaceTrim;
     this.delimiterInterpolationClose = delimiterInterpolationClose;
     this.delimiterInterpolationOpen = delimiterInterpolationOpen;
+    this.enableNewLineTrimming = enableNewLineTrimming;
 
     // Do we trim the newline following a tag?
     String newlineRegexSuffix = enableNewLineTrimming ? POSSIBLE_NEW_LINE : "";
@@ -163,6 +166,10 @@ public final class Syntax {
     return whitespaceTrim;
   }
 
+  boolean isEnableNewLineTrimming() {
+    return enableNewLineTrimming;
+  }
+
   Pattern getRegexPrintClose() {
     return regexPrintClose;
   }
@@ -0,0 +1,497 @@
+package io.pebbletemplates.pebble.lexer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * Splits the source of a template into segments which can be tokenized and parsed on their own,
+ * such that parsing the segments one after the other gives the same nodes as parsing the whole
+ * source. Segments end at the top level of the template: around each block and macro definition
+ * and at the start of a line once a segment has {@link #SEGMENT_LINES} lines. A segment never
+ * ends where whitespace control would trim text across the end.
+ * <p>
+ * The delimiters are scanned with the same rules as {@link LexerImpl}. Tags which have a matching
+ * end tag somewhere in the source are considered to enclose a body, whatever their name is. A
+ * source which can not be scanned, for example because of an unclosed comment, is a single
+ * segment; its errors are reported by the lexer.
+ */
+public final class TemplateSegmenter {
+
+  /**
+   * The number of lines from which a segment may end at the start of a line.
+   */
+  static final int SEGMENT_LINES = 50;
+
+  private final Syntax syntax;
+
+  private final int segmentLines;
+
+  public TemplateSegmenter(Syntax syntax) {
+    this(syntax, SEGMENT_LINES);
+  }
+
+  TemplateSegmenter(Syntax syntax, int segmentLines) {
+    this.syntax = syntax;
+    this.segmentLines = segmentLines;
+  }
+
+  /**
+   * Splits a source into segments.
+   *
+   * @param source The source of the template
+   * @return The segments, which together cover the whole source in order
+   */
+  public List<Segment> split(String source) {
+    List<Construct> constructs = new Scanner(source).scan();
+    if (constructs == null) {
+      return Collections.singletonList(new Segment(0, source.length(), 1));
+    }
+
+    Set<String> enclosing = new HashSet<>();
+    for (Construct construct : constructs) {
+      if (construct.tag != null && construct.tag.startsWith("end") && construct.tag.length() > 3) {
+        enclosing.add(construct.tag.substring(3));
+      }
+    }
+
+    Cutter cutter = new Cutter(source);
+    int depth = 0;
+    boolean inDefinition = false;
+    Construct previous = null;
+    for (Construct construct : constructs) {
+      int gapStart = previous == null ? 0 : previous.end;
+      if (depth == 0) {
+        this.cutAtLineStarts(source, cutter, gapStart, construct, previous);
+      }
+      if (construct.tag == null) {
+        previous = construct;
+        continue;
+      }
+      if (depth == 0 && isDefinition(construct.tag)) {
+        int start = construct.start;
+        if (construct.leadingTrim) {
+          // the trimmed whitespace goes with the tag which trims it
+          while (start > gapStart && Character.isWhitespace(source.charAt(start - 1))) {
+            start--;
+          }
+        }
+        cutter.cut(start);
+        inDefinition = true;
+      }
+
+      if (construct.tag.startsWith("end") && enclosing.contains(construct.tag.substring(3))) {
+        depth--;
+      } else if (enclosing.contains(construct.tag)) {
+        depth++;
+      }
+      if (depth < 0) {
+        return Collections.singletonList(new Segment(0, source.length(), 1));
+      }
+
+      if (inDefinition && depth == 0) {
+        int end = construct.end;
+        if (construct.trailingTrim) {
+          end = skipWhitespace(source, end);
+        }
+        cutter.cut(end);
+        inDefinition = false;
+      }
+      previous = construct;
+    }
+    int gapStart = previous == null ? 0 : previous.end;
+    if (depth == 0) {
+      this.cutAtLineStarts(source, cutter, gapStart, null, previous);
+    }
+    cutter.cut(source.length());
+    if (cutter.segments.isEmpty()) {
+      cutter.segments.add(new Segment(0, source.length(), 1));
+    }
+    return cutter.segments;
+  }
+
+  /**
+   * Ends the current segment at the start of a line of the text before a construct if it is long
+   * enough and no whitespace control reaches across that line start.
+   */
+  private void cutAtLineStarts(String source, Cutter cutter, int gapStart, Construct next,
+      Construct previous) {
+    int gapEnd = next == null ? source.length() : next.start;
+    // the text before the first and after the last non whitespace character may be trimmed
+    int textStart = previous != null && previous.trailingTrim
+        ? Math.min(skipWhitespace(source, gapStart), gapEnd) : gapStart;
+    int textEnd = gapEnd;
+    if (next != null && next.leadingTrim) {
+      while (textEnd > textStart && Character.isWhitespace(source.charAt(textEnd - 1))) {
+        textEnd--;
+      }
+    }
+    for (int i = Math.max(Math.max(textStart, cutter.start + 1), 1); i <= textEnd; i++) {
+      if (isLineStart(source, i) && (i > textStart || textStart == gapStart)
+          && (i < textEnd || textEnd == gapEnd)
+          && cutter.lineAt(i) - cutter.startLine >= this.segmentLines) {
+        cutter.cut(i);
+      }
+    }
+  }
+
+  private static boolean isDefinition(String tag) {
+    return "block".equals(tag) || "macro".equals(tag);
+  }
+
+  private static boolean isLineStart(String source, int index) {
+    char previous = source.charAt(index - 1);
+    if (previous == '\r') {
+      return index == source.length() || source.charAt(index) != '\n';
+    }
+    return isNewline(previous);
+  }
+
+  private static boolean isNewline(char character) {
+    return character == '\n' || character == '\r' || character == '\u0085'
+        || character == '\u2028' || character == '\u2029';
+  }
+
+  private static int skipWhitespace(String source, int index) {
+    while (index < source.length() && Character.isWhitespace(source.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * A part of a template source.
+   */
+  public static final class Segment {
+
+    private final int start;
+
+    private final int end;
+
+    private final int lineNumber;
+
+    Segment(int start, int end, int lineNumber) {
+      this.start = start;
+      this.end = end;
+      this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return The index of the first character of the segment
+     */
+    public int getStart() {
+      return this.start;
+    }
+
+    /**
+     * @return The index after the last character of the segment
+     */
+    public int getEnd() {
+      return this.end;
+    }
+
+    /**
+     * @return The line the segment starts on, as counted by the lexer
+     */
+    public int getLineNumber() {
+      return this.lineNumber;
+    }
+
+    @Override
+    public String toString() {
+      return "Segment[" + this.start + ", " + this.end + ") at line " + this.lineNumber;
+    }
+  }
+
+  /**
+   * Collects the segments and counts the lines the way the lexer does.
+   */
+  private static class Cutter {
+
+    private final String source;
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    private int start = 0;
+
+    private int startLine = 1;
+
+    private int countedTo = 0;
+
+    private int countedLines = 1;
+
+    Cutter(String source) {
+      this.source = source;
+    }
+
+    void cut(int end) {
+      if (end > this.start) {
+        this.segments.add(new Segment(this.start, end, this.startLine));
+        this.startLine = this.lineAt(end);
+        this.start = end;
+      }
+    }
+
+    int lineAt(int index) {
+      if (index < this.countedTo) {
+        // not expected, the indexes only grow
+        this.countedTo = 0;
+        this.countedLines = 1;
+      }
+      int i = this.countedTo;
+      while (i < index) {
+        char character = this.source.charAt(i);
+        if (character == '\r' && i + 1 < this.source.length()
+            && this.source.charAt(i + 1) == '\n') {
+          if (i + 1 == index) {
+            // the middle of a windows newline, which is counted once it is passed
+            break;
+          }
+          this.countedLines++;
+          i += 2;
+        } else {
+          if (isNewline(character)) {
+            this.countedLines++;
+          }
+          i++;
+        }
+      }
+      this.countedTo = i;
+      return this.countedLines;
+    }
+  }
+
+  /**
+   * A comment, print or execute delimited part of the source, or a verbatim tag with its content.
+   */
+  private static class Construct {
+
+    private final int start;
+
+    private final int end;
+
+    /**
+     * The name of the tag of an execute delimited construct.
+     */
+    private final String tag;
+
+    private final boolean leadingTrim;
+
+    private final boolean trailingTrim;
+
+    Construct(int start, int end, String tag, boolean leadingTrim, boolean trailingTrim) {
+      this.start = start;
+      this.end = end;
+      this.tag = tag;
+      this.leadingTrim = leadingTrim;
+      this.trailingTrim = trailingTrim;
+    }
+  }
+
+  private class Scanner {
+
+    private final String source;
+
+    private boolean trailingTrim;
+
+    Scanner(String source) {
+      this.source = source;
+    }
+
+    /**
+     * Returns the constructs of the source, or null if it can not be scanned.
+     */
+    List<Construct> scan() {
+      Syntax syntax = TemplateSegmenter.this.syntax;
+      List<Construct> constructs = new ArrayList<>();
+      Matcher leadingTrim = syntax.getRegexLeadingWhitespaceTrim().matcher(this.source);
+      int start = this.findStartDelimiter(0);
+      while (start >= 0) {
+        String delimiter = this.startDelimiterAt(start);
+        int position = start + delimiter.length();
+
+        leadingTrim.region(position, this.source.length());
+        boolean trimsBefore = leadingTrim.lookingAt();
+        if (trimsBefore) {
+          position = leadingTrim.end();
+        }
+
+        Construct construct;
+        if (delimiter.equals(syntax.getCommentOpenDelimiter())) {
+          construct = this.scanComment(start, position, trimsBefore);
+        } else if (delimiter.equals(syntax.getPrintOpenDelimiter())) {
+          int end = this.skipExpression(position, syntax.getPrintCloseDelimiter());
+          construct = end < 0 ? null : new Construct(start, this.skipNewline(end), null,
+              trimsBefore, this.trailingTrim);
+        } else {
+          construct = this.scanExecute(start, position, trimsBefore);
+        }
+        if (construct == null) {
+          return null;
+        }
+        constructs.add(construct);
+        start = this.findStartDelimiter(construct.end);
+      }
+      return constructs;
+    }
+
+    /**
+     * Finds the next start delimiter the same way as the {@link StreamingLexer}.
+     *
+     * @return The index of the delimiter, or -1 if there is none
+     */
+    private int findStartDelimiter(int index) {
+      Syntax syntax = TemplateSegmenter.this.syntax;
+      char printStart = syntax.getPrintOpenDelimiter().charAt(0);
+      char executeStart = syntax.getExecuteOpenDelimiter().charAt(0);
+      char commentStart = syntax.getCommentOpenDelimiter().charAt(0);
+      for (; index < this.source.length(); index++) {
+        char character = this.source.charAt(index);
+        if ((character == printStart || character == executeStart || character == commentStart)
+            && this.startDelimiterAt(index) != null) {
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    private String startDelimiterAt(int index) {
+      Syntax syntax = TemplateSegmenter.this.syntax;
+      if (this.source.startsWith(syntax.getPrintOpenDelimiter(), index)) {
+        return syntax.getPrintOpenDelimiter();
+      } else if (this.source.startsWith(syntax.getExecuteOpenDelimiter(), index)) {
+        return syntax.getExecuteOpenDelimiter();
+      } else if (this.source.startsWith(syntax.getCommentOpenDelimiter(), index)) {
+        return syntax.getCommentOpenDelimiter();
+      }
+      return null;
+    }
+
+    private Construct scanComment(int start, int position, boolean trimsBefore) {
+      Matcher close = TemplateSegmenter.this.syntax.getRegexCommentClose().matcher(this.source);
+      if (!close.find(position)) {
+        return null;
+      }
+      // the same check as the lexer: the comment ends with the trim character
+      String comment = new StringBuilder(this.source.substring(position, close.start()))
+          .reverse().toString();
+      boolean trimsAfter = TemplateSegmenter.this.syntax.getRegexLeadingWhitespaceTrim()
+          .matcher(comment).lookingAt();
+      return new Construct(start, close.end(), null, trimsBefore, trimsAfter);
+    }
+
+    private Construct scanExecute(int start, int position, boolean trimsBefore) {
+      Syntax syntax = TemplateSegmenter.this.syntax;
+      int nameStart = skipWhitespace(this.source, position);
+      int nameEnd = nameStart;
+      while (nameEnd < this.source.length()
+          && (Character.isLetterOrDigit(this.source.charAt(nameEnd))
+          || this.source.charAt(nameEnd) == '_')) {
+        nameEnd++;
+      }
+      String tag = this.source.substring(nameStart, nameEnd);
+
+      if ("verbatim".equals(tag)) {
+        Matcher verbatimStart = syntax.getRegexVerbatimStart().matcher(this.source)
+            .region(position, this.source.length());
+        if (verbatimStart.lookingAt()) {
+          Matcher verbatimEnd = syntax.getRegexVerbatimEnd().matcher(this.source);
+          if (!verbatimEnd.find(verbatimStart.end())) {
+            return null;
+          }
+          return new Construct(start, verbatimEnd.end(), null, trimsBefore,
+              verbatimEnd.group(2) != null);
+        }
+      }
+
+      int end = this.skipExpression(nameEnd, syntax.getExecuteCloseDelimiter());
+      if (end < 0) {
+        return null;
+      }
+      return new Construct(start, this.skipNewline(end), tag, trimsBefore, this.trailingTrim);
+    }
+
+    /**
+     * Skips an expression up to its closing delimiter, outside of strings and brackets.
+     *
+     * @return The index after the closing delimiter, or -1 if there is none
+     */
+    private int skipExpression(int index, String close) {
+      String trim = TemplateSegmenter.this.syntax.getWhitespaceTrim();
+      char trimStart = trim.charAt(0);
+      char closeStart = close.charAt(0);
+      int brackets = 0;
+      while (index < this.source.length()) {
+        char character = this.source.charAt(index);
+        if (brackets == 0 && (character == trimStart || character == closeStart)) {
+          if (this.source.startsWith(trim, index)
+              && this.source.startsWith(close, index + trim.length())) {
+            this.trailingTrim = true;
+            return index + trim.length() + close.length();
+          }
+          if (this.source.startsWith(close, index)) {
+            this.trailingTrim = false;
+            return index + close.length();
+          }
+        }
+        if (character == '"' || character == '\'') {
+          index = this.skipString(index);
+          if (index < 0) {
+            return -1;
+          }
+          continue;
+        }
+        if (character == '(' || character == '[' || character == '{') {
+          brackets++;
+        } else if (character == ')' || character == ']' || character == '}') {
+          brackets--;
+        }
+        index++;
+      }
+      return -1;
+    }
+
+    private int skipString(int index) {
+      String interpolationOpen = TemplateSegmenter.this.syntax.getInterpolationOpenDelimiter();
+      char quote = this.source.charAt(index++);
+      while (index < this.source.length()) {
+        char character = this.source.charAt(index);
+        if (character == '\\') {
+          index += 2;
+        } else if (character == quote) {
+          return index + 1;
+        } else if (quote == '"' && this.source.startsWith(interpolationOpen, index)) {
+          index = this.skipExpression(index + interpolationOpen.length(),
+              TemplateSegmenter.this.syntax.getInterpolationCloseDelimiter());
+          if (index < 0) {
+            return -1;
+          }
+        } else {
+          index++;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Skips the newline which the lexer removes after a closing delimiter.
+     */
+    private int skipNewline(int index) {
+      if (!TemplateSegmenter.this.syntax.isEnableNewLineTrimming()
+          || index >= this.source.length()) {
+        return index;
+      }
+      char character = this.source.charAt(index);
+      if ((character == '\r' || character == '\n') && index + 1 < this.source.length()) {
+        char next = this.source.charAt(index + 1);
+        if ((next == '\r' || next == '\n') && next != character) {
+          return index + 2;
+        }
+      }
+      return isNewline(character) ? index + 1 : index;
+    }
+  }
+}
@@ -57,7 +57,20 @@ public class TemplateSource implements CharSequence {
    * @throws IOException Exceptions thrown from the reader
    */
   public TemplateSource(Reader reader, String filename) throws IOException {
+    this(reader, filename, 1);
+  }
+
+  /**
+   * Constructor for a part of a template.
+   *
+   * @param reader Reader of the part of the template
+   * @param filename Filename of the template
+   * @param lineNumber The line number of the first line of the part
+   * @throws IOException Exceptions thrown from the reader
+   */
+  public TemplateSource(Reader reader, String filename, int lineNumber) throws IOException {
     this.filename = filename;
+    this.lineNumber = lineNumber;
     this.source = new char[DEFAULT_CAPACITY];
     copyReaderIntoCharArray(reader);
   }
@@ -12,6 +12,7 @@ import io.pebbletemplates.pebble.error.ParserException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 
 public class TokenStream {
 
@@ -21,6 +22,11 @@ public class TokenStream {
 
   private String filename;
 
+  /**
+   * The tokens which have not been produced yet, null once all of them are in the list.
+   */
+  private Iterator<Token> pending;
+
   /**
    * Constructor for a Token Stream
    *
@@ -33,13 +39,26 @@ public class TokenStream {
     this.filename = name;
   }
 
+  /**
+   * Constructor for a Token Stream whose tokens are produced on demand, as far as the stream has
+   * been looked at.
+   *
+   * @param tokens The tokens, ending with the EOF token
+   * @param name The filename of the template that these tokens came from
+   */
+  public TokenStream(Iterator<Token> tokens, String name) {
+    this.pending = tokens;
+    this.current = 0;
+    this.filename = name;
+  }
+
   /**
    * Consumes and returns the next token in the stream.
    *
    * @return The next token
    */
   public Token next() {
-    return this.tokens.get(++this.current);
+    return this.get(++this.current);
   }
 
   /**
@@ -62,7 +81,7 @@ public class TokenStream {
    * @return Token The current token
    */
   public Token expect(Token.Type type, String value) {
-    Token token = this.tokens.get(this.current);
+    Token token = this.get(this.current);
 
     boolean success = value == null ? token.test(type) : token.test(type, value);
 
@@ -92,11 +111,11 @@ public class TokenStream {
    * @return The token we are peeking at
    */
   public Token peek(int number) {
-    return this.tokens.get(this.current + number);
+    return this.get(this.current + number);
   }
 
   public boolean isEOF() {
-    return this.tokens.get(this.current).getType().equals(Token.Type.EOF);
+    return this.get(this.current).getType().equals(Token.Type.EOF);
   }
 
   @Override
@@ -110,7 +129,7 @@ public class TokenStream {
    * @return Token The current token
    */
   public Token current() {
-    return this.tokens.get(this.current);
+    return this.get(this.current);
   }
 
   public String getFilename() {
@@ -123,6 +142,27 @@ public class TokenStream {
    * @return List of tokens
    */
   public ArrayList<Token> getTokens() {
+    this.fill(Integer.MAX_VALUE);
     return this.tokens;
   }
+
+  private Token get(int index) {
+    if (index >= this.tokens.size()) {
+      this.fill(index);
+    }
+    return this.tokens.get(index);
+  }
+
+  /**
+   * Produces pending tokens until the given index is available or no tokens are left.
+   */
+  private void fill(int index) {
+    while (this.pending != null && index >= this.tokens.size()) {
+      if (this.pending.hasNext()) {
+        this.tokens.add(this.pending.next());
+      } else {
+        this.pending = null;
+      }
+    }
+  }
 }
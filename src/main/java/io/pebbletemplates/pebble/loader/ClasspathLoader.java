@@ -14,18 +14,22 @@ import io.pebbletemplates.pebble.utils.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Uses a classloader to find templates located on the classpath.
  *
  * @author mbosecke
  */
-public class ClasspathLoader implements Loader<String> {
+public class ClasspathLoader implements ContentLoader<String> {
 
   private static final Logger logger = LoggerFactory.getLogger(ClasspathLoader.class);
 
@@ -49,23 +53,35 @@ public class ClasspathLoader implements Loader<String> {
 
   @Override
   public Reader getReader(String templateName) {
+    return this.getContent(templateName).openReader();
+  }
+
+  /**
+   * Reads the bytes of the template at once, they are decoded while the template is tokenized.
+   */
+  @Override
+  public TemplateContent getContent(String templateName) {
     String location = this.getLocation(templateName);
 
     logger.debug("Looking for template in {}.", location);
 
-    // perform the lookup
-    InputStream is = this.rcl.getResourceAsStream(location);
-
-    if (is == null) {
-      throw new LoaderException(null, "Could not find template \"" + location + "\"");
-    }
-
-    try {
-      return new BufferedReader(new InputStreamReader(is, this.charset));
-    } catch (UnsupportedEncodingException e) {
+    try (InputStream is = this.rcl.getResourceAsStream(location)) {
+      if (is == null) {
+        throw new LoaderException(null, "Could not find template \"" + location + "\"");
+      }
+      byte[] bytes = new byte[Math.max(is.available(), 1024 * 4)];
+      int size = 0;
+      int read;
+      while ((read = is.read(bytes, size, bytes.length - size)) != -1) {
+        size += read;
+        if (size == bytes.length) {
+          bytes = Arrays.copyOf(bytes, bytes.length << 1);
+        }
+      }
+      return TemplateContent.of(ByteBuffer.wrap(bytes, 0, size), Charset.forName(this.charset));
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not read template \"" + location + "\"");
     }
-
-    return null;
   }
 
   private String getLocation(String templateName) {
@@ -129,4 +145,21 @@ public class ClasspathLoader implements Loader<String> {
   public boolean resourceExists(String templateName) {
     return this.rcl.getResource(this.getLocation(templateName)) != null;
   }
+
+  /**
+   * Returns the version of a template which is a file in a directory of the classpath, such as the
+   * output directory of the IDE during development, and null for any other template.
+   */
+  @Override
+  public Object getVersion(String templateName) {
+    URL url = this.rcl.getResource(this.getLocation(templateName));
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      return FileLoader.version(new File(url.toURI()));
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+  }
 }
@@ -0,0 +1,29 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.loader;
+
+/**
+ * Implemented by loaders which are able to hand over the content of a template as it is held,
+ * such as a String or a memory-mapped file, rather than wrapped in buffered readers. Their {@link
+ * #getReader(Object)} returns the {@link TemplateContent#openReader() reader of the content}, which
+ * keeps loaders overriding it working while the engine reads the content without copies.
+ *
+ * @param <T> The type of the cache key
+ */
+public interface ContentLoader<T> extends Loader<T> {
+
+  /**
+   * Returns the content of a template.
+   *
+   * @param cacheKey The cache key of the template, as given by {@link #createCacheKey(String)}
+   * @return The content of the template
+   * @throws io.pebbletemplates.pebble.error.LoaderException If the template can not be found
+   */
+  TemplateContent getContent(T cacheKey);
+}
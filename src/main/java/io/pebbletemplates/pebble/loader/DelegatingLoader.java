@@ -10,19 +10,31 @@ package io.pebbletemplates.pebble.loader;
 
 import io.pebbletemplates.pebble.error.LoaderException;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
 
 /**
  * This loader will delegate control to a list of children loaders. This is the default
  * implementation used by Pebble; it delegates to a classpath loader and a file loader to increase
  * the chances of finding templates with varying setups.
+ * <p>
+ * With resolution caching, the loader remembers which child loader found each template, or that
+ * none of them did, and goes straight to it the next time the template is compiled. A template
+ * which is no longer found where it was is looked up again, but a template which appears in a
+ * child loader afterwards requires {@link #invalidate(String)} or {@link #invalidateAll()}.
  *
  * @author mbosecke
  */
-public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
+public class DelegatingLoader implements ContentLoader<DelegatingLoaderCacheKey>, ListableLoader {
 
   private String prefix;
 
@@ -37,40 +49,114 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
    */
   private final List<Loader<?>> loaders;
 
+  /**
+   * Number of templates remembered as not found.
+   */
+  private static final int MAX_MISSING_ENTRIES = 1000;
+
+  /**
+   * The index of the loader which found each template, or null without resolution caching.
+   */
+  private final ConcurrentMap<String, Integer> resolutions;
+
+  /**
+   * The templates which none of the loaders found, or null without resolution caching. The names
+   * can come from the templates' data, so it is emptied when it is full.
+   */
+  private final Set<String> missing;
+
   /**
    * Constructor provided with a list of children loaders.
    *
    * @param loaders A list of loaders to delegate to
    */
   public DelegatingLoader(List<Loader<?>> loaders) {
+    this(loaders, false);
+  }
+
+  /**
+   * Constructor provided with a list of children loaders.
+   *
+   * @param loaders A list of loaders to delegate to
+   * @param cacheResolutions Whether to remember which loader found each template
+   */
+  public DelegatingLoader(List<Loader<?>> loaders, boolean cacheResolutions) {
     this.loaders = Collections.unmodifiableList(new ArrayList<>(loaders));
+    this.resolutions = cacheResolutions ? new ConcurrentHashMap<>() : null;
+    this.missing = cacheResolutions ? ConcurrentHashMap.newKeySet() : null;
   }
 
 
   @Override
   public Reader getReader(DelegatingLoaderCacheKey cacheKey) {
+    return this.load(cacheKey, this::getReaderInner);
+  }
 
-    Reader reader = null;
+  private <R> R load(DelegatingLoaderCacheKey cacheKey,
+      BiFunction<Loader<?>, Object, R> loadFunction) {
+    String templateName = cacheKey.getTemplateName();
+    if (this.missing != null && this.missing.contains(templateName)) {
+      throw new LoaderException(null, "Could not find template \"" + templateName + "\"");
+    }
+    Integer resolution = this.resolutions == null ? null : this.resolutions.get(templateName);
+    if (resolution != null) {
+      R result = this.loadFrom(resolution, cacheKey, loadFunction);
+      if (result != null) {
+        return result;
+      }
+      // it has been moved or removed
+      this.resolutions.remove(templateName, resolution);
+    }
 
     final int size = this.loaders.size();
     for (int i = 0; i < size; i++) {
-      Loader<?> loader = this.loaders.get(i);
-      Object delegatingKey = cacheKey.getDelegatingCacheKeys().get(i);
-      try {
-        reader = this.getReaderInner(loader, delegatingKey);
-        if (reader != null) {
-          break;
+      R result = this.loadFrom(i, cacheKey, loadFunction);
+      if (result != null) {
+        if (this.resolutions != null) {
+          this.resolutions.put(templateName, i);
         }
-      } catch (LoaderException e) {
-        // do nothing
+        return result;
       }
     }
-    if (reader == null) {
-      throw new LoaderException(null,
-          "Could not find template \"" + cacheKey.getTemplateName() + "\"");
+    if (this.missing != null) {
+      if (this.missing.size() >= MAX_MISSING_ENTRIES) {
+        this.missing.clear();
+      }
+      this.missing.add(templateName);
     }
+    throw new LoaderException(null, "Could not find template \"" + templateName + "\"");
+  }
 
-    return reader;
+  private <R> R loadFrom(int index, DelegatingLoaderCacheKey cacheKey,
+      BiFunction<Loader<?>, Object, R> loadFunction) {
+    try {
+      return loadFunction.apply(this.loaders.get(index),
+          cacheKey.getDelegatingCacheKeys().get(index));
+    } catch (LoaderException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Forgets which loader found a template, or that none did.
+   *
+   * @param templateName The name of the template
+   */
+  public void invalidate(String templateName) {
+    if (this.resolutions != null) {
+      this.resolutions.remove(templateName);
+      this.missing.remove(templateName);
+    }
+  }
+
+  /**
+   * Forgets which loader found each template.
+   */
+  public void invalidateAll() {
+    if (this.resolutions != null) {
+      this.resolutions.clear();
+      this.missing.clear();
+    }
   }
 
   private <T> Reader getReaderInner(Loader<T> delegatingLoader, Object cacheKey) {
@@ -83,6 +169,62 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
     return delegatingLoader.getReader(castedKey);
   }
 
+  /**
+   * Returns the content given by the first loader which finds the template. The template of a
+   * loader which does not return the reader of a {@link TemplateContent} is read into a String.
+   */
+  @Override
+  public TemplateContent getContent(DelegatingLoaderCacheKey cacheKey) {
+    return this.load(cacheKey, this::getContentInner);
+  }
+
+  private <T> TemplateContent getContentInner(Loader<T> delegatingLoader, Object cacheKey) {
+
+    // see getReaderInner
+    @SuppressWarnings("unchecked")
+    T castedKey = (T) cacheKey;
+
+    Reader reader = delegatingLoader.getReader(castedKey);
+    if (reader == null) {
+      return null;
+    }
+    TemplateContent templateContent = TemplateContent.fromReader(reader);
+    if (templateContent != null) {
+      return templateContent;
+    }
+    try {
+      StringBuilder content = new StringBuilder();
+      char[] buffer = new char[1024 * 4];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        content.append(buffer, 0, read);
+      }
+      return TemplateContent.of(content.toString());
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not read template \"" + castedKey + "\"");
+    } finally {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // can't do much about it
+      }
+    }
+  }
+
+  /**
+   * Lists the templates of all children loaders which are able to list them.
+   */
+  @Override
+  public Collection<String> getTemplateNames() {
+    Set<String> names = new LinkedHashSet<>();
+    for (Loader<?> loader : this.loaders) {
+      if (loader instanceof ListableLoader) {
+        names.addAll(((ListableLoader) loader).getTemplateNames());
+      }
+    }
+    return names;
+  }
+
   public String getSuffix() {
     return this.suffix;
   }
@@ -90,6 +232,7 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
   @Override
   public void setSuffix(String suffix) {
     this.suffix = suffix;
+    this.invalidateAll();
     for (Loader<?> loader : this.loaders) {
       loader.setSuffix(suffix);
     }
@@ -102,6 +245,7 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
   @Override
   public void setPrefix(String prefix) {
     this.prefix = prefix;
+    this.invalidateAll();
     for (Loader<?> loader : this.loaders) {
       loader.setPrefix(prefix);
     }
@@ -153,4 +297,35 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
     }
     return false;
   }
+
+  /**
+   * Returns the version of the template given by the first loader which has it, which is the
+   * loader {@link #getReader(DelegatingLoaderCacheKey)} reads it from.
+   */
+  @Override
+  public Object getVersion(DelegatingLoaderCacheKey cacheKey) {
+    Integer resolution =
+        this.resolutions == null ? null : this.resolutions.get(cacheKey.getTemplateName());
+    if (resolution != null) {
+      return this.getVersionInner(this.loaders.get(resolution),
+          cacheKey.getDelegatingCacheKeys().get(resolution));
+    }
+    final int size = this.loaders.size();
+    for (int i = 0; i < size; i++) {
+      Loader<?> loader = this.loaders.get(i);
+      if (loader.resourceExists(cacheKey.getTemplateName())) {
+        return this.getVersionInner(loader, cacheKey.getDelegatingCacheKeys().get(i));
+      }
+    }
+    return null;
+  }
+
+  private <T> Object getVersionInner(Loader<T> delegatingLoader, Object cacheKey) {
+
+    // see getReaderInner
+    @SuppressWarnings("unchecked")
+    T castedKey = (T) cacheKey;
+
+    return delegatingLoader.getVersion(castedKey);
+  }
 }
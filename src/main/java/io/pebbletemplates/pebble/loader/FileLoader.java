@@ -14,22 +14,31 @@ import io.pebbletemplates.pebble.utils.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This loader searches for a file located anywhere on the filesystem. It uses java.io.File to
- * perform the lookup.
+ * perform the lookup. As a {@link ContentLoader}, files are read at once, or mapped into memory
+ * from a size on if a memory mapping threshold is set.
  *
  * @author mbosecke
  */
-public class FileLoader implements Loader<String> {
+public class FileLoader implements ContentLoader<String>, ListableLoader {
 
   private static final Logger logger = LoggerFactory.getLogger(FileLoader.class);
 
@@ -39,32 +48,42 @@ public class FileLoader implements Loader<String> {
 
   private String charset = "UTF-8";
 
+  private long memoryMappingThreshold = Long.MAX_VALUE;
+
   @Override
   public Reader getReader(String templateName) {
-    // try to load File
-    InputStream is = null;
-    File file = this.getFile(templateName);
-    if (file.exists() && file.isFile()) {
-      try {
-        is = new FileInputStream(file);
-      } catch (FileNotFoundException e) {
-      }
-    }
+    return this.getContent(templateName).openReader();
+  }
 
-    if (is == null) {
+  @Override
+  public TemplateContent getContent(String templateName) {
+    File file = this.getFile(templateName);
+    if (!file.isFile()) {
       throw new LoaderException(null,
           "Could not find template \"" + templateName + "\"");
     }
-
-    try {
-      return new BufferedReader(new InputStreamReader(is, this.charset));
-    } catch (UnsupportedEncodingException e) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer bytes;
+      if (size >= this.memoryMappingThreshold) {
+        // the mapping stays valid after the channel is closed
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      }
+      return TemplateContent.of(bytes, Charset.forName(this.charset));
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not read template \"" + templateName + "\"");
     }
-
-    return null;
   }
 
-  private File getFile(String templateName) {
+  /**
+   * Returns the file a template is read from, whether it exists or not.
+   *
+   * @param templateName The name of the template
+   * @return The file of the template
+   */
+  public File getFile(String templateName) {
     // add the prefix and ensure the prefix ends with a separator character
     StringBuilder path = new StringBuilder();
     if (this.getPrefix() != null) {
@@ -99,6 +118,35 @@ public class FileLoader implements Loader<String> {
     return new File(path.toString(), templateName);
   }
 
+  /**
+   * Lists the files below the prefix directory which end with the suffix. Nothing is listed
+   * without a prefix.
+   */
+  @Override
+  public Collection<String> getTemplateNames() {
+    if (this.getPrefix() == null) {
+      return Collections.emptyList();
+    }
+    Path root = Paths.get(this.getPrefix());
+    if (!Files.isDirectory(root)) {
+      return Collections.emptyList();
+    }
+    String suffix = this.getSuffix() == null ? "" : this.getSuffix();
+    List<String> names = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(root)) {
+      for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        String name = root.relativize(file).toString().replace(File.separatorChar, '/');
+        if (name.endsWith(suffix)) {
+          names.add(name.substring(0, name.length() - suffix.length()));
+        }
+      }
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not list the templates in \"" + root + "\"");
+    }
+    Collections.sort(names);
+    return names;
+  }
+
   public String getSuffix() {
     return this.suffix;
   }
@@ -126,6 +174,27 @@ public class FileLoader implements Loader<String> {
     this.charset = charset;
   }
 
+  public long getMemoryMappingThreshold() {
+    return this.memoryMappingThreshold;
+  }
+
+  /**
+   * Sets the size in bytes from which files are mapped into memory rather than read. Files are never
+   * mapped by default. Mapping a file costs more than reading a small one, but its content is then
+   * neither copied into the heap nor through the buffers of a Reader.
+   * <p>
+   * A mapped file stays mapped until the buffer is garbage collected. On Windows the file is locked
+   * meanwhile, so it can't be saved or replaced, which defeats reloading template caches. On any
+   * system, truncating a mapped file while the template is being read fails with an {@link
+   * InternalError} rather than a {@link LoaderException}. Only map files which don't change while
+   * the application runs.
+   *
+   * @param memoryMappingThreshold The size in bytes
+   */
+  public void setMemoryMappingThreshold(long memoryMappingThreshold) {
+    this.memoryMappingThreshold = memoryMappingThreshold;
+  }
+
   @Override
   public String resolveRelativePath(String relativePath, String anchorPath) {
     return PathUtils.resolveRelativePath(relativePath, anchorPath, File.separatorChar);
@@ -140,4 +209,18 @@ public class FileLoader implements Loader<String> {
   public boolean resourceExists(String templateName) {
     return this.getFile(templateName).exists();
   }
+
+  /**
+   * Returns the last modification time and the length of the file, or null if there is no such
+   * file.
+   */
+  @Override
+  public Object getVersion(String templateName) {
+    return version(this.getFile(templateName));
+  }
+
+  static String version(File file) {
+    long lastModified = file.lastModified();
+    return lastModified == 0L ? null : lastModified + ":" + file.length();
+  }
 }
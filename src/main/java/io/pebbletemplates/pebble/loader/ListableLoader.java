@@ -0,0 +1,29 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.loader;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Implemented by loaders which are able to list the templates they can load. This allows {@link
+ * PebbleEngine#warmUp(ExecutorService)} to compile all of them before they are first used.
+ */
+public interface ListableLoader {
+
+  /**
+   * Lists the templates of this loader.
+   *
+   * @return The names of the templates, as they would be passed to {@link
+   * PebbleEngine#getTemplate(String)}
+   */
+  Collection<String> getTemplateNames();
+}
@@ -103,4 +103,16 @@ public interface Loader<T> {
   T createCacheKey(String templateName);
 
   boolean resourceExists(String templateName);
+
+  /**
+   * Returns a value which changes whenever the source of a template changes, such as its last
+   * modification time or a hash of its content. It is used to find out whether a cached template
+   * is outdated, the value itself has no meaning.
+   *
+   * @param cacheKey The cache key of the template
+   * @return The version, or null if the loader can not tell
+   */
+  default Object getVersion(T cacheKey) {
+    return null;
+  }
 }
\ No newline at end of file
@@ -3,38 +3,92 @@ package io.pebbletemplates.pebble.loader;
 import io.pebbletemplates.pebble.error.LoaderException;
 
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class MemoryLoader implements Loader<String> {
-    private final List<TemplateDefinition> templateDefinitions = new ArrayList<>();
+/**
+ * Holds templates in memory, indexed by their name. Templates may be added, replaced and removed
+ * while the engine is in use; a template which has already been compiled is only affected once
+ * the template cache is invalidated.
+ */
+public class MemoryLoader implements ContentLoader<String>, ListableLoader {
+    private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
 
     @Override
     public Reader getReader(String templateName) {
-        String content = "";
-        for (TemplateDefinition templateDefinition : this.templateDefinitions) {
-            if (templateDefinition.templateName.equals(templateName)) {
-                content = templateDefinition.content;
-                break;
-            }
-        }
+        return this.getContent(templateName).openReader();
+    }
 
-        if (content.isEmpty()) {
+    /**
+     * Returns the content of the template as it was added.
+     */
+    @Override
+    public TemplateContent getContent(String templateName) {
+        String content = this.templates.get(templateName);
+        if (content == null || content.isEmpty()) {
             throw new LoaderException(null, "Could not find template \"" + templateName + "\"");
         }
-
-        return new StringReader(content);
+        return TemplateContent.of(content);
     }
 
+    /**
+     * Adds a template. A template which has already been added under the same name is kept, see
+     * {@link #replaceTemplate(String, String)}.
+     *
+     * @param templateName The name of the template
+     * @param content The content of the template
+     */
     public void addTemplate(String templateName, String content) {
+        checkTemplate(templateName, content);
+        this.templates.putIfAbsent(templateName, content);
+    }
+
+    /**
+     * Adds a template or replaces the content of the template with the same name.
+     *
+     * @param templateName The name of the template
+     * @param content The new content of the template
+     * @return The previous content, or null if there was no such template
+     */
+    public String replaceTemplate(String templateName, String content) {
+        checkTemplate(templateName, content);
+        return this.templates.put(templateName, content);
+    }
+
+    /**
+     * Removes a template.
+     *
+     * @param templateName The name of the template
+     * @return The content of the removed template, or null if there was no such template
+     */
+    public String removeTemplate(String templateName) {
+        if (templateName == null) {
+            throw new IllegalArgumentException("templateName cannot be null");
+        }
+        return this.templates.remove(templateName);
+    }
+
+    private static void checkTemplate(String templateName, String content) {
         if (templateName == null) {
             throw new IllegalArgumentException("templateName cannot be null");
         }
         if (content == null) {
             throw new IllegalArgumentException("content cannot be null");
         }
-        this.templateDefinitions.add(new TemplateDefinition(templateName, content));
+    }
+
+    /**
+     * Lists the names of the templates in alphabetical order.
+     */
+    @Override
+    public Collection<String> getTemplateNames() {
+        List<String> names = new ArrayList<>(this.templates.keySet());
+        Collections.sort(names);
+        return names;
     }
 
     @Override
@@ -54,6 +108,14 @@ public class MemoryLoader implements Loader<String> {
         return relativePath; // hierarchy is flat
     }
 
+    /**
+     * Returns the content of the template.
+     */
+    @Override
+    public Object getVersion(String templateName) {
+        return this.templates.get(templateName);
+    }
+
     @Override
     public String createCacheKey(String templateName) {
         return templateName;
@@ -61,22 +123,6 @@ public class MemoryLoader implements Loader<String> {
 
     @Override
     public boolean resourceExists(String templateName) {
-        for (TemplateDefinition templateDefinition : this.templateDefinitions) {
-            if (templateDefinition.templateName.equals(templateName)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static class TemplateDefinition {
-        public final String templateName;
-        public final String content;
-
-        public TemplateDefinition(String templateName,
-                                  String content) {
-            this.templateName = templateName;
-            this.content = content;
-        }
+        return this.templates.containsKey(templateName);
     }
 }
@@ -9,18 +9,22 @@
 package io.pebbletemplates.pebble.loader;
 
 import java.io.Reader;
-import java.io.StringReader;
 
 /**
  * This loader is not intended to be used in a production system; it is primarily for testing and
  * debugging. Many tags do not work when using this loader, such as "extends", "imports",
  * "include".
  */
-public class StringLoader implements Loader<String> {
+public class StringLoader implements ContentLoader<String> {
 
   @Override
   public Reader getReader(String templateName) {
-    return new StringReader(templateName);
+    return this.getContent(templateName).openReader();
+  }
+
+  @Override
+  public TemplateContent getContent(String templateName) {
+    return TemplateContent.of(templateName);
   }
 
   @Override
@@ -0,0 +1,225 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.loader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The content of a template as returned by a {@link ContentLoader}: either characters, such as a
+ * String or a CharBuffer, or bytes with their charset, such as a memory-mapped file. The content is
+ * read through {@link #openReader()}, which reads straight from the characters or decodes straight
+ * from the bytes into the buffer of the lexer, without any intermediate buffer. The loaders return
+ * such a reader from {@link Loader#getReader(Object)}, so that the engine can get the content back
+ * with {@link #fromReader(Reader)}.
+ */
+public final class TemplateContent {
+
+  private final CharSequence characters;
+
+  private final ByteBuffer bytes;
+
+  private final Charset charset;
+
+  private TemplateContent(CharSequence characters, ByteBuffer bytes, Charset charset) {
+    this.characters = characters;
+    this.bytes = bytes;
+    this.charset = charset;
+  }
+
+  /**
+   * Creates the content of a template from its characters. They must not change while the
+   * template is being read.
+   *
+   * @param characters The characters, typically a String or a CharBuffer
+   * @return The content
+   */
+  public static TemplateContent of(CharSequence characters) {
+    if (characters == null) {
+      throw new IllegalArgumentException("characters cannot be null");
+    }
+    return new TemplateContent(characters, null, null);
+  }
+
+  /**
+   * Creates the content of a template from its encoded bytes, from the position to the limit of
+   * the buffer. The buffer itself is not modified when the content is read.
+   *
+   * @param bytes The bytes, for example a memory-mapped file
+   * @param charset The charset to decode the bytes with
+   * @return The content
+   */
+  public static TemplateContent of(ByteBuffer bytes, Charset charset) {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes cannot be null");
+    }
+    if (charset == null) {
+      throw new IllegalArgumentException("charset cannot be null");
+    }
+    return new TemplateContent(null, bytes, charset);
+  }
+
+  /**
+   * Returns the content a reader was opened on.
+   *
+   * @param reader A reader
+   * @return The content, or null if the reader was not opened by {@link #openReader()}
+   */
+  public static TemplateContent fromReader(Reader reader) {
+    return reader instanceof ContentReader ? ((ContentReader) reader).content : null;
+  }
+
+  /**
+   * Returns the characters of the template, or null if the content is made of bytes.
+   *
+   * @return The characters
+   */
+  public CharSequence getCharacters() {
+    return this.characters;
+  }
+
+  /**
+   * Returns the bytes of the template, or null if the content is made of characters.
+   *
+   * @return A read-only view of the bytes
+   */
+  public ByteBuffer getBytes() {
+    return this.bytes == null ? null : this.bytes.asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns the charset of the bytes, or null if the content is made of characters.
+   *
+   * @return The charset
+   */
+  public Charset getCharset() {
+    return this.charset;
+  }
+
+  /**
+   * Opens a new reader over the content. Malformed bytes are replaced, like {@link
+   * java.io.InputStreamReader} does.
+   *
+   * @return The reader
+   */
+  public Reader openReader() {
+    if (this.characters != null) {
+      return new CharSequenceReader(this);
+    }
+    return new ByteBufferReader(this);
+  }
+
+  /**
+   * Returns the whole content as a String, which is the String itself if the content was created
+   * from one.
+   */
+  @Override
+  public String toString() {
+    if (this.characters != null) {
+      return this.characters.toString();
+    }
+    return this.charset.decode(this.bytes.duplicate()).toString();
+  }
+
+  private abstract static class ContentReader extends Reader {
+
+    final TemplateContent content;
+
+    ContentReader(TemplateContent content) {
+      this.content = content;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class CharSequenceReader extends ContentReader {
+
+    private final CharSequence characters;
+
+    private int position = 0;
+
+    CharSequenceReader(TemplateContent content) {
+      super(content);
+      this.characters = content.characters;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      int length = this.characters.length();
+      if (this.position >= length) {
+        return -1;
+      }
+      int read = Math.min(len, length - this.position);
+      if (this.characters instanceof String) {
+        ((String) this.characters).getChars(this.position, this.position + read, cbuf, off);
+      } else if (this.characters instanceof CharBuffer) {
+        CharBuffer buffer = ((CharBuffer) this.characters).duplicate();
+        buffer.position(buffer.position() + this.position);
+        buffer.get(cbuf, off, read);
+      } else {
+        for (int i = 0; i < read; i++) {
+          cbuf[off + i] = this.characters.charAt(this.position + i);
+        }
+      }
+      this.position += read;
+      return read;
+    }
+  }
+
+  private static class ByteBufferReader extends ContentReader {
+
+    private final ByteBuffer bytes;
+
+    private final CharsetDecoder decoder;
+
+    private boolean flushing = false;
+
+    private boolean finished = false;
+
+    ByteBufferReader(TemplateContent content) {
+      super(content);
+      this.bytes = content.bytes.duplicate();
+      this.decoder = content.charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (this.finished) {
+        return -1;
+      }
+      CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+      if (!this.flushing) {
+        CoderResult result = this.decoder.decode(this.bytes, out, true);
+        if (result.isError()) {
+          result.throwException();
+        }
+        this.flushing = result.isUnderflow();
+      }
+      if (this.flushing) {
+        // only called once all the bytes have been decoded
+        this.finished = this.decoder.flush(out).isUnderflow();
+      }
+      int read = out.position() - off;
+      return read == 0 && this.finished ? -1 : read;
+    }
+  }
+}
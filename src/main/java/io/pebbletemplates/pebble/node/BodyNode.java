@@ -19,7 +19,7 @@ import java.util.List;
 
 public class BodyNode extends AbstractRenderableNode {
 
-  private final List<RenderableNode> children;
+  private List<RenderableNode> children;
 
   /**
    * When a template extends a parent template there are very few nodes in the child that should
@@ -27,6 +27,11 @@ public class BodyNode extends AbstractRenderableNode {
    */
   private boolean onlyRenderInheritanceSafeNodes = false;
 
+  /**
+   * An equivalent node generated from this body by the bytecode compiler, if any.
+   */
+  private RenderableNode compiledBody;
+
   public BodyNode(int lineNumber, List<RenderableNode> children) {
     super(lineNumber);
     this.children = children;
@@ -35,16 +40,39 @@ public class BodyNode extends AbstractRenderableNode {
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException {
+    if (this.compiledBody != null) {
+      this.compiledBody.render(self, writer, context);
+      return;
+    }
     for (RenderableNode child: this.children) {
-      if (this.onlyRenderInheritanceSafeNodes && context.getHierarchy().getParent() != null) {
-        if (!nodesToRenderInChild.contains(child.getClass())) {
-          continue;
-        }
+      if (!isInheritanceSafe(child) && this.isRenderingInheritanceSafeNodesOnly(context)) {
+        continue;
       }
       child.render(self, writer, context);
     }
   }
 
+  /**
+   * Checks whether nodes which are not inheritance safe must currently be skipped, i.e. whether
+   * this is the body of a child template that has a parent.
+   *
+   * @param context The evaluation context
+   * @return Whether only inheritance safe nodes are rendered
+   */
+  public boolean isRenderingInheritanceSafeNodesOnly(EvaluationContextImpl context) {
+    return this.onlyRenderInheritanceSafeNodes && context.getHierarchy().getParent() != null;
+  }
+
+  /**
+   * Checks whether a node is rendered in a child template, such as "set" and "import".
+   *
+   * @param node The node
+   * @return Whether the node is inheritance safe
+   */
+  public static boolean isInheritanceSafe(RenderableNode node) {
+    return nodesToRenderInChild.contains(node.getClass());
+  }
+
   @Override
   public void accept(NodeVisitor visitor) {
     visitor.visit(this);
@@ -54,6 +82,16 @@ public class BodyNode extends AbstractRenderableNode {
     return this.children;
   }
 
+  /**
+   * Replaces the children, typically by node visitors which optimize the body. The list is used as
+   * it is, it isn't copied.
+   *
+   * @param children The new children
+   */
+  public void setChildren(List<RenderableNode> children) {
+    this.children = children;
+  }
+
   public boolean isOnlyRenderInheritanceSafeNodes() {
     return this.onlyRenderInheritanceSafeNodes;
   }
@@ -62,6 +100,19 @@ public class BodyNode extends AbstractRenderableNode {
     this.onlyRenderInheritanceSafeNodes = onlyRenderInheritanceSafeNodes;
   }
 
+  public RenderableNode getCompiledBody() {
+    return this.compiledBody;
+  }
+
+  /**
+   * Sets a node which renders exactly like this body and is used instead of it from now on.
+   *
+   * @param compiledBody The compiled body
+   */
+  public void setCompiledBody(RenderableNode compiledBody) {
+    this.compiledBody = compiledBody;
+  }
+
   private static List<Class<? extends Node>> nodesToRenderInChild = new ArrayList<>();
 
   static {
@@ -12,13 +12,14 @@ import io.pebbletemplates.pebble.cache.CacheKey;
 import io.pebbletemplates.pebble.cache.PebbleCache;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.writer.BufferArena;
+import io.pebbletemplates.pebble.extension.writer.BufferWriter;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.utils.LimitedSizeWriter;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.concurrent.CompletionException;
 
@@ -44,6 +45,10 @@ public class CacheNode extends AbstractRenderableNode {
     visitor.visit(this);
   }
 
+  public BodyNode getBody() {
+    return this.body;
+  }
+
   @Override
   public void render(PebbleTemplateImpl self, Writer writer,
                      EvaluationContextImpl context) throws IOException {
@@ -67,9 +72,13 @@ public class CacheNode extends AbstractRenderableNode {
 
   private String render(final PebbleTemplateImpl self, final EvaluationContextImpl context)
       throws IOException {
-    Writer tempWriter = LimitedSizeWriter.from(new StringWriter(), context);
-    CacheNode.this.body.render(self, tempWriter, context);
-
-    return tempWriter.toString();
+    BufferArena buffers = context.getBufferArena();
+    BufferWriter buffer = buffers.borrow();
+    try {
+      CacheNode.this.body.render(self, LimitedSizeWriter.from(buffer, context), context);
+      return buffer.toString();
+    } finally {
+      buffers.release(buffer);
+    }
   }
 }
@@ -60,4 +60,12 @@ public class EmbedNode extends AbstractRenderableNode {
     visitor.visit(this);
   }
 
+  public Expression<?> getIncludeExpression() {
+    return this.includeExpression;
+  }
+
+  public List<BlockNode> getNodes() {
+    return this.nodes;
+  }
+
 }
@@ -14,8 +14,9 @@ import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.node.fornode.LazyLength;
 import io.pebbletemplates.pebble.node.fornode.LazyRevIndex;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameLayout;
+import io.pebbletemplates.pebble.template.FrameScope;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
-import io.pebbletemplates.pebble.template.ScopeChain;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -39,6 +40,15 @@ public class ForNode extends AbstractRenderableNode {
 
   private final BodyNode elseBody;
 
+  /**
+   * The layout of the frame pushed for every execution of the loop body.
+   */
+  private final FrameLayout frameLayout;
+
+  private final int variableSlot;
+
+  private final int loopSlot;
+
   public ForNode(int lineNumber, String variableName, Expression<?> iterableExpression,
       BodyNode body,
       BodyNode elseBody) {
@@ -47,6 +57,9 @@ public class ForNode extends AbstractRenderableNode {
     this.iterableExpression = iterableExpression;
     this.body = body;
     this.elseBody = elseBody;
+    this.frameLayout = new FrameLayout(variableName, "loop");
+    this.variableSlot = this.frameLayout.indexOf(variableName);
+    this.loopSlot = this.frameLayout.indexOf("loop");
   }
 
   public static class LoopVariables {
@@ -103,8 +116,8 @@ public class ForNode extends AbstractRenderableNode {
 
     if (iterator.hasNext()) {
 
-      ScopeChain scopeChain = context.getScopeChain();
-      scopeChain.pushScope();
+      FrameScope frame = new FrameScope(this.frameLayout, false);
+      context.getScopeChain().pushFrame(frame);
 
       LazyLength length = new LazyLength(iterableEvaluation);
 
@@ -134,8 +147,8 @@ public class ForNode extends AbstractRenderableNode {
 
         loop.revindex = new LazyRevIndex(index, length);
         loop.index = index++;
-        scopeChain.put("loop", loop);
-        scopeChain.put(this.variableName, iterator.next());
+        frame.setSlot(this.loopSlot, loop);
+        frame.setSlot(this.variableSlot, iterator.next());
 
         // last iteration
         if (!iterator.hasNext()) {
@@ -145,7 +158,7 @@ public class ForNode extends AbstractRenderableNode {
         this.body.render(self, writer, context);
       }
 
-      scopeChain.popScope();
+      context.getScopeChain().popScope();
 
     } else if (this.elseBody != null) {
       this.elseBody.render(self, writer, context);
@@ -174,6 +187,10 @@ public class ForNode extends AbstractRenderableNode {
     return this.elseBody;
   }
 
+  public FrameLayout getFrameLayout() {
+    return this.frameLayout;
+  }
+
   @SuppressWarnings({"unchecked", "rawtypes"})
   private Iterable<Object> toIterable(final Object obj) {
 
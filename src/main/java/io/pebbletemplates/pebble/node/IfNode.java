@@ -46,37 +46,7 @@ public class IfNode extends AbstractRenderableNode {
     boolean satisfied = false;
     for (Pair<Expression<?>, BodyNode> ifStatement: this.conditionsWithBodies) {
 
-      Expression<?> conditionalExpression = ifStatement.getLeft();
-
-      try {
-
-        Object result = conditionalExpression.evaluate(self, context);
-
-        if (result != null) {
-          if (result instanceof Boolean
-                  || result instanceof Number
-                  || result instanceof String) {
-            satisfied = TypeUtils.compatibleCast(result, Boolean.class);
-          } else {
-            throw new PebbleException(
-                      null,
-                      String.format(
-                              "Unsupported value type %s. Expected Boolean, String, Number in \"if\" statement",
-                              result.getClass().getSimpleName()),
-                      this.getLineNumber(),
-                      self.getName());
-          }
-
-        } else if (context.isStrictVariables()) {
-          throw new PebbleException(null,
-              "null value given to if statement and strict variables is set to true",
-              this.getLineNumber(), self.getName());
-        }
-
-      } catch (RuntimeException ex) {
-        throw new PebbleException(ex, "Wrong operand(s) type in conditional expression",
-            this.getLineNumber(), self.getName());
-      }
+      satisfied = this.isSatisfied(ifStatement.getLeft(), self, context);
 
       if (satisfied) {
         ifStatement.getRight().render(self, writer, context);
@@ -89,6 +59,50 @@ public class IfNode extends AbstractRenderableNode {
     }
   }
 
+  private boolean isSatisfied(Expression<?> conditionalExpression, PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
+    try {
+      return this.isSatisfied(conditionalExpression.evaluate(self, context), self, context);
+    } catch (RuntimeException ex) {
+      throw new PebbleException(ex, "Wrong operand(s) type in conditional expression",
+          this.getLineNumber(), self.getName());
+    }
+  }
+
+  /**
+   * Checks the value of a conditional expression. Compiled templates evaluate the expression
+   * themselves and wrap the exceptions of both like the interpreter does.
+   *
+   * @param result The value of the conditional expression
+   * @param self The template being rendered
+   * @param context The evaluation context
+   * @return Whether the condition is satisfied
+   */
+  public boolean isSatisfied(Object result, PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
+    if (result != null) {
+      if (result instanceof Boolean
+              || result instanceof Number
+              || result instanceof String) {
+        return TypeUtils.compatibleCast(result, Boolean.class);
+      } else {
+        throw new PebbleException(
+                  null,
+                  String.format(
+                          "Unsupported value type %s. Expected Boolean, String, Number in \"if\" statement",
+                          result.getClass().getSimpleName()),
+                  this.getLineNumber(),
+                  self.getName());
+      }
+
+    } else if (context.isStrictVariables()) {
+      throw new PebbleException(null,
+          "null value given to if statement and strict variables is set to true",
+          this.getLineNumber(), self.getName());
+    }
+    return false;
+  }
+
   @Override
   public void accept(NodeVisitor visitor) {
     visitor.visit(this);
@@ -9,15 +9,17 @@
 package io.pebbletemplates.pebble.node;
 
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.writer.BufferArena;
+import io.pebbletemplates.pebble.extension.writer.BufferWriter;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameLayout;
+import io.pebbletemplates.pebble.template.FrameScope;
 import io.pebbletemplates.pebble.template.Macro;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
-import io.pebbletemplates.pebble.template.ScopeChain;
 import io.pebbletemplates.pebble.utils.LimitedSizeWriter;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,10 +33,24 @@ public class MacroNode extends AbstractRenderableNode {
 
   private final BodyNode body;
 
+  /**
+   * The layout of the frame pushed for every call of the macro.
+   */
+  private FrameLayout frameLayout;
+
   public MacroNode(String name, ArgumentsNode args, BodyNode body) {
     this.name = name;
     this.args = args;
     this.body = body;
+    this.frameLayout = new FrameLayout(this.getArgumentNames());
+  }
+
+  private List<String> getArgumentNames() {
+    List<String> names = new ArrayList<>();
+    for (NamedArgumentNode arg: this.args.getNamedArgs()) {
+      names.add(arg.getName());
+    }
+    return names;
   }
 
   @Override
@@ -52,11 +68,7 @@ public class MacroNode extends AbstractRenderableNode {
 
       @Override
       public List<String> getArgumentNames() {
-        List<String> names = new ArrayList<>();
-        for (NamedArgumentNode arg: MacroNode.this.getArgs().getNamedArgs()) {
-          names.add(arg.getName());
-        }
-        return names;
+        return MacroNode.this.getArgumentNames();
       }
 
       @Override
@@ -67,42 +79,61 @@ public class MacroNode extends AbstractRenderableNode {
       @Override
       public String call(PebbleTemplateImpl self, EvaluationContextImpl context,
           Map<String, Object> macroArgs) {
-        Writer writer = LimitedSizeWriter.from(new StringWriter(), context);
-        ScopeChain scopeChain = context.getScopeChain();
+        BufferArena buffers = context.getBufferArena();
+        BufferWriter buffer = buffers.borrow();
+        try {
+          this.call(self, context, macroArgs, LimitedSizeWriter.from(buffer, context));
+          return buffer.toString();
+        } catch (IOException e) {
+          throw new RuntimeException("Could not evaluate macro [" + MacroNode.this.name + "]", e);
+        } finally {
+          buffers.release(buffer);
+        }
+      }
+
+      @Override
+      public void call(PebbleTemplateImpl self, EvaluationContextImpl context,
+          Map<String, Object> macroArgs, Writer writer) throws IOException {
+        // local frame for the default arguments, overridden by the user provided arguments
+        FrameScope frame = new FrameScope(MacroNode.this.frameLayout, true);
+        context.getScopeChain().pushFrame(frame);
 
-        // scope for default arguments
-        scopeChain.pushLocalScope();
-        
         // global vars provided by extensions
-        context.getExtensionRegistry().getGlobalVariables().forEach(scopeChain::put);
-        
+        context.getExtensionRegistry().getGlobalVariables().forEach(frame::put);
+
         for (NamedArgumentNode arg: MacroNode.this.getArgs().getNamedArgs()) {
           Expression<?> valueExpression = arg.getValueExpression();
           if (valueExpression == null) {
-            scopeChain.put(arg.getName(), null);
+            frame.put(arg.getName(), null);
           } else {
-            scopeChain.put(arg.getName(), arg.getValueExpression().evaluate(self, context));
+            frame.put(arg.getName(), arg.getValueExpression().evaluate(self, context));
           }
         }
 
-        // scope for user provided arguments
-        scopeChain.pushScope(macroArgs);
+        macroArgs.forEach(frame::put);
 
-        try {
-          MacroNode.this.getBody().render(self, writer, context);
-        } catch (IOException e) {
-          throw new RuntimeException("Could not evaluate macro [" + MacroNode.this.name + "]", e);
-        }
+        MacroNode.this.getBody().render(self, writer, context);
 
-        scopeChain.popScope(); // user arguments
-        scopeChain.popScope(); // default arguments
-
-        return writer.toString();
+        context.getScopeChain().popScope();
       }
 
     };
   }
 
+  public FrameLayout getFrameLayout() {
+    return this.frameLayout;
+  }
+
+  /**
+   * Replaces the frame layout, e.g. to give the variables set inside the macro body their own
+   * slots. The layout must contain all the argument names.
+   *
+   * @param frameLayout The new layout
+   */
+  public void setFrameLayout(FrameLayout frameLayout) {
+    this.frameLayout = frameLayout;
+  }
+
   public BodyNode getBody() {
     return this.body;
   }
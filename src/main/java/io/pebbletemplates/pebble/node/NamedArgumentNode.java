@@ -13,7 +13,7 @@ import io.pebbletemplates.pebble.node.expression.Expression;
 
 public class NamedArgumentNode implements Node {
 
-  private final Expression<?> value;
+  private Expression<?> value;
 
   private final String name;
 
@@ -31,6 +31,10 @@ public class NamedArgumentNode implements Node {
     return this.value;
   }
 
+  public void setValueExpression(Expression<?> value) {
+    this.value = value;
+  }
+
   public String getName() {
     return this.name;
   }
@@ -13,7 +13,7 @@ import io.pebbletemplates.pebble.node.expression.Expression;
 
 public class PositionalArgumentNode implements Node {
 
-  private final Expression<?> value;
+  private Expression<?> value;
 
   public PositionalArgumentNode(Expression<?> value) {
     this.value = value;
@@ -28,6 +28,10 @@ public class PositionalArgumentNode implements Node {
     return this.value;
   }
 
+  public void setValueExpression(Expression<?> value) {
+    this.value = value;
+  }
+
   @Override
   public String toString() {
     return this.value.toString();
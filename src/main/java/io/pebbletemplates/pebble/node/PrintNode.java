@@ -10,7 +10,11 @@ package io.pebbletemplates.pebble.node;
 
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
+import io.pebbletemplates.pebble.extension.escaper.SafeString;
+import io.pebbletemplates.pebble.extension.escaper.WriterEscapingStrategy;
 import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.StreamingExpression;
 import io.pebbletemplates.pebble.extension.writer.SpecializedWriter;
 import io.pebbletemplates.pebble.extension.writer.StringWriterSpecializedAdapter;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
@@ -25,6 +29,11 @@ public class PrintNode extends AbstractRenderableNode {
 
   private Expression<?> expression;
 
+  /**
+   * The strategy escaping the printed value, null if it is printed as it is.
+   */
+  private EscapingStrategy escapingStrategy;
+
   public PrintNode(Expression<?> expression, int lineNumber) {
     super(lineNumber);
     this.expression = expression;
@@ -34,7 +43,26 @@ public class PrintNode extends AbstractRenderableNode {
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException,
           PebbleException {
+    if (this.expression instanceof StreamingExpression
+        && ((StreamingExpression<?>) this.expression).write(writer, self, context)) {
+      return;
+    }
     Object var = this.expression.evaluate(self, context);
+    if (this.escapingStrategy == null) {
+      write(writer, var);
+    } else {
+      write(writer, var, this.escapingStrategy);
+    }
+  }
+
+  /**
+   * Writes the result of a print expression, nothing is written for null.
+   *
+   * @param writer The writer
+   * @param var The evaluated expression
+   * @throws IOException Thrown from the writer object
+   */
+  public static void write(Writer writer, Object var) throws IOException {
     if (var != null) {
       if (writer instanceof StringWriter) {
         new StringWriterSpecializedAdapter((StringWriter) writer).write(var);
@@ -46,6 +74,28 @@ public class PrintNode extends AbstractRenderableNode {
     }
   }
 
+  /**
+   * Writes the result of a print expression escaped with the given strategy, like the escape
+   * filter does but without wrapping the escaped text in a {@link SafeString}. A {@link
+   * WriterEscapingStrategy} writes the escaped characters straight to the writer. Safe strings are
+   * written as they are and nothing is written for null.
+   *
+   * @param writer The writer
+   * @param var The evaluated expression
+   * @param strategy The escaping strategy
+   * @throws IOException Thrown from the writer object
+   */
+  public static void write(Writer writer, Object var, EscapingStrategy strategy)
+      throws IOException {
+    if (var == null || var instanceof SafeString) {
+      write(writer, var);
+    } else if (strategy instanceof WriterEscapingStrategy) {
+      ((WriterEscapingStrategy) strategy).escape(StringUtils.toString(var), writer);
+    } else {
+      write(writer, strategy.escape(StringUtils.toString(var)));
+    }
+  }
+
   @Override
   public void accept(NodeVisitor visitor) {
     visitor.visit(this);
@@ -59,4 +109,12 @@ public class PrintNode extends AbstractRenderableNode {
     this.expression = expression;
   }
 
+  public EscapingStrategy getEscapingStrategy() {
+    return this.escapingStrategy;
+  }
+
+  public void setEscapingStrategy(EscapingStrategy escapingStrategy) {
+    this.escapingStrategy = escapingStrategy;
+  }
+
 }
@@ -11,6 +11,8 @@ package io.pebbletemplates.pebble.node;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameLayout;
+import io.pebbletemplates.pebble.template.FrameScope;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
 import java.io.Writer;
@@ -19,7 +21,17 @@ public class SetNode extends AbstractRenderableNode {
 
   private final String name;
 
-  private final Expression<?> value;
+  private Expression<?> value;
+
+  /**
+   * The frame the target variable was resolved to at compile time, null if it has to be set
+   * through the scope chain.
+   */
+  private FrameLayout frameLayout;
+
+  private int frameDepth;
+
+  private int slot;
 
   public SetNode(int lineNumber, String name, Expression<?> value) {
     super(lineNumber);
@@ -29,7 +41,30 @@ public class SetNode extends AbstractRenderableNode {
 
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context) {
-    context.getScopeChain().set(this.name, this.value.evaluate(self, context));
+    Object result = this.value.evaluate(self, context);
+    if (this.frameLayout != null) {
+      FrameScope frame = context.getScopeChain()
+          .getFrame(this.frameDepth, this.frameLayout, this.name);
+      if (frame != null) {
+        frame.setSlot(this.slot, result);
+        return;
+      }
+    }
+    context.getScopeChain().set(this.name, result);
+  }
+
+  /**
+   * Binds the target variable to a slot of a frame. Used by the slot resolver once the template
+   * is parsed.
+   *
+   * @param frameLayout The layout of the frame holding the variable
+   * @param frameDepth The number of scopes between the current scope and the frame
+   * @param slot The slot index within the frame
+   */
+  public void resolveSlot(FrameLayout frameLayout, int frameDepth, int slot) {
+    this.frameLayout = frameLayout;
+    this.frameDepth = frameDepth;
+    this.slot = slot;
   }
 
   @Override
@@ -41,6 +76,10 @@ public class SetNode extends AbstractRenderableNode {
     return this.value;
   }
 
+  public void setValue(Expression<?> value) {
+    this.value = value;
+  }
+
   public String getName() {
     return this.name;
   }
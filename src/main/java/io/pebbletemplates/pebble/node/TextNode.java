@@ -11,9 +11,13 @@ package io.pebbletemplates.pebble.node;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.EncodingWriter;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 
 /**
  * Represents static text in a template.
@@ -28,6 +32,12 @@ public class TextNode extends AbstractRenderableNode {
    */
   private final char[] data;
 
+  /**
+   * The data encoded with every charset it has been rendered with so far. Replaced as a whole when
+   * a charset is added, templates are typically rendered with a single charset.
+   */
+  private volatile EncodedData[] encodedData = new EncodedData[0];
+
   public TextNode(String text, int lineNumber) {
     super(lineNumber);
 
@@ -39,7 +49,12 @@ public class TextNode extends AbstractRenderableNode {
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException {
-    writer.write(this.data);
+    if (writer instanceof EncodingWriter && ((EncodingWriter) writer).acceptsEncoded()) {
+      EncodingWriter encodingWriter = (EncodingWriter) writer;
+      encodingWriter.writeEncoded(this.getEncodedData(encodingWriter.getCharset()));
+    } else {
+      writer.write(this.data);
+    }
   }
 
   @Override
@@ -51,4 +66,42 @@ public class TextNode extends AbstractRenderableNode {
     return this.data;
   }
 
+  /**
+   * Returns the data encoded with the given charset. The result is cached and must not be
+   * modified.
+   *
+   * @param charset The charset
+   * @return The encoded data
+   */
+  public byte[] getEncodedData(Charset charset) {
+    EncodedData[] encodedData = this.encodedData;
+    for (EncodedData candidate : encodedData) {
+      if (candidate.charset.equals(charset)) {
+        return candidate.bytes;
+      }
+    }
+
+    ByteBuffer buffer = charset.encode(CharBuffer.wrap(this.data));
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+
+    EncodedData[] copy = new EncodedData[encodedData.length + 1];
+    System.arraycopy(encodedData, 0, copy, 0, encodedData.length);
+    copy[encodedData.length] = new EncodedData(charset, bytes);
+    this.encodedData = copy;
+    return bytes;
+  }
+
+  private static class EncodedData {
+
+    private final Charset charset;
+
+    private final byte[] bytes;
+
+    EncodedData(Charset charset, byte[] bytes) {
+      this.charset = charset;
+      this.bytes = bytes;
+    }
+  }
+
 }
@@ -10,15 +10,16 @@ package io.pebbletemplates.pebble.node.expression;
 
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.writer.BufferArena;
+import io.pebbletemplates.pebble.extension.writer.BufferWriter;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 
-public class BlockFunctionExpression implements Expression<String> {
+public class BlockFunctionExpression implements StreamingExpression<String> {
 
   private final Expression<?> blockNameExpression;
 
@@ -31,15 +32,25 @@ public class BlockFunctionExpression implements Expression<String> {
 
   @Override
   public String evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
-    Writer writer = new StringWriter();
     String blockName = (String) this.blockNameExpression.evaluate(self, context);
+    BufferArena buffers = context.getBufferArena();
+    BufferWriter buffer = buffers.borrow();
     try {
-      self.block(writer, context, blockName, false);
+      self.block(buffer, context, blockName, false);
+      return buffer.toString();
     } catch (IOException e) {
       throw new PebbleException(e, "Could not render block [" + blockName + "]",
           this.getLineNumber(), self.getName());
+    } finally {
+      buffers.release(buffer);
     }
-    return writer.toString();
+  }
+
+  @Override
+  public boolean write(Writer writer, PebbleTemplateImpl self, EvaluationContextImpl context)
+      throws IOException {
+    self.block(writer, context, (String) this.blockNameExpression.evaluate(self, context), false);
+    return true;
   }
 
   @Override
@@ -19,9 +19,18 @@ public class ConcatenateExpression extends BinaryExpression<Object> {
 
   @Override
   public String evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
+    return concatenate(this.getLeftExpression().evaluate(self, context),
+        this.getRightExpression().evaluate(self, context));
+  }
 
-    Object left = getLeftExpression().evaluate(self, context);
-    Object right = getRightExpression().evaluate(self, context);
+  /**
+   * Concatenates the values of both operands, null values are left out.
+   *
+   * @param left The value of the left operand
+   * @param right The value of the right operand
+   * @return The concatenation
+   */
+  public static String concatenate(Object left, Object right) {
     StringBuilder result = new StringBuilder();
     if (left != null) {
       result.append(left.toString());
@@ -11,6 +11,8 @@ package io.pebbletemplates.pebble.node.expression;
 import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameLayout;
+import io.pebbletemplates.pebble.template.FrameScope;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.template.ScopeChain;
 
@@ -20,6 +22,16 @@ public class ContextVariableExpression implements Expression<Object> {
 
   private final int lineNumber;
 
+  /**
+   * The frame this variable was resolved to at compile time, null if it has to be looked up
+   * through the scope chain.
+   */
+  private FrameLayout frameLayout;
+
+  private int frameDepth;
+
+  private int slot;
+
   public ContextVariableExpression(String name, int lineNumber) {
     this.name = name;
     this.lineNumber = lineNumber;
@@ -34,18 +46,50 @@ public class ContextVariableExpression implements Expression<Object> {
     return this.name;
   }
 
+  /**
+   * Binds this variable to a slot of a frame. Used by the slot resolver once the template is
+   * parsed.
+   *
+   * @param frameLayout The layout of the frame holding the variable
+   * @param frameDepth The number of scopes between the current scope and the frame
+   * @param slot The slot index within the frame
+   */
+  public void resolveSlot(FrameLayout frameLayout, int frameDepth, int slot) {
+    this.frameLayout = frameLayout;
+    this.frameDepth = frameDepth;
+    this.slot = slot;
+  }
+
+  public boolean isSlotResolved() {
+    return this.frameLayout != null;
+  }
+
   @Override
   public Object evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
     ScopeChain scopeChain = context.getScopeChain();
+    if (this.frameLayout != null) {
+      FrameScope frame = scopeChain.getFrame(this.frameDepth, this.frameLayout, this.name);
+      if (frame != null) {
+        Object result = frame.getSlot(this.slot);
+        if (result == null && context.isStrictVariables() && !frame.isSlotDefined(this.slot)) {
+          throw this.rootAttributeNotFound(self);
+        }
+        return result;
+      }
+    }
     Object result = scopeChain.get(this.name);
     if (result == null && context.isStrictVariables() && !scopeChain.containsKey(this.name)) {
-      throw new RootAttributeNotFoundException(null, String.format(
-          "Root attribute [%s] does not exist or can not be accessed and strict variables is set to true.",
-          this.name), this.name, this.lineNumber, self.getName());
+      throw this.rootAttributeNotFound(self);
     }
     return result;
   }
 
+  private RootAttributeNotFoundException rootAttributeNotFound(PebbleTemplateImpl self) {
+    return new RootAttributeNotFoundException(null, String.format(
+        "Root attribute [%s] does not exist or can not be accessed and strict variables is set to true.",
+        this.name), this.name, this.lineNumber, self.getName());
+  }
+
   @Override
   public int getLineNumber() {
     return this.lineNumber;
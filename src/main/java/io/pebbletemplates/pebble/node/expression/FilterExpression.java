@@ -14,7 +14,6 @@ import io.pebbletemplates.pebble.error.AttributeNotFoundException;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.escaper.EscapeFilter;
 import io.pebbletemplates.pebble.extension.escaper.SafeString;
-import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
@@ -34,22 +33,7 @@ public class FilterExpression extends BinaryExpression<Object> {
 
   @Override
   public Object evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
-
-    FilterInvocationExpression filterInvocation = (FilterInvocationExpression) this
-        .getRightExpression();
-    ArgumentsNode args = filterInvocation.getArgs();
-    String filterName = filterInvocation.getFilterName();
-
-    if (this.filter == null) {
-      this.filter = context.getExtensionRegistry().getFilter(filterInvocation.getFilterName());
-    }
-
-    if (this.filter == null) {
-      throw new PebbleException(null, String.format("Filter [%s] does not exist.", filterName),
-          this.getLineNumber(), self.getName());
-    }
-
-    Map<String, Object> namedArguments = args.getArgumentMap(self, context, this.filter);
+    Map<String, Object> namedArguments = this.getNamedArguments(self, context);
 
     // This check is not nice, because we use instanceof. However this is
     // the only filter which should not fail in strict mode, when the variable
@@ -66,6 +50,46 @@ public class FilterExpression extends BinaryExpression<Object> {
       input = this.getLeftExpression().evaluate(self, context);
     }
 
+    return this.apply(namedArguments, input, self, context);
+  }
+
+  /**
+   * Looks the filter up and evaluates its arguments, which happens before the input is evaluated.
+   *
+   * @param self The template being rendered
+   * @param context The evaluation context
+   * @return The arguments by name
+   */
+  public Map<String, Object> getNamedArguments(PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
+    FilterInvocationExpression filterInvocation = (FilterInvocationExpression) this
+        .getRightExpression();
+    String filterName = filterInvocation.getFilterName();
+
+    if (this.filter == null) {
+      this.filter = context.getExtensionRegistry().getFilter(filterName);
+    }
+
+    if (this.filter == null) {
+      throw new PebbleException(null, String.format("Filter [%s] does not exist.", filterName),
+          this.getLineNumber(), self.getName());
+    }
+
+    return filterInvocation.getArgs().getArgumentMap(self, context, this.filter);
+  }
+
+  /**
+   * Applies the filter, which {@link #getNamedArguments} looked up, to the evaluated input.
+   * Compiled templates evaluate the input themselves.
+   *
+   * @param namedArguments The arguments returned by {@link #getNamedArguments}
+   * @param input The value of the left expression
+   * @param self The template being rendered
+   * @param context The evaluation context
+   * @return The filtered value
+   */
+  public Object apply(Map<String, Object> namedArguments, Object input, PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
     if (input instanceof SafeString && !(this.filter instanceof EscapeFilter)) {
       input = input.toString();
     }
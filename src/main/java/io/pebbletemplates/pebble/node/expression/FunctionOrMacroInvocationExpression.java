@@ -14,9 +14,11 @@ import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 
-public class FunctionOrMacroInvocationExpression implements Expression<Object> {
+public class FunctionOrMacroInvocationExpression implements StreamingExpression<Object> {
 
   private final String functionName;
 
@@ -40,6 +42,17 @@ public class FunctionOrMacroInvocationExpression implements Expression<Object> {
     return self.macro(context, this.functionName, this.args, false, this.lineNumber);
   }
 
+  @Override
+  public boolean write(Writer writer, PebbleTemplateImpl self, EvaluationContextImpl context)
+      throws IOException {
+    // the result of a function is a value, which may need escaping
+    if (context.getExtensionRegistry().getFunction(this.functionName) != null) {
+      return false;
+    }
+    self.macro(writer, context, this.functionName, this.args, false, this.lineNumber);
+    return true;
+  }
+
   private Object applyFunction(PebbleTemplateImpl self, EvaluationContextImpl context,
       Function function, ArgumentsNode args) {
     Map<String, Object> namedArguments = args.getArgumentMap(self, context, function);
@@ -12,13 +12,16 @@ import io.pebbletemplates.pebble.error.AttributeNotFoundException;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.attributes.AttributeAccessor;
 import io.pebbletemplates.pebble.attributes.AttributeResolver;
+import io.pebbletemplates.pebble.attributes.DefaultAttributeResolver;
 import io.pebbletemplates.pebble.attributes.ResolvedAttribute;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.node.PositionalArgumentNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -29,6 +32,13 @@ import java.util.List;
  */
 public class GetAttributeExpression implements Expression<Object> {
 
+  /**
+   * Number of receiver classes remembered by the inline cache before it gives up.
+   */
+  private static final int INLINE_CACHE_SIZE = 4;
+
+  private static final InlineCacheEntry[] EMPTY_INLINE_CACHE = new InlineCacheEntry[0];
+
   private final Expression<?> node;
 
   private final Expression<?> attributeNameExpression;
@@ -39,6 +49,12 @@ public class GetAttributeExpression implements Expression<Object> {
 
   private final int lineNumber;
 
+  /**
+   * Accessors for the receiver classes seen so far, or null once too many classes have been seen
+   * and every access goes through the attribute resolvers.
+   */
+  private volatile InlineCacheEntry[] inlineCache;
+
   public GetAttributeExpression(Expression<?> node, Expression<?> attributeNameExpression,
       String filename,
       int lineNumber) {
@@ -54,12 +70,30 @@ public class GetAttributeExpression implements Expression<Object> {
     this.args = args;
     this.filename = filename;
     this.lineNumber = lineNumber;
+    // only an attribute with a constant name and without arguments always resolves the same way
+    // for a given class
+    boolean cacheable = attributeNameExpression instanceof LiteralStringExpression
+        && (args == null || args.getPositionalArgs() == null || args.getPositionalArgs().isEmpty());
+    this.inlineCache = cacheable ? EMPTY_INLINE_CACHE : null;
   }
 
   @Override
   public Object evaluate(PebbleTemplateImpl self, EvaluationContextImpl context)
       throws PebbleException {
-    final Object object = this.node.evaluate(self, context);
+    return this.getAttribute(this.node.evaluate(self, context), self, context);
+  }
+
+  /**
+   * Gets the attribute of an object the expression of this node was evaluated to already, which
+   * is what compiled templates do.
+   *
+   * @param object The value of the node expression
+   * @param self The template being rendered
+   * @param context The evaluation context
+   * @return The value of the attribute
+   */
+  public Object getAttribute(Object object, PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
     final Object attributeNameValue = this.attributeNameExpression.evaluate(self, context);
     final String attributeName = String.valueOf(attributeNameValue);
     final Object[] argumentValues = this.getArgumentValues(self, context);
@@ -77,6 +111,27 @@ public class GetAttributeExpression implements Expression<Object> {
       }
     }
 
+    InlineCacheEntry[] inlineCache = this.inlineCache;
+    if (inlineCache != null && object != null) {
+      Class<?> type = object.getClass();
+      for (InlineCacheEntry entry : inlineCache) {
+        if (entry.type == type) {
+          if (entry.accessor != null) {
+            return entry.accessor.get(object, argumentValues, this.filename, this.lineNumber);
+          }
+          inlineCache = null;
+          break;
+        }
+      }
+      if (inlineCache != null) {
+        AttributeAccessor accessor = this.cacheAccessor(inlineCache, object, attributeName,
+            argumentValues, context);
+        if (accessor != null) {
+          return accessor.get(object, argumentValues, this.filename, this.lineNumber);
+        }
+      }
+    }
+
     for (AttributeResolver attributeResolver : context.getExtensionRegistry()
         .getAttributeResolver()) {
       ResolvedAttribute resolvedAttribute = attributeResolver
@@ -99,6 +154,38 @@ public class GetAttributeExpression implements Expression<Object> {
     return null;
   }
 
+  /**
+   * Adds the receiver class to the inline cache. The accessor is taken from the default attribute
+   * resolver, and only if it comes first: a resolver provided by an extension could otherwise
+   * handle the attribute differently. A class without accessor is remembered as well, so that it
+   * is sent to the resolvers right away.
+   *
+   * @return The accessor or null if the attribute has to be resolved by the resolvers
+   */
+  private AttributeAccessor cacheAccessor(InlineCacheEntry[] inlineCache, Object object,
+      String attributeName, Object[] argumentValues, EvaluationContextImpl context) {
+    if (inlineCache.length == INLINE_CACHE_SIZE) {
+      // megamorphic, fall back to the resolvers for good
+      this.inlineCache = null;
+      return null;
+    }
+
+    AttributeAccessor accessor = null;
+    List<AttributeResolver> attributeResolvers = context.getExtensionRegistry()
+        .getAttributeResolver();
+    if (!attributeResolvers.isEmpty()
+        && attributeResolvers.get(0).getClass() == DefaultAttributeResolver.class) {
+      accessor = ((DefaultAttributeResolver) attributeResolvers.get(0))
+          .getAccessor(object, attributeName, argumentValues, context, this.filename,
+              this.lineNumber);
+    }
+
+    InlineCacheEntry[] copy = Arrays.copyOf(inlineCache, inlineCache.length + 1);
+    copy[inlineCache.length] = new InlineCacheEntry(object.getClass(), accessor);
+    this.inlineCache = copy;
+    return accessor;
+  }
+
   /**
    * Fully evaluates the individual arguments.
    */
@@ -145,4 +232,16 @@ public class GetAttributeExpression implements Expression<Object> {
     return this.lineNumber;
   }
 
+  private static class InlineCacheEntry {
+
+    private final Class<?> type;
+
+    private final AttributeAccessor accessor;
+
+    InlineCacheEntry(Class<?> type, AttributeAccessor accessor) {
+      this.type = type;
+      this.accessor = accessor;
+    }
+  }
+
 }
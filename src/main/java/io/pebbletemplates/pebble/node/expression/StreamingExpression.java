@@ -0,0 +1,37 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.node.expression;
+
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An expression rendering text, like a macro invocation, which can write it straight to the output
+ * when it is printed. It is only created as a string when the expression is evaluated, i.e. when
+ * its value is used by another expression or a tag.
+ */
+public interface StreamingExpression<T> extends Expression<T> {
+
+  /**
+   * Writes the rendered text as a print tag would.
+   *
+   * @param writer The writer
+   * @param self The template
+   * @param context The evaluation context
+   * @return Whether the text has been written, false if nothing has been written and the
+   *     expression has to be evaluated instead
+   * @throws IOException Thrown from the writer object
+   */
+  boolean write(Writer writer, PebbleTemplateImpl self, EvaluationContextImpl context)
+      throws IOException;
+
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.parser;
+
+import io.pebbletemplates.pebble.lexer.Lexer;
+import io.pebbletemplates.pebble.lexer.Syntax;
+import io.pebbletemplates.pebble.lexer.TemplateSegmenter;
+import io.pebbletemplates.pebble.lexer.TemplateSegmenter.Segment;
+import io.pebbletemplates.pebble.lexer.Token;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.node.RootNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Parses a changed template again without tokenizing the parts which did not change. The source is
+ * split by a {@link TemplateSegmenter} and each segment is tokenized on its own. The tokens of the
+ * last version of each template are kept by the text of their segment; a segment with the same
+ * text is not tokenized again, even if it moved to another line, its tokens are copied with their
+ * line numbers shifted. The tokens of all segments are then parsed together.
+ * <p>
+ * Tokenizing takes most of the time, parsing the tokens is several times faster, so only the
+ * segments which changed cost about as much as before. The nodes themselves can not be kept since
+ * the nodes of a template are modified after parsing. When a segment can not be tokenized on its
+ * own, the whole source is tokenized instead.
+ */
+public class IncrementalParser {
+
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalParser.class);
+
+  private final TemplateSegmenter segmenter;
+
+  private final Supplier<Lexer> lexerFactory;
+
+  private final Supplier<Parser> parserFactory;
+
+  private final ConcurrentMap<String, Map<String, LexedSegment>> templates =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param syntax The syntax of the templates
+   * @param lexerFactory Creates the lexers which tokenize the segments
+   * @param parserFactory Creates the parsers which parse the tokens of a template
+   */
+  public IncrementalParser(Syntax syntax, Supplier<Lexer> lexerFactory,
+      Supplier<Parser> parserFactory) {
+    this.segmenter = new TemplateSegmenter(syntax);
+    this.lexerFactory = lexerFactory;
+    this.parserFactory = parserFactory;
+  }
+
+  /**
+   * Parses the source of a template, reusing the tokens of the segments of its previous version.
+   *
+   * @param templateName The name of the template
+   * @param source The source of the template
+   * @return The root node
+   */
+  public RootNode parse(String templateName, String source) {
+    List<Segment> segments = this.segmenter.split(source);
+    Map<String, LexedSegment> previous = this.templates
+        .getOrDefault(templateName, Collections.emptyMap());
+    Map<String, LexedSegment> lexed = new HashMap<>();
+    LexedSegment[] lexedSegments = new LexedSegment[segments.size()];
+    Lexer lexer = null;
+    int tokenCount = 1;
+    int reused = 0;
+    try {
+      for (int i = 0; i < segments.size(); i++) {
+        Segment segment = segments.get(i);
+        String text = source.substring(segment.getStart(), segment.getEnd());
+        LexedSegment lexedSegment = lexed.get(text);
+        if (lexedSegment == null) {
+          lexedSegment = previous.get(text);
+        }
+        if (lexedSegment == null) {
+          if (lexer == null) {
+            lexer = this.lexerFactory.get();
+          }
+          lexedSegment = new LexedSegment(lexer
+              .tokenize(new StringReader(text), templateName, segment.getLineNumber())
+              .getTokens(), segment.getLineNumber());
+        } else {
+          reused++;
+        }
+        lexed.put(text, lexedSegment);
+        lexedSegments[i] = lexedSegment;
+        tokenCount += lexedSegment.tokens.length;
+      }
+    } catch (RuntimeException e) {
+      // a segment which is not valid on its own
+      logger.debug("Tokenizing the whole template {}", templateName, e);
+      this.templates.remove(templateName);
+      TokenStream stream = this.lexerFactory.get()
+          .tokenize(new StringReader(source), templateName, 1);
+      return this.parserFactory.get().parse(stream);
+    }
+    logger.trace("Reused the tokens of {} of {} segments of template {}", reused,
+        segments.size(), templateName);
+
+    List<Token> tokens = new ArrayList<>(tokenCount);
+    int lineNumber = 1;
+    for (int i = 0; i < lexedSegments.length; i++) {
+      lineNumber = lexedSegments[i].copyTo(tokens, segments.get(i).getLineNumber());
+    }
+    tokens.add(new Token(Token.Type.EOF, null, lineNumber));
+    this.templates.put(templateName, lexed);
+    return this.parserFactory.get().parse(new TokenStream(tokens, templateName));
+  }
+
+  /**
+   * Forgets the segments of a template.
+   *
+   * @param templateName The name of the template
+   */
+  public void invalidate(String templateName) {
+    this.templates.remove(templateName);
+  }
+
+  /**
+   * Forgets the segments of all templates.
+   */
+  public void invalidateAll() {
+    this.templates.clear();
+  }
+
+  /**
+   * The tokens of a segment. They are never handed to a parser, which gets copies.
+   */
+  private static class LexedSegment {
+
+    private final Token[] tokens;
+
+    /**
+     * The line the segment started on when it was tokenized.
+     */
+    private final int lineNumber;
+
+    /**
+     * The line of the end of the segment, relative to its first line.
+     */
+    private final int endLineOffset;
+
+    /**
+     * @param tokens The tokens of the segment, ending with the EOF token
+     * @param lineNumber The first line of the segment
+     */
+    LexedSegment(List<Token> tokens, int lineNumber) {
+      Token eof = tokens.get(tokens.size() - 1);
+      this.tokens = new Token[tokens.size() - 1];
+      for (int i = 0; i < this.tokens.length; i++) {
+        Token token = tokens.get(i);
+        this.tokens[i] = new Token(token.getType(), token.getValue(), token.getLineNumber());
+      }
+      this.lineNumber = lineNumber;
+      this.endLineOffset = eof.getLineNumber() - lineNumber;
+    }
+
+    /**
+     * Adds copies of the tokens, moved to a segment starting at the given line.
+     *
+     * @return The line of the end of the segment
+     */
+    int copyTo(List<Token> target, int lineNumber) {
+      int offset = lineNumber - this.lineNumber;
+      for (Token token : this.tokens) {
+        target.add(new Token(token.getType(), token.getValue(), token.getLineNumber() + offset));
+      }
+      return lineNumber + this.endLineOffset;
+    }
+  }
+}
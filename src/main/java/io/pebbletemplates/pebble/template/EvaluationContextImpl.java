@@ -12,6 +12,7 @@ import io.pebbletemplates.pebble.cache.CacheKey;
 import io.pebbletemplates.pebble.cache.PebbleCache;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.writer.BufferArena;
 import io.pebbletemplates.pebble.utils.Callbacks;
 
 import java.io.IOException;
@@ -95,6 +96,12 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
    */
   private final AtomicInteger charsRendered = new AtomicInteger();
 
+  /**
+   * The buffers capturing the output of macros, blocks and cache tags, shared with the copies of
+   * the context rendered by the same thread.
+   */
+  private BufferArena bufferArena = new BufferArena();
+
   /**
    * Constructor used to provide all final variables.
    *
@@ -142,6 +149,7 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
         this.locale, this.maxRenderedSize, this.extensionRegistry, this.tagCache,
         this.executorService, this.importedTemplates, this.namedImportedTemplates, this.scopeChain,
         null, this.evaluationOptions);
+    result.bufferArena = this.bufferArena;
     return result;
   }
 
@@ -312,6 +320,15 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
     );
   }
 
+  /**
+   * Returns the buffers of the current render.
+   *
+   * @return The buffer arena
+   */
+  public BufferArena getBufferArena() {
+    return this.bufferArena;
+  }
+
   @Override
   public int addAndGet(int delta) {
     return charsRendered.addAndGet(delta);
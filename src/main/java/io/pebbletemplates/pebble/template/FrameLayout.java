@@ -0,0 +1,85 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The compile-time shape of a {@link FrameScope}: the names of the variables that are stored in
+ * indexed slots rather than in a map. A layout is created once per "for" loop or macro when the
+ * template is compiled and is shared by every frame pushed for that loop or macro.
+ */
+public final class FrameLayout {
+
+  private final String[] names;
+
+  /**
+   * Constructor
+   *
+   * @param names The names of the slots, in slot order. Duplicates are ignored.
+   */
+  public FrameLayout(Collection<String> names) {
+    this.names = names.stream().map(String::intern).distinct().toArray(String[]::new);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param names The names of the slots, in slot order. Duplicates are ignored.
+   */
+  public FrameLayout(String... names) {
+    this(Arrays.asList(names));
+  }
+
+  /**
+   * Returns the slot index of a variable.
+   *
+   * @param name The name of the variable
+   * @return The slot index or -1 if the variable is not part of this layout
+   */
+  public int indexOf(String name) {
+    String[] names = this.names;
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == name) {
+        return i;
+      }
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the name of the variable stored at the given slot.
+   *
+   * @param index The slot index
+   * @return The name of the variable
+   */
+  public String getName(int index) {
+    return this.names[index];
+  }
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return The number of slots
+   */
+  public int size() {
+    return this.names.length;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(this.names);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A scope whose well-known variables live in an array of slots described by a {@link
+ * FrameLayout}. Expressions that were resolved at compile time read and write those slots by index;
+ * every other access goes through the regular {@link Scope} methods, which transparently map slot
+ * names onto the array so that both views always agree. Variables that are not part of the layout
+ * are kept in the backing map of the scope.
+ */
+public class FrameScope extends Scope {
+
+  /**
+   * Marks a slot which has not been assigned yet, as opposed to one holding null.
+   */
+  private static final Object UNDEFINED = new Object();
+
+  private final FrameLayout layout;
+
+  private final Object[] slots;
+
+  /**
+   * Constructor
+   *
+   * @param layout The layout of the slots
+   * @param local Whether this scope is local or not
+   */
+  public FrameScope(FrameLayout layout, boolean local) {
+    super(null, local);
+    this.layout = layout;
+    this.slots = new Object[layout.size()];
+    Arrays.fill(this.slots, UNDEFINED);
+  }
+
+  private FrameScope(FrameScope original) {
+    this(original.layout, original.isLocal());
+    System.arraycopy(original.slots, 0, this.slots, 0, this.slots.length);
+    for (String key : original.getExtraKeys()) {
+      super.put(key, original.get(key));
+    }
+  }
+
+  /**
+   * Returns the layout this frame was created with.
+   *
+   * @return The layout
+   */
+  public FrameLayout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Returns the value of a slot.
+   *
+   * @param index The slot index
+   * @return The value or null if the slot is not defined
+   */
+  public Object getSlot(int index) {
+    Object value = this.slots[index];
+    return value == UNDEFINED ? null : value;
+  }
+
+  /**
+   * Checks whether a slot has been assigned, possibly with null.
+   *
+   * @param index The slot index
+   * @return Whether the slot is defined
+   */
+  public boolean isSlotDefined(int index) {
+    return this.slots[index] != UNDEFINED;
+  }
+
+  /**
+   * Assigns a slot.
+   *
+   * @param index The slot index
+   * @param value The value
+   */
+  public void setSlot(int index, Object value) {
+    this.slots[index] = value;
+  }
+
+  @Override
+  public Scope shallowCopy() {
+    return new FrameScope(this);
+  }
+
+  @Override
+  public void put(String key, Object value) {
+    int index = this.layout.indexOf(key);
+    if (index >= 0) {
+      this.slots[index] = value;
+    } else {
+      super.put(key, value);
+    }
+  }
+
+  @Override
+  public Object get(String key) {
+    int index = this.layout.indexOf(key);
+    if (index >= 0) {
+      return this.getSlot(index);
+    }
+    return super.get(key);
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    int index = this.layout.indexOf(key);
+    if (index >= 0) {
+      return this.isSlotDefined(index);
+    }
+    return !super.isEmpty() && super.containsKey(key);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Object slot : this.slots) {
+      if (slot != UNDEFINED) {
+        return false;
+      }
+    }
+    return super.isEmpty();
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    Set<String> keys = new HashSet<>(this.getExtraKeys());
+    for (int i = 0; i < this.slots.length; i++) {
+      if (this.isSlotDefined(i)) {
+        keys.add(this.layout.getName(i));
+      }
+    }
+    return keys;
+  }
+
+  private Set<String> getExtraKeys() {
+    return super.getKeys();
+  }
+}
@@ -9,6 +9,9 @@
 package io.pebbletemplates.pebble.template;
 
 import io.pebbletemplates.pebble.extension.NamedArguments;
+
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 
 public interface Macro extends NamedArguments {
@@ -16,4 +19,19 @@ public interface Macro extends NamedArguments {
   String getName();
 
   String call(PebbleTemplateImpl self, EvaluationContextImpl context, Map<String, Object> args);
+
+  /**
+   * Calls the macro, writing its output to the given writer. Macros invoked in a print tag are
+   * called this way, so that their output doesn't have to be created as a string first.
+   *
+   * @param self The template
+   * @param context The evaluation context
+   * @param args The arguments
+   * @param writer The writer
+   * @throws IOException Thrown from the writer object
+   */
+  default void call(PebbleTemplateImpl self, EvaluationContextImpl context,
+      Map<String, Object> args, Writer writer) throws IOException {
+    writer.write(this.call(self, context, args));
+  }
 }
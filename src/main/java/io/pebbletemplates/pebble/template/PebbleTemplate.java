@@ -9,9 +9,14 @@
 package io.pebbletemplates.pebble.template;
 
 import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.utils.ChunkSink;
+import io.pebbletemplates.pebble.utils.ChunkedWriter;
+import io.pebbletemplates.pebble.utils.EncodingWriter;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Map;
 
@@ -60,6 +65,99 @@ public interface PebbleTemplate {
    */
   void evaluate(Writer writer, Map<String, Object> context, Locale locale) throws IOException;
 
+  /**
+   * Evaluate the template without any provided variables and write the results encoded with the
+   * given charset. Static content of the template is encoded once and then copied to the stream
+   * as is. The stream is flushed but not closed.
+   *
+   * @param out The results of the evaluation are written to this stream.
+   * @param charset The charset used to encode the results.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream out, Charset charset) throws IOException {
+    EncodingWriter writer = new EncodingWriter(out, charset);
+    this.evaluate(writer);
+    writer.finish();
+  }
+
+  /**
+   * Evaluate the template with a set of variables and the default locale provided by the {@link
+   * PebbleEngine} and write the results encoded with the given charset. The stream is flushed but
+   * not closed.
+   *
+   * @param out The results of the evaluation are written to this stream.
+   * @param charset The charset used to encode the results.
+   * @param context The variables used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream out, Charset charset, Map<String, Object> context)
+      throws IOException {
+    EncodingWriter writer = new EncodingWriter(out, charset);
+    this.evaluate(writer, context);
+    writer.finish();
+  }
+
+  /**
+   * Evaluate the template with a particular locale and a set of variables and write the results
+   * encoded with the given charset. The stream is flushed but not closed.
+   *
+   * @param out The results of the evaluation are written to this stream.
+   * @param charset The charset used to encode the results.
+   * @param context The variables used during the evaluation of the template.
+   * @param locale The locale used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream out, Charset charset, Map<String, Object> context,
+      Locale locale) throws IOException {
+    EncodingWriter writer = new EncodingWriter(out, charset);
+    this.evaluate(writer, context, locale);
+    writer.finish();
+  }
+
+  /**
+   * Evaluate the template without any provided variables and hand the results to the sink in
+   * chunks. A chunk ends when it reaches the chunk size of the sink, at a flush tag and at the end
+   * of the template. The evaluation waits while the sink is not ready for the next chunk.
+   *
+   * @param sink The results of the evaluation are handed to this sink.
+   * @throws IOException An IO exception during the evaluation, or a failure of the sink
+   */
+  default void evaluate(ChunkSink sink) throws IOException {
+    ChunkedWriter writer = new ChunkedWriter(sink);
+    this.evaluate(writer);
+    writer.finish();
+  }
+
+  /**
+   * Evaluate the template with a set of variables and the default locale provided by the {@link
+   * PebbleEngine} and hand the results to the sink in chunks.
+   *
+   * @param sink The results of the evaluation are handed to this sink.
+   * @param context The variables used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation, or a failure of the sink
+   */
+  default void evaluate(ChunkSink sink, Map<String, Object> context) throws IOException {
+    ChunkedWriter writer = new ChunkedWriter(sink);
+    this.evaluate(writer, context);
+    writer.finish();
+  }
+
+  /**
+   * Evaluate the template with a particular locale and a set of variables and hand the results to
+   * the sink in chunks.
+   *
+   * @param sink The results of the evaluation are handed to this sink.
+   * @param context The variables used during the evaluation of the template.
+   * @param locale The locale used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation, or a failure of the sink
+   */
+  default void evaluate(ChunkSink sink, Map<String, Object> context, Locale locale)
+      throws IOException {
+    ChunkedWriter writer = new ChunkedWriter(sink);
+    this.evaluate(writer, context, locale);
+    writer.finish();
+  }
+
   /**
    * Evaluate the template but only render the contents of a specific block.
    *
@@ -10,7 +10,10 @@ package io.pebbletemplates.pebble.template;
 
 import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
 import io.pebbletemplates.pebble.extension.escaper.SafeString;
+import io.pebbletemplates.pebble.extension.writer.BufferArena;
+import io.pebbletemplates.pebble.extension.writer.BufferWriter;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.node.BlockNode;
 import io.pebbletemplates.pebble.node.BodyNode;
@@ -25,10 +28,12 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * The actual implementation of a PebbleTemplate
@@ -64,6 +69,11 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   private final String name;
 
+  /**
+   * The estimated retained size in bytes, computed on first use.
+   */
+  private volatile long estimatedSize = -1;
+
   /**
    * Constructor
    *
@@ -385,6 +395,36 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     }
   }
 
+  /**
+   * Returns the templates referenced by the extends, include, import, from and embed tags of this
+   * template, as far as their names are string literals. Relative names are resolved.
+   *
+   * @return The names of the referenced templates
+   */
+  public Set<String> getReferencedTemplateNames() {
+    Set<String> names = new LinkedHashSet<>();
+    this.rootNode.accept(new ReferencedTemplatesVisitor(this, names));
+    return names;
+  }
+
+  /**
+   * Returns an estimate of the memory retained by this template: the characters of its text plus
+   * an average size for each node. Templates which share the tree, like the copies used by the
+   * embed tag, report the same size.
+   *
+   * @return The estimated size in bytes
+   */
+  public long getEstimatedSize() {
+    long size = this.estimatedSize;
+    if (size < 0) {
+      SizeEstimatingVisitor visitor = new SizeEstimatingVisitor(this);
+      this.rootNode.accept(visitor);
+      size = visitor.getEstimatedSize();
+      this.estimatedSize = size;
+    }
+    return size;
+  }
+
   /**
    * Registers a block.
    *
@@ -470,7 +510,31 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   public SafeString macro(EvaluationContextImpl context, String macroName, ArgumentsNode args,
       boolean ignoreOverriden, int lineNumber) {
-    SafeString result = null;
+    BufferArena buffers = context.getBufferArena();
+    BufferWriter buffer = buffers.borrow();
+    try {
+      this.macro(LimitedSizeWriter.from(buffer, context), context, macroName, args,
+          ignoreOverriden, lineNumber);
+      return new SafeString(buffer.toString());
+    } catch (IOException e) {
+      throw new RuntimeException("Could not evaluate macro [" + macroName + "]", e);
+    } finally {
+      buffers.release(buffer);
+    }
+  }
+
+  /**
+   * Invokes a macro, writing its output to the given writer rather than returning it.
+   *
+   * @param writer The writer
+   * @param context The evaluation context
+   * @param macroName The name of the macro
+   * @param args The arguments
+   * @param ignoreOverriden Whether or not to ignore macro definitions in child template
+   * @throws IOException Thrown from the writer object
+   */
+  public void macro(Writer writer, EvaluationContextImpl context, String macroName,
+      ArgumentsNode args, boolean ignoreOverriden, int lineNumber) throws IOException {
     boolean found = false;
 
     PebbleTemplateImpl childTemplate = context.getHierarchy().getChild();
@@ -479,7 +543,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     if (!ignoreOverriden && childTemplate != null) {
       found = true;
       context.getHierarchy().descend();
-      result = childTemplate.macro(context, macroName, args, false, lineNumber);
+      childTemplate.macro(writer, context, macroName, args, false, lineNumber);
       context.getHierarchy().ascend();
 
       // check current template
@@ -488,7 +552,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       Macro macro = this.macros.get(macroName);
 
       Map<String, Object> namedArguments = args.getArgumentMap(this, context, macro);
-      result = new SafeString(macro.call(this, context, namedArguments));
+      macro.call(this, context, namedArguments, writer);
     }
 
     // check imported templates
@@ -496,7 +560,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       for (PebbleTemplateImpl template : context.getImportedTemplates()) {
         if (template.hasMacro(macroName)) {
           found = true;
-          result = template.macro(context, macroName, args, false, lineNumber);
+          template.macro(writer, context, macroName, args, false, lineNumber);
           // If a macro was found and executed, dont search for more
           break;
         }
@@ -508,7 +572,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       if (context.getHierarchy().getParent() != null) {
         PebbleTemplateImpl parent = context.getHierarchy().getParent();
         context.getHierarchy().ascend();
-        result = parent.macro(context, macroName, args, true, lineNumber);
+        parent.macro(writer, context, macroName, args, true, lineNumber);
         context.getHierarchy().descend();
       } else {
         throw new PebbleException(null,
@@ -516,8 +580,6 @@ public class PebbleTemplateImpl implements PebbleTemplate {
             this.name);
       }
     }
-
-    return result;
   }
 
   public void setParent(EvaluationContextImpl context, String parentName) {
@@ -535,6 +597,15 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     return this.name;
   }
 
+  /**
+   * Returns the extensions of the engine which compiled the template.
+   *
+   * @return The extension registry
+   */
+  public ExtensionRegistry getExtensionRegistry() {
+    return this.engine.getExtensionRegistry();
+  }
+
   private static class NoopWriter extends Writer {
 
     public void write(char[] cbuf, int off, int len) {
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.BlockNode;
+import io.pebbletemplates.pebble.node.CacheNode;
+import io.pebbletemplates.pebble.node.EmbedNode;
+import io.pebbletemplates.pebble.node.ExtendsNode;
+import io.pebbletemplates.pebble.node.FromNode;
+import io.pebbletemplates.pebble.node.ImportNode;
+import io.pebbletemplates.pebble.node.IncludeNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+
+import java.util.Set;
+
+/**
+ * Collects the names of the templates referenced by the extends, include, import, from and embed
+ * tags of a template. Only names which are known without evaluating the template are found,
+ * string literals and the branches of a ternary expression.
+ */
+class ReferencedTemplatesVisitor extends AbstractNodeVisitor {
+
+  private final Set<String> names;
+
+  ReferencedTemplatesVisitor(PebbleTemplateImpl template, Set<String> names) {
+    super(template);
+    this.names = names;
+  }
+
+  @Override
+  public void visit(Node node) {
+    if (node instanceof FromNode) {
+      this.addNames(((FromNode) node).getFromExpression());
+    } else if (node instanceof EmbedNode) {
+      EmbedNode embedNode = (EmbedNode) node;
+      this.addNames(embedNode.getIncludeExpression());
+      for (BlockNode block : embedNode.getNodes()) {
+        block.accept(this);
+      }
+    } else if (node instanceof CacheNode) {
+      ((CacheNode) node).getBody().accept(this);
+    }
+  }
+
+  @Override
+  public void visit(ExtendsNode node) {
+    this.addNames(node.getParentExpression());
+  }
+
+  @Override
+  public void visit(ImportNode node) {
+    this.addNames(node.getImportExpression());
+  }
+
+  @Override
+  public void visit(IncludeNode node) {
+    this.addNames(node.getIncludeExpression());
+  }
+
+  private void addNames(Expression<?> expression) {
+    if (expression instanceof LiteralStringExpression) {
+      String name = ((LiteralStringExpression) expression).getValue();
+      this.names.add(this.getTemplate().resolveRelativePath(name));
+    } else if (expression instanceof TernaryExpression) {
+      this.addNames(((TernaryExpression) expression).getExpression2());
+      this.addNames(((TernaryExpression) expression).getExpression3());
+    }
+  }
+}
@@ -89,6 +89,15 @@ public class Scope {
     return this.backingMap.containsKey(key);
   }
 
+  /**
+   * Checks if this scope does not contain any variable.
+   *
+   * @return boolean stating whether or not the backing map of this scope is empty
+   */
+  public boolean isEmpty() {
+    return this.backingMap.isEmpty();
+  }
+
   /**
    * Returns whether or not this scope is "local".
    *
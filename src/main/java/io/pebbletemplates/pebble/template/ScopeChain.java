@@ -10,8 +10,6 @@ package io.pebbletemplates.pebble.template;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -24,9 +22,9 @@ import java.util.Map;
 public class ScopeChain {
 
   /**
-   * The stack of scopes
+   * The stack of scopes, the current scope being the last element.
    */
-  private LinkedList<Scope> stack = new LinkedList<>();
+  private final ArrayList<Scope> stack = new ArrayList<>();
 
   /**
    * Constructs an empty scope chain without any known scopes.
@@ -68,7 +66,7 @@ public class ScopeChain {
    */
   public void pushScope(Map<String, Object> map) {
     Scope scope = new Scope(map, false);
-    this.stack.push(scope);
+    this.stack.add(scope);
   }
 
   /**
@@ -76,14 +74,24 @@ public class ScopeChain {
    */
   public void pushLocalScope() {
     Scope scope = new Scope(new HashMap<>(), true);
-    this.stack.push(scope);
+    this.stack.add(scope);
+  }
+
+  /**
+   * Adds a frame to the scope chain. Whether the frame is local or not is decided by the frame
+   * itself.
+   *
+   * @param frame The frame
+   */
+  public void pushFrame(FrameScope frame) {
+    this.stack.add(frame);
   }
 
   /**
    * Pops the most recent scope from the scope chain.
    */
   public void popScope() {
-    this.stack.pop();
+    this.stack.remove(this.stack.size() - 1);
   }
 
   /**
@@ -93,7 +101,7 @@ public class ScopeChain {
    * @param value The value of the variable
    */
   public void put(String key, Object value) {
-    this.stack.peek().put(key, value);
+    this.current().put(key, value);
   }
 
   /**
@@ -106,27 +114,26 @@ public class ScopeChain {
   public Object get(String key) {
     /*
      * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
+     * scope so we do a quick lookup in that scope before walking the
+     * rest of the stack. This is solely for performance.
      * null values must not be handled as "not present".
      */
-    Scope scope = this.stack.getFirst();
+    int index = this.stack.size() - 1;
+    Scope scope = this.stack.get(index);
     Object result = scope.get(key);
     if (result != null) {
       return result;
     }
 
-    if (this.stack.size() > 1) {
+    if (index > 0) {
       if (scope.isLocal() || scope.containsKey(key)) {
         // key could be defined with null and override another value below in the stack
         return null;
       }
-      Iterator<Scope> iterator = this.stack.iterator();
-      // account for the first lookup we did
-      iterator.next();
 
-      while (iterator.hasNext()) {
-        scope = iterator.next();
+      // account for the first lookup we did
+      while (--index >= 0) {
+        scope = this.stack.get(index);
         result = scope.get(key);
         if (result != null) {
           return result;
@@ -148,27 +155,8 @@ public class ScopeChain {
    * exists.
    */
   public boolean containsKey(String key) {
-
-    /*
-     * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
-     */
-    Scope scope = this.stack.getFirst();
-    if (scope.containsKey(key)) {
-      return true;
-    }
-    if (scope.isLocal()) {
-      return false;
-    }
-
-    Iterator<Scope> iterator = this.stack.iterator();
-
-    // account for the first lookup we did
-    iterator.next();
-
-    while (iterator.hasNext()) {
-      scope = iterator.next();
+    for (int index = this.stack.size() - 1; index >= 0; index--) {
+      Scope scope = this.stack.get(index);
 
       if (scope.containsKey(key)) {
         return true;
@@ -188,7 +176,7 @@ public class ScopeChain {
    * @return Whether or not the variable exists in the current scope
    */
   public boolean currentScopeContainsVariable(String variableName) {
-    return this.stack.getFirst().containsKey(variableName);
+    return this.current().containsKey(variableName);
   }
 
   /**
@@ -199,24 +187,8 @@ public class ScopeChain {
    * @param value The value of the variable
    */
   public void set(String key, Object value) {
-    /*
-     * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
-     */
-    Scope scope = this.stack.getFirst();
-    if (scope.isLocal() || scope.containsKey(key)) {
-      scope.put(key, value);
-      return;
-    }
-
-    Iterator<Scope> iterator = this.stack.iterator();
-
-    // account for the first lookup we did
-    iterator.next();
-
-    while (iterator.hasNext()) {
-      scope = iterator.next();
+    for (int index = this.stack.size() - 1; index >= 0; index--) {
+      Scope scope = this.stack.get(index);
 
       if (scope.isLocal() || scope.containsKey(key)) {
         scope.put(key, value);
@@ -228,11 +200,42 @@ public class ScopeChain {
     this.put(key, value);
   }
 
+  /**
+   * Returns the frame in which a variable resolved at compile time lives.
+   * <p>
+   * The frame is expected {@code depth} scopes below the current one and to have the given layout.
+   * Every scope above it must be a non-local frame which does not define {@code key}; in that case
+   * the returned frame is exactly the scope that {@link #get(String)} and {@link #set(String,
+   * Object)} would have reached for {@code key}. If the chain does not have the expected shape,
+   * null is returned and the caller has to fall back to the regular lookup.
+   *
+   * @param depth The number of scopes between the current scope and the frame
+   * @param layout The expected layout of the frame
+   * @param key The name of the variable
+   * @return The frame or null
+   */
+  public FrameScope getFrame(int depth, FrameLayout layout, String key) {
+    int index = this.stack.size() - 1 - depth;
+    if (index < 0) {
+      return null;
+    }
+    Scope target = this.stack.get(index);
+    if (!(target instanceof FrameScope) || ((FrameScope) target).getLayout() != layout) {
+      return null;
+    }
+    for (int i = this.stack.size() - 1; i > index; i--) {
+      Scope scope = this.stack.get(i);
+      if (!(scope instanceof FrameScope) || scope.isLocal() || scope.containsKey(key)) {
+        return null;
+      }
+    }
+    return (FrameScope) target;
+  }
+
   public List<Scope> getGlobalScopes() {
     List<Scope> globalScopes = new ArrayList<>();
-    Iterator<Scope> iterator = this.stack.iterator();
-    while (iterator.hasNext()) {
-      Scope scope = iterator.next();
+    for (int index = this.stack.size() - 1; index >= 0; index--) {
+      Scope scope = this.stack.get(index);
       if (scope.isLocal()) {
         globalScopes.clear();
       } else {
@@ -242,4 +245,8 @@ public class ScopeChain {
 
     return globalScopes;
   }
+
+  private Scope current() {
+    return this.stack.get(this.stack.size() - 1);
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.BlockNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.CacheNode;
+import io.pebbletemplates.pebble.node.EmbedNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.TextNode;
+
+/**
+ * Estimates the memory retained by a template from the text it contains and the number of nodes
+ * of its render tree. The expressions of a node are part of the average node size.
+ */
+class SizeEstimatingVisitor extends AbstractNodeVisitor {
+
+  /**
+   * The template instance with its maps of blocks and macros.
+   */
+  static final long TEMPLATE_SIZE = 256;
+
+  /**
+   * The average size of a node, including its expressions.
+   */
+  static final long NODE_SIZE = 128;
+
+  /**
+   * The header of the char array of a text node.
+   */
+  static final long ARRAY_HEADER_SIZE = 16;
+
+  private long nodes = 0;
+
+  private long textSize = 0;
+
+  SizeEstimatingVisitor(PebbleTemplateImpl template) {
+    super(template);
+  }
+
+  @Override
+  public void visit(Node node) {
+    if (node instanceof EmbedNode) {
+      for (BlockNode block : ((EmbedNode) node).getNodes()) {
+        block.accept(this);
+      }
+    } else if (node instanceof CacheNode) {
+      ((CacheNode) node).getBody().accept(this);
+    }
+  }
+
+  @Override
+  public void visit(BodyNode node) {
+    this.nodes += node.getChildren().size();
+    super.visit(node);
+  }
+
+  @Override
+  public void visit(TextNode node) {
+    this.textSize += ARRAY_HEADER_SIZE + 2L * node.getData().length;
+  }
+
+  long getEstimatedSize() {
+    return TEMPLATE_SIZE + this.nodes * NODE_SIZE + this.textSize;
+  }
+}
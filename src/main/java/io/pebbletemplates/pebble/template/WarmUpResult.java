@@ -0,0 +1,134 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The outcome of {@link PebbleEngine#warmUp(java.util.Collection, ExecutorService)}, with the time
+ * spent on every template.
+ */
+public class WarmUpResult {
+
+  private final List<TemplateTiming> templates;
+
+  private final long elapsedNanos;
+
+  public WarmUpResult(List<TemplateTiming> templates, long elapsedNanos) {
+    this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Returns every template that was compiled, including the referenced ones, in the order in which
+   * they were finished.
+   *
+   * @return The timings of the templates
+   */
+  public List<TemplateTiming> getTemplates() {
+    return this.templates;
+  }
+
+  /**
+   * Returns the templates which could not be compiled.
+   *
+   * @return The timings of the failed templates
+   */
+  public List<TemplateTiming> getFailures() {
+    List<TemplateTiming> failures = new ArrayList<>();
+    for (TemplateTiming template : this.templates) {
+      if (!template.isSuccessful()) {
+        failures.add(template);
+      }
+    }
+    return failures;
+  }
+
+  public boolean isSuccessful() {
+    return this.getFailures().isEmpty();
+  }
+
+  /**
+   * Returns the wall clock time of the whole warm-up.
+   *
+   * @return The elapsed time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+
+  /**
+   * The time spent on a single template.
+   */
+  public static class TemplateTiming {
+
+    private final String name;
+
+    private final String referencedBy;
+
+    private final long compilationNanos;
+
+    private final RuntimeException failure;
+
+    public TemplateTiming(String name, String referencedBy, long compilationNanos,
+        RuntimeException failure) {
+      this.name = name;
+      this.referencedBy = referencedBy;
+      this.compilationNanos = compilationNanos;
+      this.failure = failure;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * Returns the template through which this template was found.
+     *
+     * @return The name of the referencing template, or null if the template was requested
+     */
+    public String getReferencedBy() {
+      return this.referencedBy;
+    }
+
+    /**
+     * Returns the time spent getting the template from the engine. This is close to zero for
+     * templates which were already cached.
+     *
+     * @return The time in nanoseconds
+     */
+    public long getCompilationNanos() {
+      return this.compilationNanos;
+    }
+
+    /**
+     * Returns the exception thrown while compiling the template.
+     *
+     * @return The exception, or null if the template was compiled
+     */
+    public RuntimeException getFailure() {
+      return this.failure;
+    }
+
+    public boolean isSuccessful() {
+      return this.failure == null;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %.3f ms%s", this.name, this.compilationNanos / 1e6,
+          this.failure == null ? "" : " (" + this.failure.getMessage() + ")");
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.utils;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives the output of a template as a sequence of chunks, see {@link ChunkedWriter}. A chunk
+ * ends when the output reaches {@link #getChunkSize()} characters, at a flush tag and at the end
+ * of the template.
+ *
+ * The sink can apply backpressure: the next chunk is not handed over before the stage returned for
+ * the previous one completes, the evaluation waits for it instead.
+ */
+public interface ChunkSink {
+
+  int DEFAULT_CHUNK_SIZE = 8192;
+
+  /**
+   * Handles a chunk of output. The buffer is reused for later chunks once the returned stage
+   * completes, or once this method returns if it returns null, so it must be copied to be kept
+   * longer.
+   *
+   * @param chunk The characters of the chunk, never empty.
+   * @return A stage completing when the sink is ready for the next chunk, or null if it is ready
+   * already. An exceptional completion fails the evaluation.
+   * @throws IOException If the chunk can not be handled, this fails the evaluation
+   */
+  CompletionStage<?> onChunk(CharBuffer chunk) throws IOException;
+
+  /**
+   * Called once the last chunk was handled, when the template was evaluated successfully.
+   *
+   * @throws IOException If the output can not be completed
+   */
+  default void onComplete() throws IOException {
+  }
+
+  /**
+   * @return The number of characters after which a chunk is emitted without a flush.
+   */
+  default int getChunkSize() {
+    return DEFAULT_CHUNK_SIZE;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A Writer used when a template is evaluated into a {@link ChunkSink}. Characters are collected
+ * into a buffer which is handed to the sink as a chunk when it is full or the writer is flushed,
+ * so a flush tag ends the current chunk.
+ *
+ * At most one chunk is pending: the evaluation goes on while the sink handles a chunk, and waits
+ * for the sink before emitting the next one. Two buffers are used in turn, a buffer is reused once
+ * the sink is done with the chunk it holds.
+ *
+ * It is not thread safe, each evaluation uses its own writer.
+ */
+public class ChunkedWriter extends Writer {
+
+  private final ChunkSink sink;
+
+  private final int chunkSize;
+
+  private char[] buffer;
+
+  private int size = 0;
+
+  private char[] spare;
+
+  private CompletableFuture<?> pending;
+
+  private char[] pendingBuffer;
+
+  public ChunkedWriter(ChunkSink sink) {
+    int chunkSize = sink.getChunkSize();
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("The chunk size must be positive, got " + chunkSize);
+    }
+    this.sink = sink;
+    this.chunkSize = chunkSize;
+    this.buffer = new char[chunkSize];
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    this.buffer[this.size++] = (char) c;
+    if (this.size == this.chunkSize) {
+      this.emit();
+    }
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, this.chunkSize - this.size);
+      System.arraycopy(cbuf, off, this.buffer, this.size, count);
+      this.size += count;
+      off += count;
+      len -= count;
+      if (this.size == this.chunkSize) {
+        this.emit();
+      }
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, this.chunkSize - this.size);
+      str.getChars(off, off + count, this.buffer, this.size);
+      this.size += count;
+      off += count;
+      len -= count;
+      if (this.size == this.chunkSize) {
+        this.emit();
+      }
+    }
+  }
+
+  /**
+   * Hands the pending content to the sink as a chunk, if there is any. It does not wait for the
+   * sink to handle it.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (this.size > 0) {
+      this.emit();
+    }
+  }
+
+  /**
+   * Hands the remaining content to the sink, waits until the sink handled it and completes the
+   * sink. Nothing must be written afterwards.
+   *
+   * @throws IOException If the sink fails
+   */
+  public void finish() throws IOException {
+    this.flush();
+    this.awaitPending();
+    this.sink.onComplete();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.finish();
+  }
+
+  private void emit() throws IOException {
+    this.awaitPending();
+    char[] chars = this.buffer;
+    CompletionStage<?> stage = this.sink.onChunk(CharBuffer.wrap(chars, 0, this.size));
+    this.size = 0;
+    if (stage == null) {
+      return;
+    }
+    this.pending = stage.toCompletableFuture();
+    this.pendingBuffer = chars;
+    this.buffer = this.spare != null ? this.spare : new char[this.chunkSize];
+    this.spare = null;
+  }
+
+  private void awaitPending() throws IOException {
+    if (this.pending == null) {
+      return;
+    }
+    try {
+      this.pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the chunk sink");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    this.pending = null;
+    this.spare = this.pendingBuffer;
+    this.pendingBuffer = null;
+  }
+}
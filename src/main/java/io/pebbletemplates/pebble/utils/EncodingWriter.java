@@ -0,0 +1,218 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Writer used when a template is evaluated into an OutputStream. Characters are encoded
+ * incrementally into an internal buffer which is written to the stream when it is full or the
+ * writer is flushed.
+ *
+ * Static content that was encoded ahead of time can be copied straight through with {@link
+ * #writeEncoded(byte[])}, provided the charset is stateless, see {@link #acceptsEncoded()}.
+ * Unmappable and malformed characters are replaced, like {@link java.io.OutputStreamWriter} does.
+ *
+ * It is not thread safe, each evaluation uses its own writer.
+ */
+public class EncodingWriter extends Writer {
+
+  private static final int CHAR_BUFFER_SIZE = 1024;
+
+  private static final int BYTE_BUFFER_SIZE = 8192;
+
+  /**
+   * Whether bytes encoded separately can be concatenated, per charset.
+   */
+  private static final Map<Charset, Boolean> statelessCharsets = new ConcurrentHashMap<>();
+
+  private final OutputStream out;
+
+  private final Charset charset;
+
+  private final CharsetEncoder encoder;
+
+  private final boolean acceptsEncoded;
+
+  private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+  private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+
+  public EncodingWriter(OutputStream out, Charset charset) {
+    this.out = out;
+    this.charset = charset;
+    this.encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.acceptsEncoded = statelessCharsets.computeIfAbsent(charset, EncodingWriter::isStateless);
+  }
+
+  public Charset getCharset() {
+    return this.charset;
+  }
+
+  /**
+   * Checks whether content encoded on its own with {@link Charset#encode(CharBuffer)} can be
+   * passed to {@link #writeEncoded(byte[])}. This is not the case for charsets which write a byte
+   * order mark or use shift sequences.
+   *
+   * @return Whether pre-encoded content is accepted
+   */
+  public boolean acceptsEncoded() {
+    return this.acceptsEncoded;
+  }
+
+  /**
+   * Writes content which was already encoded with the charset of this writer.
+   *
+   * @param encoded The encoded content
+   * @throws IOException Thrown from the output stream
+   */
+  public void writeEncoded(byte[] encoded) throws IOException {
+    this.encodeChars();
+    if (this.chars.position() > 0) {
+      // a high surrogate can not be completed by the following content
+      ((Buffer) this.chars).clear();
+      this.writeBytes(this.encoder.replacement());
+    }
+    this.writeBytes(encoded);
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    if (!this.chars.hasRemaining()) {
+      this.encodeChars();
+    }
+    this.chars.put((char) c);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      if (!this.chars.hasRemaining()) {
+        this.encodeChars();
+      }
+      int n = Math.min(len, this.chars.remaining());
+      this.chars.put(cbuf, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    while (len > 0) {
+      if (!this.chars.hasRemaining()) {
+        this.encodeChars();
+      }
+      int n = Math.min(len, this.chars.remaining());
+      this.chars.put(str, off, off + n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes all pending content to the output stream and flushes it. The encoder is not finished,
+   * more content can be written afterwards.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.encodeChars();
+    this.flushBytes();
+    this.out.flush();
+  }
+
+  /**
+   * Encodes the remaining content and writes it to the output stream, without closing the stream.
+   * Nothing must be written afterwards.
+   *
+   * @throws IOException Thrown from the output stream
+   */
+  public void finish() throws IOException {
+    ((Buffer) this.chars).flip();
+    while (this.encoder.encode(this.chars, this.bytes, true).isOverflow()) {
+      this.flushBytes();
+    }
+    ((Buffer) this.chars).clear();
+    while (this.encoder.flush(this.bytes).isOverflow()) {
+      this.flushBytes();
+    }
+    this.flushBytes();
+    this.out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.finish();
+    this.out.close();
+  }
+
+  private void encodeChars() throws IOException {
+    if (this.chars.position() == 0) {
+      return;
+    }
+    ((Buffer) this.chars).flip();
+    CoderResult result;
+    do {
+      result = this.encoder.encode(this.chars, this.bytes, false);
+      if (result.isOverflow()) {
+        this.flushBytes();
+      }
+    } while (result.isOverflow());
+    this.chars.compact();
+  }
+
+  private void writeBytes(byte[] b) throws IOException {
+    if (b.length > this.bytes.remaining()) {
+      this.flushBytes();
+      if (b.length > this.bytes.capacity()) {
+        this.out.write(b);
+        return;
+      }
+    }
+    this.bytes.put(b);
+  }
+
+  private void flushBytes() throws IOException {
+    if (this.bytes.position() > 0) {
+      this.out.write(this.bytes.array(), 0, this.bytes.position());
+      ((Buffer) this.bytes).clear();
+    }
+  }
+
+  private static boolean isStateless(Charset charset) {
+    if (!charset.canEncode()) {
+      return false;
+    }
+    byte[] single = toBytes(charset.encode("a"));
+    byte[] twice = toBytes(charset.encode("aa"));
+    byte[] concatenated = Arrays.copyOf(single, single.length * 2);
+    System.arraycopy(single, 0, concatenated, single.length, single.length);
+    return Arrays.equals(twice, concatenated);
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] result = new byte[buffer.remaining()];
+    buffer.get(result);
+    return result;
+  }
+}
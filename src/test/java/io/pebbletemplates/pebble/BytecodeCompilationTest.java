@@ -0,0 +1,202 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.compiler.CompiledBody;
+import io.pebbletemplates.pebble.compiler.TemplateCompiler;
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BytecodeCompilationTest {
+
+  @Test
+  void testCompilerIsAvailable() {
+    assertTrue(TemplateCompiler.isAvailable());
+  }
+
+  @Test
+  void testRootBodyIsCompiled() throws Exception {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .bytecodeCompilation(true).build();
+    PebbleTemplate template = pebble.getTemplate("hello {{ name }}");
+
+    assertTrue(getRootBody(template).getCompiledBody() instanceof CompiledBody);
+    assertEquals("hello world", render(template, Collections.singletonMap("name", "world")));
+  }
+
+  @Test
+  void testRootBodyIsNotCompiledByDefault() throws Exception {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate("hello {{ name }}");
+
+    assertNull(getRootBody(template).getCompiledBody());
+  }
+
+  @Test
+  void testConditionsAndLoops() throws IOException {
+    String source = "{% for item in items %}{% if loop.first %}[{% elseif item > 2 %}>"
+        + "{% elseif item == 2 %}={% else %}<{% endif %}{{ item }}{% else %}empty{% endfor %}"
+        + "{% for item in [] %}{{ item }}{% else %}empty{% endfor %}"
+        + "{% if missing %}a{% endif %}{% if 'true' %}b{% endif %}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList(1, 2, 3, 1));
+
+    assertSameOutput(new MemoryLoader(), source, context);
+  }
+
+  @Test
+  void testManyChildren() throws IOException {
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      source.append(i).append("{{ value }}{% if value is null %}null{% endif %}");
+    }
+
+    assertSameOutput(new MemoryLoader(), source.toString(), Collections.singletonMap("value", 42));
+  }
+
+  @Test
+  void testInheritanceMacrosAndIncludes() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("base", "<{% block title %}base{% endblock %}>"
+        + "{% for i in [1, 2] %}{% block content %}{% endblock %}{% endfor %}{{ footer }}");
+    loader.addTemplate("macros", "{% macro greet(name) %}{% set greeting = 'hi ' + name %}"
+        + "{{ greeting }}{% endmacro %}");
+    loader.addTemplate("partial", "({{ i }})");
+    String source = "{% extends 'base' %}{% import 'macros' %}{% set footer = 'footer' %}"
+        + "ignored{{ ignored }}{% if true %}ignored{% endif %}"
+        + "{% block title %}{{ parent() }} child{% endblock %}"
+        + "{% block content %}{{ greet('bob') }}{% include 'partial' %}{% endblock %}";
+
+    assertSameOutput(loader, source, Collections.singletonMap("ignored", "x"));
+  }
+
+  @Test
+  void testExpressionsAreCompiled() throws Exception {
+    String source = "{{ 'a' ~ name ~ 1 }}|{{ user.name | upper }}|{{ user.age + 2 * -count }}"
+        + "|{{ count > 2 ? 'many' : 'few' }}|{{ missing ? 'yes' : 'no' }}|{{ 7 % 4 - 1.5 }}"
+        + "|{{ count == 3 and user.age != 3 }}|{{ count >= 3 }}{{ count < 3 }}{{ count <= 3 }}"
+        + "|{{ user.missing | default('none') }}|{{ [1, 2] | join(',') }}|{{ +count / 2 }}"
+        + "{% if user.age > 40 %}old{% elseif count + 1 == 4 %}four{% endif %}"
+        + "{% for i in range(1, count) %}{{ i * count }}{% endfor %}";
+    Map<String, Object> user = new HashMap<>();
+    user.put("name", "bob");
+    user.put("age", 42L);
+    Map<String, Object> context = new HashMap<>();
+    context.put("name", "<b>");
+    context.put("user", user);
+    context.put("count", 3);
+
+    assertSameOutput(new MemoryLoader(), source, context);
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .bytecodeCompilation(true).build();
+    assertTrue(getRootBody(pebble.getTemplate(source)).getCompiledBody() instanceof CompiledBody);
+  }
+
+  @Test
+  void testErrorsAreWrappedLikeWhenInterpreted() throws IOException {
+    Map<String, Object> context = new HashMap<>();
+    context.put("text", "text");
+    context.put("object", new Object());
+    context.put("zero", 0);
+
+    assertSameError("{{ object + 1 }}", context);
+    assertSameError("{{ (1 / zero) * 2 }}", context);
+    assertSameError("{{ 1 + (object < 2 ? 1 : 2) }}", context);
+    assertSameError("{{ object <= 2 }}{{ object >= 2 }}{{ object > 2 }}", context);
+    assertSameError("{% if (text - 1) == 2 %}a{% endif %}", context);
+    assertSameError("{% if object %}a{% endif %}", context);
+    assertSameError("{{ text | unknown }}", context);
+    assertSameError("{{ text | abbreviate('x') }}", context);
+  }
+
+  @Test
+  void testUnsupportedConditionType() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .bytecodeCompilation(true).build();
+    PebbleTemplate template = pebble.getTemplate("{% if value %}a{% endif %}");
+
+    PebbleException exception = assertThrows(PebbleException.class,
+        () -> render(template, Collections.singletonMap("value", new Object())));
+    assertTrue(exception.getMessage().contains("Wrong operand(s) type in conditional expression"));
+  }
+
+  @Test
+  void testStrictVariables() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).bytecodeCompilation(true).build();
+    PebbleTemplate template = pebble.getTemplate("text {{ missing }}");
+
+    assertThrows(PebbleException.class, () -> render(template, Collections.emptyMap()));
+  }
+
+  private static void assertSameOutput(MemoryLoader loader, String source,
+      Map<String, Object> context) throws IOException {
+    loader.addTemplate("template", source);
+    PebbleEngine interpreted = new PebbleEngine.Builder().loader(loader).build();
+    PebbleEngine compiled = new PebbleEngine.Builder().loader(loader).bytecodeCompilation(true)
+        .build();
+
+    String expected = render(interpreted.getTemplate("template"), context);
+    PebbleTemplate template = compiled.getTemplate("template");
+    assertEquals(expected, render(template, context));
+    // render twice to make sure that no state leaks from one rendering to the next
+    assertEquals(expected, render(template, context));
+  }
+
+  private static void assertSameError(String source, Map<String, Object> context) {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", source);
+    PebbleEngine interpreted = new PebbleEngine.Builder().loader(loader).build();
+    PebbleEngine compiled = new PebbleEngine.Builder().loader(loader).bytecodeCompilation(true)
+        .build();
+
+    RuntimeException expected = assertThrows(RuntimeException.class,
+        () -> render(interpreted.getTemplate("template"), context));
+    RuntimeException actual = assertThrows(RuntimeException.class,
+        () -> render(compiled.getTemplate("template"), context));
+    for (Throwable e = expected, a = actual; e != null || a != null;
+        e = e.getCause(), a = a.getCause()) {
+      assertEquals(e == null ? null : e.getClass(), a == null ? null : a.getClass());
+      assertEquals(e.getMessage(), a.getMessage());
+    }
+  }
+
+  private static String render(PebbleTemplate template, Map<String, Object> context)
+      throws IOException {
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, context);
+    return writer.toString();
+  }
+
+  private static BodyNode getRootBody(PebbleTemplate template) throws Exception {
+    Field rootNode = PebbleTemplateImpl.class.getDeclaredField("rootNode");
+    rootNode.setAccessible(true);
+    return ((RootNode) rootNode.get(template)).getBody();
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.extension.core.ConstantFoldingNodeVisitor;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.node.AutoEscapeNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.template.EvaluationContext;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConstantFoldingTest {
+
+  @Test
+  void testLiteralsAreFoldedAndTextIsMerged() throws Exception {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate("a{# comment #}b{{ 'x' ~ 'y' }}"
+        + "{% if 1 > 2 %}no{% elseif not false %}yes{% else %}else{% endif %}{{ 7 * (2 - 1) }}");
+
+    List<RenderableNode> children = getRootBody(template).getChildren();
+    assertEquals(2, children.size());
+    assertEquals("abxyyes", new String(((TextNode) children.get(0)).getData()));
+    // numbers are left to the writer, without escaping
+    PrintNode print = (PrintNode) children.get(1);
+    assertSame(LiteralLongExpression.class, print.getExpression().getClass());
+    assertNull(print.getEscapingStrategy());
+    assertEquals("abxyyes7", render(template, new HashMap<>()));
+  }
+
+  @Test
+  void testConstantsAreEscapedWhenCompiling() throws Exception {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate("{{ '<b>' ~ 'c' ~ 'd' }}|{{ true ? '<i>' : name }}"
+        + "|{{ ('<' ~ 1) | raw }}|{{ true ? '<' ~ 1 : name }}");
+
+    List<RenderableNode> children = getRootBody(template).getChildren();
+    assertEquals(1, children.size());
+    assertEquals("&lt;b&gt;cd|<i>|<1|&lt;1", new String(((TextNode) children.get(0)).getData()));
+
+    template = pebble.getTemplate("{% autoescape 'js' %}{{ \"'\" ~ 'a' ~ 'b' }}{% endautoescape %}");
+    BodyNode body = ((AutoEscapeNode) getRootBody(template).getChildren().get(0)).getBody();
+    assertEquals("\\'ab", new String(((TextNode) body.getChildren().get(0)).getData()));
+  }
+
+  @Test
+  void testBranchesWithVariableConditionsAreKept() throws Exception {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{% if false %}a{% elseif x %}b{% elseif 1 %}c{% elseif y %}d{% endif %}");
+
+    List<RenderableNode> children = getRootBody(template).getChildren();
+    assertEquals(1, children.size());
+    IfNode ifNode = (IfNode) children.get(0);
+    assertEquals(1, ifNode.getConditionsWithBodies().size());
+
+    Map<String, Object> context = new HashMap<>();
+    assertEquals("c", render(template, context));
+    context.put("x", true);
+    assertEquals("b", render(template, context));
+  }
+
+  @Test
+  void testSameOutputAsWithoutOptimization() throws IOException {
+    List<String> templates = Arrays.asList(
+        "{{ 1 + 2 }}|{{ 10 / 4 }}|{{ 10.0 / 4 }}|{{ 7 % 3 }}|{{ -(2 - 5) }}|{{ 1.5 * 2 }}",
+        "{{ 'a' ~ 1 ~ 2.5 ~ true ~ null }}|{{ \"x#{ 1 + 1 }y\" }}",
+        "{{ 1 == 1.0 }}|{{ 'a' != 'b' }}|{{ 2 >= 3 }}|{{ 2 < 3 }}|{{ true and 0 }}|{{ false or 'a' }}",
+        "{{ true ? 'yes' : 'no' }}|{{ 0 ? 'yes' : 'no' }}|{{ null ? 'yes' : name }}",
+        "{{ '<b>' ~ 'c' ~ 'd' }}|{{ true ? '<i>' : name }}|{{ (1 + 1) ~ '<' }}",
+        "{% set x = 2 * 3 %}{{ x }}{% if x > 1 + 1 %}big{% endif %}{{ name | default('a' ~ 'b') }}",
+        "{% if '' %}a{% elseif 0.0 %}b{% else %}c{% endif %}{% if 'text' %}d{% endif %}",
+        "{% macro m(a = 1 + 1) %}{{ a }}{% endmacro %}{{ m() }}{{ m(2 * 2) }}",
+        "{% for i in [1, 2] %}{% if true %}{{ i }}{% set y = i %}{% endif %}{% endfor %}",
+        "{{ 'ab' | capitalize }}|{{ ' x ' | trim }}|{{ 'hello world' | title }}|{{ 'abc' | length }}"
+            + "|{{ 'abcdef' | abbreviate(4) }}|{{ 'a,b' | split(',') | join('-') }}|{{ -2 | abs }}",
+        "{{ 'abc' | sha256 }}|{{ 'x' | base64encode }}|{{ 'a b&c' | urlencode }}|{{ '<' | raw }}"
+            + "|{{ null | default('d') }}|{{ 'abc' | first }}|{{ '<a>' | escape }}",
+        "{{ 4 is even }}|{{ 3 is not odd }}|{{ null is null }}|{{ '' is empty }}"
+            + "|{{ max(1, 5, 3) }}|{{ min(2, 1.5) }}|{% if 1 is odd %}odd{% endif %}",
+        "{% autoescape 'css' %}{{ 1 + 1 }}{{ 2 * 3 }}{{ '<' ~ 'a' ~ 'b' }}{% endautoescape %}"
+            + "{% autoescape 'url_param' %}{{ 1.5 * 2 }}{{ '+' ~ name ~ '&' }}{% endautoescape %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("name", "<name>");
+    for (String source : templates) {
+      assertEquals(render(false, source, context), render(true, source, context), source);
+    }
+  }
+
+  @Test
+  void testPureFiltersAreAppliedOnce() throws Exception {
+    CountingExtension extension = new CountingExtension();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .extension(extension).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{{ 'a' | pure }}|{{ 'b' | impure }}|{{ ('c' | pure) ~ ('d' | pure) }}");
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals("a!|b?|c!d!", render(template, new HashMap<>()));
+    }
+    assertEquals(3, extension.pure.get());
+    assertEquals(2, extension.impure.get());
+  }
+
+  @Test
+  void testLocaleSensitiveFiltersAreNotFolded() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .defaultLocale(Locale.ENGLISH).build();
+    PebbleTemplate template = pebble.getTemplate("{{ 'title' | upper }}");
+
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, new Locale("tr"));
+    assertEquals("T\u0130TLE", writer.toString());
+    assertEquals("TITLE", render(template, new HashMap<>()));
+  }
+
+  @Test
+  void testChildTemplateOnlyRendersSetOutsideOfBlocks() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("parent", "{{ x }}{% block b %}{% endblock %}");
+    loader.addTemplate("child", "{% extends 'parent' %}{% set x = 1 %}"
+        + "{% if true %}{% set x = 2 %}text{% endif %}{% if true %}ignored{% endif %}"
+        + "{% block b %}{% if 1 < 2 %}block{% endif %}{% endblock %}");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate("child").evaluate(writer);
+    assertEquals("1block", writer.toString());
+  }
+
+  @Test
+  void testErrorsAreStillReportedWhenRendering() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+    PebbleTemplate division = pebble.getTemplate("{{ 1 / 0 }}");
+    PebbleTemplate condition = pebble.getTemplate("{% if null %}a{% endif %}");
+
+    assertThrows(PebbleException.class, () -> render(division, new HashMap<>()));
+    assertThrows(PebbleException.class, () -> render(condition, new HashMap<>()));
+  }
+
+  @Test
+  void testBodiesWithUnmodifiableChildrenAreFolded() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplateImpl template = (PebbleTemplateImpl) pebble.getTemplate("");
+    // as a tag of an extension may build it
+    BodyNode body = new BodyNode(1, Collections.unmodifiableList(
+        Arrays.<RenderableNode>asList(new TextNode("a", 1), new TextNode("b", 1))));
+
+    body.accept(new ConstantFoldingNodeVisitor(template));
+
+    assertEquals(1, body.getChildren().size());
+    assertEquals("ab", new String(((TextNode) body.getChildren().get(0)).getData()));
+  }
+
+  /**
+   * Appends "!" with a pure filter and "?" with an impure one, counting the invocations.
+   */
+  private static class CountingExtension extends AbstractExtension {
+
+    private final AtomicInteger pure = new AtomicInteger();
+
+    private final AtomicInteger impure = new AtomicInteger();
+
+    @Override
+    public Map<String, Filter> getFilters() {
+      Map<String, Filter> filters = new HashMap<>();
+      filters.put("pure", new CountingFilter(this.pure, "!", true));
+      filters.put("impure", new CountingFilter(this.impure, "?", false));
+      return filters;
+    }
+  }
+
+  private static class CountingFilter implements Filter {
+
+    private final AtomicInteger invocations;
+
+    private final String suffix;
+
+    private final boolean pure;
+
+    CountingFilter(AtomicInteger invocations, String suffix, boolean pure) {
+      this.invocations = invocations;
+      this.suffix = suffix;
+      this.pure = pure;
+    }
+
+    @Override
+    public List<String> getArgumentNames() {
+      return null;
+    }
+
+    @Override
+    public Object apply(Object input, Map<String, Object> args, PebbleTemplate self,
+        EvaluationContext context, int lineNumber) {
+      this.invocations.incrementAndGet();
+      return input + this.suffix;
+    }
+
+    @Override
+    public boolean isPure() {
+      return this.pure;
+    }
+  }
+
+  private static String render(boolean templateOptimization, String source,
+      Map<String, Object> context) throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .templateOptimization(templateOptimization).build();
+    return render(pebble.getTemplate(source), context);
+  }
+
+  private static String render(PebbleTemplate template, Map<String, Object> context)
+      throws IOException {
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, context);
+    return writer.toString();
+  }
+
+  private static BodyNode getRootBody(PebbleTemplate template) throws Exception {
+    Field rootNode = PebbleTemplateImpl.class.getDeclaredField("rootNode");
+    rootNode.setAccessible(true);
+    return ((RootNode) rootNode.get(template)).getBody();
+  }
+}
@@ -0,0 +1,119 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.loader.ClasspathLoader;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.TemplateContent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentLoaderTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testBytesAreDecodedAcrossReads() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      text.append("é€😀").append(i);
+    }
+    TemplateContent content = TemplateContent.of(
+        ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+
+    // a tiny buffer splits the encoded characters and the surrogate pairs
+    assertThat(read(content.openReader(), 3)).isEqualTo(text.toString());
+    assertThat(read(content.openReader(), 4096)).isEqualTo(text.toString());
+    assertThat(content.toString()).isEqualTo(text.toString());
+  }
+
+  @Test
+  void testMalformedBytesAreReplaced() throws IOException {
+    TemplateContent content = TemplateContent.of(ByteBuffer.wrap(new byte[]{'a', (byte) 0xff, 'b'}),
+        StandardCharsets.UTF_8);
+
+    assertThat(read(content.openReader(), 16)).isEqualTo("a�b");
+  }
+
+  @Test
+  void testCharBufferIsReadFromItsPosition() throws IOException {
+    CharBuffer characters = CharBuffer.wrap("skipped{{ 'content' }}");
+    characters.position(7);
+    TemplateContent content = TemplateContent.of(characters);
+
+    assertThat(read(content.openReader(), 5)).isEqualTo("{{ 'content' }}");
+    assertThat(characters.position()).isEqualTo(7);
+  }
+
+  @Test
+  void testLargeFilesAreMapped() throws IOException {
+    Files.write(this.directory.resolve("small.peb"), "{{ 'small' }}".getBytes(StandardCharsets.UTF_8));
+    Files.write(this.directory.resolve("large.peb"), "{{ 'lárge' }}".getBytes(StandardCharsets.UTF_8));
+    FileLoader loader = new FileLoader();
+    loader.setPrefix(this.directory.toString());
+    loader.setSuffix(".peb");
+    // mapping is opt-in
+    assertThat(loader.getContent("large").getBytes()).isNotInstanceOf(MappedByteBuffer.class);
+    loader.setMemoryMappingThreshold(14);
+
+    assertThat(loader.getContent("small").getBytes()).isNotInstanceOf(MappedByteBuffer.class);
+    assertThat(loader.getContent("large").getBytes()).isInstanceOf(MappedByteBuffer.class);
+
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+    assertThat(render(pebble, "small")).isEqualTo("small");
+    assertThat(render(pebble, "large")).isEqualTo("lárge");
+  }
+
+  @Test
+  void testMemoryLoaderHandsOverItsString() throws IOException {
+    String template = "{{ 'memory' }}";
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", template);
+
+    assertThat(loader.getContent("template").getCharacters()).isSameAs(template);
+    assertThat(loader.getContent("template").toString()).isSameAs(template);
+
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+    assertThat(render(pebble, "template")).isEqualTo("memory");
+  }
+
+  @Test
+  void testDefaultLoaderReadsContent() throws IOException {
+    ClasspathLoader loader = new ClasspathLoader();
+    loader.setPrefix("templates");
+    loader.setSuffix(".peb");
+    assertThat(loader.getContent("template.loaderTest").toString()).contains("SUCCESS");
+
+    PebbleEngine pebble = new PebbleEngine.Builder().strictVariables(false).build();
+    assertThat(render(pebble, "templates/template.loaderTest.peb")).isEqualTo("SUCCESS");
+  }
+
+  private static String read(Reader reader, int bufferSize) throws IOException {
+    StringBuilder result = new StringBuilder();
+    char[] buffer = new char[bufferSize];
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      result.append(buffer, 0, read);
+    }
+    return result.toString();
+  }
+
+  private static String render(PebbleEngine pebble, String name) throws IOException {
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate(name).evaluate(writer);
+    return writer.toString();
+  }
+}
@@ -13,22 +13,31 @@ import io.pebbletemplates.pebble.extension.AbstractExtension;
 import io.pebbletemplates.pebble.extension.Function;
 import io.pebbletemplates.pebble.loader.StringLoader;
 import io.pebbletemplates.pebble.extension.escaper.EscapeFilter;
+import io.pebbletemplates.pebble.extension.escaper.WriterEscapingStrategy;
 import io.pebbletemplates.pebble.template.EvaluationContext;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.utils.OperatorUtils;
+import io.pebbletemplates.pebble.utils.StringUtils;
 
 import org.junit.jupiter.api.Test;
+import org.unbescape.css.CssEscape;
+import org.unbescape.uri.UriEscape;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class EscaperExtensionTest {
 
@@ -240,6 +249,98 @@ class EscaperExtensionTest {
     assertEquals("my nbme is blex", writer.toString());
   }
 
+  @Test
+  void testNumbersAndBooleansAreEscapedWithReplacedStrategies() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .addEscapingStrategy("html", input -> "[" + input + "]").build();
+
+    PebbleTemplate template = pebble.getTemplate("{{ num * 2 }}{{ num > 1 }}{{ num is odd }}"
+        + "{% autoescape 'css' %}{{ -num }}{% endautoescape %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("num", 3);
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    assertEquals("[6][true][true]" + CssEscape.escapeCssIdentifier("-3"), writer.toString());
+  }
+
+  @Test
+  void testDecimalProductsAreEscapedAsUrlParameters() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    // products are escaped like the escape filter does, whatever the text of the decimal
+    PebbleTemplate template = pebble.getTemplate(
+        "{% autoescape 'url_param' %}{{ 1000 * num }}{% endautoescape %}"
+            + "|{{ (1000 * num) | escape('url_param') }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("num", new BigDecimal("1E+3"));
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    String[] results = writer.toString().split("\\|");
+    assertEquals(results[1], results[0]);
+    assertEquals(UriEscape.escapeUriQueryParam(StringUtils.toString(
+        OperatorUtils.multiply(1000L, new BigDecimal("1E+3")))), results[0]);
+
+    EscapeFilter filter = new EscapeFilter();
+    assertFalse(filter.preservesNumbersAndBooleans(filter.getEscapingStrategy("url_param")));
+  }
+
+  @Test
+  void testAutoescapingWritesToTheWriter() throws PebbleException, IOException {
+    List<String> calls = new ArrayList<>();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .defaultEscapingStrategy("custom")
+        .addEscapingStrategy("custom", new WriterEscapingStrategy() {
+
+          @Override
+          public void escape(String input, Writer writer) throws IOException {
+            calls.add("writer");
+            writer.write(input.replace('a', 'b'));
+          }
+
+          @Override
+          public String escape(String input) {
+            calls.add("string");
+            return input.replace('a', 'b');
+          }
+        }).build();
+
+    PebbleTemplate template = pebble.getTemplate("{{ text }}|{{ text | escape }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("text", "alex");
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    assertEquals("blex|blex", writer.toString());
+    assertEquals(Arrays.asList("writer", "string"), calls);
+  }
+
+  @Test
+  void testBuiltInStrategiesWriteWhatTheFilterReturns() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    EscapeFilter filter = new EscapeFilter();
+    String text = "1 <a href=\"x?y=1&z='2'\">\u00e9\u20ac / \\ \t+</a>";
+
+    for (String strategy : Arrays.asList(EscapeFilter.HTML_ESCAPE_STRATEGY,
+        EscapeFilter.JAVASCRIPT_ESCAPE_STRATEGY, EscapeFilter.CSS_ESCAPE_STRATEGY,
+        EscapeFilter.URL_PARAM_ESCAPE_STRATEGY, EscapeFilter.JSON_ESCAPE_STRATEGY)) {
+      PebbleTemplate template = pebble.getTemplate(
+          "{% autoescape '" + strategy + "' %}{{ text }}{% endautoescape %}");
+      Writer writer = new StringWriter();
+      template.evaluate(writer, Collections.singletonMap("text", text));
+      assertEquals(filter.getEscapingStrategy(strategy).escape(text), writer.toString(), strategy);
+    }
+  }
+
+  @Test
+  void testUnknownAutoescapeStrategyFailsWhenRendering() throws PebbleException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    PebbleTemplate template = pebble
+        .getTemplate("{% autoescape 'unknown' %}{{ text }}{% endautoescape %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("text", "a");
+    assertThrows(PebbleException.class, () -> template.evaluate(new StringWriter(), context));
+  }
+
   @Test
   void testEscapeFunction() throws PebbleException, IOException {
     PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
@@ -12,10 +12,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import io.pebbletemplates.pebble.attributes.AttributeResolver;
+import io.pebbletemplates.pebble.attributes.ResolvedAttribute;
 import io.pebbletemplates.pebble.error.AttributeNotFoundException;
 import io.pebbletemplates.pebble.error.ClassAccessException;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
 import io.pebbletemplates.pebble.loader.StringLoader;
 import io.pebbletemplates.pebble.attributes.methodaccess.NoOpMethodAccessValidator;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
@@ -24,6 +27,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -470,6 +474,63 @@ class GetAttributeTest {
     assertEquals("hello Steve", writer2.toString());
   }
 
+  /**
+   * The same GetAttribute expression is evaluated for more receiver classes than it caches, mixed
+   * with maps and lists which are not read through a member.
+   */
+  @Test
+  void testAttributeOfDifferentClassesAtTheSameNode() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+    PebbleTemplate template = pebble
+        .getTemplate("{% for object in objects %}{{ object.name }},{% endfor %}");
+
+    Map<String, Object> map = new HashMap<>();
+    map.put("name", "Map");
+    List<Object> objects = new ArrayList<>();
+    objects.add(new SimpleObject());
+    objects.add(new CustomizableObject("Alex"));
+    objects.add(map);
+    objects.add(new SimpleObject4());
+    objects.add(new SimpleObject5());
+    objects.add(new SimpleObject6());
+    objects.add(new SimpleObject9());
+    objects.add(new CustomizableObject("Bob"));
+    objects.add(new SimpleObject());
+    Map<String, Object> context = new HashMap<>();
+    context.put("objects", objects);
+
+    for (int i = 0; i < 2; i++) {
+      Writer writer = new StringWriter();
+      template.evaluate(writer, context);
+      assertEquals("Steve,Alex,Map,Steve,Steve,Steve,Steve,Bob,Steve,", writer.toString());
+    }
+  }
+
+  @Test
+  void testAttributeResolverOfExtensionIsNotBypassed() throws PebbleException, IOException {
+    AttributeResolver resolver = (instance, attributeNameValue, argumentValues, args, context,
+        filename, lineNumber) -> "Bob".equals(((CustomizableObject) instance).getName())
+        ? new ResolvedAttribute("resolved") : null;
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .extension(new AbstractExtension() {
+          @Override
+          public List<AttributeResolver> getAttributeResolver() {
+            return Collections.singletonList(resolver);
+          }
+        }).build();
+    PebbleTemplate template = pebble
+        .getTemplate("{% for object in objects %}{{ object.name }},{% endfor %}");
+
+    Map<String, Object> context = new HashMap<>();
+    context.put("objects", Arrays.asList(new CustomizableObject("Alex"),
+        new CustomizableObject("Bob"), new CustomizableObject("Alex")));
+
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    assertEquals("Alex,resolved,Alex,", writer.toString());
+  }
+
   @Test
   void testBeanMethodWithArgument() throws PebbleException, IOException {
     PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
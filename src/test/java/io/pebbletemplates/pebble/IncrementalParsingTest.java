@@ -0,0 +1,202 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.ParserException;
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+import io.pebbletemplates.pebble.lexer.Lexer;
+import io.pebbletemplates.pebble.lexer.LexerImpl;
+import io.pebbletemplates.pebble.lexer.Token;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.parser.IncrementalParser;
+import io.pebbletemplates.pebble.parser.Parser;
+import io.pebbletemplates.pebble.parser.ParserImpl;
+import io.pebbletemplates.pebble.parser.ParserOptions;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.tokenParser.TokenParser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalParsingTest {
+
+  private static final String HEADER = "{% macro greet(name) %}{% mark %}Hello {{ name }}{% endmacro %}\n";
+
+  private static final String BLOCK = "{% block content %}\n{% mark %}{{ greet('block') }}\n{% endblock %}\n";
+
+  @Test
+  void testOnlyChangedSegmentsAreTokenizedAgain() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new MemoryLoader())
+        .extension(new MarkExtension()).build();
+    CountingLexer lexer = new CountingLexer(pebble);
+    IncrementalParser parser = newParser(pebble, lexer);
+
+    parser.parse("template", HEADER + BLOCK + "before");
+    assertThat(lexer.tokenized).isEqualTo(3);
+
+    parser.parse("template", HEADER + BLOCK + "after");
+    assertThat(lexer.tokenized).isEqualTo(4);
+
+    parser.parse("template", HEADER.replace("Hello", "Hi") + BLOCK + "after");
+    assertThat(lexer.tokenized).isEqualTo(5);
+
+    parser.invalidate("template");
+    parser.parse("template", HEADER.replace("Hello", "Hi") + BLOCK + "after");
+    assertThat(lexer.tokenized).isEqualTo(8);
+  }
+
+  @Test
+  void testSegmentsAfterAnInsertedLineAreReused() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader)
+        .extension(new MarkExtension()).build();
+    CountingLexer lexer = new CountingLexer(pebble);
+    IncrementalParser parser = newParser(pebble, lexer);
+
+    parser.parse("template", HEADER + BLOCK + "{{ greet('end') }}");
+    assertThat(lexer.tokenized).isEqualTo(3);
+
+    String source = "inserted\n" + HEADER + BLOCK + "{{ greet('end') }}";
+    RootNode root = parser.parse("template", source);
+    assertThat(lexer.tokenized).isEqualTo(4);
+
+    loader.addTemplate("template", source);
+    PebbleTemplateImpl template = new PebbleTemplateImpl(pebble, root, "template");
+    for (NodeVisitorFactory visitorFactory : pebble.getExtensionRegistry().getNodeVisitors()) {
+      visitorFactory.createVisitor(template).visit(root);
+    }
+    Writer writer = new StringWriter();
+    template.evaluate(writer, Collections.emptyMap());
+    assertThat(writer.toString()).isEqualTo(render(pebble));
+  }
+
+  @Test
+  void testSameOutputAsFullParsing() throws IOException {
+    StringBuilder source = new StringBuilder(HEADER);
+    for (int i = 0; i < 120; i++) {
+      source.append("{% if i").append(i).append(" is null %}line ").append(i).append("{% endif %}\n");
+      if (i % 40 == 0) {
+        source.append(BLOCK.replace("content", "content" + i));
+      }
+    }
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", source.toString());
+    PebbleEngine incremental = new PebbleEngine.Builder().loader(loader)
+        .extension(new MarkExtension()).incrementalParsing(true).build();
+    PebbleEngine full = new PebbleEngine.Builder().loader(loader)
+        .extension(new MarkExtension()).build();
+
+    assertThat(render(incremental)).isEqualTo(render(full));
+
+    loader.replaceTemplate("template", source.toString().replace("line 77", "changed"));
+    incremental.getTemplateCache().invalidateAll();
+    full.getTemplateCache().invalidateAll();
+    assertThat(render(incremental)).contains("changed").isEqualTo(render(full));
+  }
+
+  @Test
+  void testErrorsReportTheLineAfterAnEdit() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", HEADER + BLOCK + "{{ 1 + }}");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader)
+        .extension(new MarkExtension()).incrementalParsing(true).build();
+
+    assertThatThrownBy(() -> pebble.getTemplate("template"))
+        .isInstanceOf(PebbleException.class)
+        .extracting(e -> ((PebbleException) e).getLineNumber()).isEqualTo(5);
+
+    loader.replaceTemplate("template", "\n\n" + HEADER + BLOCK + "{{ 1 + }}");
+    assertThatThrownBy(() -> pebble.getTemplate("template"))
+        .isInstanceOf(PebbleException.class)
+        .extracting(e -> ((PebbleException) e).getLineNumber()).isEqualTo(7);
+  }
+
+  private static IncrementalParser newParser(PebbleEngine pebble, Lexer lexer) {
+    ExtensionRegistry extensions = pebble.getExtensionRegistry();
+    return new IncrementalParser(pebble.getSyntax(), () -> lexer,
+        () -> new ParserImpl(extensions.getUnaryOperators(), extensions.getBinaryOperators(),
+            extensions.getTokenParsers(), new ParserOptions()));
+  }
+
+  private static String render(PebbleEngine pebble) throws IOException {
+    Writer writer = new StringWriter();
+    pebble.getTemplate("template").evaluate(writer, Collections.emptyMap());
+    return writer.toString();
+  }
+
+  /**
+   * Counts how many times a segment is tokenized.
+   */
+  private static class CountingLexer implements Lexer {
+
+    private final Lexer lexer;
+
+    private int tokenized = 0;
+
+    CountingLexer(PebbleEngine pebble) {
+      ExtensionRegistry extensions = pebble.getExtensionRegistry();
+      this.lexer = new LexerImpl(pebble.getSyntax(), extensions.getUnaryOperators().values(),
+          extensions.getBinaryOperators().values());
+    }
+
+    @Override
+    public TokenStream tokenize(Reader templateReader, String name) {
+      return this.tokenize(templateReader, name, 1);
+    }
+
+    @Override
+    public TokenStream tokenize(Reader templateReader, String name, int lineNumber) {
+      this.tokenized++;
+      return this.lexer.tokenize(templateReader, name, lineNumber);
+    }
+  }
+
+  /**
+   * A tag which renders nothing.
+   */
+  private static class MarkExtension extends AbstractExtension {
+
+    @Override
+    public List<TokenParser> getTokenParsers() {
+      List<TokenParser> tokenParsers = new ArrayList<>();
+      tokenParsers.add(new TokenParser() {
+
+        @Override
+        public String getTag() {
+          return "mark";
+        }
+
+        @Override
+        public RenderableNode parse(Token token, Parser parser) throws ParserException {
+          parser.getStream().next();
+          parser.getStream().expect(Token.Type.EXECUTE_END);
+          return new TextNode("", token.getLineNumber());
+        }
+      });
+      return tokenParsers;
+    }
+  }
+}
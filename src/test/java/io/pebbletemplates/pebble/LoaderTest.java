@@ -19,12 +19,15 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LoaderTest {
 
@@ -128,6 +131,84 @@ class LoaderTest {
     assertEquals("<html><head><title>Hello Pebble</title></head><body><h1> Home </h1><p> Welcome to my home page. My name is Bob.</p></body></html>", writer.toString());
   }
 
+  @Test
+  void testMemoryLoaderChangesAtRuntime() throws PebbleException, IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("b", "first b");
+    loader.addTemplate("a", "a");
+    loader.addTemplate("b", "ignored");
+    assertEquals(Arrays.asList("a", "b"), new ArrayList<>(loader.getTemplateNames()));
+
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+    assertEquals("first b", render(pebble, "b"));
+
+    assertEquals("first b", loader.replaceTemplate("b", "second b"));
+    pebble.getTemplateCache().invalidateAll();
+    assertEquals("second b", render(pebble, "b"));
+
+    assertEquals("second b", loader.removeTemplate("b"));
+    assertFalse(loader.resourceExists("b"));
+    pebble.getTemplateCache().invalidateAll();
+    assertThrows(LoaderException.class, () -> pebble.getTemplate("b"));
+  }
+
+  @Test
+  void testDelegatingLoaderRemembersResolutions() throws PebbleException, IOException {
+    CountingMemoryLoader first = new CountingMemoryLoader();
+    CountingMemoryLoader second = new CountingMemoryLoader();
+    second.addTemplate("template", "SECOND");
+    List<Loader<?>> loaders = new ArrayList<>();
+    loaders.add(first);
+    loaders.add(second);
+    DelegatingLoader loader = new DelegatingLoader(loaders, true);
+    DelegatingLoaderCacheKey key = loader.createCacheKey("template");
+    DelegatingLoaderCacheKey missingKey = loader.createCacheKey("missing");
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("SECOND", loader.getContent(key).toString());
+      assertThrows(LoaderException.class, () -> loader.getReader(missingKey));
+    }
+    assertEquals(2, first.lookups);
+    assertEquals(4, second.lookups);
+
+    // the template is looked up again once it is no longer found where it was
+    second.removeTemplate("template");
+    first.addTemplate("template", "FIRST");
+    assertEquals("FIRST", loader.getContent(key).toString());
+
+    // a template which appears later is found after the invalidation
+    second.addTemplate("missing", "FOUND");
+    assertThrows(LoaderException.class, () -> loader.getReader(missingKey));
+    loader.invalidate("missing");
+    assertEquals("FOUND", loader.getContent(missingKey).toString());
+  }
+
+  @Test
+  void testDelegatingLoaderForgetsMissingTemplatesWhenFull() {
+    CountingMemoryLoader child = new CountingMemoryLoader();
+    List<Loader<?>> loaders = new ArrayList<>();
+    loaders.add(child);
+    DelegatingLoader loader = new DelegatingLoader(loaders, true);
+
+    assertThrows(LoaderException.class, () -> loader.getReader(loader.createCacheKey("first")));
+    assertThrows(LoaderException.class, () -> loader.getReader(loader.createCacheKey("first")));
+    assertEquals(1, child.lookups);
+
+    // dynamic names don't grow the remembered missing templates forever
+    for (int i = 0; i < 1000; i++) {
+      DelegatingLoaderCacheKey key = loader.createCacheKey("missing" + i);
+      assertThrows(LoaderException.class, () -> loader.getReader(key));
+    }
+    assertThrows(LoaderException.class, () -> loader.getReader(loader.createCacheKey("first")));
+    assertEquals(1002, child.lookups);
+  }
+
+  private static String render(PebbleEngine pebble, String name) throws IOException {
+    Writer writer = new StringWriter();
+    pebble.getTemplate(name).evaluate(writer);
+    return writer.toString();
+  }
+
   @Test
   void testGetLiteralTemplate() throws IOException {
     PebbleEngine engine = new PebbleEngine.Builder().build();
@@ -169,4 +250,15 @@ class LoaderTest {
     }
 
   }
+
+  private static class CountingMemoryLoader extends MemoryLoader {
+
+    private int lookups = 0;
+
+    @Override
+    public Reader getReader(String templateName) {
+      this.lookups++;
+      return super.getReader(templateName);
+    }
+  }
 }
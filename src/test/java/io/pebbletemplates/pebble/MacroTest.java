@@ -1,9 +1,12 @@
 package io.pebbletemplates.pebble;
 
 import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Function;
 import io.pebbletemplates.pebble.extension.InvocationCountingFunction;
 import io.pebbletemplates.pebble.extension.TestingExtension;
 import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.EvaluationContext;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 
 import org.junit.jupiter.api.Test;
@@ -11,7 +14,9 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -198,4 +203,48 @@ class MacroTest {
     template.evaluate(writer);
     assertEquals("barfoo", writer.toString());
   }
+
+  @Test
+  void testPrintedMacrosAndBlocksAreWrittenToTheOutput() throws IOException {
+    StringWriter writer = new StringWriter();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .extension(new OutputLengthExtension(writer)).build();
+    PebbleTemplate template = pebble.getTemplate("{% macro m() %}<b>{{ length() }}{% endmacro %}"
+        + "x{{ m() }}|{{ m() | raw }}|{% set v = m() %}{{ v }}"
+        + "|{% block b %}{% if v is not empty %}<i>{{ length() }}{% endif %}{% endblock %}"
+        + "|{{ block('b') }}");
+
+    template.evaluate(writer);
+    // the length includes the start of the macro or block only when it is rendered into the output
+    assertEquals("x<b>4|<b>6|<b>11|<i>20|<i>26", writer.toString());
+  }
+
+  /**
+   * Provides the "length" function, returning the length of the output written so far.
+   */
+  private static class OutputLengthExtension extends AbstractExtension {
+
+    private final StringWriter writer;
+
+    OutputLengthExtension(StringWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public Map<String, Function> getFunctions() {
+      return Collections.singletonMap("length", new Function() {
+
+        @Override
+        public List<String> getArgumentNames() {
+          return null;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> args, PebbleTemplate self,
+            EvaluationContext context, int lineNumber) {
+          return OutputLengthExtension.this.writer.getBuffer().length();
+        }
+      });
+    }
+  }
 }
@@ -0,0 +1,186 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.expression.ContextVariableExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SlotResolverTest {
+
+  @Test
+  void testLoopVariablesAndMacroArgumentsAreResolved() throws IOException {
+    ResolutionRecorder recorder = new ResolutionRecorder();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .extension(recorder).build();
+
+    String source = "{{ top }}{% for item in items %}{{ item }}{{ loop }}{{ other }}{% endfor %}"
+        + "{% macro m(arg) %}{% set local = 1 %}{{ arg }}{{ local }}{{ missing }}{% endmacro %}";
+    pebble.getTemplate(source);
+
+    assertEquals(Arrays.asList("top=false", "item=true", "loop=true", "other=false", "arg=true",
+        "local=true", "missing=false"), recorder.resolutions);
+  }
+
+  @Test
+  void testNestedLoopsShadowing() throws IOException {
+    String source = "{% for i in outer %}{% for i in inner %}{{ i }}{% endfor %}{{ i }}"
+        + "{% for j in inner %}{{ i }}{{ j }}{{ loop.index }}{% endfor %}{% endfor %}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("outer", Arrays.asList("a", "b"));
+    context.put("inner", Arrays.asList(1, 2));
+
+    assertEquals("12aa10a21" + "12bb10b21", this.render(source, context));
+  }
+
+  @Test
+  void testSetLoopVariableInsideLoop() throws IOException {
+    String source = "{% for i in items %}{% set i = i * 10 %}{% for j in items %}{% set i = i + j %}"
+        + "{% endfor %}{{ i }} {% endfor %}{{ i }}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList(1, 2));
+
+    assertEquals("13 23 ", this.render(source, context));
+  }
+
+  @Test
+  void testSetInsideLoopStillUpdatesOuterVariable() throws IOException {
+    String source = "{% set total = 0 %}{% for i in items %}{% set total = total + i %}{% endfor %}"
+        + "{{ total }}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList(1, 2, 3));
+
+    assertEquals("6", this.render(source, context));
+  }
+
+  @Test
+  void testMacroArgumentsAndLocalVariables() throws IOException {
+    String source = "{% macro sum(items, start=100) %}{% set total = start %}"
+        + "{% for i in items %}{% set total = total + i %}{% endfor %}{{ total }}{% endmacro %}"
+        + "{{ sum(items) }} {{ sum(items, 0) }} {{ sum([]) }}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList(1, 2, 3));
+
+    assertEquals("106 6 100", this.render(source, context));
+  }
+
+  @Test
+  void testRecursiveMacroKeepsItsOwnFrame() throws IOException {
+    String source = "{% macro count(n) %}{% set before = n %}{% if n > 0 %}{{ count(n - 1) }}"
+        + "{% endif %}{{ before }}{% endmacro %}{{ count(3) }}";
+
+    assertEquals("0123", this.render(source, new HashMap<>()));
+  }
+
+  @Test
+  void testUndefinedMacroVariableInStrictMode() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{% macro m(flag) %}{% if flag %}{% set value = 1 %}{% endif %}{{ value }}{% endmacro %}"
+            + "{{ m(false) }}");
+
+    assertThrows(RootAttributeNotFoundException.class, () -> template.evaluate(new StringWriter()));
+  }
+
+  @Test
+  void testIncludedTemplateSeesAndUpdatesLoopVariable() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("main", "{% for item in items %}{% include 'row' %}{{ item }};{% endfor %}");
+    loader.addTemplate("row", "[{{ item }}]{% set item = item * 2 %}");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList(1, 2));
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate("main").evaluate(writer, context);
+
+    assertEquals("[1]2;[2]4;", writer.toString());
+  }
+
+  @Test
+  void testGlobalContextInsideLoop() throws IOException {
+    String source = "{% for item in items %}{{ _context.item }}{% endfor %}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList("a", "b"));
+
+    assertEquals("ab", this.render(source, context));
+  }
+
+  @Test
+  void testBlockInsideLoopIsNotResolved() throws IOException {
+    String source = "{% for item in items %}{% block b %}[{{ item }}]{% endblock %}{% endfor %}"
+        + "{{ block('b') }}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList("a", "b"));
+
+    assertEquals("[a][b][]", this.render(source, context));
+  }
+
+  private String render(String source, Map<String, Object> context) throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate(source).evaluate(writer, context);
+    return writer.toString();
+  }
+
+  /**
+   * Records, for every printed variable, whether it was resolved to a slot.
+   */
+  private static class ResolutionRecorder extends AbstractExtension {
+
+    private final List<String> resolutions = new ArrayList<>();
+
+    @Override
+    public List<NodeVisitorFactory> getNodeVisitors() {
+      return Collections.singletonList(template ->
+          new AbstractNodeVisitor((PebbleTemplateImpl) template) {
+
+            @Override
+            public void visit(PrintNode node) {
+              Expression<?> expression = node.getExpression();
+              if (expression instanceof FilterExpression) {
+                expression = ((FilterExpression) expression).getLeftExpression();
+              }
+              this.record(expression);
+            }
+
+            private void record(Node node) {
+              ContextVariableExpression variable = (ContextVariableExpression) node;
+              ResolutionRecorder.this.resolutions
+                  .add(variable.getName() + "=" + variable.isSlotResolved());
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.LoaderException;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.WarmUpResult;
+import io.pebbletemplates.pebble.template.WarmUpResult.TemplateTiming;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WarmUpTest {
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  void setUp() {
+    this.executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.executorService.shutdownNow();
+  }
+
+  @Test
+  void testReferencedTemplatesAreCompiled() throws IOException {
+    CountingLoader loader = new CountingLoader();
+    loader.addTemplate("page", "{% extends 'layout' %}{% import 'macros' %}"
+        + "{% from 'helpers' import helper %}{% block content %}"
+        + "{% include flag ? 'partial-a' : 'partial-b' %}{% include dynamicName %}"
+        + "{% embed 'card' %}{% block body %}{% include 'card-body' %}{% endblock %}{% endembed %}"
+        + "{% endblock %}");
+    loader.addTemplate("layout", "<{% block content %}{% endblock %}>");
+    loader.addTemplate("macros", "{% macro m() %}m{% endmacro %}");
+    loader.addTemplate("helpers", "{% macro helper() %}h{% endmacro %}");
+    loader.addTemplate("partial-a", "a");
+    loader.addTemplate("partial-b", "b");
+    loader.addTemplate("card", "[{% block body %}{% endblock %}]");
+    loader.addTemplate("card-body", "body");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    WarmUpResult result = pebble.warmUp(Collections.singletonList("page"), this.executorService);
+
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(names(result)).containsExactly("card", "card-body", "helpers", "layout", "macros",
+        "page", "partial-a", "partial-b");
+    assertThat(result.getTemplates()).filteredOn(t -> t.getName().equals("layout"))
+        .extracting(TemplateTiming::getReferencedBy).containsExactly("page");
+    assertThat(result.getElapsedNanos()).isPositive();
+
+    // everything is served from the cache afterwards
+    int loads = loader.loads.get();
+    Map<String, Object> context = new HashMap<>();
+    context.put("flag", true);
+    context.put("dynamicName", "partial-b");
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate("page").evaluate(writer, context);
+    assertThat(writer.toString()).isEqualTo("<ab[body]>");
+    assertThat(loader.loads.get()).isEqualTo(loads);
+  }
+
+  @Test
+  void testFailuresAreReported() {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("page", "{% include 'missing' %}");
+    loader.addTemplate("broken", "{{ unclosed");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    WarmUpResult result = pebble.warmUp(Arrays.asList("page", "broken"), this.executorService);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(names(result)).containsExactly("broken", "missing", "page");
+    assertThat(result.getFailures()).extracting(TemplateTiming::getName)
+        .containsExactlyInAnyOrder("broken", "missing");
+    assertThat(result.getFailures()).filteredOn(t -> t.getName().equals("missing"))
+        .extracting(TemplateTiming::getFailure).hasOnlyElementsOfType(LoaderException.class);
+  }
+
+  @Test
+  void testTemplatesOfListableLoader() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("one", "1");
+    loader.addTemplate("two", "{% include 'one' %}2");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    assertThat(names(pebble.warmUp(this.executorService))).containsExactly("one", "two");
+  }
+
+  @Test
+  void testTemplatesOfFileLoader(@TempDir Path directory) throws IOException {
+    Files.createDirectories(directory.resolve("pages"));
+    Files.write(directory.resolve("base.peb"), "base".getBytes(StandardCharsets.UTF_8));
+    Files.write(directory.resolve("pages/home.peb"),
+        "{% extends '../base' %}".getBytes(StandardCharsets.UTF_8));
+    Files.write(directory.resolve("notes.txt"), "ignored".getBytes(StandardCharsets.UTF_8));
+    FileLoader loader = new FileLoader();
+    loader.setPrefix(directory.toString());
+    loader.setSuffix(".peb");
+
+    assertThat(loader.getTemplateNames()).containsExactly("base", "pages/home");
+
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+    WarmUpResult result = pebble.warmUp(this.executorService);
+    assertThat(result.isSuccessful()).isTrue();
+    assertThat(result.getTemplates()).hasSize(2);
+  }
+
+  @Test
+  void testLoaderWhichCanNotListTemplates() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    assertThatThrownBy(() -> pebble.warmUp(this.executorService))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static Set<String> names(WarmUpResult result) {
+    Set<String> names = new TreeSet<>();
+    for (TemplateTiming template : result.getTemplates()) {
+      names.add(template.getName());
+    }
+    return names;
+  }
+
+  private static class CountingLoader extends MemoryLoader {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    public Reader getReader(String templateName) {
+      this.loads.incrementAndGet();
+      return super.getReader(templateName);
+    }
+  }
+}
@@ -11,17 +11,32 @@ package io.pebbletemplates.pebble;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.loader.StringLoader;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.utils.ChunkSink;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class WritingTest {
 
@@ -42,6 +57,147 @@ class WritingTest {
     assertEquals("firstsecond", writer.toString());
   }
 
+  @Test
+  void testEvaluateToOutputStream() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "<p>caf\u00e9 {{ name }}</p>{% for i in [1, 2] %}<br>{{ i }}{% endfor %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("name", "\u20ac");
+
+    for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_16}) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      template.evaluate(out, charset, context);
+      // a second rendering reuses the bytes encoded by the first one
+      template.evaluate(out, charset, context);
+
+      String expected = "<p>caf\u00e9 \u20ac</p><br>1<br>2";
+      ByteArrayOutputStream reference = new ByteArrayOutputStream();
+      Writer writer = new OutputStreamWriter(reference, charset);
+      writer.write(expected);
+      writer.flush();
+      writer = new OutputStreamWriter(reference, charset);
+      writer.write(expected);
+      writer.flush();
+      assertArrayEquals(reference.toByteArray(), out.toByteArray(), charset.name());
+    }
+  }
+
+  @Test
+  void testEvaluateToChunkSink() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "<head>{{ title }}</head>{% flush %}{% for i in [1, 2, 3, 4] %}<p>{{ i }}</p>{% endfor %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("title", "<t>");
+    List<String> chunks = new ArrayList<>();
+    AtomicBoolean completed = new AtomicBoolean();
+
+    template.evaluate(new ChunkSink() {
+
+      @Override
+      public CompletionStage<?> onChunk(CharBuffer chunk) {
+        chunks.add(chunk.toString());
+        return CompletableFuture.completedFuture(null);
+      }
+
+      @Override
+      public void onComplete() {
+        completed.set(true);
+      }
+
+      @Override
+      public int getChunkSize() {
+        return 24;
+      }
+    }, context);
+
+    assertEquals(Arrays.asList("<head>&lt;t&gt;</head>", "<p>1</p><p>2</p><p>3</p>",
+        "<p>4</p>"), chunks);
+    assertTrue(completed.get());
+  }
+
+  @Test
+  void testDecoratorsGetTheStreamingMethods() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = new DelegatingTemplate(
+        pebble.getTemplate("a{% flush %}b\u00e9{{ name }}"));
+    Map<String, Object> context = new HashMap<>();
+    context.put("name", "c");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    template.evaluate(out, StandardCharsets.UTF_8, context);
+    assertEquals("ab\u00e9c", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    List<String> chunks = new ArrayList<>();
+    template.evaluate(chunk -> {
+      chunks.add(chunk.toString());
+      return null;
+    }, context);
+    assertEquals(Arrays.asList("a", "b\u00e9c"), chunks);
+  }
+
+  /**
+   * Only implements the methods a decorator has to.
+   */
+  private static class DelegatingTemplate implements PebbleTemplate {
+
+    private final PebbleTemplate delegate;
+
+    DelegatingTemplate(PebbleTemplate delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void evaluate(Writer writer) throws IOException {
+      this.delegate.evaluate(writer);
+    }
+
+    @Override
+    public void evaluate(Writer writer, Locale locale) throws IOException {
+      this.delegate.evaluate(writer, locale);
+    }
+
+    @Override
+    public void evaluate(Writer writer, Map<String, Object> context) throws IOException {
+      this.delegate.evaluate(writer, context);
+    }
+
+    @Override
+    public void evaluate(Writer writer, Map<String, Object> context, Locale locale)
+        throws IOException {
+      this.delegate.evaluate(writer, context, locale);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer) throws IOException {
+      this.delegate.evaluateBlock(blockName, writer);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Locale locale) throws IOException {
+      this.delegate.evaluateBlock(blockName, writer, locale);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Map<String, Object> context)
+        throws IOException {
+      this.delegate.evaluateBlock(blockName, writer, context);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Map<String, Object> context,
+        Locale locale) throws IOException {
+      this.delegate.evaluateBlock(blockName, writer, context, locale);
+    }
+
+    @Override
+    public String getName() {
+      return this.delegate.getName();
+    }
+  }
+
   public class UncloseableWriter extends StringWriter {
 
     @Override
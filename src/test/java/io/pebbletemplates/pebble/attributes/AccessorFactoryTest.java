@@ -0,0 +1,125 @@
+package io.pebbletemplates.pebble.attributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AccessorFactoryTest {
+
+  @Test
+  void whenGetterOfPublicClass_thenReturnGeneratedFunction() throws Exception {
+    AttributeAccessor accessor = AccessorFactory.create(Bean.class.getMethod("getName"));
+
+    assertThat(accessor.getClass().getSimpleName()).isEqualTo("FunctionAccessor");
+    assertThat(accessor.get(new Bean(), null, "template", 1)).isEqualTo("bean");
+  }
+
+  @Test
+  void whenGetterCreatedTwice_thenReuseGeneratedFunction() throws Exception {
+    AttributeAccessor first = AccessorFactory.create(Bean.class.getMethod("getName"));
+    AttributeAccessor second = AccessorFactory.create(Bean.class.getMethod("getName"));
+
+    assertThat(first).isNotSameAs(second);
+    assertThat(getFunction(second)).isSameAs(getFunction(first));
+  }
+
+  @Test
+  void whenGetterReturnsPrimitive_thenReturnBoxedValue() throws Exception {
+    AttributeAccessor accessor = AccessorFactory.create(Bean.class.getMethod("isActive"));
+
+    assertThat(accessor.get(new Bean(), new Object[0], "template", 1)).isEqualTo(Boolean.TRUE);
+  }
+
+  @Test
+  void whenGetterOfJdkInterface_thenReturnGeneratedFunction() throws Exception {
+    AttributeAccessor accessor = AccessorFactory.create(List.class.getMethod("size"));
+
+    assertThat(accessor.getClass().getSimpleName()).isEqualTo("FunctionAccessor");
+    assertThat(accessor.get(Arrays.asList(1, 2, 3), null, "template", 1)).isEqualTo(3);
+  }
+
+  @Test
+  void whenGetterOfNonPublicClass_thenReturnMethodHandle() throws Exception {
+    AttributeAccessor accessor = AccessorFactory
+        .create(HiddenBean.class.getDeclaredMethod("getName"));
+
+    assertThat(accessor.getClass().getSimpleName()).isEqualTo("MethodHandleAccessor");
+    assertThat(accessor.get(new HiddenBean(), null, "template", 1)).isEqualTo("hidden");
+  }
+
+  @Test
+  void whenPublicField_thenReturnMethodHandle() throws Exception {
+    AttributeAccessor accessor = AccessorFactory.create(Bean.class.getField("field"));
+
+    assertThat(accessor.getClass().getSimpleName()).isEqualTo("MethodHandleAccessor");
+    assertThat(accessor.get(new Bean(), null, "template", 1)).isEqualTo(42);
+  }
+
+  @Test
+  void whenMethodWithParametersOrStatic_thenReturnReflectiveAccessor() throws Exception {
+    AttributeAccessor withParameters = AccessorFactory
+        .create(Bean.class.getMethod("greet", Integer.class));
+    AttributeAccessor staticMethod = AccessorFactory.create(Bean.class.getMethod("create"));
+
+    assertThat(withParameters).isInstanceOf(MemberAccessor.class);
+    assertThat(withParameters.get(new Bean(), new Object[]{2L}, "template", 1)).isEqualTo("hi 2");
+    assertThat(staticMethod).isInstanceOf(MemberAccessor.class);
+  }
+
+  @Test
+  void whenGetterThrows_thenReportLikeReflection() throws Exception {
+    AttributeAccessor accessor = AccessorFactory.create(Bean.class.getMethod("getBroken"));
+
+    assertThatThrownBy(() -> accessor.get(new Bean(), null, "template", 7))
+        .isInstanceOf(PebbleException.class)
+        .hasMessageContaining("Could not call getBroken")
+        .hasCauseInstanceOf(InvocationTargetException.class)
+        .hasRootCauseInstanceOf(IllegalStateException.class);
+  }
+
+  private static Object getFunction(AttributeAccessor accessor) throws Exception {
+    Field function = accessor.getClass().getDeclaredField("function");
+    function.setAccessible(true);
+    return function.get(accessor);
+  }
+
+  public static class Bean {
+
+    public final int field = 42;
+
+    public String getName() {
+      return "bean";
+    }
+
+    public boolean isActive() {
+      return true;
+    }
+
+    public String greet(Integer times) {
+      return "hi " + times;
+    }
+
+    public String getBroken() {
+      throw new IllegalStateException("broken");
+    }
+
+    public static Bean create() {
+      return new Bean();
+    }
+  }
+
+  private static class HiddenBean {
+
+    public String getName() {
+      return "hidden";
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package io.pebbletemplates.pebble.attributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.error.AttributeNotFoundException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DefaultAttributeResolverTest {
+
+  private static final Class<?>[] NO_ARGUMENTS = new Class<?>[0];
+
+  private final MemberCacheUtils memberCacheUtils = new MemberCacheUtils(2);
+
+  private final DefaultAttributeResolver underTest = new DefaultAttributeResolver(
+      this.memberCacheUtils);
+
+  @Test
+  void whenAttributeIsMissing_thenRememberItAsNotFound() throws IOException {
+    assertThat(this.render(false, "[{{ bean.missing }}][{{ bean.name }}]")).isEqualTo("[][bean]");
+    assertThat(this.render(false, "[{{ bean.missing }}]")).isEqualTo("[]");
+
+    assertThat(this.memberCacheUtils.isCachedAsNotFound(Bean.class, "missing", NO_ARGUMENTS))
+        .isTrue();
+    assertThat(this.memberCacheUtils.isCachedAsNotFound(Bean.class, "name", NO_ARGUMENTS))
+        .isFalse();
+    assertThat(this.memberCacheUtils.getNotFoundCount()).isEqualTo(1);
+  }
+
+  @Test
+  void whenAttributeIsCachedAsNotFound_thenStrictVariablesStillFail() throws IOException {
+    this.render(false, "{{ bean.missing }}");
+
+    assertThatThrownBy(() -> this.render(true, "{{ bean.missing }}"))
+        .isInstanceOf(AttributeNotFoundException.class);
+  }
+
+  @Test
+  void whenTooManyAttributesAreMissing_thenCacheIsBounded() throws IOException {
+    this.render(false, "{{ bean.first }}{{ bean.second }}{{ bean.third }}{{ bean.fourth() }}");
+
+    assertThat(this.memberCacheUtils.getNotFoundCount()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  void whenNotFoundCacheIsCleared_thenForgetMissingAttributes() throws IOException {
+    this.render(false, "{{ bean.missing }}");
+
+    this.underTest.clearNotFoundCache();
+
+    assertThat(this.memberCacheUtils.getNotFoundCount()).isZero();
+  }
+
+  private String render(boolean strictVariables, String source) throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(strictVariables)
+        .extension(new AbstractExtension() {
+          @Override
+          public List<AttributeResolver> getAttributeResolver() {
+            return Collections.singletonList(DefaultAttributeResolverTest.this.underTest);
+          }
+        }).build();
+    PebbleTemplate template = pebble.getTemplate(source);
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, Collections.singletonMap("bean", new Bean()));
+    return writer.toString();
+  }
+
+  public static class Bean {
+
+    public String getName() {
+      return "bean";
+    }
+  }
+}
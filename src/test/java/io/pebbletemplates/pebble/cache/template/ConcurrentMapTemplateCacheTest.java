@@ -0,0 +1,222 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentMapTemplateCacheTest {
+
+  private final PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+      .build();
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  void setUp() {
+    this.executorService = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.executorService.shutdownNow();
+  }
+
+  @Test
+  void testConcurrentRequestsShareOneCompilation() throws Exception {
+    ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+    AtomicInteger compilations = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Future<PebbleTemplate> first = this.executorService.submit(
+        () -> cache.computeIfAbsent("template", key -> {
+          compilations.incrementAndGet();
+          started.countDown();
+          await(release);
+          return this.compile(key);
+        }));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    List<Future<PebbleTemplate>> others = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      others.add(this.executorService.submit(() -> cache.computeIfAbsent("template", key -> {
+        compilations.incrementAndGet();
+        return this.compile(key);
+      })));
+    }
+    // an unrelated template is not blocked by the compilation in progress
+    assertThat(cache.computeIfAbsent("other", this::compile)).isNotNull();
+
+    release.countDown();
+    PebbleTemplate template = first.get(10, TimeUnit.SECONDS);
+    for (Future<PebbleTemplate> other : others) {
+      assertThat(other.get(10, TimeUnit.SECONDS)).isSameAs(template);
+    }
+    assertThat(compilations.get()).isEqualTo(1);
+    assertThat(cache.computeIfAbsent("template", this::compile)).isSameAs(template);
+  }
+
+  @Test
+  void testFailureIsSharedButNotCached() throws Exception {
+    ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    PebbleException failure = new PebbleException(null, "broken");
+
+    Future<PebbleTemplate> first = this.executorService.submit(
+        () -> cache.computeIfAbsent("template", key -> {
+          started.countDown();
+          await(release);
+          throw failure;
+        }));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    Future<PebbleTemplate> second = this.executorService.submit(
+        () -> cache.computeIfAbsent("template", this::compile));
+    // give the second request the time to wait for the first one
+    Thread.sleep(100);
+    release.countDown();
+
+    assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCause(failure);
+    PebbleTemplate template;
+    try {
+      template = second.get(10, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      // it waited for the first compilation
+      assertThat(e.getCause()).isSameAs(failure);
+      template = null;
+    }
+    PebbleTemplate compiled = cache.computeIfAbsent("template", this::compile);
+    assertThat(compiled).isNotNull();
+    if (template != null) {
+      assertThat(compiled).isSameAs(template);
+    }
+  }
+
+  @Test
+  void testTemplateRequiringItself() {
+    ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+
+    assertThatThrownBy(() -> cache.computeIfAbsent("template",
+        key -> cache.computeIfAbsent("template", this::compile)))
+        .isInstanceOf(PebbleException.class)
+        .hasMessageContaining("requires itself");
+    assertThat(cache.computeIfAbsent("template", this::compile)).isNotNull();
+  }
+
+  @Test
+  void testCycleAcrossThreadsDoesNotDeadlock() throws Exception {
+    ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+    CountDownLatch bothStarted = new CountDownLatch(2);
+
+    Future<PebbleTemplate> first = this.executorService.submit(
+        () -> cache.computeIfAbsent("a", key -> {
+          bothStarted.countDown();
+          await(bothStarted);
+          return cache.computeIfAbsent("b", this::compile);
+        }));
+    Future<PebbleTemplate> second = this.executorService.submit(
+        () -> cache.computeIfAbsent("b", key -> {
+          bothStarted.countDown();
+          await(bothStarted);
+          return cache.computeIfAbsent("a", this::compile);
+        }));
+
+    int failures = 0;
+    for (Future<PebbleTemplate> future : new Future[]{first, second}) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(PebbleException.class)
+            .hasMessageContaining("requires itself");
+        failures++;
+      }
+    }
+    assertThat(failures).isPositive();
+  }
+
+  @Test
+  void testCheckedFailureIsSharedWithWaitingThreads() throws Exception {
+    ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Exception failure = new Exception("checked");
+
+    Future<PebbleTemplate> first = this.executorService.submit(
+        () -> cache.computeIfAbsent("template", key -> {
+          started.countDown();
+          await(release);
+          throw ConcurrentMapTemplateCacheTest.<RuntimeException>sneakyThrow(failure);
+        }));
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    Future<PebbleTemplate> second = this.executorService.submit(
+        () -> cache.computeIfAbsent("template", this::compile));
+    Thread.sleep(100);
+    release.countDown();
+
+    assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCause(failure);
+    try {
+      assertThat(second.get(10, TimeUnit.SECONDS)).isNotNull();
+    } catch (ExecutionException e) {
+      // it waited for the first compilation
+      assertThat(e.getCause()).hasCause(failure);
+    }
+  }
+
+  @Test
+  void testTemplateInvalidatedWhileCompiledIsNotCached() {
+    for (boolean all : new boolean[]{true, false}) {
+      ConcurrentMapTemplateCache cache = new ConcurrentMapTemplateCache();
+      AtomicInteger compilations = new AtomicInteger();
+
+      cache.computeIfAbsent("template", key -> {
+        compilations.incrementAndGet();
+        if (all) {
+          cache.invalidateAll();
+        } else {
+          cache.invalidate(key);
+        }
+        return this.compile(key);
+      });
+      cache.computeIfAbsent("template", key -> {
+        compilations.incrementAndGet();
+        return this.compile(key);
+      });
+      assertThat(compilations.get()).isEqualTo(2);
+    }
+  }
+
+  private PebbleTemplate compile(Object key) {
+    return this.pebble.getTemplate((String) key);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable e) throws E {
+    throw (E) e;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
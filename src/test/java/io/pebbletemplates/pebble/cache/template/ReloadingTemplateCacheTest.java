@@ -0,0 +1,168 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReloadingTemplateCacheTest {
+
+  @TempDir
+  Path directory;
+
+  private CountingLoader loader;
+
+  private ReloadingTemplateCache cache;
+
+  private PebbleEngine pebble;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.write("base", "<{% block content %}base{% endblock %}>");
+    this.write("macros", "{% macro greet() %}hello{% endmacro %}");
+    this.write("child", "{% extends 'base' %}{% block content %}child{% endblock %}");
+    this.write("page", "{% import 'macros' %}{{ greet() }} {% include 'child' %}");
+    this.write("other", "other");
+    this.loader = new CountingLoader();
+    this.loader.setPrefix(this.directory.toString());
+    this.loader.setSuffix(".peb");
+    this.cache = new ReloadingTemplateCache(this.loader);
+    this.pebble = new PebbleEngine.Builder().loader(this.loader).templateCache(this.cache).build();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    this.cache.close();
+  }
+
+  @Test
+  void testInvalidationFollowsDependencies() throws IOException {
+    assertThat(this.render("page")).isEqualTo("hello <child>");
+    assertThat(this.render("other")).isEqualTo("other");
+
+    this.cache.invalidate("macros");
+    assertThat(this.render("page")).isEqualTo("hello <child>");
+    assertThat(this.render("other")).isEqualTo("other");
+
+    assertThat(this.loader.loads("macros")).isEqualTo(2);
+    assertThat(this.loader.loads("page")).isEqualTo(2);
+    assertThat(this.loader.loads("child")).isEqualTo(1);
+    assertThat(this.loader.loads("base")).isEqualTo(1);
+    assertThat(this.loader.loads("other")).isEqualTo(1);
+
+    // transitively through child
+    this.cache.invalidate("base");
+    this.render("page");
+    assertThat(this.loader.loads("base")).isEqualTo(2);
+    assertThat(this.loader.loads("child")).isEqualTo(2);
+    assertThat(this.loader.loads("page")).isEqualTo(3);
+    assertThat(this.loader.loads("macros")).isEqualTo(2);
+  }
+
+  @Test
+  void testChangedFileIsReloaded() throws Exception {
+    assertThat(this.render("page")).isEqualTo("hello <child>");
+    assertThat(this.render("other")).isEqualTo("other");
+
+    this.write("base", "[{% block content %}base{% endblock %}]");
+
+    long deadline = System.currentTimeMillis() + 20_000;
+    while (!this.render("page").equals("hello [child]") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(this.render("page")).isEqualTo("hello [child]");
+    assertThat(this.render("other")).isEqualTo("other");
+    assertThat(this.loader.loads("other")).isEqualTo(1);
+    assertThat(this.loader.loads("macros")).isEqualTo(1);
+  }
+
+  @Test
+  void testChangeWhileCompilingIsNotLost() throws Exception {
+    PebbleEngine uncached = new PebbleEngine.Builder().loader(this.loader).cacheActive(false)
+        .build();
+    AtomicInteger compilations = new AtomicInteger();
+    Function<Object, PebbleTemplate> compile = key -> {
+      compilations.incrementAndGet();
+      return uncached.getTemplate((String) key);
+    };
+
+    this.cache.computeIfAbsent("other", key -> {
+      PebbleTemplate template = compile.apply(key);
+      this.cache.invalidate(key);
+      return template;
+    });
+    this.cache.computeIfAbsent("other", compile);
+    assertThat(compilations.get()).isEqualTo(2);
+
+    this.cache.computeIfAbsent("base", key -> {
+      PebbleTemplate template = compile.apply(key);
+      try {
+        this.write("base", "changed");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return template;
+    });
+    long deadline = System.currentTimeMillis() + 20_000;
+    while (compilations.get() < 4 && System.currentTimeMillis() < deadline) {
+      this.cache.computeIfAbsent("base", compile);
+      Thread.sleep(50);
+    }
+    StringWriter writer = new StringWriter();
+    this.cache.computeIfAbsent("base", compile).evaluate(writer);
+    assertThat(writer.toString()).isEqualTo("changed");
+  }
+
+  @Test
+  void testKeysWhichAreNotFileNames() {
+    PebbleEngine literal = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    String source = "{{ '\u0000' }}?<:";
+
+    assertThat(this.cache.computeIfAbsent(source, key -> literal.getTemplate((String) key)))
+        .isNotNull();
+  }
+
+  private void write(String name, String content) throws IOException {
+    Files.write(this.directory.resolve(name + ".peb"), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String render(String name) throws IOException {
+    StringWriter writer = new StringWriter();
+    this.pebble.getTemplate(name).evaluate(writer);
+    return writer.toString();
+  }
+
+  private static class CountingLoader extends FileLoader {
+
+    private final Map<String, Integer> loads = new ConcurrentHashMap<>();
+
+    @Override
+    public Reader getReader(String templateName) {
+      this.loads.merge(templateName, 1, Integer::sum);
+      return super.getReader(templateName);
+    }
+
+    int loads(String templateName) {
+      return this.loads.getOrDefault(templateName, 0);
+    }
+  }
+}
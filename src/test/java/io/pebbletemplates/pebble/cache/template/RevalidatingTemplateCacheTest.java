@@ -0,0 +1,104 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.loader.FileLoader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevalidatingTemplateCacheTest {
+
+  @TempDir
+  Path directory;
+
+  private CountingLoader loader;
+
+  @BeforeEach
+  void setUp() {
+    this.loader = new CountingLoader();
+    this.loader.setPrefix(this.directory.toString());
+  }
+
+  @Test
+  void testChangedTemplateIsServedStaleUntilRecompiled() throws IOException {
+    RevalidatingTemplateCache cache = new RevalidatingTemplateCache(this.loader, Runnable::run, 0,
+        TimeUnit.MILLISECONDS);
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(this.loader).templateCache(cache)
+        .build();
+    this.write("{{ 'one' }}");
+    assertThat(render(pebble)).isEqualTo("one");
+
+    this.write("{{ 'second' }}");
+    // the request which finds the change still gets the previous template
+    assertThat(render(pebble)).isEqualTo("one");
+    assertThat(render(pebble)).isEqualTo("second");
+
+    // a broken template is not swapped in
+    this.write("{{ 'broken }}");
+    assertThat(render(pebble)).isEqualTo("second");
+    assertThat(render(pebble)).isEqualTo("second");
+
+    this.write("{{ 'and third' }}");
+    assertThat(render(pebble)).isEqualTo("second");
+    assertThat(render(pebble)).isEqualTo("and third");
+
+    assertThat(pebble.getLiteralTemplate("literal")).isNotNull();
+  }
+
+  @Test
+  void testTemplatesAreCheckedOncePerInterval() throws IOException {
+    RevalidatingTemplateCache cache = new RevalidatingTemplateCache(this.loader, Runnable::run, 1,
+        TimeUnit.HOURS);
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(this.loader).templateCache(cache)
+        .build();
+    this.write("{{ 'one' }}");
+    assertThat(render(pebble)).isEqualTo("one");
+    this.write("{{ 'second' }}");
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(render(pebble)).isEqualTo("one");
+    }
+    assertThat(this.loader.versionChecks.get()).isEqualTo(1);
+
+    cache.invalidateAll();
+    assertThat(render(pebble)).isEqualTo("second");
+  }
+
+  private void write(String content) throws IOException {
+    Path file = this.directory.resolve("template");
+    long lastModified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    // make the change visible on file systems with a coarse modification time
+    Files.setLastModifiedTime(file, FileTime.fromMillis(
+        Math.max(lastModified + 2000, System.currentTimeMillis())));
+  }
+
+  private static String render(PebbleEngine pebble) throws IOException {
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate("template").evaluate(writer);
+    return writer.toString();
+  }
+
+  private static class CountingLoader extends FileLoader {
+
+    private final AtomicInteger versionChecks = new AtomicInteger();
+
+    @Override
+    public Object getVersion(String templateName) {
+      this.versionChecks.incrementAndGet();
+      return super.getVersion(templateName);
+    }
+  }
+}
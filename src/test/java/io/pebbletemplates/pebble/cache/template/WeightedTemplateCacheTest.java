@@ -0,0 +1,176 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.cache.CacheStats;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WeightedTemplateCacheTest {
+
+  @Test
+  void testEstimatedSizeGrowsWithTextAndNodes() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      text.append("report line ").append(i).append('\n');
+    }
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("small", "hello");
+    loader.addTemplate("nodes", "{% for i in items %}{% if i %}{{ i }}{% endif %}{% endfor %}"
+        + "{% block b %}{{ a }}{% endblock %}");
+    loader.addTemplate("large", text.toString());
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).build();
+
+    long small = size(pebble, "small");
+    long nodes = size(pebble, "nodes");
+    long large = size(pebble, "large");
+
+    assertThat(nodes).isGreaterThan(small);
+    assertThat(large).isGreaterThanOrEqualTo(2L * text.length());
+    assertThat(size(pebble, "large")).isEqualTo(large);
+  }
+
+  @Test
+  void testTemplatesAreEvictedByWeight() {
+    Map<String, Long> weights = new HashMap<>();
+    weights.put("a", 40L);
+    weights.put("b", 40L);
+    weights.put("c", 40L);
+    weights.put("huge", 90L);
+    MemoryLoader loader = new MemoryLoader();
+    for (String name : weights.keySet()) {
+      loader.addTemplate(name, name);
+    }
+    WeightedTemplateCache cache = new WeightedTemplateCache(100,
+        template -> weights.get(template.getName()));
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).templateCache(cache).build();
+
+    PebbleTemplate a = pebble.getTemplate("a");
+    pebble.getTemplate("b");
+    assertThat(pebble.getTemplate("a")).isSameAs(a);
+    assertThat(cache.getWeight()).isEqualTo(80);
+
+    // "a" was used since it was cached, "b" goes first
+    pebble.getTemplate("c");
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getWeight()).isEqualTo(80);
+    assertThat(pebble.getTemplate("a")).isSameAs(a);
+
+    pebble.getTemplate("huge");
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getWeight()).isEqualTo(90);
+
+    CacheStats stats = cache.stats();
+    assertThat(stats.getHitCount()).isEqualTo(2);
+    assertThat(stats.getMissCount()).isEqualTo(4);
+    assertThat(stats.getEvictionCount()).isEqualTo(3);
+    assertThat(stats.getEvictionWeight()).isEqualTo(120);
+    assertThat(stats.getHitRate()).isEqualTo(2.0 / 6);
+
+    cache.invalidateAll();
+    assertThat(cache.size()).isZero();
+    assertThat(cache.getWeight()).isZero();
+  }
+
+  @Test
+  void testOversizedTemplateEvictsNothing() {
+    Map<String, Long> weights = new HashMap<>();
+    weights.put("a", 30L);
+    weights.put("b", 30L);
+    weights.put("c", 30L);
+    weights.put("report", 150L);
+    MemoryLoader loader = new MemoryLoader();
+    for (String name : weights.keySet()) {
+      loader.addTemplate(name, name);
+    }
+    WeightedTemplateCache cache = new WeightedTemplateCache(100,
+        template -> weights.get(template.getName()));
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).templateCache(cache).build();
+
+    pebble.getTemplate("a");
+    pebble.getTemplate("b");
+    pebble.getTemplate("c");
+    PebbleTemplate report = pebble.getTemplate("report");
+    assertThat(report.getName()).isEqualTo("report");
+    assertThat(pebble.getTemplate("report")).isNotSameAs(report);
+
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.getWeight()).isEqualTo(90);
+    assertThat(cache.stats().getEvictionCount()).isZero();
+  }
+
+  @Test
+  void testCompilationDoesNotBlockOtherTemplates() throws Exception {
+    MemoryLoader loader = new MemoryLoader();
+    // same hash code, the keys share a bin of the map
+    loader.addTemplate("Aa", "a");
+    loader.addTemplate("BB", "b");
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(loader).cacheActive(false).build();
+    WeightedTemplateCache cache = new WeightedTemplateCache(1000, template -> 1);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger compilations = new AtomicInteger();
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    try {
+      List<Future<PebbleTemplate>> futures = new ArrayList<>();
+      futures.add(executorService.submit(() -> cache.computeIfAbsent("Aa", key -> {
+        compilations.incrementAndGet();
+        started.countDown();
+        await(release);
+        return pebble.getTemplate((String) key);
+      })));
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+      futures.add(executorService.submit(() -> cache.computeIfAbsent("Aa", key -> {
+        compilations.incrementAndGet();
+        return pebble.getTemplate((String) key);
+      })));
+
+      Future<PebbleTemplate> other = executorService.submit(
+          () -> cache.computeIfAbsent("BB", key -> pebble.getTemplate((String) key)));
+      assertThat(other.get(10, TimeUnit.SECONDS)).isNotNull();
+
+      release.countDown();
+      assertThat(futures.get(1).get(10, TimeUnit.SECONDS))
+          .isSameAs(futures.get(0).get(10, TimeUnit.SECONDS));
+      assertThat(compilations.get()).isEqualTo(1);
+      assertThat(cache.size()).isEqualTo(2);
+      assertThat(cache.getWeight()).isEqualTo(2);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  void testNegativeMaximumWeight() {
+    assertThatThrownBy(() -> new WeightedTemplateCache(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static long size(PebbleEngine pebble, String name) {
+    return ((PebbleTemplateImpl) pebble.getTemplate(name)).getEstimatedSize();
+  }
+}
@@ -0,0 +1,49 @@
+package io.pebbletemplates.pebble.extension.escaper;
+
+import org.junit.jupiter.api.Test;
+import org.unbescape.html.HtmlEscape;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HtmlEscapingStrategyTest {
+
+  private final HtmlEscapingStrategy strategy = new HtmlEscapingStrategy();
+
+  @Test
+  void testSafeStringsAreReturnedAsTheyAre() {
+    String safe = "plain text, \u00e9\u20ac \ud83d\ude00 / \\ = ? # %";
+    assertSame(safe, this.strategy.escape(safe));
+    assertSame("", this.strategy.escape(""));
+  }
+
+  @Test
+  void testSameOutputAsUnbescape() throws IOException {
+    for (String input : Arrays.asList("<", "a&b", "\"quoted\" 'single'", "tail>",
+        "<a href=\"x?y=1&z=2\">\u00e9</a>", "&amp;", "\u0000\u001f\u007f < ")) {
+      assertEscaped(input);
+    }
+    Random random = new Random(42);
+    char[] alphabet = "ab<>&\"'=/ \u00e9\u20ac\ud83d\ude00\n".toCharArray();
+    for (int i = 0; i < 500; i++) {
+      char[] chars = new char[random.nextInt(40)];
+      for (int j = 0; j < chars.length; j++) {
+        chars[j] = alphabet[random.nextInt(alphabet.length)];
+      }
+      assertEscaped(new String(chars));
+    }
+  }
+
+  private void assertEscaped(String input) throws IOException {
+    String expected = HtmlEscape.escapeHtml4Xml(input);
+    assertEquals(expected, this.strategy.escape(input), input);
+    StringWriter writer = new StringWriter();
+    this.strategy.escape(input, writer);
+    assertEquals(expected, writer.toString(), input);
+  }
+}
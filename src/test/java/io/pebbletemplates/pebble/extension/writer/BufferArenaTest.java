@@ -0,0 +1,106 @@
+package io.pebbletemplates.pebble.extension.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferArenaTest {
+
+  @Test
+  void testBuffersAreReused() {
+    BufferArena arena = new BufferArena();
+    BufferWriter outer = arena.borrow();
+    outer.write("outer");
+    BufferWriter inner = arena.borrow();
+    assertThat(inner).isNotSameAs(outer);
+    inner.write("inner");
+    arena.release(inner);
+
+    BufferWriter next = arena.borrow();
+    assertThat(next).isSameAs(inner);
+    assertThat(next.length()).isZero();
+    assertThat(outer.toString()).isEqualTo("outer");
+  }
+
+  @Test
+  void testLargeAndDetachedBuffersAreNotKept() {
+    BufferArena arena = new BufferArena();
+    BufferWriter large = arena.borrow();
+    large.write(new char[BufferArena.MAX_RETAINED_CAPACITY + 1], 0,
+        BufferArena.MAX_RETAINED_CAPACITY + 1);
+    arena.release(large);
+    assertThat(arena.borrow()).isNotSameAs(large);
+
+    BufferWriter detached = arena.borrow();
+    detached.write("content");
+    CharSequence content = detached.detach();
+    arena.release(detached);
+    assertThat(content.toString()).isEqualTo("content");
+    assertThat(arena.borrow()).isNotSameAs(detached);
+  }
+
+  @Test
+  void testWriteTo() throws IOException {
+    BufferWriter buffer = new BufferArena().borrow();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      buffer.writeSpecialized(i);
+      expected.append(i);
+    }
+
+    StringWriter stringWriter = new StringWriter();
+    buffer.writeTo(stringWriter);
+    assertThat(stringWriter.toString()).isEqualTo(expected.toString());
+
+    BufferWriter other = new BufferArena().borrow();
+    buffer.writeTo(other);
+    assertThat(other.toString()).isEqualTo(expected.toString());
+
+    // written in chunks
+    CharArrayWriter charArrayWriter = new CharArrayWriter();
+    buffer.writeTo(charArrayWriter);
+    assertThat(charArrayWriter.toString()).isEqualTo(expected.toString());
+  }
+
+  @Test
+  void testChunksGrowWithTheContent() throws IOException {
+    BufferArena arena = new BufferArena();
+    BufferWriter buffer = arena.borrow();
+    buffer.write("short");
+    buffer.writeTo(new CharArrayWriter());
+    arena.release(buffer);
+
+    BufferWriter large = arena.borrow();
+    assertThat(large).isSameAs(buffer);
+    large.write(new char[10_000], 0, 10_000);
+    AtomicInteger writes = new AtomicInteger();
+    CharArrayWriter writer = new CharArrayWriter() {
+
+      @Override
+      public void write(char[] c, int off, int len) {
+        writes.incrementAndGet();
+        super.write(c, off, len);
+      }
+    };
+    large.writeTo(writer);
+    assertThat(writer.size()).isEqualTo(10_000);
+    assertThat(writes.get()).isEqualTo(10);
+  }
+
+  @Test
+  void testPooledWriterDetach() {
+    PooledSpecializedStringWriter writer = PooledSpecializedStringWriter.pooled();
+    writer.writeSpecialized("first");
+    CharSequence first = writer.detach();
+
+    PooledSpecializedStringWriter again = PooledSpecializedStringWriter.pooled();
+    again.writeSpecialized("second");
+    assertThat(first.toString()).isEqualTo("first");
+    assertThat(again.toString()).isEqualTo("second");
+  }
+}
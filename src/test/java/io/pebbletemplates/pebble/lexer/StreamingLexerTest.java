@@ -0,0 +1,217 @@
+package io.pebbletemplates.pebble.lexer;
+
+import io.pebbletemplates.pebble.error.ParserException;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.core.CoreExtension;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingLexerTest {
+
+  private static final String TEMPLATE_NAME = "Template Name";
+
+  private static final List<String> TEMPLATES = Arrays.asList(
+      "",
+      " template content ",
+      "{{ whatever }}",
+      "line 1\nline 2\r\n{{ name }}\rline 4\n\r{{ name\n}}\u2028end",
+      "{{ is_active + contains0 }}{{ a or organization and not b }}{{ x is not null }}",
+      "{{ 1 + 2.5 - 3L * (4 / 2) % 1.x }}{{ [1, 2][0] }}{{ {'a': 1}['a'] }}{{ a ? b : c }}",
+      "{{ user.name | upper | default('none') }}{{ a.b(1, 'c').d }}{{ x ?: y }}",
+      "{{ 'single \\'quoted\\' \\n' }}{{ \"double \\\"quoted\\\"\" }}{{ \"a\\\\\" }}",
+      "{{ \"hello #{ name } and #{ a + 'b' } # { not } \\#{x}\" }}{{ \"#{ \"#{ nested }\" }\" }}",
+      "{{ \"multi\nline\" ~ 'strings\r\nhere' }}",
+      "{{ ünïcödé_1 }}{{ _underscore }}{{ \uD801\uDC00name }}",
+      "a  {{- b -}}  c\n  {%- if true -%}\n d \n{%- endif %}\n\te",
+      "text {# comment #}\nafter {# trimmed -#}   \n  more {#- not a trim-#} x {# -#}y",
+      "{# multi\nline\r\ncomment #}{{ a }}",
+      "a {% verbatim %}\n{{ raw }} {% if %}\n{% endverbatim %}\nb",
+      "a {% verbatim -%} raw {%- endverbatim -%}  b {%verbatim%}x{%endverbatim%}",
+      "{% verbatimx %}{% for i in range(0, 10) %}{{ i }}{% endfor %}",
+      "{% set x = [1, 2, 3] %}{% for i in x %}{{ loop.index }}{% else %}none{% endfor %}",
+      "{{-\n value \n-}}\n{% macro m(a, b = 'x') %}{{ a }}{% endmacro %}\r\n\r\n",
+      "{{ a }}\n\n{% block b %}\n{{ parent() }}\n{% endblock %}\n");
+
+  private static final List<String> ERRORS = Arrays.asList(
+      "{{ 'unclosed",
+      "{{ \"unclosed",
+      "{{ \"unclosed #{ a",
+      "{{ (a }}",
+      "{{ a) }}",
+      "{{ [a) }}",
+      "{{ a $ b }}",
+      "text\n{# unclosed comment",
+      "text\n{% verbatim %}\nunclosed");
+
+  @Test
+  void testSameTokensAsRegularExpressionLexer() {
+    for (boolean newLineTrimming : new boolean[]{true, false}) {
+      Syntax syntax = new Syntax.Builder().setEnableNewLineTrimming(newLineTrimming).build();
+      for (String template : TEMPLATES) {
+        assertSameTokens(syntax, template);
+      }
+    }
+  }
+
+  @Test
+  void testSameTokensWithCustomSyntax() {
+    Syntax syntax = new Syntax.Builder()
+        .setPrintOpenDelimiter("${")
+        .setPrintCloseDelimiter("}")
+        .setExecuteOpenDelimiter("<%")
+        .setExecuteCloseDelimiter("%>")
+        .setCommentOpenDelimiter("<#")
+        .setCommentCloseDelimiter("#>")
+        .setWhitespaceTrim("~")
+        .build();
+
+    assertSameTokens(syntax, "a ${ b } <% if c ~%>\n d <#~ e #> ${ {'f': 1} }<%~ endif %>");
+    assertSameTokens(syntax, "<% verbatim %>${ raw }<% endverbatim ~%>  x <# trimmed ~#>  y");
+  }
+
+  @Test
+  void testSameErrorsAsRegularExpressionLexer() {
+    Syntax syntax = new Syntax.Builder().build();
+    for (String template : ERRORS) {
+      ParserException expected = null;
+      try {
+        newRegexLexer(syntax).tokenize(new StringReader(template), TEMPLATE_NAME);
+      } catch (ParserException e) {
+        expected = e;
+      }
+      assertThat(expected).as(template).isNotNull();
+
+      for (int bufferSize : new int[]{ReaderSource.DEFAULT_CAPACITY, 4}) {
+        StreamingLexer lexer = newStreamingLexer(syntax, bufferSize);
+        assertThatThrownBy(
+            () -> lexer.tokenize(new StringReader(template), TEMPLATE_NAME).getTokens())
+            .as(template)
+            .isInstanceOf(ParserException.class)
+            .hasMessage(expected.getMessage());
+      }
+    }
+  }
+
+  @Test
+  void testLargeTextIsScannedInChunks() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append("line ").append(i).append(i % 7 == 0 ? "{\n" : "\r\n");
+    }
+    String template = text + "{{ value }}{# " + text + " -#}  " + text
+        + "{% verbatim %}" + text + "{% endverbatim %}";
+
+    assertSameTokens(new Syntax.Builder().build(), template);
+  }
+
+  @Test
+  void testTokensAreProducedOnDemand() {
+    Reader reader = new FailingReader("{{ first }}{{ second }}", 12);
+    StreamingLexer lexer = newStreamingLexer(new Syntax.Builder().build(),
+        ReaderSource.DEFAULT_CAPACITY);
+
+    TokenStream tokenStream = lexer.tokenize(reader, TEMPLATE_NAME);
+
+    assertThat(tokenStream.current().getType()).isEqualTo(Token.Type.PRINT_START);
+    assertThat(tokenStream.peek(1).getValue()).isEqualTo("first");
+    assertThat(tokenStream.peek(2).getType()).isEqualTo(Token.Type.PRINT_END);
+    assertThatThrownBy(() -> tokenStream.peek(3))
+        .isInstanceOf(ParserException.class)
+        .hasMessageContaining("Can not read template");
+  }
+
+  @Test
+  void testUnsupportedSyntax() {
+    Syntax syntax = new Syntax.Builder().setWhitespaceTrim("").build();
+
+    assertThat(StreamingLexer.supports(new Syntax.Builder().build())).isTrue();
+    assertThat(StreamingLexer.supports(syntax)).isFalse();
+  }
+
+  private static void assertSameTokens(Syntax syntax, String template) {
+    List<String> expected = describe(
+        newRegexLexer(syntax).tokenize(new StringReader(template), TEMPLATE_NAME));
+
+    for (int bufferSize : new int[]{ReaderSource.DEFAULT_CAPACITY, 4}) {
+      StreamingLexer lexer = newStreamingLexer(syntax, bufferSize);
+      assertThat(describe(lexer.tokenize(new StringReader(template), TEMPLATE_NAME)))
+          .as(template)
+          .isEqualTo(expected);
+      assertThat(describe(lexer.tokenize(new OneCharReader(template), TEMPLATE_NAME)))
+          .as(template)
+          .isEqualTo(expected);
+    }
+  }
+
+  private static List<String> describe(TokenStream tokenStream) {
+    List<String> tokens = new ArrayList<>();
+    for (Token token : tokenStream.getTokens()) {
+      tokens.add(token.getType() + "[" + token.getValue() + "]@" + token.getLineNumber());
+    }
+    return tokens;
+  }
+
+  private static LexerImpl newRegexLexer(Syntax syntax) {
+    ExtensionRegistry extensionRegistry = new ExtensionRegistry();
+    extensionRegistry.addExtension(new CoreExtension());
+    return new LexerImpl(syntax,
+        extensionRegistry.getUnaryOperators().values(),
+        extensionRegistry.getBinaryOperators().values());
+  }
+
+  private static StreamingLexer newStreamingLexer(Syntax syntax, int bufferSize) {
+    ExtensionRegistry extensionRegistry = new ExtensionRegistry();
+    extensionRegistry.addExtension(new CoreExtension());
+    return new StreamingLexer(syntax,
+        extensionRegistry.getUnaryOperators().values(),
+        extensionRegistry.getBinaryOperators().values(), bufferSize);
+  }
+
+  /**
+   * Returns a single character per read.
+   */
+  private static class OneCharReader extends StringReader {
+
+    OneCharReader(String s) {
+      super(s);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      return super.read(cbuf, off, Math.min(len, 1));
+    }
+  }
+
+  /**
+   * Fails once more than the given amount of characters has been read.
+   */
+  private static class FailingReader extends StringReader {
+
+    private int remaining;
+
+    FailingReader(String s, int readable) {
+      super(s);
+      this.remaining = readable;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (this.remaining <= 0) {
+        throw new IOException("broken");
+      }
+      int read = super.read(cbuf, off, Math.min(len, this.remaining));
+      this.remaining -= read;
+      return read;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package io.pebbletemplates.pebble.lexer;
+
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.core.CoreExtension;
+import io.pebbletemplates.pebble.lexer.TemplateSegmenter.Segment;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TemplateSegmenterTest {
+
+  private static final List<String> TEMPLATES = Arrays.asList(
+      "",
+      "line 1\nline 2\r\nline 3\rline 4\n\rline 5 line 6\r\n",
+      "a\n{% block one %}\nb\n{% endblock %}\nc\n{% macro m() %}\n{{ x }}\n{% endmacro %}\n",
+      "a  \n  {%- block one -%}  \n b \n  {%- endblock -%}  \n\n c\n",
+      "a\n{{ x -}}\n\n\nb\n\n{#- comment #}\n\n{{- y }}\n \n{%- if z %}\n{% endif -%}\n\n",
+      "{% block outer %}\n{% block inner %}\nx\n{% endblock %}\n{% endblock %}\nafter\n",
+      "{% if a %}\n{% block b %}\nx\n{% endblock %}\n{% endif %}\n{% for i in c %}\n{{ i }}\n"
+          + "{% else %}\nnone\n{% endfor %}\n",
+      "{{ \"%}\n{% block x %}\" }}\n{{ {'a': {'b': 1}} }}\n{{ \"#{ '}}' }\n\" }}\nend\n",
+      "{% verbatim %}\n{% block v %}\n{% endblock %}\n{% endverbatim %}\nafter\n",
+      "{# {% block c %}\n#}\n{% block d %}{% endblock %}\n{%- macro e() -%}\n\n{%- endmacro -%}",
+      "{% block unclosed %}\nx\n");
+
+  @Test
+  void testSegmentsGiveTheSameTokens() {
+    for (boolean newLineTrimming : new boolean[]{true, false}) {
+      Syntax syntax = new Syntax.Builder().setEnableNewLineTrimming(newLineTrimming).build();
+      for (String template : TEMPLATES) {
+        assertSameTokens(syntax, template);
+      }
+    }
+  }
+
+  @Test
+  void testSegmentsWithCustomSyntax() {
+    Syntax syntax = new Syntax.Builder()
+        .setPrintOpenDelimiter("${")
+        .setPrintCloseDelimiter("}")
+        .setExecuteOpenDelimiter("<%")
+        .setExecuteCloseDelimiter("%>")
+        .setCommentOpenDelimiter("<#")
+        .setCommentCloseDelimiter("#>")
+        .setWhitespaceTrim("~")
+        .build();
+
+    assertSameTokens(syntax, "a\n<% block b ~%>\n ${ c }\n<%~ endblock %>\n<# d ~#>\n\n e\n");
+  }
+
+  @Test
+  void testDefinitionsAreSegments() {
+    Syntax syntax = new Syntax.Builder().build();
+    String template = "a\n{% block one %}\nb\n{% endblock %}\nc\n{% macro m() %}{% endmacro %}";
+
+    List<String> segments = new ArrayList<>();
+    for (Segment segment : new TemplateSegmenter(syntax).split(template)) {
+      segments.add(template.substring(segment.getStart(), segment.getEnd()));
+    }
+    assertThat(segments).containsExactly("a\n", "{% block one %}\nb\n{% endblock %}\n", "c\n",
+        "{% macro m() %}{% endmacro %}");
+  }
+
+  private static void assertSameTokens(Syntax syntax, String template) {
+    List<String> expected = tokens(syntax, template, 1);
+    List<Segment> segments = new TemplateSegmenter(syntax, 1).split(template);
+    List<String> actual = new ArrayList<>();
+    int end = 0;
+    for (Segment segment : segments) {
+      assertThat(segment.getStart()).isEqualTo(end);
+      end = segment.getEnd();
+      List<String> tokens = tokens(syntax,
+          template.substring(segment.getStart(), segment.getEnd()), segment.getLineNumber());
+      if (!actual.isEmpty()) {
+        // the end of the previous segment
+        actual.remove(actual.size() - 1);
+      }
+      actual.addAll(tokens);
+    }
+    assertThat(end).isEqualTo(template.length());
+    assertThat(merge(actual)).as(template).isEqualTo(merge(expected));
+  }
+
+  private static List<String> tokens(Syntax syntax, String source, int lineNumber) {
+    ExtensionRegistry extensions = new ExtensionRegistry();
+    extensions.addExtension(new CoreExtension());
+    LexerImpl lexer = new LexerImpl(syntax, extensions.getUnaryOperators().values(),
+        extensions.getBinaryOperators().values());
+    List<String> tokens = new ArrayList<>();
+    try {
+      for (Token token : lexer.tokenize(new StringReader(source), "template", lineNumber)
+          .getTokens()) {
+        tokens.add(token.getType() + ":" + token.getValue() + "@" + token.getLineNumber());
+      }
+    } catch (RuntimeException e) {
+      tokens.add("ERROR:" + e.getMessage());
+    }
+    return tokens;
+  }
+
+  /**
+   * Joins consecutive text tokens, they are rendered the same.
+   */
+  private static List<String> merge(List<String> tokens) {
+    List<String> merged = new ArrayList<>();
+    String text = null;
+    for (String token : tokens) {
+      if (token.startsWith("TEXT:")) {
+        String value = token.substring(5, token.lastIndexOf('@'));
+        text = text == null ? "TEXT:" + value : text + value;
+        continue;
+      }
+      if (text != null && !text.equals("TEXT:")) {
+        merged.add(text);
+      }
+      text = null;
+      merged.add(token);
+    }
+    if (text != null && !text.equals("TEXT:")) {
+      merged.add(text);
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,125 @@
+package io.pebbletemplates.pebble.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link ChunkedWriter}.
+ */
+class ChunkedWriterTest {
+
+  @Test
+  void chunksEndAtTheChunkSizeAndWhenFlushed() throws IOException {
+    RecordingSink sink = new RecordingSink(4);
+    ChunkedWriter writer = new ChunkedWriter(sink);
+
+    writer.write("abcdefghij");
+    writer.write('k');
+    writer.flush();
+    writer.flush();
+    writer.write(new char[]{'l', 'm'});
+    writer.finish();
+
+    assertEquals(listOf("abcd", "efgh", "ijk", "lm"), sink.chunks);
+    assertTrue(sink.completed);
+  }
+
+  @Test
+  void nextChunkWaitsForThePendingOne() throws Exception {
+    CompletableFuture<Void> ready = new CompletableFuture<>();
+    List<String> chunks = new ArrayList<>();
+    ChunkedWriter writer = new ChunkedWriter(new ChunkSink() {
+
+      @Override
+      public CompletionStage<?> onChunk(CharBuffer chunk) {
+        chunks.add(chunk.toString());
+        return ready;
+      }
+    });
+
+    writer.write("first");
+    writer.flush();
+    Thread thread = new Thread(() -> {
+      try {
+        writer.write("second");
+        writer.finish();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    thread.start();
+    thread.join(100);
+
+    assertTrue(thread.isAlive());
+    assertEquals(listOf("first"), chunks);
+    ready.complete(null);
+    thread.join();
+    assertEquals(listOf("first", "second"), chunks);
+  }
+
+  @Test
+  void failuresOfTheSinkAreThrown() throws IOException {
+    IOException failure = new IOException("closed");
+    ChunkedWriter writer = new ChunkedWriter(chunk -> {
+      CompletableFuture<Void> stage = new CompletableFuture<>();
+      stage.completeExceptionally(failure);
+      return stage;
+    });
+
+    writer.write("a");
+    writer.flush();
+    writer.write("b");
+    assertSame(failure, assertThrows(IOException.class, writer::flush));
+  }
+
+  private static List<String> listOf(String... values) {
+    List<String> list = new ArrayList<>();
+    for (String value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /**
+   * Copies the chunks and is always ready for the next one.
+   */
+  static class RecordingSink implements ChunkSink {
+
+    final List<String> chunks = new ArrayList<>();
+
+    private final int chunkSize;
+
+    boolean completed = false;
+
+    RecordingSink(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public CompletionStage<?> onChunk(CharBuffer chunk) {
+      this.chunks.add(chunk.toString());
+      return null;
+    }
+
+    @Override
+    public void onComplete() {
+      this.completed = true;
+    }
+
+    @Override
+    public int getChunkSize() {
+      return this.chunkSize;
+    }
+  }
+}
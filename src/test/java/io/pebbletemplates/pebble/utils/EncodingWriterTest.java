@@ -0,0 +1,101 @@
+package io.pebbletemplates.pebble.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link EncodingWriter}.
+ */
+class EncodingWriterTest {
+    @Test
+    void encodesCharactersAndPassesEncodedBytesThrough() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, StandardCharsets.UTF_8);
+
+        writer.write("h\u00e9llo ");
+        writer.writeEncoded("w\u00f6rld".getBytes(StandardCharsets.UTF_8));
+        writer.write(new char[]{' ', '\u20ac'});
+        writer.write('!');
+        writer.finish();
+
+        assertEquals("h\u00e9llo w\u00f6rld \u20ac!", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void contentIsBufferedUntilFlushed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, StandardCharsets.UTF_8);
+
+        writer.write("abc");
+        assertEquals(0, out.size());
+
+        writer.flush();
+        assertEquals("abc", out.toString("UTF-8"));
+    }
+
+    @Test
+    void writesContentLargerThanTheBuffers() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 2000; i++) {
+            String chunk = i + "\u00e9\uD83D\uDE00";
+            expected.append(chunk).append(chunk);
+            writer.write(chunk);
+            writer.writeEncoded(chunk.getBytes(StandardCharsets.UTF_8));
+        }
+        String large = expected.toString();
+        writer.write(large);
+        writer.writeEncoded(large.getBytes(StandardCharsets.UTF_8));
+        writer.finish();
+
+        assertEquals(large + large + large, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void surrogatePairsSplitAcrossWritesAreEncoded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, StandardCharsets.UTF_8);
+
+        writer.write('\uD83D');
+        writer.flush();
+        writer.write('\uDE00');
+        writer.finish();
+
+        assertEquals("\uD83D\uDE00", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void statefulCharsetsDoNotAcceptEncodedContent() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertTrue(new EncodingWriter(out, StandardCharsets.UTF_8).acceptsEncoded());
+        assertTrue(new EncodingWriter(out, StandardCharsets.ISO_8859_1).acceptsEncoded());
+        assertFalse(new EncodingWriter(out, StandardCharsets.UTF_16).acceptsEncoded());
+    }
+
+    @Test
+    void finishDoesNotCloseTheStream() throws IOException {
+        UncloseableOutputStream out = new UncloseableOutputStream();
+        EncodingWriter writer = new EncodingWriter(out, Charset.forName("UTF-8"));
+
+        writer.write("abc");
+        writer.finish();
+
+        assertEquals("abc", out.toString("UTF-8"));
+    }
+
+    private static class UncloseableOutputStream extends ByteArrayOutputStream {
+        @Override
+        public void close() {
+            throw new IllegalStateException("Can not close this stream.");
+        }
+    }
+}